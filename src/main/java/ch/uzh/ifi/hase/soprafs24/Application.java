@@ -29,7 +29,7 @@ public class Application {
     return new WebMvcConfigurer() {
       @Override
       public void addCorsMappings(CorsRegistry registry) {
-        registry.addMapping("/**").allowedOrigins("*").allowedMethods("*").exposedHeaders("token");
+        registry.addMapping("/**").allowedOrigins("*").allowedMethods("*").exposedHeaders("token", "X-Has-More", "Link");
       }
     };
   }
@@ -0,0 +1,12 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the @Scheduled maintenance jobs, see NotificationRetentionJob.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
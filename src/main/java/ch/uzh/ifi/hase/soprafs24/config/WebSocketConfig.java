@@ -0,0 +1,60 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+import ch.uzh.ifi.hase.soprafs24.security.StompAuthInterceptor;
+
+/**
+ * STOMP over WebSocket on /ws with the in-process simple broker, so no
+ * external broker is needed. Clients connect with the usual "token" header
+ * and subscribe to /user/queue/messages, /user/queue/notifications and
+ * /user/queue/unread.
+ */
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    // idle sessions only exchange a heartbeat frame every 25 s
+    private static final long HEARTBEAT_MILLIS = 25000L;
+
+    private final StompAuthInterceptor stompAuthInterceptor;
+
+    public WebSocketConfig(StompAuthInterceptor stompAuthInterceptor) {
+        this.stompAuthInterceptor = stompAuthInterceptor;
+    }
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint("/ws").setAllowedOriginPatterns("*");
+    }
+
+    // a bean, so the context starts it and shuts its thread down on close
+    @Bean
+    public ThreadPoolTaskScheduler webSocketHeartbeatScheduler() {
+        ThreadPoolTaskScheduler heartbeatScheduler = new ThreadPoolTaskScheduler();
+        heartbeatScheduler.setPoolSize(1);
+        heartbeatScheduler.setThreadNamePrefix("ws-heartbeat-");
+        return heartbeatScheduler;
+    }
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        registry.enableSimpleBroker("/queue")
+                .setHeartbeatValue(new long[]{HEARTBEAT_MILLIS, HEARTBEAT_MILLIS})
+                .setTaskScheduler(webSocketHeartbeatScheduler());
+        registry.setApplicationDestinationPrefixes("/app");
+        registry.setUserDestinationPrefix("/user");
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthInterceptor);
+    }
+}
@@ -0,0 +1,49 @@
+package ch.uzh.ifi.hase.soprafs24.constant;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Locale;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public enum AnalyticsGranularity {
+    MINUTE(60, 120), // the last two hours, only kept in memory
+    HOUR(3600, 72), // three days in memory, older ones from ANALYTICS_ROLLUP
+    DAY(86400, 62); // two months in memory, older ones from ANALYTICS_ROLLUP
+
+    private final long seconds;
+    private final int ringSize;
+
+    AnalyticsGranularity(long seconds, int ringSize) {
+        this.seconds = seconds;
+        this.ringSize = ringSize;
+    }
+
+    public long getSeconds() {
+        return seconds;
+    }
+
+    public int getRingSize() {
+        return ringSize;
+    }
+
+    // buckets follow the server's wall clock, a day starts at local midnight
+    public LocalDateTime bucketStart(LocalDateTime time) {
+        long epochSeconds = time.toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochSeconds, seconds) * seconds, 0, ZoneOffset.UTC);
+    }
+
+    public long bucketNumber(LocalDateTime bucketStart) {
+        return Math.floorDiv(bucketStart.toEpochSecond(ZoneOffset.UTC), seconds);
+    }
+
+    public static AnalyticsGranularity fromParameter(String granularity) {
+        for (AnalyticsGranularity value : values()) {
+            if (value.name().equals(granularity.toUpperCase(Locale.ROOT))) {
+                return value;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown granularity: " + granularity);
+    }
+}
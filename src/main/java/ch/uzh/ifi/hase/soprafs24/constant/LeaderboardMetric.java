@@ -0,0 +1,20 @@
+package ch.uzh.ifi.hase.soprafs24.constant;
+
+import java.util.Locale;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public enum LeaderboardMetric {
+    ACTIVE, // most requests marked as done
+    RATED; // best average rating, only volunteers with enough ratings
+
+    public static LeaderboardMetric fromParameter(String metric) {
+        for (LeaderboardMetric value : values()) {
+            if (value.name().equals(metric.toUpperCase(Locale.ROOT))) {
+                return value;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown leaderboard: " + metric);
+    }
+}
@@ -0,0 +1,12 @@
+package ch.uzh.ifi.hase.soprafs24.constant;
+
+/**
+ * Groups notification types that describe the same back and forth on a
+ * request, e.g. volunteering and cancelling again.
+ */
+public enum NotificationFamily {
+    VOLUNTEERING,
+    ACCEPTANCE,
+    COMPLETION,
+    FEEDBACK
+}
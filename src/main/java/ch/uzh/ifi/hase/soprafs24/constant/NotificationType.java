@@ -2,10 +2,22 @@ package ch.uzh.ifi.hase.soprafs24.constant;
 
 
 public enum NotificationType {
-    VOLUNTEERED,
-    VOLUNTEERING,
-    ACCEPTING,
-    ACCEPTED,
-    COMPLETED,
-    POSTERCANCEL, VOLUNTEERCANCEL, FEEDBACK
+    VOLUNTEERED(NotificationFamily.VOLUNTEERING),
+    VOLUNTEERING(NotificationFamily.VOLUNTEERING),
+    ACCEPTING(NotificationFamily.ACCEPTANCE),
+    ACCEPTED(NotificationFamily.ACCEPTANCE),
+    COMPLETED(NotificationFamily.COMPLETION),
+    POSTERCANCEL(NotificationFamily.VOLUNTEERING), VOLUNTEERCANCEL(NotificationFamily.VOLUNTEERING),
+    FEEDBACK(NotificationFamily.FEEDBACK);
+
+    // notifications of one family about the same request are coalesced, see NotificationService
+    private final NotificationFamily family;
+
+    NotificationType(NotificationFamily family) {
+        this.family = family;
+    }
+
+    public NotificationFamily getFamily() {
+        return family;
+    }
 }
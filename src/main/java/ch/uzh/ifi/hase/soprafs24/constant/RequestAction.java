@@ -0,0 +1,11 @@
+package ch.uzh.ifi.hase.soprafs24.constant;
+
+public enum RequestAction {
+    VOLUNTEER, // WAITING -> VOLUNTEERED
+    ACCEPT, // VOLUNTEERED -> ACCEPTING
+    COMPLETE, // ACCEPTING -> COMPLETED
+    CANCEL, // VOLUNTEERED or ACCEPTING -> WAITING
+    MARK_DONE, // COMPLETED -> DONE
+    FEEDBACK, // DONE stays DONE, the poster rates the volunteer
+    DELETE // anything but DELETED -> DELETED
+}
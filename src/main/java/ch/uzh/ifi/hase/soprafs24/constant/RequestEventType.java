@@ -0,0 +1,10 @@
+package ch.uzh.ifi.hase.soprafs24.constant;
+
+public enum RequestEventType {
+    CREATED, // a new request is waiting for volunteers
+    VOLUNTEERED, // someone volunteered, the request left the active feed
+    CANCELLED, // the volunteer or poster cancelled, the request is waiting again
+    UPDATED, // the poster or an admin edited the request
+    STATUS_CHANGED, // accepted, completed or done, the request is not in the active feed
+    DELETED
+}
@@ -0,0 +1,36 @@
+package ch.uzh.ifi.hase.soprafs24.constant;
+
+import java.util.Locale;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public enum RequestExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"), // one JSON object per line
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    RequestExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static RequestExportFormat fromParameter(String format) {
+        for (RequestExportFormat value : values()) {
+            if (value.extension.equals(format.toLowerCase(Locale.ROOT))) {
+                return value;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown export format: " + format);
+    }
+}
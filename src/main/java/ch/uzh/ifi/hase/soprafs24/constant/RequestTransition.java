@@ -0,0 +1,10 @@
+package ch.uzh.ifi.hase.soprafs24.constant;
+
+public enum RequestTransition {
+    VOLUNTEERED, // a volunteer applied
+    ACCEPTED, // the poster accepted the volunteer
+    COMPLETED, // the volunteer finished the request
+    POSTER_CANCELLED,
+    VOLUNTEER_CANCELLED,
+    FEEDBACK // the poster rated the volunteer
+}
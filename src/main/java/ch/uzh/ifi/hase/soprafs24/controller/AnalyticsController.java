@@ -0,0 +1,38 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import ch.uzh.ifi.hase.soprafs24.constant.AnalyticsGranularity;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.AnalyticsBucketDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.ErrorResponse;
+import ch.uzh.ifi.hase.soprafs24.security.CurrentUser;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
+import ch.uzh.ifi.hase.soprafs24.service.PlatformAnalytics;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/analytics")
+public class AnalyticsController {
+    private final PlatformAnalytics platformAnalytics;
+
+    public AnalyticsController(PlatformAnalytics platformAnalytics) {
+        this.platformAnalytics = platformAnalytics;
+    }
+
+    // admin only, served from the in-memory counters and ANALYTICS_ROLLUP
+    @GetMapping
+    public ResponseEntity<?> getAnalytics(@CurrentUser UserPrincipal currentUser,
+                                          @RequestParam(defaultValue = "hour") String granularity,
+                                          @RequestParam(defaultValue = "24") int buckets) {
+        try {
+            List<AnalyticsBucketDTO> report = platformAnalytics.report(currentUser,
+                    AnalyticsGranularity.fromParameter(granularity), buckets);
+            return ResponseEntity.ok(report);
+        }
+        catch (ResponseStatusException ex) {
+            return ResponseEntity.status(ex.getStatus()).body(new ErrorResponse(ex.getReason()));
+        }
+    }
+}
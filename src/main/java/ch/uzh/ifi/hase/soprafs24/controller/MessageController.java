@@ -2,15 +2,21 @@ package ch.uzh.ifi.hase.soprafs24.controller;
 
 import ch.uzh.ifi.hase.soprafs24.entity.Message;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.ContactDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.ConversationPageDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.ErrorResponse;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.MessageDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.PollBatchDTO;
+import ch.uzh.ifi.hase.soprafs24.security.CurrentUser;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
 import ch.uzh.ifi.hase.soprafs24.service.MessageService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -20,7 +26,6 @@ import java.util.stream.Collectors;
 public class MessageController {
 
     private final MessageService messageService;
-    private static final String AUTH_HEADER = "token";
 
     public MessageController(MessageService messageService) {
         this.messageService = messageService;
@@ -39,10 +44,28 @@ public class MessageController {
         }
     }
 
+    @PutMapping("/mark-read/{senderId}/{recipientId}/up-to/{messageId}")
+    public ResponseEntity<?> markMessagesAsReadUpTo(
+            @CurrentUser UserPrincipal currentUser,
+            @PathVariable Long senderId,
+            @PathVariable Long recipientId,
+            @PathVariable Long messageId) {
+        try {
+            if (!currentUser.getId().equals(recipientId)) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You can only mark your own messages as read");
+            }
+            int updated = messageService.markMessagesAsReadUpTo(senderId, recipientId, messageId);
+            return ResponseEntity.ok(Map.of("updated", updated));
+        }
+        catch (ResponseStatusException ex) {
+            return ResponseEntity.status(ex.getStatus()).body(new ErrorResponse(ex.getReason()));
+        }
+    }
+
     @GetMapping("/unread")
-    public ResponseEntity<?> hasUnreadMessages(@RequestHeader(AUTH_HEADER) String token) {
+    public ResponseEntity<?> hasUnreadMessages(@CurrentUser UserPrincipal currentUser) {
         try {
-            Map<String, Boolean> response = messageService.hasUnreadMessage(token);
+            Map<String, Object> response = messageService.hasUnreadMessage(currentUser);
             return ResponseEntity.ok(response);
         }
         catch (ResponseStatusException ex) {
@@ -72,10 +95,33 @@ public class MessageController {
 
     }
 
+    @GetMapping("/conversation/{senderId}/{recipientId}/page")
+    public ResponseEntity<?> getConversationPage(
+            @CurrentUser UserPrincipal currentUser,
+            @PathVariable Long senderId,
+            @PathVariable Long recipientId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime after,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            if (!currentUser.getId().equals(senderId) && !currentUser.getId().equals(recipientId)) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You can only read your own conversations");
+            }
+            ConversationPageDTO page = messageService.getConversationPage(
+                    senderId, recipientId, before, beforeId, after, afterId, limit);
+            return ResponseEntity.ok(page);
+        }
+        catch (ResponseStatusException ex) {
+            return ResponseEntity.status(ex.getStatus()).body(new ErrorResponse(ex.getReason()));
+        }
+    }
+
     @GetMapping("/contacts")
-    public ResponseEntity<?> getChatContacts(@RequestHeader(AUTH_HEADER) String token) {
+    public ResponseEntity<?> getChatContacts(@CurrentUser UserPrincipal currentUser) {
         try {
-            List<ContactDTO> contacts = messageService.getChatContacts(token);
+            List<ContactDTO> contacts = messageService.getChatContacts(currentUser);
             return ResponseEntity.ok(contacts);
         }
         catch (ResponseStatusException ex) {
@@ -83,9 +129,15 @@ public class MessageController {
         }
     }
 
-    @GetMapping("/poll/{userId}")
-    public DeferredResult<String> poll(@PathVariable Long userId) {
-        return messageService.poll(userId);
+    // the AuthFilter lets /messages through, so the caller is only known here
+    @GetMapping({"/poll", "/poll/{userId}"})
+    public DeferredResult<PollBatchDTO<MessageDTO>> poll(@CurrentUser UserPrincipal currentUser,
+                                                         @PathVariable(required = false) Long userId,
+                                                         @RequestParam(required = false) Long cursor) {
+        if (userId != null && !userId.equals(currentUser.getId())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You can only poll your own messages");
+        }
+        return messageService.poll(currentUser.getId(), cursor);
     }
 
     @PostMapping("/send")
@@ -2,40 +2,91 @@ package ch.uzh.ifi.hase.soprafs24.controller;
 
 import ch.uzh.ifi.hase.soprafs24.rest.dto.ErrorResponse;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.NotificationDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.NotificationPageDTO;
+import ch.uzh.ifi.hase.soprafs24.security.CurrentUser;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
 import ch.uzh.ifi.hase.soprafs24.service.NotificationService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/notifications")
 public class NotificationController {
-    private static final String AUTH_HEADER = "token";
     private final NotificationService notificationService;
 
     public NotificationController(NotificationService notificationService) {
         this.notificationService = notificationService;
     }
 
+    /**
+     * The newest notifications as a plain list, for older clients. The list
+     * stops after one page: X-Has-More tells whether there are older ones and
+     * the Link header points at the next page of /notifications/page.
+     */
     @GetMapping
-    public ResponseEntity<?> getUserNotifications(@RequestHeader(AUTH_HEADER) String token) {
+    public ResponseEntity<?> getUserNotifications(@CurrentUser UserPrincipal currentUser) {
         try {
-            List<NotificationDTO> notificationDTOS = notificationService.getNotificationDTOS(token);
-            return ResponseEntity.ok(notificationDTOS);
+            NotificationPageDTO page = notificationService.getNotificationPage(currentUser, null, null,
+                    NotificationService.DEFAULT_NOTIFICATION_PAGE_SIZE);
+            List<NotificationDTO> notificationDTOS = page.getNotifications();
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .header("X-Has-More", String.valueOf(page.isHasMore()));
+            if (page.isHasMore()) {
+                NotificationDTO last = notificationDTOS.get(notificationDTOS.size() - 1);
+                String next = ServletUriComponentsBuilder.fromCurrentContextPath()
+                        .path("/notifications/page")
+                        .queryParam("before", last.getTimestamp())
+                        .queryParam("beforeId", last.getNotificationId())
+                        .toUriString();
+                response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+            }
+            return response.body(notificationDTOS);
         }
         catch (ResponseStatusException ex) {
             return ResponseEntity.status(ex.getStatus()).body(new ErrorResponse(ex.getReason()));
         }
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<?> getNotificationPage(
+            @CurrentUser UserPrincipal currentUser,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            NotificationPageDTO page = notificationService.getNotificationPage(currentUser, before, beforeId, limit);
+            return ResponseEntity.ok(page);
+        }
+        catch (ResponseStatusException ex) {
+            return ResponseEntity.status(ex.getStatus()).body(new ErrorResponse(ex.getReason()));
+        }
+    }
+
+    @GetMapping("/since/{notificationId}")
+    public ResponseEntity<?> getNotificationsSince(@CurrentUser UserPrincipal currentUser,
+                                                   @PathVariable Long notificationId,
+                                                   @RequestParam(defaultValue = "50") int limit) {
+        try {
+            NotificationPageDTO page = notificationService.getNotificationsSince(currentUser, notificationId, limit);
+            return ResponseEntity.ok(page);
+        }
+        catch (ResponseStatusException ex) {
+            return ResponseEntity.status(ex.getStatus()).body(new ErrorResponse(ex.getReason()));
+        }
+    }
 
     @PutMapping("/mark-read")
-    public ResponseEntity<?> markNotificationsAsRead(@RequestHeader(AUTH_HEADER) String token) {
+    public ResponseEntity<?> markNotificationsAsRead(@CurrentUser UserPrincipal currentUser) {
         try {
-            notificationService.markNotificationsAsRead(token);
+            notificationService.markNotificationsAsRead(currentUser);
             return ResponseEntity.noContent().build();
         }
         catch (ResponseStatusException ex) {
@@ -56,9 +107,9 @@ public class NotificationController {
     }
 
     @GetMapping("/unread")
-    public ResponseEntity<?> getUnreadNotifications(@RequestHeader(AUTH_HEADER) String token) {
+    public ResponseEntity<?> getUnreadNotifications(@CurrentUser UserPrincipal currentUser) {
         try {
-            Map<String, Boolean> response = notificationService.getUnreadNotifications(token);
+            Map<String, Object> response = notificationService.getUnreadNotifications(currentUser);
             return ResponseEntity.ok(response);
         }
 
@@ -1,33 +1,65 @@
 package ch.uzh.ifi.hase.soprafs24.controller;
 
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestExportFormat;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.Request;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.*;
 import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs24.security.CurrentUser;
+import ch.uzh.ifi.hase.soprafs24.security.StreamTickets;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
+import ch.uzh.ifi.hase.soprafs24.service.RequestClusterIndex;
+import ch.uzh.ifi.hase.soprafs24.service.RequestExportService;
+import ch.uzh.ifi.hase.soprafs24.service.RequestFeedBroadcaster;
+import ch.uzh.ifi.hase.soprafs24.service.RequestGeoIndex;
+import ch.uzh.ifi.hase.soprafs24.service.RequestSearchIndex;
 import ch.uzh.ifi.hase.soprafs24.service.RequestService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/requests")
 public class RequestController {
 
-    private static final String AUTH_HEADER = "token";
     private final RequestService requestService;
+    private final RequestFeedBroadcaster requestFeedBroadcaster;
+    private final StreamTickets streamTickets;
+    private final RequestGeoIndex requestGeoIndex;
+    private final RequestClusterIndex requestClusterIndex;
+    private final RequestSearchIndex requestSearchIndex;
+    private final RequestExportService requestExportService;
 
 
-    public RequestController(RequestService requestService) {
+    public RequestController(RequestService requestService, RequestFeedBroadcaster requestFeedBroadcaster,
+                             RequestGeoIndex requestGeoIndex, RequestClusterIndex requestClusterIndex,
+                             RequestSearchIndex requestSearchIndex, RequestExportService requestExportService,
+                             StreamTickets streamTickets) {
         this.requestService = requestService;
+        this.requestFeedBroadcaster = requestFeedBroadcaster;
+        this.streamTickets = streamTickets;
+        this.requestGeoIndex = requestGeoIndex;
+        this.requestClusterIndex = requestClusterIndex;
+        this.requestSearchIndex = requestSearchIndex;
+        this.requestExportService = requestExportService;
     }
 
     @GetMapping
-    public ResponseEntity<?> getAllRequests(@RequestHeader(AUTH_HEADER) String token) {
+    public ResponseEntity<?> getAllRequests(@CurrentUser UserPrincipal currentUser) {
         try {
-            List<RequestGetDTO> requests = requestService.getRequests(token).stream()
+            List<RequestGetDTO> requests = requestService.getRequests(currentUser).stream()
                     .map(DTOMapper.INSTANCE::convertEntityToRequestGetDTO)
                     .collect(Collectors.toList());
             return ResponseEntity.ok(requests);
@@ -37,6 +69,34 @@ public class RequestController {
         }
     }
 
+    @GetMapping("/admin/page")
+    public ResponseEntity<?> getAdminRequestPage(@CurrentUser UserPrincipal currentUser,
+                                                 @RequestParam(required = false) List<RequestStatus> status,
+                                                 @RequestParam(defaultValue = "0") int page,
+                                                 @RequestParam(defaultValue = "20") int size) {
+        try {
+            PageDTO<RequestGetDTO> result = requestService.getAdminRequestPage(currentUser, status, page, size);
+            return ResponseEntity.ok(result);
+        }
+        catch (ResponseStatusException ex) {
+            return ResponseEntity.status(ex.getStatus()).body(new ErrorResponse(ex.getReason()));
+        }
+    }
+
+    // errors are rendered by GlobalExceptionAdvice, the body type has to stay StreamingResponseBody
+    @GetMapping("/admin/export")
+    public ResponseEntity<StreamingResponseBody> exportRequests(@CurrentUser UserPrincipal currentUser,
+                                                                @RequestParam(defaultValue = "ndjson") String format,
+                                                                @RequestParam(required = false) List<RequestStatus> status) {
+        RequestExportFormat exportFormat = RequestExportFormat.fromParameter(format);
+        StreamingResponseBody body = requestExportService.export(currentUser, exportFormat, status);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"requests." + exportFormat.getExtension() + "\"")
+                .body(body);
+    }
+
     @GetMapping("/{requestId}")
     public ResponseEntity<?> getRequestById(@PathVariable Long requestId) {
         try {
@@ -65,11 +125,11 @@ public class RequestController {
     public ResponseEntity<?> updateRequest(
             @PathVariable Long requestId,
             @RequestBody RequestPostDTO requestPostDTO,
-            @RequestHeader(AUTH_HEADER) String token
+            @CurrentUser UserPrincipal currentUser
     ) {
         try {
             Request requestToUpdate = DTOMapper.INSTANCE.convertRequestPostDTOtoEntity(requestPostDTO);
-            Request updatedRequest = requestService.updateRequest(requestId, requestToUpdate, token);
+            Request updatedRequest = requestService.updateRequest(requestId, requestToUpdate, currentUser);
             return ResponseEntity.ok(DTOMapper.INSTANCE.convertEntityToRequestGetDTO(updatedRequest));
         }
         catch (ResponseStatusException ex) {
@@ -79,11 +139,11 @@ public class RequestController {
 
     @PutMapping("/{requestId}/delete")
     public ResponseEntity<?> deleteRequest(@PathVariable Long requestId,
-                                           @RequestHeader(AUTH_HEADER) String token,
+                                           @CurrentUser UserPrincipal currentUser,
                                            @RequestBody(required = false) DeleteRequestDTO deleteDTO) {
         try {
             String reason = deleteDTO != null ? deleteDTO.getReason() : null;
-            requestService.deleteRequest(requestId, token, reason);
+            requestService.deleteRequest(requestId, currentUser, reason);
             return ResponseEntity.ok().build();
         }
         catch (ResponseStatusException ex) {
@@ -91,6 +151,19 @@ public class RequestController {
         }
     }
 
+    @PutMapping("/bulk-delete")
+    public ResponseEntity<?> deleteRequests(@CurrentUser UserPrincipal currentUser,
+                                            @RequestBody BulkDeleteRequestDTO deleteDTO) {
+        try {
+            Map<String, Integer> result = requestService.deleteRequests(
+                    deleteDTO.getRequestIds(), currentUser, deleteDTO.getReason());
+            return ResponseEntity.ok(result);
+        }
+        catch (ResponseStatusException ex) {
+            return ResponseEntity.status(ex.getStatus()).body(new ErrorResponse(ex.getReason()));
+        }
+    }
+
     @PutMapping("/{requestId}/accept")
     public ResponseEntity<?> acceptRequest(@PathVariable Long requestId, @RequestParam Long volunteerId) {
         try {
@@ -103,9 +176,9 @@ public class RequestController {
     }
 
     @PutMapping("/{requestId}/complete")
-    public ResponseEntity<?> completeRequest(@PathVariable Long requestId, @RequestHeader(AUTH_HEADER) String token) {
+    public ResponseEntity<?> completeRequest(@PathVariable Long requestId, @CurrentUser UserPrincipal currentUser) {
         try {
-            requestService.completeRequest(requestId, token);
+            requestService.completeRequest(requestId, currentUser);
             return ResponseEntity.ok().build();
         }
         catch (ResponseStatusException ex) {
@@ -114,9 +187,9 @@ public class RequestController {
     }
 
     @PutMapping("/{requestId}/cancel")
-    public ResponseEntity<?> cancelRequest(@PathVariable Long requestId, @RequestHeader(AUTH_HEADER) String token) {
+    public ResponseEntity<?> cancelRequest(@PathVariable Long requestId, @CurrentUser UserPrincipal currentUser) {
         try {
-            requestService.cancelRequest(requestId, token);
+            requestService.cancelRequest(requestId, currentUser);
             return ResponseEntity.ok().build();
         }
         catch (ResponseStatusException ex) {
@@ -125,9 +198,9 @@ public class RequestController {
     }
 
     @GetMapping("/me")
-    public ResponseEntity<?> getRequestByPosterId(@RequestHeader(AUTH_HEADER) String token) {
+    public ResponseEntity<?> getRequestByPosterId(@CurrentUser UserPrincipal currentUser) {
         try {
-            List<RequestGetDTO> requestGetDTOs = requestService.getRequestByPoster(token).stream()
+            List<RequestGetDTO> requestGetDTOs = requestService.getRequestByPoster(currentUser).stream()
                     .map(DTOMapper.INSTANCE::convertEntityToRequestGetDTO)
                     .collect(Collectors.toList());
             return ResponseEntity.ok(requestGetDTOs);
@@ -139,9 +212,9 @@ public class RequestController {
     }
 
     @PutMapping("/{requestId}/volunteer")
-    public ResponseEntity<?> volunteer(@PathVariable Long requestId, @RequestHeader(AUTH_HEADER) String token) {
+    public ResponseEntity<?> volunteer(@PathVariable Long requestId, @CurrentUser UserPrincipal currentUser) {
         try {
-            requestService.volunteerRequest(requestId, token);
+            requestService.volunteerRequest(requestId, currentUser);
             return ResponseEntity.ok().build();
         }
         catch (ResponseStatusException ex) {
@@ -163,10 +236,83 @@ public class RequestController {
         }
     }
 
+    @GetMapping("/active/page")
+    public ResponseEntity<?> getActiveRequestPage(
+            @RequestParam(required = false) List<RequestEmergencyLevel> emergencyLevel,
+            @RequestParam(required = false) String countryCode,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "newest") String sort,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            PageDTO<RequestGetDTO> result = requestService.getActiveRequestPage(
+                    emergencyLevel, countryCode, from, to, sort, page, size);
+            return ResponseEntity.ok(result);
+        }
+        catch (ResponseStatusException ex) {
+            return ResponseEntity.status(ex.getStatus()).body(new ErrorResponse(ex.getReason()));
+        }
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> searchRequests(@RequestParam String q,
+                                            @RequestParam(required = false) List<RequestStatus> status,
+                                            @RequestParam(required = false) List<RequestEmergencyLevel> emergencyLevel,
+                                            @RequestParam(defaultValue = "20") int limit) {
+        try {
+            List<RequestSearchHitDTO> hits = requestSearchIndex.search(q, status, emergencyLevel, limit);
+            return ResponseEntity.ok(hits);
+        }
+        catch (ResponseStatusException ex) {
+            return ResponseEntity.status(ex.getStatus()).body(new ErrorResponse(ex.getReason()));
+        }
+    }
+
+    @GetMapping("/nearby")
+    public ResponseEntity<?> getNearbyRequests(@RequestParam double lat,
+                                               @RequestParam double lng,
+                                               @RequestParam(required = false) Double radius,
+                                               @RequestParam(defaultValue = "10") int k) {
+        try {
+            List<NearbyRequestDTO> result = requestGeoIndex.findNearby(lat, lng, radius, k);
+            return ResponseEntity.ok(result);
+        }
+        catch (ResponseStatusException ex) {
+            return ResponseEntity.status(ex.getStatus()).body(new ErrorResponse(ex.getReason()));
+        }
+    }
+
+    @GetMapping("/clusters")
+    public ResponseEntity<?> getRequestClusters(@RequestParam double minLat,
+                                                @RequestParam double minLng,
+                                                @RequestParam double maxLat,
+                                                @RequestParam double maxLng,
+                                                @RequestParam int zoom) {
+        try {
+            List<MapClusterDTO> clusters = requestClusterIndex.getClusters(minLat, minLng, maxLat, maxLng, zoom);
+            return ResponseEntity.ok(clusters);
+        }
+        catch (ResponseStatusException ex) {
+            return ResponseEntity.status(ex.getStatus()).body(new ErrorResponse(ex.getReason()));
+        }
+    }
+
+    // the stream is opened with ?ticket=..., the session token never goes into a URL
+    @PostMapping("/active/stream/ticket")
+    public ResponseEntity<?> createStreamTicket(@CurrentUser UserPrincipal currentUser) {
+        return ResponseEntity.ok(Map.of("ticket", streamTickets.issue(currentUser)));
+    }
+
+    @GetMapping(value = "/active/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamActiveRequests() {
+        return requestFeedBroadcaster.subscribe();
+    }
+
     @PutMapping("/{requestId}/done")
-    public ResponseEntity<?> markRequestAsDone(@PathVariable Long requestId, @RequestHeader(AUTH_HEADER) String token) {
+    public ResponseEntity<?> markRequestAsDone(@PathVariable Long requestId, @CurrentUser UserPrincipal currentUser) {
         try {
-            requestService.markRequestAsDone(requestId, token);
+            requestService.markRequestAsDone(requestId, currentUser);
             return ResponseEntity.ok().build();
         }
         catch (ResponseStatusException ex) {
@@ -175,9 +321,9 @@ public class RequestController {
     }
 
     @PutMapping("/{requestId}/feedback")
-    public ResponseEntity<?> sendFeedback(@PathVariable Long requestId, @RequestHeader(AUTH_HEADER) String token, @RequestBody FeedbackDTO feedback) {
+    public ResponseEntity<?> sendFeedback(@PathVariable Long requestId, @CurrentUser UserPrincipal currentUser, @RequestBody FeedbackDTO feedback) {
         try {
-            requestService.feedback(requestId, token, feedback.getFeedback(), feedback.getRating());
+            requestService.feedback(requestId, currentUser, feedback.getFeedback(), feedback.getRating());
             return ResponseEntity.ok().build();
         }
         catch (ResponseStatusException ex) {
@@ -1,12 +1,18 @@
 package ch.uzh.ifi.hase.soprafs24.controller;
 
+import ch.uzh.ifi.hase.soprafs24.constant.LeaderboardMetric;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.ErrorResponse;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LeaderboardEntryDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPostDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.VolunteerStatsDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs24.security.CurrentUser;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
 import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import ch.uzh.ifi.hase.soprafs24.service.VolunteerLeaderboard;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -29,9 +35,11 @@ public class UserController {
 
     private static final String AUTH_HEADER = "token";
     private final UserService userService;
+    private final VolunteerLeaderboard volunteerLeaderboard;
 
-    UserController(UserService userService) {
+    UserController(UserService userService, VolunteerLeaderboard volunteerLeaderboard) {
         this.userService = userService;
+        this.volunteerLeaderboard = volunteerLeaderboard;
     }
 
     @GetMapping
@@ -106,11 +114,38 @@ public class UserController {
         }
     }
 
+    @GetMapping("/leaderboard")
+    public ResponseEntity<?> getLeaderboard(@RequestParam(defaultValue = "active") String by,
+                                            @RequestParam(required = false) String school,
+                                            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            List<LeaderboardEntryDTO> entries =
+                    volunteerLeaderboard.top(LeaderboardMetric.fromParameter(by), school, limit);
+            return ResponseEntity.status(HttpStatus.OK).body(entries);
+        }
+        catch (ResponseStatusException ex) {
+            ErrorResponse errorResponse = new ErrorResponse(ex.getReason());
+            return ResponseEntity.status(ex.getStatus()).body(errorResponse);
+        }
+    }
+
+    @GetMapping("/{userId}/stats")
+    public ResponseEntity<?> getVolunteerStats(@PathVariable Long userId) {
+        try {
+            VolunteerStatsDTO stats = userService.getVolunteerStats(userId);
+            return ResponseEntity.status(HttpStatus.OK).body(stats);
+        }
+        catch (ResponseStatusException ex) {
+            ErrorResponse errorResponse = new ErrorResponse(ex.getReason());
+            return ResponseEntity.status(ex.getStatus()).body(errorResponse);
+        }
+    }
+
     @PutMapping("/{userId}")
-    public ResponseEntity<?> updateUser(@PathVariable Long userId, @RequestBody UserPutDTO userPutDTO, @RequestHeader(AUTH_HEADER) String token) {
+    public ResponseEntity<?> updateUser(@PathVariable Long userId, @RequestBody UserPutDTO userPutDTO, @CurrentUser UserPrincipal currentUser) {
         try {
             //update user
-            userService.updateUser(userId, userPutDTO, token);
+            userService.updateUser(userId, userPutDTO, currentUser);
             return ResponseEntity.noContent().build();
         }
         catch (ResponseStatusException ex) {
@@ -120,10 +155,10 @@ public class UserController {
     }
 
     @PutMapping("/logout")
-    public ResponseEntity<?> logoutUser(@RequestHeader(AUTH_HEADER) String token) {
+    public ResponseEntity<?> logoutUser(@CurrentUser UserPrincipal currentUser) {
         try {
             // logout by token
-            userService.logout(token);
+            userService.logout(currentUser);
             return ResponseEntity.noContent().build();
         }
         catch (ResponseStatusException ex) {
@@ -134,10 +169,10 @@ public class UserController {
 
 
     @GetMapping("/me")
-    public ResponseEntity<?> getUserMe(@RequestHeader(AUTH_HEADER) String token) {
+    public ResponseEntity<?> getUserMe(@CurrentUser UserPrincipal currentUser) {
         try {
-            // get user by token to check if the user has the privilege to edit the profile
-            User user = userService.getUserByToken(token);
+            // the token was already resolved by the AuthFilter, only the profile itself is loaded here
+            User user = userService.getUserById(currentUser.getId());
             return ResponseEntity.status(HttpStatus.OK).body(DTOMapper.INSTANCE.convertEntityToUserGetDTO(user));
         }
         catch (ResponseStatusException ex) {
@@ -147,9 +182,9 @@ public class UserController {
     }
 
     @DeleteMapping("/{userId}")
-    public ResponseEntity<?> deleteUser(@PathVariable Long userId, @RequestHeader(AUTH_HEADER) String token) {
+    public ResponseEntity<?> deleteUser(@PathVariable Long userId, @CurrentUser UserPrincipal currentUser) {
         try {
-            userService.deleteUser(userId, token);
+            userService.deleteUser(userId, currentUser);
             return ResponseEntity.status(HttpStatus.OK).build();
         }
         catch (ResponseStatusException ex) {
@@ -0,0 +1,98 @@
+package ch.uzh.ifi.hase.soprafs24.entity;
+
+import ch.uzh.ifi.hase.soprafs24.constant.AnalyticsGranularity;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * One counter of one hour or day, written by PlatformAnalytics. The
+ * dimension is empty for counters without one.
+ */
+@Entity
+@Table(name = "ANALYTICS_ROLLUP", uniqueConstraints = {
+        @UniqueConstraint(name = "UK_ANALYTICS_ROLLUP_BUCKET",
+                columnNames = {"granularity", "bucketStart", "metric", "dimension"})
+})
+public class AnalyticsRollup implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    @Column(nullable = false)
+    private AnalyticsGranularity granularity;
+
+    @Column(nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false, length = 64)
+    private String metric;
+
+    @Column(nullable = false, length = 128)
+    private String dimension;
+
+    @Column(nullable = false)
+    private long count;
+
+    public AnalyticsRollup() {
+    }
+
+    public AnalyticsRollup(AnalyticsGranularity granularity, LocalDateTime bucketStart, String metric,
+                           String dimension) {
+        this.granularity = granularity;
+        this.bucketStart = bucketStart;
+        this.metric = metric;
+        this.dimension = dimension;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public AnalyticsGranularity getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(AnalyticsGranularity granularity) {
+        this.granularity = granularity;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public void setMetric(String metric) {
+        this.metric = metric;
+    }
+
+    public String getDimension() {
+        return dimension;
+    }
+
+    public void setDimension(String dimension) {
+        this.dimension = dimension;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+}
@@ -3,12 +3,18 @@ package ch.uzh.ifi.hase.soprafs24.entity;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "MESSAGE")
+@Table(name = "MESSAGE", indexes = {
+        // keyset paging of a conversation reads one direction of the pair at a time
+        @Index(name = "IDX_MESSAGE_PAIR_TIME", columnList = "senderId, recipientId, timestamp, id"),
+        // contact list and unread checks look up the received side of a user
+        @Index(name = "IDX_MESSAGE_RECIPIENT", columnList = "recipientId, isRead")
+})
 public class Message implements Serializable {
 
     private static final long serialVersionUID = 1L;
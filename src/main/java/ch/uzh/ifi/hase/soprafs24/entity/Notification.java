@@ -2,12 +2,19 @@ package ch.uzh.ifi.hase.soprafs24.entity;
 
 import ch.uzh.ifi.hase.soprafs24.constant.NotificationType;
 
+import org.hibernate.annotations.DynamicUpdate;
+
 import javax.persistence.*;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "NOTIFICATION")
+// coalescing must not write back isRead of a notification that was read in the meantime
+@DynamicUpdate
+@Table(name = "NOTIFICATION", indexes = {
+        @Index(name = "IDX_NOTIFICATION_INBOX", columnList = "recipientId, timestamp, id"),
+        @Index(name = "IDX_NOTIFICATION_RETENTION", columnList = "isRead, timestamp")
+})
 public class Notification implements Serializable {
     private static final long serialVersionUID = 1L;
 
@@ -31,6 +38,10 @@ public class Notification implements Serializable {
     private LocalDateTime timestamp;
     private boolean isRead;
 
+    // how many notifications this one stands for after older ones were collapsed into it
+    @Column(nullable = false)
+    private int occurrences = 1;
+
     public Notification() {
     }
 
@@ -97,4 +108,12 @@ public class Notification implements Serializable {
     public void setIsRead(boolean isRead) {
         this.isRead = isRead;
     }
+
+    public int getOccurrences() {
+        return occurrences;
+    }
+
+    public void setOccurrences(int occurrences) {
+        this.occurrences = occurrences;
+    }
 }
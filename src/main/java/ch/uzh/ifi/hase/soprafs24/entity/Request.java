@@ -12,7 +12,13 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "REQUEST")
+@Table(name = "REQUEST", indexes = {
+        // active feed filters and sort orders, see RequestService.getActiveRequestPage
+        @Index(name = "IDX_REQUEST_STATUS_PUBLISHED", columnList = "status, publishedAt, id"),
+        @Index(name = "IDX_REQUEST_STATUS_LEVEL", columnList = "status, emergencyLevel, publishedAt"),
+        @Index(name = "IDX_REQUEST_STATUS_COUNTRY", columnList = "status, countryCode, publishedAt"),
+        @Index(name = "IDX_REQUEST_STATUS_CREATED", columnList = "status, creation_date")
+})
 public class Request implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -75,6 +81,10 @@ public class Request implements Serializable {
     private Double longitude;
     private String countryCode;
 
+    // concurrent writers of the same request fail instead of overwriting each other
+    @Version
+    private Long version;
+
     public Long getId() {
         return id;
     }
@@ -242,4 +252,12 @@ public class Request implements Serializable {
     public void setCountryCode(String countryCode) {
         this.countryCode = countryCode;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
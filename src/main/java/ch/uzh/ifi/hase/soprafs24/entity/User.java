@@ -6,6 +6,7 @@ import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import javax.persistence.*;
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -67,6 +68,20 @@ public class User implements Serializable {
     @OneToMany(mappedBy = "poster", cascade = CascadeType.REMOVE)
     private List<Request> posterRequests;
 
+    // volunteer reputation, only changed by the increments in UserRepository so
+    // saving a stale user (e.g. a profile edit) never overwrites them
+    @Column(nullable = false, updatable = false)
+    private int completedCount;
+
+    @Column(nullable = false, updatable = false)
+    private int ratingCount;
+
+    @Column(nullable = false, updatable = false)
+    private long ratingSum;
+
+    @Column(updatable = false)
+    private LocalDateTime lastActivityAt;
+
 
     public Long getId() {
         return id;
@@ -180,4 +195,41 @@ public class User implements Serializable {
     public void setPosterRequests(List<Request> posterRequests) {
         this.posterRequests = posterRequests;
     }
+
+    public int getCompletedCount() {
+        return completedCount;
+    }
+
+    public void setCompletedCount(int completedCount) {
+        this.completedCount = completedCount;
+    }
+
+    public int getRatingCount() {
+        return ratingCount;
+    }
+
+    public void setRatingCount(int ratingCount) {
+        this.ratingCount = ratingCount;
+    }
+
+    public long getRatingSum() {
+        return ratingSum;
+    }
+
+    public void setRatingSum(long ratingSum) {
+        this.ratingSum = ratingSum;
+    }
+
+    // null until the first rating
+    public Double getAverageRating() {
+        return ratingCount == 0 ? null : (double) ratingSum / ratingCount;
+    }
+
+    public LocalDateTime getLastActivityAt() {
+        return lastActivityAt;
+    }
+
+    public void setLastActivityAt(LocalDateTime lastActivityAt) {
+        this.lastActivityAt = lastActivityAt;
+    }
 }
@@ -0,0 +1,38 @@
+package ch.uzh.ifi.hase.soprafs24.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by the MessageService for every stored chat message. Only the
+ * ids are copied out of the transaction, the content never leaves it.
+ */
+public class MessageSentEvent {
+
+    private final Long messageId;
+    private final Long senderId;
+    private final Long recipientId;
+    private final LocalDateTime sentAt;
+
+    public MessageSentEvent(Long messageId, Long senderId, Long recipientId, LocalDateTime sentAt) {
+        this.messageId = messageId;
+        this.senderId = senderId;
+        this.recipientId = recipientId;
+        this.sentAt = sentAt;
+    }
+
+    public Long getMessageId() {
+        return messageId;
+    }
+
+    public Long getSenderId() {
+        return senderId;
+    }
+
+    public Long getRecipientId() {
+        return recipientId;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+}
@@ -0,0 +1,32 @@
+package ch.uzh.ifi.hase.soprafs24.event;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEventType;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
+
+/**
+ * Published by the RequestService whenever a request enters or leaves the
+ * active feed or is edited. Carries a snapshot of the request taken inside the
+ * transaction, so listeners running after the commit don't touch entities.
+ */
+public class RequestEvent {
+
+    private final RequestEventType type;
+    private final RequestGetDTO request;
+
+    public RequestEvent(RequestEventType type, RequestGetDTO request) {
+        this.type = type;
+        this.request = request;
+    }
+
+    public RequestEventType getType() {
+        return type;
+    }
+
+    public Long getRequestId() {
+        return request.getId();
+    }
+
+    public RequestGetDTO getRequest() {
+        return request;
+    }
+}
@@ -0,0 +1,69 @@
+package ch.uzh.ifi.hase.soprafs24.event;
+
+import java.time.LocalDateTime;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestTransition;
+import ch.uzh.ifi.hase.soprafs24.entity.Request;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+
+/**
+ * Published by the RequestService for every transition between poster and
+ * volunteer. Only ids and usernames are copied out of the transaction, the
+ * NotificationDispatcher turns the event into notifications after the commit.
+ */
+public class RequestTransitionEvent {
+
+    private final RequestTransition transition;
+    private final Long requestId;
+    private final Long posterId;
+    private final String posterUsername;
+    private final Long volunteerId;
+    private final String volunteerUsername;
+    private final LocalDateTime occurredAt = LocalDateTime.now();
+
+    public RequestTransitionEvent(RequestTransition transition, Long requestId,
+                                  Long posterId, String posterUsername,
+                                  Long volunteerId, String volunteerUsername) {
+        this.transition = transition;
+        this.requestId = requestId;
+        this.posterId = posterId;
+        this.posterUsername = posterUsername;
+        this.volunteerId = volunteerId;
+        this.volunteerUsername = volunteerUsername;
+    }
+
+    public static RequestTransitionEvent of(RequestTransition transition, Request request, User volunteer) {
+        User poster = request.getPoster();
+        return new RequestTransitionEvent(transition, request.getId(),
+                poster.getId(), poster.getUsername(),
+                volunteer.getId(), volunteer.getUsername());
+    }
+
+    public RequestTransition getTransition() {
+        return transition;
+    }
+
+    public Long getRequestId() {
+        return requestId;
+    }
+
+    public Long getPosterId() {
+        return posterId;
+    }
+
+    public String getPosterUsername() {
+        return posterUsername;
+    }
+
+    public Long getVolunteerId() {
+        return volunteerId;
+    }
+
+    public String getVolunteerUsername() {
+        return volunteerUsername;
+    }
+
+    public LocalDateTime getOccurredAt() {
+        return occurredAt;
+    }
+}
@@ -0,0 +1,24 @@
+package ch.uzh.ifi.hase.soprafs24.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by the UserService when a new account was created.
+ */
+public class UserRegisteredEvent {
+
+    private final Long userId;
+    private final LocalDateTime registeredAt = LocalDateTime.now();
+
+    public UserRegisteredEvent(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public LocalDateTime getRegisteredAt() {
+        return registeredAt;
+    }
+}
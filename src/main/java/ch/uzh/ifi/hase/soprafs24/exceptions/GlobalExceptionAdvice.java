@@ -1,7 +1,9 @@
 package ch.uzh.ifi.hase.soprafs24.exceptions;
 
+import ch.uzh.ifi.hase.soprafs24.rest.dto.ErrorResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -27,6 +29,20 @@ public class GlobalExceptionAdvice extends ResponseEntityExceptionHandler {
     return handleExceptionInternal(ex, bodyOfResponse, new HttpHeaders(), HttpStatus.CONFLICT, request);
   }
 
+  // raised outside of the controllers' own try/catch, e.g. while resolving @CurrentUser
+  @ExceptionHandler(ResponseStatusException.class)
+  public ResponseEntity<ErrorResponse> handleResponseStatusException(ResponseStatusException ex) {
+    return ResponseEntity.status(ex.getStatus()).body(new ErrorResponse(ex.getReason()));
+  }
+
+  // a versioned entity changed between our read and our write, see Request.version
+  @ExceptionHandler(OptimisticLockingFailureException.class)
+  public ResponseEntity<ErrorResponse> handleOptimisticLockingFailure(OptimisticLockingFailureException ex) {
+    log.info("Concurrent modification: {}", ex.getMessage());
+    return ResponseEntity.status(HttpStatus.CONFLICT)
+        .body(new ErrorResponse("The request was changed by someone else, please reload and try again"));
+  }
+
   @ExceptionHandler(TransactionSystemException.class)
   public ResponseStatusException handleTransactionSystemException(Exception ex, HttpServletRequest request) {
     log.error("Request: {} raised {}", request.getRequestURL(), ex);
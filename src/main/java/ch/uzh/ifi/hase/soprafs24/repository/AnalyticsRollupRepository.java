@@ -0,0 +1,27 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+import ch.uzh.ifi.hase.soprafs24.constant.AnalyticsGranularity;
+import ch.uzh.ifi.hase.soprafs24.entity.AnalyticsRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AnalyticsRollupRepository extends JpaRepository<AnalyticsRollup, Long> {
+
+    // the rows a flush overwrites, read through the unique (granularity, bucketStart, ...) index
+    List<AnalyticsRollup> findByGranularityAndBucketStartIn(AnalyticsGranularity granularity,
+                                                            Collection<LocalDateTime> bucketStarts);
+
+    @Query("SELECT r FROM AnalyticsRollup r " +
+            "WHERE r.granularity = :granularity AND r.bucketStart >= :from AND r.bucketStart < :to " +
+            "ORDER BY r.bucketStart ASC")
+    List<AnalyticsRollup> findRange(@Param("granularity") AnalyticsGranularity granularity,
+                                    @Param("from") LocalDateTime from,
+                                    @Param("to") LocalDateTime to);
+}
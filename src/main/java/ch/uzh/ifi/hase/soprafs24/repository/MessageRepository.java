@@ -1,11 +1,15 @@
 package ch.uzh.ifi.hase.soprafs24.repository;
 
 import ch.uzh.ifi.hase.soprafs24.entity.Message;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.ContactDTO;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -15,6 +19,20 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     List<Message> findBySenderIdAndRecipientIdAndIsReadFalse(@Param("senderId") Long senderId,
                                                              @Param("recipientId") Long recipientId);
 
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Message m SET m.isRead = true " +
+            "WHERE m.senderId = :senderId AND m.recipientId = :recipientId AND m.isRead = false")
+    int markReadBySenderIdAndRecipientId(@Param("senderId") Long senderId,
+                                         @Param("recipientId") Long recipientId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Message m SET m.isRead = true " +
+            "WHERE m.senderId = :senderId AND m.recipientId = :recipientId AND m.isRead = false " +
+            "  AND m.id <= :upToId")
+    int markReadBySenderIdAndRecipientIdUpTo(@Param("senderId") Long senderId,
+                                             @Param("recipientId") Long recipientId,
+                                             @Param("upToId") Long upToId);
+
     @Query("SELECT m FROM Message m " +
             "WHERE (m.senderId = :senderId AND m.recipientId = :recipientId) " +
             "   OR (m.senderId = :recipientId AND m.recipientId = :senderId) " +
@@ -22,6 +40,35 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     List<Message> findConversation(@Param("senderId") Long senderId,
                                    @Param("recipientId") Long recipientId);
 
+    // Keyset pages of a single direction (sender -> recipient). A conversation page
+    // merges both directions, each query is a plain range scan on IDX_MESSAGE_PAIR_TIME.
+    @Query("SELECT m FROM Message m " +
+            "WHERE m.senderId = :senderId AND m.recipientId = :recipientId " +
+            "ORDER BY m.timestamp DESC, m.id DESC")
+    List<Message> findDirectedLatest(@Param("senderId") Long senderId,
+                                     @Param("recipientId") Long recipientId,
+                                     Pageable pageable);
+
+    @Query("SELECT m FROM Message m " +
+            "WHERE m.senderId = :senderId AND m.recipientId = :recipientId " +
+            "  AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) " +
+            "ORDER BY m.timestamp DESC, m.id DESC")
+    List<Message> findDirectedBefore(@Param("senderId") Long senderId,
+                                     @Param("recipientId") Long recipientId,
+                                     @Param("timestamp") LocalDateTime timestamp,
+                                     @Param("id") Long id,
+                                     Pageable pageable);
+
+    @Query("SELECT m FROM Message m " +
+            "WHERE m.senderId = :senderId AND m.recipientId = :recipientId " +
+            "  AND (m.timestamp > :timestamp OR (m.timestamp = :timestamp AND m.id > :id)) " +
+            "ORDER BY m.timestamp ASC, m.id ASC")
+    List<Message> findDirectedAfter(@Param("senderId") Long senderId,
+                                    @Param("recipientId") Long recipientId,
+                                    @Param("timestamp") LocalDateTime timestamp,
+                                    @Param("id") Long id,
+                                    Pageable pageable);
+
     @Query("SELECT DISTINCT " +
             "CASE WHEN m.senderId = :userId THEN m.recipientId ELSE m.senderId END " +
             "FROM Message m " +
@@ -29,6 +76,21 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     List<Long> findDistinctChatPartnerIds(@Param("userId") Long userId);
 
 
+    // One row per chat partner: the newest message of the pair (highest id, ids are
+    // handed out in send order) joined with the partner and the number of messages
+    // from the partner that are still unread, newest conversation first.
+    @Query("SELECT new ch.uzh.ifi.hase.soprafs24.rest.dto.ContactDTO(u.id, u.username, " +
+            "  (SELECT COUNT(un) FROM Message un " +
+            "   WHERE un.senderId = u.id AND un.recipientId = :userId AND un.isRead = false), " +
+            "  last.content, last.timestamp) " +
+            "FROM Message last, User u " +
+            "WHERE last.id IN (SELECT MAX(m.id) FROM Message m " +
+            "                  WHERE m.senderId = :userId OR m.recipientId = :userId " +
+            "                  GROUP BY CASE WHEN m.senderId = :userId THEN m.recipientId ELSE m.senderId END) " +
+            "  AND u.id = CASE WHEN last.senderId = :userId THEN last.recipientId ELSE last.senderId END " +
+            "ORDER BY last.timestamp DESC, last.id DESC")
+    List<ContactDTO> findChatContacts(@Param("userId") Long userId);
+
     @Query("SELECT m FROM Message m " +
             "WHERE (m.senderId = :userId1 AND m.recipientId = :userId2) " +
             "   OR (m.senderId = :userId2 AND m.recipientId = :userId1) " +
@@ -40,6 +102,8 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
 
     List<Message> findByRecipientIdAndIsReadFalse(Long userId);
 
+    long countByRecipientIdAndIsReadFalse(Long recipientId);
+
     @Query("SELECT COUNT(m) > 0 FROM Message m WHERE m.senderId = :partnerId AND m.recipientId = :currentUserId AND m.isRead = false")
     boolean hasUnreadMessages(@Param("partnerId") Long partnerId, @Param("currentUserId") Long currentUserId);
 }
@@ -1,20 +1,115 @@
 package ch.uzh.ifi.hase.soprafs24.repository;
 
 import ch.uzh.ifi.hase.soprafs24.entity.Notification;
-import ch.uzh.ifi.hase.soprafs24.entity.Request;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.NotificationDTO;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
     List<Notification> findByRecipientIdOrderByTimestampDesc(Long recipientId);
 
+    // inbox projections: the request title comes from the join, no Request entity is loaded
+    String INBOX_SELECT = "SELECT new ch.uzh.ifi.hase.soprafs24.rest.dto.NotificationDTO(" +
+            "n.id, n.recipientId, n.relatedUserId, n.relatedUsername, r.id, r.title, n.type, n.isRead, n.timestamp, " +
+            "n.occurrences) " +
+            "FROM Notification n JOIN n.request r ";
+
+    @Query(INBOX_SELECT +
+            "WHERE n.recipientId = :recipientId " +
+            "ORDER BY n.timestamp DESC, n.id DESC")
+    List<NotificationDTO> findInboxLatest(@Param("recipientId") Long recipientId, Pageable pageable);
+
+    @Query(INBOX_SELECT +
+            "WHERE n.recipientId = :recipientId " +
+            "  AND (n.timestamp < :timestamp OR (n.timestamp = :timestamp AND n.id < :id)) " +
+            "ORDER BY n.timestamp DESC, n.id DESC")
+    List<NotificationDTO> findInboxBefore(@Param("recipientId") Long recipientId,
+                                          @Param("timestamp") LocalDateTime timestamp,
+                                          @Param("id") Long id,
+                                          Pageable pageable);
+
+    @Query(INBOX_SELECT +
+            "WHERE n.recipientId = :recipientId AND n.id > :id " +
+            "ORDER BY n.id ASC")
+    List<NotificationDTO> findInboxSince(@Param("recipientId") Long recipientId,
+                                         @Param("id") Long id,
+                                         Pageable pageable);
+
+    // coalescing candidates, see NotificationService.createNotifications
+    @Query("SELECT n FROM Notification n " +
+            "WHERE n.recipientId IN :recipientIds AND n.request.id IN :requestIds " +
+            "  AND n.isRead = false AND n.timestamp >= :since")
+    List<Notification> findUnreadForCoalescing(@Param("recipientIds") Collection<Long> recipientIds,
+                                               @Param("requestIds") Collection<Long> requestIds,
+                                               @Param("since") LocalDateTime since);
+
+    // retention, see NotificationRetentionJob
+    @Query(INBOX_SELECT +
+            "WHERE n.isRead = true AND n.timestamp < :cutoff " +
+            "ORDER BY n.id ASC")
+    List<NotificationDTO> findReadBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT n.recipientId AS recipientId, n.request.id AS requestId, MAX(n.id) AS keepId, " +
+            "SUM(n.occurrences) AS occurrences " +
+            "FROM Notification n " +
+            "WHERE n.isRead = false AND n.timestamp < :cutoff " +
+            "GROUP BY n.recipientId, n.request.id " +
+            "HAVING COUNT(n) > 1")
+    List<UnreadGroup> findCollapsibleUnread(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Notification n SET n.occurrences = :occurrences WHERE n.id = :id")
+    int updateOccurrences(@Param("id") Long id, @Param("occurrences") int occurrences);
+
+    @Modifying
+    @Query("DELETE FROM Notification n " +
+            "WHERE n.recipientId = :recipientId AND n.request.id = :requestId " +
+            "  AND n.isRead = false AND n.timestamp < :cutoff AND n.id <> :keepId")
+    int deleteCollapsedUnread(@Param("recipientId") Long recipientId,
+                              @Param("requestId") Long requestId,
+                              @Param("cutoff") LocalDateTime cutoff,
+                              @Param("keepId") Long keepId);
+
     List<Notification> findByRecipientIdAndIsReadFalse(Long recipientId);
 
     boolean existsByRecipientIdAndIsReadFalse(Long recipientId);
 
+    long countByRecipientIdAndIsReadFalse(Long recipientId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Notification n SET n.isRead = true WHERE n.recipientId = :recipientId AND n.isRead = false")
+    int markReadByRecipientId(@Param("recipientId") Long recipientId);
+
+    @Query("SELECT DISTINCT n.recipientId FROM Notification n WHERE n.request.id IN :requestIds AND n.isRead = false")
+    List<Long> findUnreadRecipientIdsByRequestIdIn(@Param("requestIds") Collection<Long> requestIds);
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Notification n WHERE n.request.id IN :requestIds")
+    int deleteByRequestIdIn(@Param("requestIds") Collection<Long> requestIds);
+
+    /**
+     * Old unread notifications of one recipient about one request.
+     */
+    interface UnreadGroup {
+        Long getRecipientId();
+
+        Long getRequestId();
+
+        Long getKeepId();
 
-    void deleteByRequest(Request existingRequest);
+        Long getOccurrences();
+    }
 }
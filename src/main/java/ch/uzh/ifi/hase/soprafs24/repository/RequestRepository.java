@@ -2,19 +2,90 @@ package ch.uzh.ifi.hase.soprafs24.repository;
 
 import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import ch.uzh.ifi.hase.soprafs24.entity.Request;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestExportDTO;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 
 @Repository("requestRepository")
-public interface RequestRepository extends JpaRepository<Request, Long> {
+public interface RequestRepository extends JpaRepository<Request, Long>, JpaSpecificationExecutor<Request> {
+    int EXPORT_FETCH_SIZE = 500;
+
     List<Request> findByPosterId(Long posterId);
     List<Request> findByPoster(User poster);
     List<Request> findByVolunteer(User volunteer);
     List<Request> findByStatus(RequestStatus status);
+    List<Request> findByStatusNot(RequestStatus status);
     List<Request> findByVolunteerId(Long volunteerId);
 
-}
\ No newline at end of file
+    // feed pages, see RequestSpecifications; poster and volunteer come with the same select
+    @Override
+    @EntityGraph(attributePaths = {"poster", "volunteer"})
+    Page<Request> findAll(Specification<Request> spec, Pageable pageable);
+
+    /**
+     * Admin export, read row by row through a forward-only cursor. Rows are
+     * projected to DTOs, so the persistence context stays empty no matter how
+     * large the table is. The stream must be consumed and closed inside a
+     * transaction.
+     */
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")})
+    @Query("SELECT new ch.uzh.ifi.hase.soprafs24.rest.dto.RequestExportDTO(r.id, r.title, r.status, " +
+            "r.emergencyLevel, r.countryCode, r.creationDate, r.publishedAt, p.id, p.username, v.id, r.rating, " +
+            "r.deletedAt) FROM Request r LEFT JOIN r.poster p LEFT JOIN r.volunteer v " +
+            "WHERE r.status IN :statuses ORDER BY r.id")
+    Stream<RequestExportDTO> streamForExport(@Param("statuses") Collection<RequestStatus> statuses);
+
+    // locked until the bulk delete commits: a concurrent single delete either committed
+    // before (the row is skipped) or waits and then fails on the version
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Request r LEFT JOIN FETCH r.poster LEFT JOIN FETCH r.volunteer " +
+            "WHERE r.id IN :ids AND r.status <> ch.uzh.ifi.hase.soprafs24.constant.RequestStatus.DELETED")
+    List<Request> findUndeletedByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Request r SET r.status = ch.uzh.ifi.hase.soprafs24.constant.RequestStatus.DELETED, " +
+            "r.deletedAt = :deletedAt, r.deletedByUserId = :deletedByUserId, r.deleteReason = :reason, " +
+            "r.updatedAt = :updatedAt, r.version = r.version + 1 " +
+            "WHERE r.id IN :ids AND r.status <> ch.uzh.ifi.hase.soprafs24.constant.RequestStatus.DELETED")
+    int softDeleteByIdIn(@Param("ids") Collection<Long> ids,
+                         @Param("deletedAt") LocalDate deletedAt,
+                         @Param("deletedByUserId") Long deletedByUserId,
+                         @Param("reason") String reason,
+                         @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Compare-and-set for volunteering: only succeeds while the request is
+     * still WAITING, so of several volunteers racing for the same request
+     * exactly one gets 1 back. Bumps the version like a regular update would.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Request r SET r.status = ch.uzh.ifi.hase.soprafs24.constant.RequestStatus.VOLUNTEERED, " +
+            "r.volunteer = :volunteer, r.updatedAt = :updatedAt, r.version = r.version + 1 " +
+            "WHERE r.id = :id AND r.status = ch.uzh.ifi.hase.soprafs24.constant.RequestStatus.WAITING")
+    int volunteerIfWaiting(@Param("id") Long id,
+                           @Param("volunteer") User volunteer,
+                           @Param("updatedAt") LocalDateTime updatedAt);
+}
@@ -0,0 +1,65 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.Request;
+
+/**
+ * Request Specifications
+ * Filters for the active request feed and the admin listing. All filters
+ * that take an argument except hasStatus are optional: a null argument
+ * yields a null specification, which Specification.where/and skip.
+ */
+public final class RequestSpecifications {
+
+    private RequestSpecifications() {
+    }
+
+    public static Specification<Request> hasStatus(RequestStatus status) {
+        return (root, query, cb) -> cb.equal(root.get("status"), status);
+    }
+
+    public static Specification<Request> isNotDeleted() {
+        return (root, query, cb) -> cb.notEqual(root.get("status"), RequestStatus.DELETED);
+    }
+
+    public static Specification<Request> statusIn(Collection<RequestStatus> statuses) {
+        if (statuses == null || statuses.isEmpty()) {
+            return null;
+        }
+        return (root, query, cb) -> root.get("status").in(statuses);
+    }
+
+    public static Specification<Request> emergencyLevelIn(Collection<RequestEmergencyLevel> levels) {
+        if (levels == null || levels.isEmpty()) {
+            return null;
+        }
+        return (root, query, cb) -> root.get("emergencyLevel").in(levels);
+    }
+
+    public static Specification<Request> inCountry(String countryCode) {
+        if (countryCode == null || countryCode.isEmpty()) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("countryCode"), countryCode);
+    }
+
+    public static Specification<Request> createdFrom(LocalDate from) {
+        if (from == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("creationDate"), from);
+    }
+
+    public static Specification<Request> createdUntil(LocalDate to) {
+        if (to == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("creationDate"), to);
+    }
+}
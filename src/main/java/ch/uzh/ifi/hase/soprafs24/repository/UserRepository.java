@@ -1,12 +1,51 @@
 package ch.uzh.ifi.hase.soprafs24.repository;
 
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.VolunteerStatsDTO;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
 @Repository("userRepository")
 public interface UserRepository extends JpaRepository<User, Long> {
   User findByEmail(String email);
   User findByToken(String token);
   User findByUsername(String username);
+
+  // everyone with a done request, i.e. everyone who can be on a leaderboard
+  List<User> findByCompletedCountGreaterThan(int completedCount);
+
+  // relative updates, concurrent transitions for the same volunteer can't lose each other's changes
+  @Modifying
+  @Query("UPDATE User u SET u.completedCount = u.completedCount + :completed, " +
+          "u.ratingSum = u.ratingSum + :ratingSum, u.ratingCount = u.ratingCount + :ratingCount, " +
+          "u.lastActivityAt = :activityAt WHERE u.id = :id")
+  int addReputation(@Param("id") Long id,
+                    @Param("completed") int completed,
+                    @Param("ratingSum") long ratingSum,
+                    @Param("ratingCount") int ratingCount,
+                    @Param("activityAt") LocalDateTime activityAt);
+
+  // same as addReputation but leaves the last activity alone, for deletions;
+  // clamped at 0 so a counter that drifted never turns negative for good
+  @Modifying
+  @Query("UPDATE User u SET " +
+          "u.completedCount = CASE WHEN u.completedCount > :completed THEN (u.completedCount - :completed) ELSE 0 END, " +
+          "u.ratingSum = CASE WHEN u.ratingSum > :ratingSum THEN (u.ratingSum - :ratingSum) ELSE 0 END, " +
+          "u.ratingCount = CASE WHEN u.ratingCount > :ratingCount THEN (u.ratingCount - :ratingCount) ELSE 0 END " +
+          "WHERE u.id = :id")
+  int removeReputation(@Param("id") Long id,
+                       @Param("completed") int completed,
+                       @Param("ratingSum") long ratingSum,
+                       @Param("ratingCount") int ratingCount);
+
+  @Query("SELECT new ch.uzh.ifi.hase.soprafs24.rest.dto.VolunteerStatsDTO(u.id, u.username, u.completedCount, " +
+          "u.ratingCount, u.ratingSum, u.lastActivityAt) FROM User u WHERE u.id = :id")
+  Optional<VolunteerStatsDTO> findVolunteerStats(@Param("id") Long id);
 }
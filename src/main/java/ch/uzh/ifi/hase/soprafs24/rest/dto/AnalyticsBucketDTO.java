@@ -0,0 +1,38 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * The counters of one analytics bucket: metric -> dimension -> count. Metrics
+ * without a dimension use the empty string.
+ */
+public class AnalyticsBucketDTO {
+
+    private LocalDateTime start;
+    private Map<String, Map<String, Long>> counters;
+
+    public AnalyticsBucketDTO() {
+    }
+
+    public AnalyticsBucketDTO(LocalDateTime start, Map<String, Map<String, Long>> counters) {
+        this.start = start;
+        this.counters = counters;
+    }
+
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    public void setStart(LocalDateTime start) {
+        this.start = start;
+    }
+
+    public Map<String, Map<String, Long>> getCounters() {
+        return counters;
+    }
+
+    public void setCounters(Map<String, Map<String, Long>> counters) {
+        this.counters = counters;
+    }
+}
@@ -0,0 +1,25 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BulkDeleteRequestDTO {
+    private List<Long> requestIds = new ArrayList<>();
+    private String reason;
+
+    public List<Long> getRequestIds() {
+        return requestIds;
+    }
+
+    public void setRequestIds(List<Long> requestIds) {
+        this.requestIds = requestIds;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+}
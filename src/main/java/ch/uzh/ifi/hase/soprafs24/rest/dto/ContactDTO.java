@@ -1,19 +1,31 @@
 package ch.uzh.ifi.hase.soprafs24.rest.dto;
 
+import java.time.LocalDateTime;
 
 public class ContactDTO {
     private Long id;
     private String username;
-    //    private String lastMessage;
+    private String lastMessage;
+    private LocalDateTime lastMessageAt;
+    private long unreadCount;
     private boolean hasUnread;
 
     public ContactDTO(Long id, String username, boolean hasUnread) {
         this.id = id;
         this.username = username;
-//        this.lastMessage = lastMessage;
         this.hasUnread = hasUnread;
     }
 
+    // used by the contact list query in MessageRepository
+    public ContactDTO(Long id, String username, Long unreadCount, String lastMessage, LocalDateTime lastMessageAt) {
+        this.id = id;
+        this.username = username;
+        this.unreadCount = unreadCount == null ? 0 : unreadCount;
+        this.hasUnread = this.unreadCount > 0;
+        this.lastMessage = lastMessage;
+        this.lastMessageAt = lastMessageAt;
+    }
+
     public ContactDTO() {
     }
 
@@ -33,14 +45,29 @@ public class ContactDTO {
         this.username = username;
     }
 
-//    public String getLastMessage() {
-//        return lastMessage;
-//    }
-//
-//    public void setLastMessage(String lastMessage) {
-//        this.lastMessage = lastMessage;
-//    }
+    public String getLastMessage() {
+        return lastMessage;
+    }
+
+    public void setLastMessage(String lastMessage) {
+        this.lastMessage = lastMessage;
+    }
+
+    public LocalDateTime getLastMessageAt() {
+        return lastMessageAt;
+    }
+
+    public void setLastMessageAt(LocalDateTime lastMessageAt) {
+        this.lastMessageAt = lastMessageAt;
+    }
 
+    public long getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(long unreadCount) {
+        this.unreadCount = unreadCount;
+    }
 
     public boolean isHasUnread() {
         return hasUnread;
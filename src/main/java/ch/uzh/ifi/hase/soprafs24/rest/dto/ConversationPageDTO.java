@@ -0,0 +1,39 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of a conversation in chronological order. To load older messages
+ * the client passes the (timestamp, id) of the first message as "before", for
+ * newer ones the last message as "after". {@code hasMore} tells whether
+ * further messages exist in the requested direction.
+ */
+public class ConversationPageDTO {
+    private List<MessageDTO> messages = new ArrayList<>();
+    private boolean hasMore;
+
+    public ConversationPageDTO(List<MessageDTO> messages, boolean hasMore) {
+        this.messages = messages;
+        this.hasMore = hasMore;
+    }
+
+    public ConversationPageDTO() {
+    }
+
+    public List<MessageDTO> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<MessageDTO> messages) {
+        this.messages = messages;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
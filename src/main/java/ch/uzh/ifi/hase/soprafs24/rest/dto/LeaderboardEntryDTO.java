@@ -0,0 +1,81 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+public class LeaderboardEntryDTO {
+    private int rank;
+    private Long userId;
+    private String username;
+    private String school;
+    private int completedCount;
+    private int ratingCount;
+    private Double averageRating;
+
+    public LeaderboardEntryDTO(int rank, Long userId, String username, String school, int completedCount,
+                               int ratingCount, Double averageRating) {
+        this.rank = rank;
+        this.userId = userId;
+        this.username = username;
+        this.school = school;
+        this.completedCount = completedCount;
+        this.ratingCount = ratingCount;
+        this.averageRating = averageRating;
+    }
+
+    public LeaderboardEntryDTO() {
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public void setRank(int rank) {
+        this.rank = rank;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getSchool() {
+        return school;
+    }
+
+    public void setSchool(String school) {
+        this.school = school;
+    }
+
+    public int getCompletedCount() {
+        return completedCount;
+    }
+
+    public void setCompletedCount(int completedCount) {
+        this.completedCount = completedCount;
+    }
+
+    public int getRatingCount() {
+        return ratingCount;
+    }
+
+    public void setRatingCount(int ratingCount) {
+        this.ratingCount = ratingCount;
+    }
+
+    public Double getAverageRating() {
+        return averageRating;
+    }
+
+    public void setAverageRating(Double averageRating) {
+        this.averageRating = averageRating;
+    }
+}
@@ -0,0 +1,64 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+
+public class MapClusterDTO {
+    private double latitude;
+    private double longitude;
+    private int count;
+    private RequestEmergencyLevel maxEmergencyLevel;
+    // set for single request clusters, so the marker can link to it
+    private Long requestId;
+
+    public MapClusterDTO(double latitude, double longitude, int count, RequestEmergencyLevel maxEmergencyLevel,
+                         Long requestId) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.count = count;
+        this.maxEmergencyLevel = maxEmergencyLevel;
+        this.requestId = requestId;
+    }
+
+    public MapClusterDTO() {
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public RequestEmergencyLevel getMaxEmergencyLevel() {
+        return maxEmergencyLevel;
+    }
+
+    public void setMaxEmergencyLevel(RequestEmergencyLevel maxEmergencyLevel) {
+        this.maxEmergencyLevel = maxEmergencyLevel;
+    }
+
+    public Long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(Long requestId) {
+        this.requestId = requestId;
+    }
+}
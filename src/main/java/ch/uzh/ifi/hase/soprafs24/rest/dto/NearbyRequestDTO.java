@@ -0,0 +1,30 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+public class NearbyRequestDTO {
+    private RequestGetDTO request;
+    private double distanceMeters;
+
+    public NearbyRequestDTO(RequestGetDTO request, double distanceMeters) {
+        this.request = request;
+        this.distanceMeters = distanceMeters;
+    }
+
+    public NearbyRequestDTO() {
+    }
+
+    public RequestGetDTO getRequest() {
+        return request;
+    }
+
+    public void setRequest(RequestGetDTO request) {
+        this.request = request;
+    }
+
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    public void setDistanceMeters(double distanceMeters) {
+        this.distanceMeters = distanceMeters;
+    }
+}
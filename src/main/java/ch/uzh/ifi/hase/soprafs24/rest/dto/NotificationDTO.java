@@ -15,10 +15,26 @@ public class NotificationDTO {
     private NotificationType type;
     private boolean isRead;
     private LocalDateTime timestamp;
+    private int occurrences = 1;
 
     public NotificationDTO() {
     }
 
+    public NotificationDTO(Long notificationId, Long recipientId, Long relatedUserId, String relatedUsername,
+                           Long requestId, String requestTitle, NotificationType type, boolean isRead,
+                           LocalDateTime timestamp, int occurrences) {
+        this.notificationId = notificationId;
+        this.recipientId = recipientId;
+        this.relatedUserId = relatedUserId;
+        this.relatedUsername = relatedUsername;
+        this.requestId = requestId;
+        this.requestTitle = requestTitle;
+        this.type = type;
+        this.isRead = isRead;
+        this.timestamp = timestamp;
+        this.occurrences = occurrences;
+    }
+
     public Long getNotificationId() {
         return notificationId;
     }
@@ -90,4 +106,12 @@ public class NotificationDTO {
     public void setRequestTitle(String requestTitle) {
         this.requestTitle = requestTitle;
     }
+
+    public int getOccurrences() {
+        return occurrences;
+    }
+
+    public void setOccurrences(int occurrences) {
+        this.occurrences = occurrences;
+    }
 }
@@ -0,0 +1,40 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of the notification inbox. Inbox pages are newest first, the
+ * client passes the (timestamp, id) of the last notification as "before" to
+ * load the next one. Delta pages ("since" an id) are in insertion order, the
+ * client continues from the id of the last notification. {@code hasMore}
+ * tells whether further notifications exist in that direction.
+ */
+public class NotificationPageDTO {
+    private List<NotificationDTO> notifications = new ArrayList<>();
+    private boolean hasMore;
+
+    public NotificationPageDTO(List<NotificationDTO> notifications, boolean hasMore) {
+        this.notifications = notifications;
+        this.hasMore = hasMore;
+    }
+
+    public NotificationPageDTO() {
+    }
+
+    public List<NotificationDTO> getNotifications() {
+        return notifications;
+    }
+
+    public void setNotifications(List<NotificationDTO> notifications) {
+        this.notifications = notifications;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,49 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Answer to a long poll: every event after the cursor the client sent, plus
+ * the cursor to send with the next poll. {@code truncated} is set when some
+ * events were already dropped from the buffer, the client then has to reload
+ * the full state once.
+ */
+public class PollBatchDTO<T> {
+    private long cursor;
+    private List<T> events = new ArrayList<>();
+    private boolean truncated;
+
+    public PollBatchDTO(long cursor, List<T> events, boolean truncated) {
+        this.cursor = cursor;
+        this.events = events;
+        this.truncated = truncated;
+    }
+
+    public PollBatchDTO() {
+    }
+
+    public long getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(long cursor) {
+        this.cursor = cursor;
+    }
+
+    public List<T> getEvents() {
+        return events;
+    }
+
+    public void setEvents(List<T> events) {
+        this.events = events;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+}
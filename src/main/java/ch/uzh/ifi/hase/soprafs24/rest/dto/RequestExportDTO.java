@@ -0,0 +1,139 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+
+public class RequestExportDTO {
+    private Long id;
+    private String title;
+    private RequestStatus status;
+    private RequestEmergencyLevel emergencyLevel;
+    private String countryCode;
+    private LocalDate creationDate;
+    private LocalDateTime publishedAt;
+    private Long posterId;
+    private String posterUsername;
+    private Long volunteerId;
+    private Integer rating;
+    private LocalDate deletedAt;
+
+    // JPQL constructor projection, see RequestRepository.streamForExport
+    public RequestExportDTO(Long id, String title, RequestStatus status, RequestEmergencyLevel emergencyLevel,
+                            String countryCode, LocalDate creationDate, LocalDateTime publishedAt, Long posterId,
+                            String posterUsername, Long volunteerId, Integer rating, LocalDate deletedAt) {
+        this.id = id;
+        this.title = title;
+        this.status = status;
+        this.emergencyLevel = emergencyLevel;
+        this.countryCode = countryCode;
+        this.creationDate = creationDate;
+        this.publishedAt = publishedAt;
+        this.posterId = posterId;
+        this.posterUsername = posterUsername;
+        this.volunteerId = volunteerId;
+        this.rating = rating;
+        this.deletedAt = deletedAt;
+    }
+
+    public RequestExportDTO() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public RequestStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(RequestStatus status) {
+        this.status = status;
+    }
+
+    public RequestEmergencyLevel getEmergencyLevel() {
+        return emergencyLevel;
+    }
+
+    public void setEmergencyLevel(RequestEmergencyLevel emergencyLevel) {
+        this.emergencyLevel = emergencyLevel;
+    }
+
+    public String getCountryCode() {
+        return countryCode;
+    }
+
+    public void setCountryCode(String countryCode) {
+        this.countryCode = countryCode;
+    }
+
+    public LocalDate getCreationDate() {
+        return creationDate;
+    }
+
+    public void setCreationDate(LocalDate creationDate) {
+        this.creationDate = creationDate;
+    }
+
+    public LocalDateTime getPublishedAt() {
+        return publishedAt;
+    }
+
+    public void setPublishedAt(LocalDateTime publishedAt) {
+        this.publishedAt = publishedAt;
+    }
+
+    public Long getPosterId() {
+        return posterId;
+    }
+
+    public void setPosterId(Long posterId) {
+        this.posterId = posterId;
+    }
+
+    public String getPosterUsername() {
+        return posterUsername;
+    }
+
+    public void setPosterUsername(String posterUsername) {
+        this.posterUsername = posterUsername;
+    }
+
+    public Long getVolunteerId() {
+        return volunteerId;
+    }
+
+    public void setVolunteerId(Long volunteerId) {
+        this.volunteerId = volunteerId;
+    }
+
+    public Integer getRating() {
+        return rating;
+    }
+
+    public void setRating(Integer rating) {
+        this.rating = rating;
+    }
+
+    public LocalDate getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(LocalDate deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+}
@@ -28,6 +28,7 @@ public class RequestGetDTO {
     private Double latitude;
     private Double longitude;
     private String countryCode;
+    private Long version;
 
     public Long getId() {
         return id;
@@ -180,4 +181,12 @@ public class RequestGetDTO {
     public void setCountryCode(String countryCode) {
         this.countryCode = countryCode;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
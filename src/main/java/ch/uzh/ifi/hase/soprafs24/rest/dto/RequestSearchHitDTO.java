@@ -0,0 +1,30 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+public class RequestSearchHitDTO {
+    private RequestGetDTO request;
+    private double score;
+
+    public RequestSearchHitDTO(RequestGetDTO request, double score) {
+        this.request = request;
+        this.score = score;
+    }
+
+    public RequestSearchHitDTO() {
+    }
+
+    public RequestGetDTO getRequest() {
+        return request;
+    }
+
+    public void setRequest(RequestGetDTO request) {
+        this.request = request;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+}
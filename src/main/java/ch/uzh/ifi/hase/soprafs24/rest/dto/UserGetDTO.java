@@ -4,6 +4,7 @@ import ch.uzh.ifi.hase.soprafs24.constant.UserGender;
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 public class UserGetDTO {
 
@@ -18,6 +19,10 @@ public class UserGetDTO {
     private Integer age;
     private String language;
     private boolean isAdmin;
+    private int completedCount;
+    private int ratingCount;
+    private Double averageRating;
+    private LocalDateTime lastActivityAt;
 
     public Long getId() {
         return id;
@@ -106,4 +111,36 @@ public class UserGetDTO {
     public void setIsAdmin(boolean isAdmin) {
         this.isAdmin = isAdmin;
     }
+
+    public int getCompletedCount() {
+        return completedCount;
+    }
+
+    public void setCompletedCount(int completedCount) {
+        this.completedCount = completedCount;
+    }
+
+    public int getRatingCount() {
+        return ratingCount;
+    }
+
+    public void setRatingCount(int ratingCount) {
+        this.ratingCount = ratingCount;
+    }
+
+    public Double getAverageRating() {
+        return averageRating;
+    }
+
+    public void setAverageRating(Double averageRating) {
+        this.averageRating = averageRating;
+    }
+
+    public LocalDateTime getLastActivityAt() {
+        return lastActivityAt;
+    }
+
+    public void setLastActivityAt(LocalDateTime lastActivityAt) {
+        this.lastActivityAt = lastActivityAt;
+    }
 }
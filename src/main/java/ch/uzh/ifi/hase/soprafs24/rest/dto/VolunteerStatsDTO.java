@@ -0,0 +1,83 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import java.time.LocalDateTime;
+
+public class VolunteerStatsDTO {
+    private Long userId;
+    private String username;
+    private int completedCount;
+    private int ratingCount;
+    private long ratingSum;
+    private Double averageRating;
+    private LocalDateTime lastActivityAt;
+
+    public VolunteerStatsDTO(Long userId, String username, int completedCount, int ratingCount, long ratingSum,
+                             LocalDateTime lastActivityAt) {
+        this.userId = userId;
+        this.username = username;
+        this.completedCount = completedCount;
+        this.ratingCount = ratingCount;
+        this.ratingSum = ratingSum;
+        this.averageRating = ratingCount == 0 ? null : (double) ratingSum / ratingCount;
+        this.lastActivityAt = lastActivityAt;
+    }
+
+    public VolunteerStatsDTO() {
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public int getCompletedCount() {
+        return completedCount;
+    }
+
+    public void setCompletedCount(int completedCount) {
+        this.completedCount = completedCount;
+    }
+
+    public int getRatingCount() {
+        return ratingCount;
+    }
+
+    public void setRatingCount(int ratingCount) {
+        this.ratingCount = ratingCount;
+    }
+
+    public long getRatingSum() {
+        return ratingSum;
+    }
+
+    public void setRatingSum(long ratingSum) {
+        this.ratingSum = ratingSum;
+    }
+
+    public Double getAverageRating() {
+        return averageRating;
+    }
+
+    public void setAverageRating(Double averageRating) {
+        this.averageRating = averageRating;
+    }
+
+    public LocalDateTime getLastActivityAt() {
+        return lastActivityAt;
+    }
+
+    public void setLastActivityAt(LocalDateTime lastActivityAt) {
+        this.lastActivityAt = lastActivityAt;
+    }
+}
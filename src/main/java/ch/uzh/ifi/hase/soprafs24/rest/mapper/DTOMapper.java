@@ -38,6 +38,10 @@ public interface DTOMapper {
     @Mapping(source = "age", target = "age")
     @Mapping(source = "language", target = "language")
     @Mapping(source = "isAdmin", target = "isAdmin")
+    @Mapping(source = "completedCount", target = "completedCount")
+    @Mapping(source = "ratingCount", target = "ratingCount")
+    @Mapping(source = "averageRating", target = "averageRating")
+    @Mapping(source = "lastActivityAt", target = "lastActivityAt")
     UserGetDTO convertEntityToUserGetDTO(User user); // Birthday?
 
     @Mapping(source = "title", target = "title")
@@ -69,6 +73,7 @@ public interface DTOMapper {
     @Mapping(source = "latitude", target = "latitude")
     @Mapping(source = "longitude", target = "longitude")
     @Mapping(source = "countryCode", target = "countryCode")
+    @Mapping(source = "version", target = "version")
     RequestGetDTO convertEntityToRequestGetDTO(Request request);
 
     @Mapping(source = "id", target = "notificationId")
@@ -1,11 +1,11 @@
 package ch.uzh.ifi.hase.soprafs24.security;
 
 
-import ch.uzh.ifi.hase.soprafs24.entity.User;
-import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.server.ResponseStatusException;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -17,10 +17,15 @@ import java.io.IOException;
 @Component
 public class AuthFilter extends OncePerRequestFilter {
     private static final String AUTH_HEADER = "token";
-    private final UserRepository userRepository;
+    private static final String STREAM_PATH = "/requests/active/stream";
+    private static final String STREAM_TICKET_PARAMETER = "ticket";
+    public static final String PRINCIPAL_ATTRIBUTE = AuthFilter.class.getName() + ".principal";
+    private final UserService userService;
+    private final StreamTickets streamTickets;
 
-    public AuthFilter(UserRepository userRepository) {
-        this.userRepository = userRepository;
+    public AuthFilter(UserService userService, StreamTickets streamTickets) {
+        this.userService = userService;
+        this.streamTickets = streamTickets;
     }
 
     @Override
@@ -42,6 +47,7 @@ public class AuthFilter extends OncePerRequestFilter {
 //                requestURI.startsWith("/translate") ||
                 requestURI.startsWith("/h2-console") ||
                 requestURI.startsWith("/favicon.ico") ||
+                requestURI.startsWith("/ws") ||
 //                requestURI.startsWith("/requests") ||
                 requestURI.startsWith("/messages")) {
             filterChain.doFilter(request, response);
@@ -49,16 +55,33 @@ public class AuthFilter extends OncePerRequestFilter {
         }
 
         String token = request.getHeader(AUTH_HEADER);
+        // EventSource cannot send headers, the request feed stream passes a one-time ticket, see StreamTickets
+        if (token == null && requestURI.equals(STREAM_PATH) && request.getParameter(STREAM_TICKET_PARAMETER) != null) {
+            UserPrincipal principal = streamTickets.redeem(request.getParameter(STREAM_TICKET_PARAMETER));
+            if (principal == null) {
+                response.sendError(HttpStatus.UNAUTHORIZED.value(), "Invalid ticket");
+                return;
+            }
+            request.setAttribute(PRINCIPAL_ATTRIBUTE, principal);
+            filterChain.doFilter(request, response);
+            return;
+        }
         if (token == null) {
             response.sendError(HttpStatus.UNAUTHORIZED.value(), "Unauthorized");
             return;
         }
 
-        User user = userRepository.findByToken(token);
-        if (user == null) {
+        // served from the token cache for all but the first request of a session
+        UserPrincipal principal;
+        try {
+            principal = userService.getPrincipalByToken(token);
+        }
+        catch (ResponseStatusException ex) {
             response.sendError(HttpStatus.UNAUTHORIZED.value(), "Invalid token");
             return;
         }
+        // hand the resolved user to the controllers, see CurrentUserArgumentResolver
+        request.setAttribute(PRINCIPAL_ATTRIBUTE, principal);
 
         // continue the request
         filterChain.doFilter(request, response);
@@ -0,0 +1,55 @@
+package ch.uzh.ifi.hase.soprafs24.security;
+
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.security.Principal;
+
+/**
+ * Authenticates STOMP sessions.
+ * Browsers cannot set headers on the WebSocket handshake, so the AuthFilter
+ * lets /ws through and the token is checked here on CONNECT instead. The
+ * session principal is named after the user id, which is what
+ * PushService uses to address the per-user queues.
+ */
+@Component
+public class StompAuthInterceptor implements ChannelInterceptor {
+
+    private static final String AUTH_HEADER = "token";
+    private final UserService userService;
+
+    public StompAuthInterceptor(UserService userService) {
+        this.userService = userService;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.CONNECT.equals(accessor.getCommand())) {
+            return message;
+        }
+
+        String token = accessor.getFirstNativeHeader(AUTH_HEADER);
+        if (token == null) {
+            throw new MessagingException("Unauthorized");
+        }
+        UserPrincipal principal;
+        try {
+            principal = userService.getPrincipalByToken(token);
+        }
+        catch (ResponseStatusException ex) {
+            throw new MessagingException("Invalid token");
+        }
+        String userId = String.valueOf(principal.getId());
+        accessor.setUser((Principal) () -> userId);
+        return message;
+    }
+}
@@ -0,0 +1,62 @@
+package ch.uzh.ifi.hase.soprafs24.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stream Tickets
+ * EventSource cannot send headers, so the request feed stream is opened with
+ * a ticket in the query string instead of the session token. A ticket is
+ * issued to an authenticated user, can be redeemed once and expires after
+ * {@code ttl-seconds}, so one that ends up in an access log is worthless.
+ */
+@Component
+public class StreamTickets {
+
+    private final long ttlNanos;
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+
+    public StreamTickets(@Value("${auth.stream-ticket.ttl-seconds:60}") long ttlSeconds) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    public String issue(UserPrincipal principal) {
+        long now = System.nanoTime();
+        // unredeemed tickets are dropped on the next issue after they expired
+        tickets.values().removeIf(ticket -> now - ticket.issuedAt >= ttlNanos);
+        String value = UUID.randomUUID().toString();
+        tickets.put(value, new Ticket(principal, now));
+        return value;
+    }
+
+    /**
+     * Returns the principal the ticket was issued to, or null when it is
+     * unknown, expired or was already redeemed.
+     */
+    public UserPrincipal redeem(String value) {
+        Ticket ticket = tickets.remove(value);
+        if (ticket == null || System.nanoTime() - ticket.issuedAt >= ttlNanos) {
+            return null;
+        }
+        return ticket.principal;
+    }
+
+    public int size() {
+        return tickets.size();
+    }
+
+    private static final class Ticket {
+        private final UserPrincipal principal;
+        private final long issuedAt;
+
+        private Ticket(UserPrincipal principal, long issuedAt) {
+            this.principal = principal;
+            this.issuedAt = issuedAt;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ch.uzh.ifi.hase.soprafs24.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token Cache
+ * Bounded in-memory cache of token -> principal. Entries are evicted in
+ * least-recently-used order once the cache is full and expire after a fixed
+ * time to live, so a token that is changed outside of the UserService is only
+ * trusted for a short while.
+ */
+@Component
+public class TokenCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+
+    public TokenCache(@Value("${auth.token-cache.max-size:10000}") int maxSize,
+                      @Value("${auth.token-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > TokenCache.this.maxSize;
+            }
+        };
+    }
+
+    public synchronized UserPrincipal get(String token) {
+        Entry entry = entries.get(token);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.createdAt >= ttlNanos) {
+            entries.remove(token);
+            return null;
+        }
+        return entry.principal;
+    }
+
+    public synchronized void put(String token, UserPrincipal principal) {
+        entries.put(token, new Entry(principal, System.nanoTime()));
+    }
+
+    public synchronized void evict(String token) {
+        entries.remove(token);
+    }
+
+    // a user only owns a handful of tokens, so a linear sweep on the rare write path is fine
+    public synchronized void evictUser(Long userId) {
+        entries.values().removeIf(entry -> Objects.equals(entry.principal.getId(), userId));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private static final class Entry {
+        private final UserPrincipal principal;
+        private final long createdAt;
+
+        private Entry(UserPrincipal principal, long createdAt) {
+            this.principal = principal;
+            this.createdAt = createdAt;
+        }
+    }
+}
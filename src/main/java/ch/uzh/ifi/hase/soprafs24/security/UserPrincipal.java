@@ -0,0 +1,56 @@
+package ch.uzh.ifi.hase.soprafs24.security;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+
+import java.util.Objects;
+
+/**
+ * Lightweight, immutable view of an authenticated user.
+ * Holds only what is needed to make authorization decisions, so it can be
+ * cached per token without keeping managed entities around.
+ */
+public final class UserPrincipal {
+
+    private final Long id;
+    private final String username;
+    private final boolean isAdmin;
+
+    public UserPrincipal(Long id, String username, boolean isAdmin) {
+        this.id = id;
+        this.username = username;
+        this.isAdmin = isAdmin;
+    }
+
+    public static UserPrincipal of(User user) {
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getIsAdmin());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public boolean getIsAdmin() {
+        return isAdmin;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof UserPrincipal)) {
+            return false;
+        }
+        UserPrincipal that = (UserPrincipal) o;
+        return isAdmin == that.isAdmin && Objects.equals(id, that.id) && Objects.equals(username, that.username);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, username, isAdmin);
+    }
+}
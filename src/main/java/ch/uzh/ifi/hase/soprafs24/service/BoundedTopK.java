@@ -0,0 +1,83 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Bounded Top K
+ * The best {@code capacity} values by {@code order} (best first), keyed by
+ * id. Backed by a min-heap whose head is the weakest member, so a new value
+ * either replaces the head or is dropped. Offering an id again replaces
+ * its value. Not thread-safe.
+ */
+public class BoundedTopK<T> {
+
+    private final int capacity;
+    private final Comparator<T> order;
+    private final PriorityQueue<Member<T>> heap;
+    private final Map<Long, Member<T>> members = new HashMap<>();
+
+    public BoundedTopK(int capacity, Comparator<T> order) {
+        this.capacity = capacity;
+        this.order = order;
+        // weakest member on top
+        this.heap = new PriorityQueue<>(capacity + 1, (a, b) -> order.compare(b.value, a.value));
+    }
+
+    /**
+     * Returns whether the value is among the best afterwards.
+     */
+    public boolean offer(Long id, T value) {
+        remove(id);
+        if (heap.size() >= capacity) {
+            if (order.compare(value, heap.peek().value) >= 0) {
+                return false;
+            }
+            members.remove(heap.poll().id);
+        }
+        Member<T> member = new Member<>(id, value);
+        heap.add(member);
+        members.put(id, member);
+        return true;
+    }
+
+    public boolean remove(Long id) {
+        Member<T> member = members.remove(id);
+        // members are compared by identity, so this removes exactly this one
+        return member != null && heap.remove(member);
+    }
+
+    public boolean contains(Long id) {
+        return members.containsKey(id);
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    /**
+     * At most {@code limit} values, best first.
+     */
+    public List<T> best(int limit) {
+        List<T> values = new ArrayList<>(heap.size());
+        for (Member<T> member : heap) {
+            values.add(member.value);
+        }
+        values.sort(order);
+        return values.size() > limit ? new ArrayList<>(values.subList(0, limit)) : values;
+    }
+
+    private static final class Member<T> {
+        private final Long id;
+        private final T value;
+
+        private Member(Long id, T value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+}
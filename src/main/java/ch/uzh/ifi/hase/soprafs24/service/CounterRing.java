@@ -0,0 +1,133 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ch.uzh.ifi.hase.soprafs24.constant.AnalyticsGranularity;
+
+/**
+ * Counter Ring
+ * Named counters for the last {@code ringSize} buckets of one
+ * AnalyticsGranularity. Bucket n lives in slot n % ringSize, so the ring never
+ * grows: the first write to a new bucket reuses the slot of the bucket that
+ * is ringSize buckets older. Buckets written since the last drainDirty() are
+ * marked dirty, a dirty bucket that gets overwritten is kept until it was
+ * drained. Thread-safe.
+ */
+public class CounterRing {
+
+    private final AnalyticsGranularity granularity;
+    private final Bucket[] buckets;
+    // dirty buckets that lost their slot before they were drained
+    private final Map<LocalDateTime, Map<String, Long>> evicted = new LinkedHashMap<>();
+
+    public CounterRing(AnalyticsGranularity granularity) {
+        this.granularity = granularity;
+        this.buckets = new Bucket[granularity.getRingSize()];
+    }
+
+    public AnalyticsGranularity getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * Start of the oldest bucket still in the ring when {@code now} is in the newest one.
+     */
+    public LocalDateTime oldestStart(LocalDateTime now) {
+        return granularity.bucketStart(now).minusSeconds((buckets.length - 1) * granularity.getSeconds());
+    }
+
+    /**
+     * Adds {@code delta} to the counter {@code key} of the bucket {@code time} falls into.
+     * Returns false when that bucket is already older than the ring.
+     */
+    public synchronized boolean add(LocalDateTime time, String key, long delta) {
+        Bucket bucket = slot(granularity.bucketStart(time), true);
+        if (bucket == null) {
+            return false;
+        }
+        bucket.counts.merge(key, delta, Long::sum);
+        bucket.dirty = true;
+        return true;
+    }
+
+    /**
+     * Adds persisted counts without marking the bucket dirty, used to restore
+     * the ring after a restart.
+     */
+    public synchronized void restore(LocalDateTime bucketStart, String key, long count) {
+        Bucket bucket = slot(bucketStart, true);
+        if (bucket != null) {
+            bucket.counts.merge(key, count, Long::sum);
+        }
+    }
+
+    /**
+     * A copy of the counters of the bucket starting at {@code bucketStart},
+     * empty when nothing was counted or the bucket is no longer in the ring.
+     */
+    public synchronized Map<String, Long> get(LocalDateTime bucketStart) {
+        Bucket bucket = slot(bucketStart, false);
+        return bucket == null ? new HashMap<>() : new HashMap<>(bucket.counts);
+    }
+
+    /**
+     * The full counters of every bucket written since the last call, oldest first.
+     * The buckets are clean afterwards.
+     */
+    public synchronized Map<LocalDateTime, Map<String, Long>> drainDirty() {
+        Map<LocalDateTime, Map<String, Long>> dirty = new LinkedHashMap<>(evicted);
+        evicted.clear();
+        for (Bucket bucket : buckets) {
+            if (bucket != null && bucket.dirty) {
+                dirty.put(bucket.start, new HashMap<>(bucket.counts));
+                bucket.dirty = false;
+            }
+        }
+        return dirty;
+    }
+
+    /**
+     * Marks buckets dirty again after a failed write of drainDirty()'s result.
+     */
+    public synchronized void markDirty(Map<LocalDateTime, Map<String, Long>> drained) {
+        drained.forEach((start, counts) -> {
+            Bucket bucket = slot(start, false);
+            if (bucket != null) {
+                bucket.dirty = true;
+            }
+            else {
+                evicted.putIfAbsent(start, counts);
+            }
+        });
+    }
+
+    private Bucket slot(LocalDateTime bucketStart, boolean create) {
+        int index = (int) Math.floorMod(granularity.bucketNumber(bucketStart), (long) buckets.length);
+        Bucket bucket = buckets[index];
+        if (bucket != null && bucket.start.equals(bucketStart)) {
+            return bucket;
+        }
+        // an empty slot or one of a newer bucket: this one is gone already
+        if (!create || (bucket != null && bucket.start.isAfter(bucketStart))) {
+            return null;
+        }
+        if (bucket != null && bucket.dirty) {
+            evicted.put(bucket.start, bucket.counts);
+        }
+        buckets[index] = new Bucket(bucketStart);
+        return buckets[index];
+    }
+
+    private static final class Bucket {
+        private final LocalDateTime start;
+        private final Map<String, Long> counts = new HashMap<>();
+        private boolean dirty;
+
+        private Bucket(LocalDateTime start) {
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Geo Grid
+ * Points bucketed into fixed size latitude/longitude cells. A radius query
+ * only looks at the cells overlapping the radius' bounding box, a nearest
+ * neighbour query walks rings of cells around the query point and stops as
+ * soon as no closer point can exist further out. Distances are great circle
+ * distances in meters. Safe for concurrent use; writers take a short
+ * exclusive lock.
+ */
+public class GeoGrid<T> {
+
+    static final double EARTH_RADIUS_METERS = 6_371_000.0;
+    static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS_METERS / 180.0;
+    // rings walked before a nearest neighbour query falls back to a full scan
+    private static final int MAX_RINGS = 64;
+
+    private final double cellDegrees;
+    private final int lonCells;
+    private final Map<Long, Map<Long, Entry<T>>> cells = new HashMap<>();
+    private final Map<Long, Entry<T>> entries = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public GeoGrid(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+        this.lonCells = (int) Math.ceil(360.0 / cellDegrees);
+    }
+
+    public void put(Long id, double latitude, double longitude, T value) {
+        Entry<T> entry = new Entry<>(id, latitude, longitude, value);
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            entries.put(id, entry);
+            cells.computeIfAbsent(cellKey(latRow(latitude), lonColumn(longitude)), key -> new HashMap<>())
+                    .put(id, entry);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            cells.clear();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * All points within {@code radiusMeters}, nearest first.
+     */
+    public List<Hit<T>> withinRadius(double latitude, double longitude, double radiusMeters) {
+        List<Hit<T>> hits = new ArrayList<>();
+        double latSpan = radiusMeters / METERS_PER_DEGREE;
+        int minRow = latRow(Math.max(-90.0, latitude - latSpan));
+        int maxRow = latRow(Math.min(90.0, latitude + latSpan));
+        double maxAbsLat = Math.min(90.0, Math.abs(latitude) + latSpan);
+        double columns = latSpan / Math.cos(Math.toRadians(maxAbsLat)) / cellDegrees;
+        // near the poles the box spans every meridian
+        int columnSpan = columns >= lonCells ? lonCells : (int) Math.ceil(columns) + 1;
+        int centerColumn = lonColumn(longitude);
+
+        lock.readLock().lock();
+        try {
+            for (int row = minRow; row <= maxRow; row++) {
+                for (int column : columns(centerColumn, columnSpan)) {
+                    Map<Long, Entry<T>> cell = cells.get(cellKey(row, column));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Entry<T> entry : cell.values()) {
+                        double distance = distanceMeters(latitude, longitude, entry.latitude, entry.longitude);
+                        if (distance <= radiusMeters) {
+                            hits.add(new Hit<>(entry.id, entry.value, distance));
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        hits.sort(Hit.byDistance());
+        return hits;
+    }
+
+    /**
+     * The {@code k} points closest to the given position, nearest first.
+     */
+    public List<Hit<T>> nearest(double latitude, double longitude, int k) {
+        // max-heap on distance, holds the best k so far
+        PriorityQueue<Hit<T>> best = new PriorityQueue<>(k + 1, Hit.<T>byDistance().reversed());
+        int centerRow = latRow(latitude);
+        int centerColumn = lonColumn(longitude);
+
+        lock.readLock().lock();
+        try {
+            if (entries.isEmpty()) {
+                return new ArrayList<>();
+            }
+            int ring = 0;
+            while (true) {
+                if (ring > MAX_RINGS) {
+                    // sparse data: scanning everything is cheaper than walking more rings
+                    best.clear();
+                    for (Entry<T> entry : entries.values()) {
+                        offer(best, k, entry, latitude, longitude);
+                    }
+                    break;
+                }
+                visitRing(best, k, centerRow, centerColumn, ring, latitude, longitude);
+                if (best.size() == k && best.peek().distanceMeters <= ringLowerBound(ring + 1, latitude)) {
+                    break;
+                }
+                if (best.size() == entries.size()) {
+                    break;
+                }
+                ring++;
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        List<Hit<T>> hits = new ArrayList<>(best);
+        hits.sort(Hit.byDistance());
+        return hits;
+    }
+
+    private void visitRing(PriorityQueue<Hit<T>> best, int k, int centerRow, int centerColumn, int ring,
+                           double latitude, double longitude) {
+        for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+            if (row < 0 || row >= rows()) {
+                continue;
+            }
+            boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+            // inner rows only contribute their leftmost and rightmost cell
+            int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+            for (int offset = -ring; offset <= ring; offset += step) {
+                int column = Math.floorMod(centerColumn + offset, lonCells);
+                Map<Long, Entry<T>> cell = cells.get(cellKey(row, column));
+                if (cell == null) {
+                    continue;
+                }
+                for (Entry<T> entry : cell.values()) {
+                    offer(best, k, entry, latitude, longitude);
+                }
+            }
+        }
+    }
+
+    private void offer(PriorityQueue<Hit<T>> best, int k, Entry<T> entry, double latitude, double longitude) {
+        double distance = distanceMeters(latitude, longitude, entry.latitude, entry.longitude);
+        if (best.size() < k) {
+            best.add(new Hit<>(entry.id, entry.value, distance));
+        }
+        else if (distance < best.peek().distanceMeters) {
+            best.poll();
+            best.add(new Hit<>(entry.id, entry.value, distance));
+        }
+    }
+
+    // no point in this ring or further out can be closer than this
+    private double ringLowerBound(int ring, double latitude) {
+        double maxAbsLat = Math.min(89.9, Math.abs(latitude) + ring * cellDegrees);
+        double cellMeters = cellDegrees * METERS_PER_DEGREE * Math.cos(Math.toRadians(maxAbsLat));
+        return Math.max(0, ring - 1) * cellMeters;
+    }
+
+    private List<Integer> columns(int centerColumn, int span) {
+        List<Integer> columns = new ArrayList<>();
+        if (2 * span + 1 >= lonCells) {
+            for (int column = 0; column < lonCells; column++) {
+                columns.add(column);
+            }
+            return columns;
+        }
+        for (int offset = -span; offset <= span; offset++) {
+            columns.add(Math.floorMod(centerColumn + offset, lonCells));
+        }
+        return columns;
+    }
+
+    private void removeLocked(Long id) {
+        Entry<T> previous = entries.remove(id);
+        if (previous == null) {
+            return;
+        }
+        long key = cellKey(latRow(previous.latitude), lonColumn(previous.longitude));
+        Map<Long, Entry<T>> cell = cells.get(key);
+        cell.remove(id);
+        if (cell.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+
+    private int rows() {
+        return (int) Math.ceil(180.0 / cellDegrees);
+    }
+
+    private int latRow(double latitude) {
+        return Math.min(rows() - 1, (int) Math.floor((latitude + 90.0) / cellDegrees));
+    }
+
+    private int lonColumn(double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180.0) / cellDegrees), lonCells);
+    }
+
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    private static final class Entry<T> {
+        private final Long id;
+        private final double latitude;
+        private final double longitude;
+        private final T value;
+
+        private Entry(Long id, double latitude, double longitude, T value) {
+            this.id = id;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.value = value;
+        }
+    }
+
+    public static final class Hit<T> {
+        private final Long id;
+        private final T value;
+        private final double distanceMeters;
+
+        Hit(Long id, T value, double distanceMeters) {
+            this.id = id;
+            this.value = value;
+            this.distanceMeters = distanceMeters;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public double getDistanceMeters() {
+            return distanceMeters;
+        }
+
+        static <T> Comparator<Hit<T>> byDistance() {
+            return Comparator.comparingDouble((Hit<T> hit) -> hit.distanceMeters).thenComparing(hit -> hit.id);
+        }
+    }
+}
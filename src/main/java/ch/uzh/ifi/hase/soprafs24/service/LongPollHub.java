@@ -0,0 +1,217 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import org.springframework.web.context.request.async.DeferredResult;
+
+import ch.uzh.ifi.hase.soprafs24.rest.dto.PollBatchDTO;
+
+/**
+ * Long Poll Hub
+ * Keeps the last few events of every user in a small ring buffer and hands
+ * them out to any number of waiting polls. Every event gets a per-user
+ * sequence number which the client sends back as cursor, so nothing published
+ * between two polls is lost and several tabs of the same user each get every
+ * event.
+ * A mailbox without waiters that saw no poll or event for {@code idleMillis}
+ * is dropped, a client that comes back later gets a truncated batch.
+ */
+public class LongPollHub<T> {
+
+    private static final long DEFAULT_IDLE_MILLIS = 10 * 60 * 1000L;
+
+    private final int capacity;
+    private final long timeoutMillis;
+    private final long idleMillis;
+    private final LongSupplier clock;
+    private final Map<Long, Mailbox<T>> mailboxes = new ConcurrentHashMap<>();
+    private volatile long nextSweep;
+
+    public LongPollHub(int capacity, long timeoutMillis) {
+        this(capacity, timeoutMillis, Math.max(DEFAULT_IDLE_MILLIS, 4 * timeoutMillis), System::currentTimeMillis);
+    }
+
+    LongPollHub(int capacity, long timeoutMillis, long idleMillis, LongSupplier clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.timeoutMillis = timeoutMillis;
+        this.idleMillis = idleMillis;
+        this.clock = clock;
+        this.nextSweep = clock.getAsLong() + idleMillis;
+    }
+
+    /**
+     * Returns every event after the given cursor. If there is none yet the
+     * result stays open until the next event for this user or until the poll
+     * times out with an empty batch. A null cursor starts at the newest event.
+     */
+    public DeferredResult<PollBatchDTO<T>> subscribe(Long userId, Long cursor) {
+        DeferredResult<PollBatchDTO<T>> result = new DeferredResult<>(timeoutMillis);
+
+        Mailbox<T> mailbox;
+        Waiter<T> waiter;
+        while (true) {
+            mailbox = mailbox(userId);
+            synchronized (mailbox) {
+                if (mailbox.closed) {
+                    // evicted between the lookup and the lock
+                    continue;
+                }
+                mailbox.lastActive = clock.getAsLong();
+                PollBatchDTO<T> batch = mailbox.after(cursor);
+                if (!batch.getEvents().isEmpty() || batch.isTruncated()) {
+                    result.setResult(batch);
+                    return result;
+                }
+                waiter = new Waiter<>(batch.getCursor(), result);
+                mailbox.waiters.add(waiter);
+                break;
+            }
+        }
+
+        Mailbox<T> waitingOn = mailbox;
+        Waiter<T> registered = waiter;
+        result.onTimeout(() -> {
+            release(waitingOn, registered);
+            result.setResult(new PollBatchDTO<>(registered.cursor, Collections.emptyList(), false));
+        });
+        result.onCompletion(() -> release(waitingOn, registered));
+        result.onError(error -> release(waitingOn, registered));
+        return result;
+    }
+
+    public void publish(Long userId, T event) {
+        List<Waiter<T>> waiters;
+        List<PollBatchDTO<T>> batches = new ArrayList<>();
+        while (true) {
+            Mailbox<T> mailbox = mailbox(userId);
+            synchronized (mailbox) {
+                if (mailbox.closed) {
+                    continue;
+                }
+                mailbox.lastActive = clock.getAsLong();
+                mailbox.append(event);
+                waiters = new ArrayList<>(mailbox.waiters);
+                mailbox.waiters.clear();
+                for (Waiter<T> waiter : waiters) {
+                    batches.add(mailbox.after(waiter.cursor));
+                }
+                break;
+            }
+        }
+        // complete outside the lock, setResult dispatches back into the servlet container
+        for (int i = 0; i < waiters.size(); i++) {
+            waiters.get(i).result.setResult(batches.get(i));
+        }
+    }
+
+    /**
+     * Drops every mailbox without waiters that was idle for {@code idleMillis}.
+     * Returns how many were dropped.
+     */
+    public int evictIdle() {
+        long now = clock.getAsLong();
+        nextSweep = now + idleMillis;
+        int evicted = 0;
+        for (Map.Entry<Long, Mailbox<T>> entry : mailboxes.entrySet()) {
+            Mailbox<T> mailbox = entry.getValue();
+            synchronized (mailbox) {
+                if (mailbox.waiters.isEmpty() && now - mailbox.lastActive >= idleMillis) {
+                    // callers holding this instance retry with a fresh one
+                    mailbox.closed = true;
+                    mailboxes.remove(entry.getKey(), mailbox);
+                    evicted++;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    public int mailboxCount() {
+        return mailboxes.size();
+    }
+
+    private Mailbox<T> mailbox(Long userId) {
+        if (clock.getAsLong() >= nextSweep) {
+            evictIdle();
+        }
+        return mailboxes.computeIfAbsent(userId, id -> new Mailbox<>(capacity, clock.getAsLong()));
+    }
+
+    private void release(Mailbox<T> mailbox, Waiter<T> waiter) {
+        synchronized (mailbox) {
+            // the idle time of a mailbox starts when its last poll ends
+            if (mailbox.waiters.remove(waiter)) {
+                mailbox.lastActive = clock.getAsLong();
+            }
+        }
+    }
+
+    public int waiting(Long userId) {
+        Mailbox<T> mailbox = mailboxes.get(userId);
+        if (mailbox == null) {
+            return 0;
+        }
+        synchronized (mailbox) {
+            return mailbox.waiters.size();
+        }
+    }
+
+    private static final class Waiter<T> {
+        private final long cursor;
+        private final DeferredResult<PollBatchDTO<T>> result;
+
+        private Waiter(long cursor, DeferredResult<PollBatchDTO<T>> result) {
+            this.cursor = cursor;
+            this.result = result;
+        }
+    }
+
+    private static final class Mailbox<T> {
+        private final Object[] ring;
+        private final List<Waiter<T>> waiters = new ArrayList<>();
+        // sequence number of the newest event, 0 while nothing was published
+        private long lastSeq;
+        private long lastActive;
+        // set under the lock when evicted, the instance is never used again
+        private boolean closed;
+
+        private Mailbox(int capacity, long now) {
+            this.ring = new Object[capacity];
+            this.lastActive = now;
+        }
+
+        private void append(T event) {
+            lastSeq++;
+            ring[(int) (lastSeq % ring.length)] = event;
+        }
+
+
+        @SuppressWarnings("unchecked")
+        private PollBatchDTO<T> after(Long cursor) {
+            if (cursor == null) {
+                return new PollBatchDTO<>(lastSeq, Collections.emptyList(), false);
+            }
+            long oldest = Math.max(1, lastSeq - ring.length + 1);
+            long from = cursor;
+            boolean truncated = false;
+            // a cursor ahead of us was handed out before a restart, one behind the buffer missed events
+            if (cursor > lastSeq || cursor < oldest - 1) {
+                from = oldest - 1;
+                truncated = true;
+            }
+            List<T> events = new ArrayList<>((int) (lastSeq - from));
+            for (long seq = from + 1; seq <= lastSeq; seq++) {
+                events.add((T) ring[(int) (seq % ring.length)]);
+            }
+            return new PollBatchDTO<>(lastSeq, events, truncated);
+        }
+    }
+}
@@ -2,55 +2,86 @@ package ch.uzh.ifi.hase.soprafs24.service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.server.ResponseStatusException;
 
 import ch.uzh.ifi.hase.soprafs24.entity.Message;
-import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.event.MessageSentEvent;
 import ch.uzh.ifi.hase.soprafs24.repository.MessageRepository;
-import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.ContactDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.ConversationPageDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.MessageDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.PollBatchDTO;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
 
 @Service
 public class MessageService {
 
-    private final UserRepository userRepository;
+    // events kept per user for polls that reconnect late, and how long a poll waits
+    private static final int POLL_BUFFER_SIZE = 64;
+    private static final long POLL_TIMEOUT_MILLIS = 30000L;
+
+    public static final int MAX_CONVERSATION_PAGE_SIZE = 200;
+
+    private static final Comparator<Message> CHRONOLOGICAL =
+            Comparator.comparing(Message::getTimestamp).thenComparing(Message::getId);
+
     private final MessageRepository messageRepository;
-    private final UserService userService;
+    private final PushService pushService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UnreadCounter unreadCounter;
 
     @Autowired
-    public MessageService(UserRepository userRepository, MessageRepository messageRepository, UserService userService) {
-        this.userRepository = userRepository;
+    public MessageService(MessageRepository messageRepository, PushService pushService,
+                          ApplicationEventPublisher eventPublisher) {
         this.messageRepository = messageRepository;
-        this.userService = userService;
+        this.pushService = pushService;
+        this.eventPublisher = eventPublisher;
+        this.unreadCounter = new UnreadCounter(messageRepository::countByRecipientIdAndIsReadFalse);
     }
 
-    private final Map<Long, DeferredResult<String>> waitingUsers = new ConcurrentHashMap<>();
+    private final LongPollHub<MessageDTO> pollHub = new LongPollHub<>(POLL_BUFFER_SIZE, POLL_TIMEOUT_MILLIS);
 
-    public Map<String, Boolean> hasUnreadMessage(String token) {
-        User user = userService.getUserByToken(token);
-        boolean hasUnread = messageRepository.existsUnreadByRecipientId(user.getId());
-        Map<String, Boolean> response = new HashMap<>();
-        response.put("hasUnread", hasUnread);
+    public Map<String, Object> hasUnreadMessage(UserPrincipal user) {
+        long count = unreadCounter.get(user.getId());
+        Map<String, Object> response = new HashMap<>();
+        response.put("hasUnread", count > 0);
+        response.put("count", count);
         return response;
     }
 
-    public void markMessageAsRead(Long senderId, Long recipientId) {
-        List<Message> messages = messageRepository
-                .findBySenderIdAndRecipientIdAndIsReadFalse(senderId, recipientId);
+    @Transactional
+    public int markMessageAsRead(Long senderId, Long recipientId) {
+        int updated = messageRepository.markReadBySenderIdAndRecipientId(senderId, recipientId);
+        publishUnreadAfterMarkRead(recipientId, updated);
+        return updated;
+    }
 
-        if (!messages.isEmpty()) {
-            messages.forEach(msg -> msg.setRead(true));
-            messageRepository.saveAll(messages);
+    // read receipts: only messages the client has actually displayed are marked
+    @Transactional
+    public int markMessagesAsReadUpTo(Long senderId, Long recipientId, Long upToId) {
+        int updated = messageRepository.markReadBySenderIdAndRecipientIdUpTo(senderId, recipientId, upToId);
+        publishUnreadAfterMarkRead(recipientId, updated);
+        return updated;
+    }
+
+    private void publishUnreadAfterMarkRead(Long recipientId, int updated) {
+        if (updated > 0) {
+            unreadCounter.decrementAfterCommit(recipientId, updated);
+            pushService.pushUnread(recipientId, "messages", () -> unreadCounter.get(recipientId));
         }
     }
 
@@ -61,27 +92,63 @@ public class MessageService {
         return messageRepository.findConversation(senderId, recipientId);
     }
 
-    public List<ContactDTO> getChatContacts(String token) {
-        User currentUser = userService.getUserByToken(token);
-        List<Long> partnerIds = messageRepository.findDistinctChatPartnerIds(currentUser.getId());
-        List<ContactDTO> contactDTOs = new ArrayList<>();
+    /**
+     * Returns at most {@code limit} messages of the conversation directly before
+     * or after the given (timestamp, id) position, or the newest ones when no
+     * position is given. Both directions of the pair are read with their own
+     * index range scan and merged here, so the cost only depends on the page
+     * size and not on the length of the conversation.
+     */
+    public ConversationPageDTO getConversationPage(Long senderId, Long recipientId,
+                                                   LocalDateTime beforeTimestamp, Long beforeId,
+                                                   LocalDateTime afterTimestamp, Long afterId,
+                                                   int limit) {
+        if (senderId.equals(recipientId)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cannot get conversation with self");
+        }
+        if (limit < 1 || limit > MAX_CONVERSATION_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Limit must be between 1 and " + MAX_CONVERSATION_PAGE_SIZE);
+        }
+        if ((beforeTimestamp == null) != (beforeId == null) || (afterTimestamp == null) != (afterId == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A cursor needs both timestamp and id");
+        }
+        if (beforeTimestamp != null && afterTimestamp != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Use either before or after, not both");
+        }
 
-        for (Long partnerId : partnerIds) {
-            User user = userRepository.findById(partnerId).orElse(null);
-            if (user == null) continue;
-            boolean hasUnread = messageRepository.hasUnreadMessages(partnerId, currentUser.getId());
+        // one extra row per direction tells whether there is another page
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<Message> candidates = new ArrayList<>();
+        boolean forward = afterTimestamp != null;
+        if (forward) {
+            candidates.addAll(messageRepository.findDirectedAfter(senderId, recipientId, afterTimestamp, afterId, pageable));
+            candidates.addAll(messageRepository.findDirectedAfter(recipientId, senderId, afterTimestamp, afterId, pageable));
+        }
+        else if (beforeTimestamp != null) {
+            candidates.addAll(messageRepository.findDirectedBefore(senderId, recipientId, beforeTimestamp, beforeId, pageable));
+            candidates.addAll(messageRepository.findDirectedBefore(recipientId, senderId, beforeTimestamp, beforeId, pageable));
+        }
+        else {
+            candidates.addAll(messageRepository.findDirectedLatest(senderId, recipientId, pageable));
+            candidates.addAll(messageRepository.findDirectedLatest(recipientId, senderId, pageable));
+        }
 
-            // get the last message
-//            List<Message> messages = messageRepository.findTopByUserPairOrderByTimestampDesc(currentUser.getId(), partnerId);
-//            Message lastMessage = messages.isEmpty() ? null : messages.get(0);
-//            String preview = lastMessage != null ? lastMessage.getContent() : null;
+        // keep the messages closest to the cursor, then return them oldest first
+        candidates.sort(forward ? CHRONOLOGICAL : CHRONOLOGICAL.reversed());
+        boolean hasMore = candidates.size() > limit;
+        List<Message> page = new ArrayList<>(candidates.subList(0, Math.min(limit, candidates.size())));
+        page.sort(CHRONOLOGICAL);
 
-            contactDTOs.add(new ContactDTO(user.getId(), user.getUsername(), hasUnread));
-        }
+        List<MessageDTO> messages = page.stream().map(this::toMessageDTO).collect(Collectors.toList());
+        return new ConversationPageDTO(messages, hasMore);
+    }
 
-        return contactDTOs;
+    public List<ContactDTO> getChatContacts(UserPrincipal currentUser) {
+        return messageRepository.findChatContacts(currentUser.getId());
     }
 
+    @Transactional
     public void chat(MessageDTO messageDTO) {
         Long senderId = messageDTO.getSenderId();
         Long recipientId = messageDTO.getRecipientId();
@@ -97,27 +164,18 @@ public class MessageService {
         message.setRead(messageDTO.isRead());
         messageRepository.save(message);
 
-        DeferredResult<String> waiting = waitingUsers.get(recipientId);
-        if (waiting != null) {
-            waiting.setResult(senderId + ":" + message.getContent());
-        }
+        deliver(toMessageDTO(message));
     }
 
-    public DeferredResult<String> poll(Long userId) {
-        DeferredResult<String> result = new DeferredResult<>(30000L, "timeout");
-
-        waitingUsers.put(userId, result);
-
-        result.onCompletion(() -> waitingUsers.remove(userId));
-        result.onTimeout(() -> waitingUsers.remove(userId));
-
-        return result;
+    public DeferredResult<PollBatchDTO<MessageDTO>> poll(Long userId, Long cursor) {
+        return pollHub.subscribe(userId, cursor);
     }
 
     public List<Message> getUnreadMessages(Long userId) {
         return messageRepository.findByRecipientIdAndIsReadFalse(userId);
     }
 
+    @Transactional
     public MessageDTO sendMessage(MessageDTO messageDTO) {
         Message message = new Message();
         message.setSenderId(messageDTO.getSenderId());
@@ -127,9 +185,27 @@ public class MessageService {
         message.setRead(false);
 
         Message savedMessage = messageRepository.save(message);
+        MessageDTO savedDTO = toMessageDTO(savedMessage);
+        deliver(savedDTO);
+        return savedDTO;
+    }
+
+    private void deliver(MessageDTO message) {
+        Long recipientId = message.getRecipientId();
+        if (!message.isRead()) {
+            unreadCounter.incrementAfterCommit(recipientId);
+        }
+        // pollers must never see a message that could still be rolled back
+        TransactionCallbacks.afterCommit(() -> pollHub.publish(recipientId, message));
+        pushService.pushMessage(recipientId, message);
+        pushService.pushUnread(recipientId, "messages", () -> unreadCounter.get(recipientId));
+        eventPublisher.publishEvent(new MessageSentEvent(message.getId(), message.getSenderId(), recipientId,
+                message.getTimestamp()));
+    }
 
-        return new MessageDTO(savedMessage.getId(), savedMessage.getSenderId(),
-                savedMessage.getRecipientId(), savedMessage.getContent(),
-                savedMessage.getTimestamp(), savedMessage.isRead());
+    private MessageDTO toMessageDTO(Message message) {
+        return new MessageDTO(message.getId(), message.getSenderId(),
+                message.getRecipientId(), message.getContent(),
+                message.getTimestamp(), message.isRead());
     }
 }
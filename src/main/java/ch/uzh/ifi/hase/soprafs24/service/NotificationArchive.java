@@ -0,0 +1,66 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.uzh.ifi.hase.soprafs24.rest.dto.NotificationDTO;
+
+/**
+ * Notification Archive
+ * Gzip compressed NDJSON file (one notification per line) for a single
+ * retention run. The file is only created when the first batch is written,
+ * and every batch is flushed to disk before its rows are deleted.
+ */
+public class NotificationArchive implements Closeable {
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final LocalDateTime startedAt;
+    private Path file;
+    private BufferedWriter writer;
+
+    public NotificationArchive(Path directory, ObjectMapper objectMapper, LocalDateTime startedAt) {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.startedAt = startedAt;
+    }
+
+    public void write(List<NotificationDTO> notifications) throws IOException {
+        if (writer == null) {
+            Files.createDirectories(directory);
+            file = directory.resolve("notifications-" + FILE_TIME.format(startedAt) + ".ndjson.gz");
+            // sync flush, otherwise the deflater keeps the last batch in memory
+            writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(file), true), StandardCharsets.UTF_8));
+        }
+        for (NotificationDTO notification : notifications) {
+            writer.write(objectMapper.writeValueAsString(notification));
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import ch.uzh.ifi.hase.soprafs24.event.RequestTransitionEvent;
+
+/**
+ * Notification Dispatcher
+ * Takes request transitions off the caller's latency path. Committed
+ * transitions are queued and a single worker writes their notifications in
+ * batches of up to {@code maxBatchSize}. A failed batch is retried with a
+ * growing pause, then split so one bad event cannot take the rest with it.
+ * The queue is bounded: when it is full the publishing thread waits briefly
+ * and then writes its own notifications, which slows producers down instead
+ * of losing events or growing without limit.
+ */
+@Component
+public class NotificationDispatcher {
+
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MILLIS = 200L;
+    private static final long OFFER_TIMEOUT_MILLIS = 50L;
+    private static final long POLL_TIMEOUT_MILLIS = 500L;
+
+    private final Logger log = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    private final NotificationService notificationService;
+    private final int maxBatchSize;
+    private final long retryBackoffMillis;
+    private final BlockingQueue<RequestTransitionEvent> queue;
+    // queued plus currently being written
+    private final AtomicInteger backlog = new AtomicInteger();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "notification-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean running = true;
+
+    @Autowired
+    public NotificationDispatcher(NotificationService notificationService) {
+        this(notificationService, QUEUE_CAPACITY, MAX_BATCH_SIZE, RETRY_BACKOFF_MILLIS);
+    }
+
+    NotificationDispatcher(NotificationService notificationService, int queueCapacity,
+                           int maxBatchSize, long retryBackoffMillis) {
+        this.notificationService = notificationService;
+        this.maxBatchSize = maxBatchSize;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        worker.execute(this::drain);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onTransition(RequestTransitionEvent event) {
+        backlog.incrementAndGet();
+        try {
+            if (running && queue.offer(event, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        log.warn("Notification queue is full, writing {} notifications in the caller", event.getTransition());
+        try {
+            write(Collections.singletonList(event));
+        }
+        finally {
+            backlog.decrementAndGet();
+        }
+    }
+
+    /**
+     * Number of transitions whose notifications are not written yet.
+     */
+    public int backlog() {
+        return backlog.get();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        worker.shutdown();
+        if (!worker.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("Notification dispatcher stopped with {} transitions pending", backlog.get());
+            worker.shutdownNow();
+        }
+    }
+
+    private void drain() {
+        List<RequestTransitionEvent> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                RequestTransitionEvent first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                write(batch);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            finally {
+                backlog.addAndGet(-batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<RequestTransitionEvent> batch) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                notificationService.createNotifications(batch);
+                return;
+            }
+            catch (RuntimeException ex) {
+                log.warn("Writing {} notification events failed (attempt {}): {}", batch.size(), attempt, ex.getMessage());
+                if (attempt < MAX_ATTEMPTS && !pause(attempt)) {
+                    break;
+                }
+            }
+        }
+        if (batch.size() > 1) {
+            for (RequestTransitionEvent event : batch) {
+                write(Collections.singletonList(event));
+            }
+            return;
+        }
+        log.error("Dropping notifications of {} on request {}", batch.get(0).getTransition(), batch.get(0).getRequestId());
+    }
+
+    private boolean pause(int attempt) {
+        try {
+            Thread.sleep(retryBackoffMillis * attempt);
+            return true;
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.uzh.ifi.hase.soprafs24.repository.NotificationRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.NotificationDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Notification Retention Job
+ * Keeps the NOTIFICATION table from growing forever. Each run
+ * - deletes read notifications older than {@code read-max-age-days}, after
+ *   writing them to a gzip NDJSON file when {@code archive-dir} is set
+ * - collapses unread notifications older than {@code unread-max-age-days}:
+ *   per recipient and request only the newest one is kept, its
+ *   {@code occurrences} tells how many it stands for
+ * Work is done in batches of {@code batch-size} rows, each in its own short
+ * transaction, so NotificationService writes are never blocked for long.
+ * Rows, archive lines and run time are published as Micrometer metrics.
+ */
+@Component
+public class NotificationRetentionJob {
+
+    private final Logger log = LoggerFactory.getLogger(NotificationRetentionJob.class);
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationService notificationService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int readMaxAgeDays;
+    private final int unreadMaxAgeDays;
+    private final int batchSize;
+    private final String archiveDir;
+
+    private final Counter purgedCounter;
+    private final Counter collapsedCounter;
+    private final Counter archivedCounter;
+    private final Timer runTimer;
+
+    public NotificationRetentionJob(NotificationRepository notificationRepository,
+                                    NotificationService notificationService,
+                                    ObjectMapper objectMapper,
+                                    PlatformTransactionManager transactionManager,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${notification.retention.enabled:true}") boolean enabled,
+                                    @Value("${notification.retention.read-max-age-days:30}") int readMaxAgeDays,
+                                    @Value("${notification.retention.unread-max-age-days:90}") int unreadMaxAgeDays,
+                                    @Value("${notification.retention.batch-size:500}") int batchSize,
+                                    @Value("${notification.retention.archive-dir:}") String archiveDir) {
+        this.notificationRepository = notificationRepository;
+        this.notificationService = notificationService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.readMaxAgeDays = readMaxAgeDays;
+        this.unreadMaxAgeDays = unreadMaxAgeDays;
+        this.batchSize = batchSize;
+        this.archiveDir = archiveDir;
+
+        this.purgedCounter = meterRegistry.counter("notification.retention.purged");
+        this.collapsedCounter = meterRegistry.counter("notification.retention.collapsed");
+        this.archivedCounter = meterRegistry.counter("notification.retention.archived");
+        this.runTimer = meterRegistry.timer("notification.retention.duration");
+    }
+
+    @Scheduled(initialDelayString = "${notification.retention.initial-delay-millis:600000}",
+            fixedDelayString = "${notification.retention.interval-millis:3600000}")
+    public void scheduledRun() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            run(LocalDateTime.now());
+        }
+        catch (RuntimeException ex) {
+            // the next run picks up where this one stopped
+            log.error("Notification retention run failed", ex);
+        }
+    }
+
+    /**
+     * One retention pass relative to {@code now}.
+     */
+    public Result run(LocalDateTime now) {
+        long started = System.nanoTime();
+        try {
+            int purged = purgeRead(now.minusDays(readMaxAgeDays), now);
+            int collapsed = collapseUnread(now.minusDays(unreadMaxAgeDays));
+            log.info("Notification retention: {} read notifications purged, {} unread collapsed", purged, collapsed);
+            return new Result(purged, collapsed);
+        }
+        finally {
+            runTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private int purgeRead(LocalDateTime cutoff, LocalDateTime now) {
+        int purged = 0;
+        NotificationArchive archive = archiveDir.isEmpty()
+                ? null
+                : new NotificationArchive(Paths.get(archiveDir), objectMapper, now);
+        try {
+            while (true) {
+                Integer deleted = transactionTemplate.execute(status -> purgeReadBatch(cutoff, archive));
+                purged += deleted;
+                if (deleted < batchSize) {
+                    return purged;
+                }
+            }
+        }
+        finally {
+            closeArchive(archive);
+        }
+    }
+
+    private int purgeReadBatch(LocalDateTime cutoff, NotificationArchive archive) {
+        List<NotificationDTO> batch = notificationRepository.findReadBefore(cutoff, PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        if (archive != null) {
+            try {
+                archive.write(batch);
+            }
+            catch (IOException ex) {
+                // nothing is deleted without being archived first
+                throw new UncheckedIOException("Could not archive purged notifications", ex);
+            }
+            archivedCounter.increment(batch.size());
+        }
+        List<Long> ids = batch.stream().map(NotificationDTO::getNotificationId).collect(Collectors.toList());
+        int deleted = notificationRepository.deleteByIdIn(ids);
+        purgedCounter.increment(deleted);
+        return batch.size();
+    }
+
+    private int collapseUnread(LocalDateTime cutoff) {
+        int collapsed = 0;
+        while (true) {
+            int[] batch = transactionTemplate.execute(status -> collapseUnreadBatch(cutoff));
+            collapsed += batch[1];
+            if (batch[0] < batchSize) {
+                return collapsed;
+            }
+        }
+    }
+
+    // returns {groups, rows removed}
+    private int[] collapseUnreadBatch(LocalDateTime cutoff) {
+        List<NotificationRepository.UnreadGroup> groups =
+                notificationRepository.findCollapsibleUnread(cutoff, PageRequest.of(0, batchSize));
+        int removed = 0;
+        Set<Long> recipients = new HashSet<>();
+        for (NotificationRepository.UnreadGroup group : groups) {
+            removed += notificationRepository.deleteCollapsedUnread(
+                    group.getRecipientId(), group.getRequestId(), cutoff, group.getKeepId());
+            notificationRepository.updateOccurrences(group.getKeepId(), group.getOccurrences().intValue());
+            recipients.add(group.getRecipientId());
+        }
+        notificationService.unreadCountsChanged(recipients);
+        collapsedCounter.increment(removed);
+        return new int[]{groups.size(), removed};
+    }
+
+    private void closeArchive(NotificationArchive archive) {
+        if (archive == null) {
+            return;
+        }
+        try {
+            archive.close();
+            Path file = archive.getFile();
+            if (file != null) {
+                log.info("Archived purged notifications to {}", file);
+            }
+        }
+        catch (IOException ex) {
+            log.error("Could not close notification archive", ex);
+        }
+    }
+
+    public static class Result {
+        private final int purged;
+        private final int collapsed;
+
+        public Result(int purged, int collapsed) {
+            this.purged = purged;
+            this.collapsed = collapsed;
+        }
+
+        public int getPurged() {
+            return purged;
+        }
+
+        public int getCollapsed() {
+            return collapsed;
+        }
+    }
+}
@@ -4,65 +4,209 @@ package ch.uzh.ifi.hase.soprafs24.service;
 import ch.uzh.ifi.hase.soprafs24.constant.NotificationType;
 import ch.uzh.ifi.hase.soprafs24.entity.Notification;
 import ch.uzh.ifi.hase.soprafs24.entity.Request;
-import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.event.RequestTransitionEvent;
 import ch.uzh.ifi.hase.soprafs24.repository.NotificationRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.NotificationDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.NotificationPageDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Service
 public class NotificationService {
+
+    public static final int MAX_NOTIFICATION_PAGE_SIZE = 200;
+    // what GET /notifications returns, older ones are read through GET /notifications/page
+    public static final int DEFAULT_NOTIFICATION_PAGE_SIZE = 50;
+
+    // repeated transitions on a request within this window end up in one notification
+    public static final Duration COALESCE_WINDOW = Duration.ofHours(24);
+
     private final NotificationRepository notificationRepository;
-    private final UserService userService;
+    private final RequestRepository requestRepository;
+    private final PushService pushService;
+    private final UnreadCounter unreadCounter;
 
-    public NotificationService(NotificationRepository notificationRepository, UserService userService) {
+    public NotificationService(NotificationRepository notificationRepository, RequestRepository requestRepository,
+                               PushService pushService) {
         this.notificationRepository = notificationRepository;
-        this.userService = userService;
+        this.requestRepository = requestRepository;
+        this.pushService = pushService;
+        this.unreadCounter = new UnreadCounter(notificationRepository::countByRecipientIdAndIsReadFalse);
     }
 
-    private void createAndSaveNotification(User recipient, User relatedUser, Request request, NotificationType type) {
+    private Notification newNotification(Long recipientId, Long relatedUserId, String relatedUsername,
+                                         Request request, NotificationType type, LocalDateTime timestamp) {
         Notification notification = new Notification();
-        notification.setRecipientId(recipient.getId());
-        notification.setRelatedUserId(relatedUser.getId());
-        notification.setRelatedUsername(relatedUser.getUsername());
+        notification.setRecipientId(recipientId);
+        notification.setRelatedUserId(relatedUserId);
+        notification.setRelatedUsername(relatedUsername);
         notification.setRequest(request);
-        notification.setTimestamp(LocalDateTime.now());
+        notification.setTimestamp(timestamp);
         notification.setType(type);
         notification.setIsRead(false);
-        notificationRepository.save(notification);
+        return notification;
     }
 
+    private Notification toPoster(RequestTransitionEvent event, Request request, NotificationType type) {
+        return newNotification(event.getPosterId(), event.getVolunteerId(), event.getVolunteerUsername(),
+                request, type, event.getOccurredAt());
+    }
 
-    public void volunteerNotification(Request request, User volunteer) {
-        createAndSaveNotification(request.getPoster(), volunteer, request, NotificationType.VOLUNTEERED);
-        createAndSaveNotification(volunteer, request.getPoster(), request, NotificationType.VOLUNTEERING);
+    private Notification toVolunteer(RequestTransitionEvent event, Request request, NotificationType type) {
+        return newNotification(event.getVolunteerId(), event.getPosterId(), event.getPosterUsername(),
+                request, type, event.getOccurredAt());
     }
 
-    public void acceptNotification(Request request, User volunteer) {
-        createAndSaveNotification(request.getPoster(), volunteer, request, NotificationType.ACCEPTING);
-        createAndSaveNotification(volunteer, request.getPoster(), request, NotificationType.ACCEPTED);
+    public List<Notification> notificationsFor(RequestTransitionEvent event) {
+        // only the id is needed for the foreign key, the request row is not loaded
+        Request request = requestRepository.getOne(event.getRequestId());
+        List<Notification> notifications = new ArrayList<>();
+        switch (event.getTransition()) {
+            case VOLUNTEERED:
+                notifications.add(toPoster(event, request, NotificationType.VOLUNTEERED));
+                notifications.add(toVolunteer(event, request, NotificationType.VOLUNTEERING));
+                break;
+            case ACCEPTED:
+                notifications.add(toPoster(event, request, NotificationType.ACCEPTING));
+                notifications.add(toVolunteer(event, request, NotificationType.ACCEPTED));
+                break;
+            case COMPLETED:
+                notifications.add(toPoster(event, request, NotificationType.COMPLETED));
+                break;
+            case POSTER_CANCELLED:
+                notifications.add(toVolunteer(event, request, NotificationType.POSTERCANCEL));
+                break;
+            case VOLUNTEER_CANCELLED:
+                notifications.add(toPoster(event, request, NotificationType.VOLUNTEERCANCEL));
+                break;
+            case FEEDBACK:
+                notifications.add(toVolunteer(event, request, NotificationType.FEEDBACK));
+                break;
+            default:
+                break;
+        }
+        return notifications;
     }
 
-    public void completeNotification(Request request) {
-        createAndSaveNotification(request.getPoster(), request.getVolunteer(), request, NotificationType.COMPLETED);
+    /**
+     * Writes the notifications of a batch of transitions with one saveAll.
+     * Runs in its own transaction because the NotificationDispatcher may call it
+     * from the after-commit phase of the transition's transaction.
+     * A notification whose recipient still has an unread one of the same
+     * family about the same request from within {@link #COALESCE_WINDOW} is
+     * folded into that one instead: it takes over type, related user and
+     * timestamp, and its occurrences go up by one. Events of requests that
+     * were deleted in the meantime are dropped, their notifications are gone
+     * already. Returns the number of new rows.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int createNotifications(List<RequestTransitionEvent> events) {
+        Set<Long> requestIds = new HashSet<>();
+        for (RequestTransitionEvent event : events) {
+            requestIds.add(event.getRequestId());
+        }
+        // locked until this commits: a delete either committed before (skipped
+        // here) or waits and removes these rows with the others
+        Set<Long> undeleted = new HashSet<>();
+        for (Request request : requestRepository.findUndeletedByIdIn(requestIds)) {
+            undeleted.add(request.getId());
+        }
+        List<Notification> candidates = new ArrayList<>();
+        for (RequestTransitionEvent event : events) {
+            if (undeleted.contains(event.getRequestId())) {
+                candidates.addAll(notificationsFor(event));
+            }
+        }
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        Map<List<Object>, Notification> open = openNotifications(candidates);
+        List<Notification> created = new ArrayList<>();
+        Set<Notification> changed = new LinkedHashSet<>();
+        for (Notification candidate : candidates) {
+            List<Object> key = coalesceKey(candidate);
+            Notification existing = open.get(key);
+            if (existing != null && !existing.getTimestamp().isBefore(candidate.getTimestamp().minus(COALESCE_WINDOW))) {
+                existing.setType(candidate.getType());
+                existing.setRelatedUserId(candidate.getRelatedUserId());
+                existing.setRelatedUsername(candidate.getRelatedUsername());
+                existing.setTimestamp(candidate.getTimestamp());
+                existing.setOccurrences(existing.getOccurrences() + 1);
+                changed.add(existing);
+                continue;
+            }
+            open.put(key, candidate);
+            created.add(candidate);
+            changed.add(candidate);
+        }
+        // coalesced rows are managed entities and flushed on commit
+        notificationRepository.saveAll(created);
+
+        for (Notification notification : created) {
+            Long recipientId = notification.getRecipientId();
+            unreadCounter.incrementAfterCommit(recipientId);
+            pushService.pushUnread(recipientId, "notifications", () -> unreadCounter.get(recipientId));
+        }
+        for (Notification notification : changed) {
+            pushService.pushNotification(notification.getRecipientId(),
+                    DTOMapper.INSTANCE.convertEntityToNotificationDTO(notification));
+        }
+        return created.size();
     }
 
-    public void markNotificationsAsRead(String token) {
-        User user = userService.getUserByToken(token);
-        List<Notification> notifications = notificationRepository.findByRecipientIdAndIsReadFalse(user.getId());
-        for (Notification notification : notifications) {
-            notification.setIsRead(true);
+    // newest unread notification per coalesce key that the candidates could be folded into
+    private Map<List<Object>, Notification> openNotifications(List<Notification> candidates) {
+        Set<Long> recipientIds = new HashSet<>();
+        Set<Long> requestIds = new HashSet<>();
+        for (Notification candidate : candidates) {
+            recipientIds.add(candidate.getRecipientId());
+            requestIds.add(candidate.getRequest().getId());
+        }
+        LocalDateTime since = LocalDateTime.now().minus(COALESCE_WINDOW);
+        Map<List<Object>, Notification> open = new HashMap<>();
+        for (Notification notification : notificationRepository.findUnreadForCoalescing(recipientIds, requestIds, since)) {
+            open.merge(coalesceKey(notification), notification,
+                    (a, b) -> a.getTimestamp().isAfter(b.getTimestamp()) ? a : b);
         }
-        notificationRepository.saveAll(notifications);
+        return open;
+    }
+
+    private List<Object> coalesceKey(Notification notification) {
+        return List.of(notification.getRecipientId(), notification.getRequest().getId(),
+                notification.getType().getFamily());
+    }
+
+    @Transactional
+    public int markNotificationsAsRead(UserPrincipal user) {
+        Long userId = user.getId();
+        int updated = notificationRepository.markReadByRecipientId(userId);
+        if (updated > 0) {
+            unreadCounter.decrementAfterCommit(userId, updated);
+            pushService.pushUnread(userId, "notifications", () -> unreadCounter.get(userId));
+        }
+        return updated;
     }
 
     public void markNotificationAsRead(Long notificationId) {
@@ -70,41 +214,94 @@ public class NotificationService {
 
         if (notificationOptional.isPresent()) {
             Notification notification = notificationOptional.get();
+            if (notification.getIsRead()) {
+                return;
+            }
             notification.setIsRead(true);
             notificationRepository.save(notification);
+            Long recipientId = notification.getRecipientId();
+            unreadCounter.decrementAfterCommit(recipientId, 1);
+            pushService.pushUnread(recipientId, "notifications", () -> unreadCounter.get(recipientId));
         }
         else {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Notification not found");
         }
     }
 
-    public void feedbackNotification(Request request) {
-        createAndSaveNotification(request.getVolunteer(), request.getPoster(), request, NotificationType.FEEDBACK);
+    public List<NotificationDTO> getNotificationDTOS(UserPrincipal user) {
+        return getNotificationPage(user, null, null, DEFAULT_NOTIFICATION_PAGE_SIZE).getNotifications();
     }
 
-    public void posterCancelNotification(Request request) {
-        createAndSaveNotification(request.getVolunteer(), request.getPoster(), request, NotificationType.POSTERCANCEL);
+    /**
+     * Returns up to {@code limit} notifications of the user, newest first,
+     * starting right after the given (timestamp, id) position or at the newest
+     * one when no position is given.
+     */
+    public NotificationPageDTO getNotificationPage(UserPrincipal user, LocalDateTime beforeTimestamp, Long beforeId,
+                                                   int limit) {
+        checkPageLimit(limit);
+        if ((beforeTimestamp == null) != (beforeId == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A cursor needs both timestamp and id");
+        }
+        // one extra row tells whether there is another page
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<NotificationDTO> notifications = beforeTimestamp == null
+                ? notificationRepository.findInboxLatest(user.getId(), pageable)
+                : notificationRepository.findInboxBefore(user.getId(), beforeTimestamp, beforeId, pageable);
+        return toPage(notifications, limit);
     }
 
-    public void volunteerCancelNotification(Request request) {
-        createAndSaveNotification(request.getPoster(), request.getVolunteer(), request, NotificationType.VOLUNTEERCANCEL);
+    /**
+     * Returns up to {@code limit} notifications the user received after the
+     * notification with the given id, oldest first. Coalesced notifications
+     * keep their id, clients learn about those through the push.
+     */
+    public NotificationPageDTO getNotificationsSince(UserPrincipal user, Long sinceId, int limit) {
+        checkPageLimit(limit);
+        List<NotificationDTO> notifications =
+                notificationRepository.findInboxSince(user.getId(), sinceId, PageRequest.of(0, limit + 1));
+        return toPage(notifications, limit);
     }
 
-    public List<NotificationDTO> getNotificationDTOS(String token) {
-        User user = userService.getUserByToken(token);
-        List<Notification> notifications = notificationRepository.findByRecipientIdOrderByTimestampDesc(user.getId());
+    private void checkPageLimit(int limit) {
+        if (limit < 1 || limit > MAX_NOTIFICATION_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Limit must be between 1 and " + MAX_NOTIFICATION_PAGE_SIZE);
+        }
+    }
 
-        List<NotificationDTO> notificationDTOs = notifications.stream()
-                .map(DTOMapper.INSTANCE::convertEntityToNotificationDTO)
-                .collect(Collectors.toList());
-        return notificationDTOs;
+    private NotificationPageDTO toPage(List<NotificationDTO> notifications, int limit) {
+        boolean hasMore = notifications.size() > limit;
+        return new NotificationPageDTO(hasMore ? notifications.subList(0, limit) : notifications, hasMore);
     }
 
-    public Map<String, Boolean> getUnreadNotifications(String token) {
-        User user = userService.getUserByToken(token);
-        boolean hasUnread = notificationRepository.existsByRecipientIdAndIsReadFalse(user.getId());
-        Map<String, Boolean> response = new HashMap<>();
-        response.put("hasUnread", hasUnread);
+    public Map<String, Object> getUnreadNotifications(UserPrincipal user) {
+        long count = unreadCounter.get(user.getId());
+        Map<String, Object> response = new HashMap<>();
+        response.put("hasUnread", count > 0);
+        response.put("count", count);
         return response;
     }
+
+    // for notifications removed or merged outside of this service, see NotificationRetentionJob
+    public void unreadCountsChanged(Collection<Long> recipientIds) {
+        for (Long recipientId : recipientIds) {
+            unreadCounter.invalidateAfterCommit(recipientId);
+        }
+    }
+
+    public int deleteNotificationsForRequest(Request request) {
+        return deleteNotificationsForRequests(Collections.singletonList(request.getId()));
+    }
+
+    // notifications of deleted requests go away, unread ones must leave the counters too
+    public int deleteNotificationsForRequests(Collection<Long> requestIds) {
+        if (requestIds.isEmpty()) {
+            return 0;
+        }
+        List<Long> unreadRecipients = notificationRepository.findUnreadRecipientIdsByRequestIdIn(requestIds);
+        int deleted = notificationRepository.deleteByRequestIdIn(requestIds);
+        unreadCountsChanged(unreadRecipients);
+        return deleted;
+    }
 }
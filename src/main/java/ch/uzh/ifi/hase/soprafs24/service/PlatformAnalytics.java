@@ -0,0 +1,284 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import ch.uzh.ifi.hase.soprafs24.constant.AnalyticsGranularity;
+import ch.uzh.ifi.hase.soprafs24.entity.AnalyticsRollup;
+import ch.uzh.ifi.hase.soprafs24.event.MessageSentEvent;
+import ch.uzh.ifi.hase.soprafs24.event.RequestEvent;
+import ch.uzh.ifi.hase.soprafs24.event.UserRegisteredEvent;
+import ch.uzh.ifi.hase.soprafs24.repository.AnalyticsRollupRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.AnalyticsBucketDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
+
+/**
+ * Platform Analytics
+ * Pre-aggregated counters for the admin statistics, so a report never scans
+ * REQUEST, MESSAGE or NOTIFICATION. Every committed event is counted once per
+ * AnalyticsGranularity in a fixed-size CounterRing:
+ * - requests.created by "country/EMERGENCY_LEVEL"
+ * - requests.transitions by the status the request entered
+ * - messages.sent and users.registered without a dimension
+ * Hour and day buckets that changed are written to ANALYTICS_ROLLUP every
+ * {@code flush-interval-millis}, one row per bucket and counter, and are read
+ * back into the rings on startup. Minute buckets only live in memory.
+ * Reports within the ring come from memory, older hours and days from the
+ * rollup rows.
+ */
+@Component
+public class PlatformAnalytics {
+
+    public static final String REQUESTS_CREATED = "requests.created";
+    public static final String REQUEST_TRANSITIONS = "requests.transitions";
+    public static final String MESSAGES_SENT = "messages.sent";
+    public static final String USERS_REGISTERED = "users.registered";
+
+    public static final int MAX_REPORT_BUCKETS = 1000;
+
+    // metric and dimension of a ring counter, metrics never contain it
+    private static final char KEY_SEPARATOR = '|';
+
+    private final Logger log = LoggerFactory.getLogger(PlatformAnalytics.class);
+
+    private final AnalyticsRollupRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<AnalyticsGranularity, CounterRing> rings = new EnumMap<>(AnalyticsGranularity.class);
+    private final Object flushLock = new Object();
+    // a flush before the restore would overwrite persisted buckets with partial counts
+    private volatile boolean restored;
+
+    public PlatformAnalytics(AnalyticsRollupRepository rollupRepository,
+                             PlatformTransactionManager transactionManager) {
+        this.rollupRepository = rollupRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (AnalyticsGranularity granularity : AnalyticsGranularity.values()) {
+            rings.put(granularity, new CounterRing(granularity));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onRequestEvent(RequestEvent event) {
+        RequestGetDTO request = event.getRequest();
+        switch (event.getType()) {
+            case CREATED:
+                String country = request.getCountryCode() == null ? "unknown" : request.getCountryCode();
+                String level = request.getEmergencyLevel() == null ? "UNKNOWN" : request.getEmergencyLevel().name();
+                record(REQUESTS_CREATED, country + "/" + level, LocalDateTime.now());
+                break;
+            case VOLUNTEERED:
+            case CANCELLED:
+            case STATUS_CHANGED:
+            case DELETED:
+                if (request.getStatus() != null) {
+                    record(REQUEST_TRANSITIONS, request.getStatus().name(), LocalDateTime.now());
+                }
+                break;
+            default:
+                // edits don't change any counter
+                break;
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMessageSent(MessageSentEvent event) {
+        record(MESSAGES_SENT, "", event.getSentAt() == null ? LocalDateTime.now() : event.getSentAt());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserRegistered(UserRegisteredEvent event) {
+        record(USERS_REGISTERED, "", event.getRegisteredAt());
+    }
+
+    public void record(String metric, String dimension, LocalDateTime at) {
+        String key = metric + KEY_SEPARATOR + dimension;
+        for (CounterRing ring : rings.values()) {
+            ring.add(at, key, 1);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        restore(LocalDateTime.now());
+    }
+
+    /**
+     * Adds the persisted hour and day buckets still covered by the rings to
+     * whatever was counted since startup.
+     */
+    public void restore(LocalDateTime now) {
+        int rows = 0;
+        for (CounterRing ring : persistedRings()) {
+            AnalyticsGranularity granularity = ring.getGranularity();
+            LocalDateTime to = granularity.bucketStart(now).plusSeconds(granularity.getSeconds());
+            for (AnalyticsRollup row : rollupRepository.findRange(granularity, ring.oldestStart(now), to)) {
+                ring.restore(row.getBucketStart(), row.getMetric() + KEY_SEPARATOR + row.getDimension(),
+                        row.getCount());
+                rows++;
+            }
+        }
+        restored = true;
+        log.info("Platform analytics restored from {} rollup rows", rows);
+    }
+
+    @Scheduled(initialDelayString = "${analytics.flush-interval-millis:60000}",
+            fixedDelayString = "${analytics.flush-interval-millis:60000}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        }
+        catch (RuntimeException ex) {
+            // the buckets stay dirty, the next run writes them
+            log.error("Platform analytics flush failed", ex);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            flush();
+        }
+        catch (RuntimeException ex) {
+            log.warn("Platform analytics could not be flushed on shutdown: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Writes the hour and day buckets that changed since the last flush,
+     * returns the number of rollup rows written.
+     */
+    public int flush() {
+        if (!restored) {
+            return 0;
+        }
+        synchronized (flushLock) {
+            int written = 0;
+            for (CounterRing ring : persistedRings()) {
+                Map<LocalDateTime, Map<String, Long>> dirty = ring.drainDirty();
+                if (dirty.isEmpty()) {
+                    continue;
+                }
+                try {
+                    written += transactionTemplate.execute(status -> write(ring.getGranularity(), dirty));
+                }
+                catch (RuntimeException ex) {
+                    ring.markDirty(dirty);
+                    throw ex;
+                }
+            }
+            return written;
+        }
+    }
+
+    private int write(AnalyticsGranularity granularity, Map<LocalDateTime, Map<String, Long>> buckets) {
+        Map<String, AnalyticsRollup> existing = new HashMap<>();
+        for (AnalyticsRollup row : rollupRepository.findByGranularityAndBucketStartIn(granularity, buckets.keySet())) {
+            existing.put(row.getBucketStart() + " " + row.getMetric() + KEY_SEPARATOR + row.getDimension(), row);
+        }
+        List<AnalyticsRollup> rows = new ArrayList<>();
+        buckets.forEach((start, counts) -> counts.forEach((key, count) -> {
+            AnalyticsRollup row = existing.get(start + " " + key);
+            if (row == null) {
+                int separator = key.indexOf(KEY_SEPARATOR);
+                row = new AnalyticsRollup(granularity, start, key.substring(0, separator),
+                        key.substring(separator + 1));
+            }
+            // the ring holds the full count of the bucket, not a delta
+            row.setCount(count);
+            rows.add(row);
+        }));
+        rollupRepository.saveAll(rows);
+        return rows.size();
+    }
+
+    public List<AnalyticsBucketDTO> report(UserPrincipal user, AnalyticsGranularity granularity, int buckets) {
+        if (!user.getUsername().equals("admin")) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
+        }
+        return report(granularity, buckets, LocalDateTime.now());
+    }
+
+    /**
+     * The last {@code buckets} buckets up to the one {@code now} falls into, oldest first.
+     */
+    public List<AnalyticsBucketDTO> report(AnalyticsGranularity granularity, int buckets, LocalDateTime now) {
+        if (buckets < 1 || buckets > MAX_REPORT_BUCKETS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Buckets must be between 1 and " + MAX_REPORT_BUCKETS);
+        }
+        CounterRing ring = rings.get(granularity);
+        if (!isPersisted(granularity) && buckets > granularity.getRingSize()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Only the last " + granularity.getRingSize() + " " + granularity.name().toLowerCase()
+                            + " buckets are kept");
+        }
+        long width = granularity.getSeconds();
+        LocalDateTime current = granularity.bucketStart(now);
+        LocalDateTime first = current.minusSeconds((buckets - 1) * width);
+        LocalDateTime oldestInMemory = ring.oldestStart(now);
+
+        Map<LocalDateTime, Map<String, Long>> persisted = new HashMap<>();
+        if (first.isBefore(oldestInMemory)) {
+            for (AnalyticsRollup row : rollupRepository.findRange(granularity, first, oldestInMemory)) {
+                persisted.computeIfAbsent(row.getBucketStart(), start -> new HashMap<>())
+                        .put(row.getMetric() + KEY_SEPARATOR + row.getDimension(), row.getCount());
+            }
+        }
+
+        List<AnalyticsBucketDTO> report = new ArrayList<>(buckets);
+        for (LocalDateTime start = first; !start.isAfter(current); start = start.plusSeconds(width)) {
+            Map<String, Long> counts = start.isBefore(oldestInMemory)
+                    ? persisted.getOrDefault(start, Map.of())
+                    : ring.get(start);
+            report.add(new AnalyticsBucketDTO(start, nest(counts)));
+        }
+        return report;
+    }
+
+    private static Map<String, Map<String, Long>> nest(Map<String, Long> counts) {
+        Map<String, Map<String, Long>> counters = new TreeMap<>();
+        counts.forEach((key, count) -> {
+            int separator = key.indexOf(KEY_SEPARATOR);
+            counters.computeIfAbsent(key.substring(0, separator), metric -> new TreeMap<>())
+                    .put(key.substring(separator + 1), count);
+        });
+        return counters;
+    }
+
+    private static boolean isPersisted(AnalyticsGranularity granularity) {
+        return granularity != AnalyticsGranularity.MINUTE;
+    }
+
+    private List<CounterRing> persistedRings() {
+        List<CounterRing> persisted = new ArrayList<>();
+        rings.forEach((granularity, ring) -> {
+            if (isPersisted(granularity)) {
+                persisted.add(ring);
+            }
+        });
+        return persisted;
+    }
+}
@@ -0,0 +1,64 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import ch.uzh.ifi.hase.soprafs24.rest.dto.MessageDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.NotificationDTO;
+
+/**
+ * Push Service
+ * Sends events to the WebSocket session(s) of a single user. All pushes are
+ * deferred until the current transaction commits, so clients never see data
+ * that is rolled back afterwards. Users without an open session are simply
+ * skipped by the broker.
+ */
+@Service
+public class PushService {
+
+    public static final String MESSAGE_QUEUE = "/queue/messages";
+    public static final String NOTIFICATION_QUEUE = "/queue/notifications";
+    public static final String UNREAD_QUEUE = "/queue/unread";
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    public PushService(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    public void pushMessage(Long recipientId, MessageDTO message) {
+        send(recipientId, MESSAGE_QUEUE, message);
+    }
+
+    public void pushNotification(Long recipientId, NotificationDTO notification) {
+        send(recipientId, NOTIFICATION_QUEUE, notification);
+    }
+
+    // same shape as GET /messages/unread and /notifications/unread plus the kind that changed;
+    // the count is read when the push goes out, i.e. after the unread counter saw the commit
+    public void pushUnread(Long userId, String kind, LongSupplier count) {
+        if (userId == null) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            long unread = count.getAsLong();
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("type", kind);
+            payload.put("hasUnread", unread > 0);
+            payload.put("count", unread);
+            messagingTemplate.convertAndSendToUser(String.valueOf(userId), UNREAD_QUEUE, payload);
+        });
+    }
+
+    private void send(Long userId, String destination, Object payload) {
+        if (userId == null) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() ->
+                messagingTemplate.convertAndSendToUser(String.valueOf(userId), destination, payload));
+    }
+}
@@ -0,0 +1,270 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.event.RequestEvent;
+import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.MapClusterDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+
+/**
+ * Request Cluster Index
+ * Map marker clusters of the WAITING requests, precomputed for every zoom
+ * level. At zoom z the world is split into cells of
+ * 360 / (2^z * CELLS_PER_TILE) degrees and each occupied cell keeps a running
+ * aggregate (count, coordinate sums, requests per emergency level). A request
+ * change only touches its one cell per zoom level, so a map pan is answered
+ * from the aggregates without looking at single requests. Loaded at startup
+ * and kept in sync through the committed RequestEvents, like RequestGeoIndex.
+ */
+@Component
+public class RequestClusterIndex {
+
+    public static final int MAX_ZOOM = 16;
+    // clusters per map tile edge, a 256px tile gets up to 4x4 markers
+    private static final int CELLS_PER_TILE = 4;
+
+    private final Logger log = LoggerFactory.getLogger(RequestClusterIndex.class);
+
+    private final RequestRepository requestRepository;
+    private final List<Map<Long, Cell>> levels = new ArrayList<>();
+    private final Map<Long, Point> points = new HashMap<>();
+    private final SnapshotVersions versions = new SnapshotVersions();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public RequestClusterIndex(RequestRepository requestRepository) {
+        this.requestRepository = requestRepository;
+        for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+            levels.add(new HashMap<>());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            versions.startRebuild();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        List<RequestGetDTO> waiting = new ArrayList<>();
+        requestRepository.findByStatus(RequestStatus.WAITING)
+                .forEach(request -> waiting.add(DTOMapper.INSTANCE.convertEntityToRequestGetDTO(request)));
+        lock.writeLock().lock();
+        try {
+            points.clear();
+            levels.forEach(Map::clear);
+            for (RequestGetDTO request : waiting) {
+                if (versions.advanceLoaded(request)) {
+                    updateLocked(request);
+                }
+            }
+            // events committed while the rows were read may be newer than them
+            for (RequestGetDTO request : versions.finishRebuild()) {
+                if (versions.advanceLoaded(request)) {
+                    updateLocked(request);
+                }
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Request cluster index loaded with {} requests", waiting.size());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onRequestEvent(RequestEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (versions.advance(event.getRequest())) {
+                updateLocked(event.getRequest());
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Clusters inside the bounding box at the given zoom level. A box with
+     * {@code minLongitude > maxLongitude} crosses the antimeridian.
+     */
+    public List<MapClusterDTO> getClusters(double minLatitude, double minLongitude,
+                                           double maxLatitude, double maxLongitude, int zoom) {
+        if (minLatitude < -90 || maxLatitude > 90 || minLatitude > maxLatitude
+                || minLongitude < -180 || minLongitude > 180 || maxLongitude < -180 || maxLongitude > 180) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid bounding box");
+        }
+        if (zoom < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Zoom must not be negative");
+        }
+        // deeper zoom levels would only split the clusters of MAX_ZOOM further
+        int level = Math.min(zoom, MAX_ZOOM);
+        double cellDegrees = cellDegrees(level);
+        int minRow = row(minLatitude, cellDegrees);
+        int maxRow = row(maxLatitude, cellDegrees);
+        int columnCount = columnCount(cellDegrees);
+        int minColumn = column(minLongitude, cellDegrees);
+        int maxColumn = column(maxLongitude, cellDegrees);
+        boolean wraps = minLongitude > maxLongitude;
+        int boxColumns = Math.min(columnCount,
+                wraps ? columnCount - minColumn + maxColumn + 1 : maxColumn - minColumn + 1);
+
+        List<MapClusterDTO> clusters = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Map<Long, Cell> cells = levels.get(level);
+            if ((long) (maxRow - minRow + 1) * boxColumns > cells.size()) {
+                // zoomed out over sparse data: filtering the occupied cells is cheaper
+                for (Cell cell : cells.values()) {
+                    if (cell.row >= minRow && cell.row <= maxRow
+                            && Math.floorMod(cell.column - minColumn, columnCount) < boxColumns) {
+                        clusters.add(cell.toDTO());
+                    }
+                }
+                return clusters;
+            }
+            for (int row = minRow; row <= maxRow; row++) {
+                for (int offset = 0; offset < boxColumns; offset++) {
+                    Cell cell = cells.get(cellKey(row, (minColumn + offset) % columnCount));
+                    if (cell != null) {
+                        clusters.add(cell.toDTO());
+                    }
+                }
+            }
+            return clusters;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void updateLocked(RequestGetDTO request) {
+        Point previous = points.remove(request.getId());
+        if (previous != null) {
+            apply(previous, -1);
+        }
+        if (request.getStatus() == RequestStatus.WAITING && onMap(request.getLatitude(), request.getLongitude())) {
+            Point point = new Point(request.getId(), request.getLatitude(), request.getLongitude(),
+                    request.getEmergencyLevel());
+            points.put(point.id, point);
+            apply(point, 1);
+        }
+    }
+
+    private void apply(Point point, int delta) {
+        for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+            double cellDegrees = cellDegrees(zoom);
+            int row = row(point.latitude, cellDegrees);
+            int column = column(point.longitude, cellDegrees);
+            long key = cellKey(row, column);
+            Map<Long, Cell> cells = levels.get(zoom);
+            Cell cell = cells.computeIfAbsent(key, k -> new Cell(row, column));
+            cell.add(point, delta);
+            if (cell.count == 0) {
+                cells.remove(key);
+            }
+        }
+    }
+
+    private static boolean onMap(Double latitude, Double longitude) {
+        return latitude != null && longitude != null
+                && Math.abs(latitude) <= 90 && Math.abs(longitude) <= 180;
+    }
+
+    private static double cellDegrees(int zoom) {
+        return 360.0 / ((1 << zoom) * CELLS_PER_TILE);
+    }
+
+    private static int columnCount(double cellDegrees) {
+        return (int) Math.round(360.0 / cellDegrees);
+    }
+
+    private static int row(double latitude, double cellDegrees) {
+        return (int) Math.floor((latitude + 90.0) / cellDegrees);
+    }
+
+    // 180 is the right edge of the last column, not the start of the first
+    private static int column(double longitude, double cellDegrees) {
+        return Math.min(columnCount(cellDegrees) - 1, (int) Math.floor((longitude + 180.0) / cellDegrees));
+    }
+
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    private static final class Point {
+        private final Long id;
+        private final double latitude;
+        private final double longitude;
+        private final RequestEmergencyLevel emergencyLevel;
+
+        private Point(Long id, double latitude, double longitude, RequestEmergencyLevel emergencyLevel) {
+            this.id = id;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.emergencyLevel = emergencyLevel;
+        }
+    }
+
+    private static final class Cell {
+        private final int row;
+        private final int column;
+        private int count;
+        private double latitudeSum;
+        private double longitudeSum;
+        // per level counts, so the maximum survives removals
+        private final int[] levelCounts = new int[RequestEmergencyLevel.values().length];
+        // sum of the ids, equals the only id while count is 1
+        private long idSum;
+
+        private Cell(int row, int column) {
+            this.row = row;
+            this.column = column;
+        }
+
+        private void add(Point point, int delta) {
+            count += delta;
+            latitudeSum += delta * point.latitude;
+            longitudeSum += delta * point.longitude;
+            idSum += delta * point.id;
+            if (point.emergencyLevel != null) {
+                levelCounts[point.emergencyLevel.ordinal()] += delta;
+            }
+        }
+
+        private MapClusterDTO toDTO() {
+            RequestEmergencyLevel maxLevel = null;
+            // HIGH comes first
+            for (RequestEmergencyLevel level : RequestEmergencyLevel.values()) {
+                if (levelCounts[level.ordinal()] > 0) {
+                    maxLevel = level;
+                    break;
+                }
+            }
+            return new MapClusterDTO(latitudeSum / count, longitudeSum / count, count, maxLevel,
+                    count == 1 ? idSum : null);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestExportFormat;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestExportDTO;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
+
+/**
+ * Request Export Service
+ * Streams the request table to admins as NDJSON or CSV. Rows come from a
+ * forward-only cursor with a fixed fetch size and are written out as they
+ * arrive, so memory use does not depend on the table size. The response
+ * body runs on an async thread after the controller returned, so the
+ * permission check happens up front and the cursor gets its own read-only
+ * transaction.
+ */
+@Service
+public class RequestExportService {
+
+    static final String CSV_HEADER = "id,title,status,emergencyLevel,countryCode,creationDate,publishedAt,"
+            + "posterId,posterUsername,volunteerId,rating,deletedAt";
+    // push written rows to the client every so often instead of only at the end
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(RequestExportService.class);
+
+    private final RequestRepository requestRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public RequestExportService(RequestRepository requestRepository, ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager) {
+        this.requestRepository = requestRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Checks the caller and returns a body that writes all requests with one
+     * of the given statuses, or every request when none are given.
+     */
+    public StreamingResponseBody export(UserPrincipal user, RequestExportFormat format,
+                                        Collection<RequestStatus> statuses) {
+        if (!user.getUsername().equals("admin")) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
+        }
+        Collection<RequestStatus> selected = statuses == null || statuses.isEmpty()
+                ? EnumSet.allOf(RequestStatus.class)
+                : EnumSet.copyOf(statuses);
+        return out -> write(format, selected, out);
+    }
+
+    void write(RequestExportFormat format, Collection<RequestStatus> statuses, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == RequestExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        try {
+            Long rows = transactionTemplate.execute(status -> {
+                try (Stream<RequestExportDTO> stream = requestRepository.streamForExport(statuses)) {
+                    long count = 0;
+                    for (RequestExportDTO row : (Iterable<RequestExportDTO>) stream::iterator) {
+                        writeRow(format, row, writer);
+                        if (++count % FLUSH_EVERY_ROWS == 0) {
+                            writer.flush();
+                        }
+                    }
+                    return count;
+                }
+                catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            log.info("Exported {} requests as {}", rows, format);
+        }
+        catch (UncheckedIOException ex) {
+            // usually the client went away, the cursor is closed by now
+            throw ex.getCause();
+        }
+        writer.flush();
+    }
+
+    private void writeRow(RequestExportFormat format, RequestExportDTO row, Writer writer) throws IOException {
+        if (format == RequestExportFormat.NDJSON) {
+            writer.write(objectMapper.writeValueAsString(row));
+        }
+        else {
+            List<Object> values = Arrays.asList(row.getId(), row.getTitle(), row.getStatus(),
+                    row.getEmergencyLevel(), row.getCountryCode(), row.getCreationDate(), row.getPublishedAt(),
+                    row.getPosterId(), row.getPosterUsername(), row.getVolunteerId(), row.getRating(),
+                    row.getDeletedAt());
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(csvField(values.get(i)));
+            }
+        }
+        writer.write('\n');
+    }
+
+    // RFC 4180: quote fields with separators, quotes or line breaks, double the quotes
+    static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,238 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEventType;
+import ch.uzh.ifi.hase.soprafs24.event.RequestEvent;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+
+/**
+ * Request Feed Broadcaster
+ * Serves GET /requests/active/stream. Every subscriber first receives a
+ * "snapshot" event with all waiting requests and afterwards one event per
+ * committed change (created, volunteered, cancelled, updated, deleted). Events that
+ * commit while the snapshot is still being loaded are held back and sent right
+ * after it, so a client never applies an older snapshot on top of a newer
+ * event.
+ * The committing thread only queues the event per subscriber, the writes run
+ * on a small writer pool, so a slow client never delays the request that
+ * made the change. A subscriber with more than {@code max-queued-events}
+ * unsent events is dropped, its EventSource reconnects and starts over
+ * with a fresh snapshot.
+ */
+@Component
+public class RequestFeedBroadcaster {
+
+    // EventSource reconnects by itself, so streams are recycled every half hour
+    private static final long STREAM_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+
+    private final Logger log = LoggerFactory.getLogger(RequestFeedBroadcaster.class);
+
+    private final RequestService requestService;
+    private final Executor writers;
+    private final int maxQueuedEvents;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public RequestFeedBroadcaster(RequestService requestService,
+                                  @Value("${request-feed.writer-threads:2}") int writerThreads,
+                                  @Value("${request-feed.max-queued-events:256}") int maxQueuedEvents) {
+        this(requestService, writerPool(writerThreads), maxQueuedEvents);
+    }
+
+    RequestFeedBroadcaster(RequestService requestService, Executor writers, int maxQueuedEvents) {
+        this.requestService = requestService;
+        this.writers = writers;
+        this.maxQueuedEvents = maxQueuedEvents;
+    }
+
+    // every subscriber has at most one drain task queued, so the queue is bounded by the subscribers
+    private static ExecutorService writerPool(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(10000), runnable -> {
+                    Thread thread = new Thread(runnable, "request-feed-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writers instanceof ExecutorService) {
+            ((ExecutorService) writers).shutdownNow();
+        }
+    }
+
+    public SseEmitter subscribe() {
+        Subscriber subscriber = new Subscriber(new SseEmitter(STREAM_TIMEOUT_MILLIS));
+        // register before loading the snapshot, see the class comment
+        subscribers.add(subscriber);
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onError(error -> subscribers.remove(subscriber));
+
+        List<RequestGetDTO> snapshot = requestService.getWaitingRequests().stream()
+                .map(DTOMapper.INSTANCE::convertEntityToRequestGetDTO)
+                .collect(Collectors.toList());
+        subscriber.start(snapshot);
+        return subscriber.emitter;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onRequestEvent(RequestEvent event) {
+        if (event.getType() == RequestEventType.STATUS_CHANGED) {
+            // never in the active feed, nothing to tell the subscribers
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.send(event);
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    private static final class Frame {
+        private final String name;
+        private final Object data;
+
+        private Frame(String name, Object data) {
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        // events the writer has not sent yet, always after the snapshot
+        private final Deque<Frame> queue = new ArrayDeque<>();
+        private Frame snapshot;
+        private boolean started;
+        private boolean draining;
+        private boolean dropped;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private synchronized void start(List<RequestGetDTO> snapshot) {
+            this.snapshot = new Frame("snapshot", snapshot);
+            started = true;
+            scheduleLocked();
+        }
+
+        // runs on the committing thread, must never touch the emitter
+        private synchronized void send(RequestEvent event) {
+            if (dropped) {
+                return;
+            }
+            if (queue.size() >= maxQueuedEvents) {
+                log.debug("Dropping request feed subscriber with {} unsent events", queue.size());
+                dropLocked();
+                return;
+            }
+            queue.addLast(new Frame(event.getType().name().toLowerCase(), event));
+            if (started) {
+                scheduleLocked();
+            }
+        }
+
+        private void dropLocked() {
+            dropped = true;
+            queue.clear();
+            subscribers.remove(this);
+            // the writer completes the emitter, it may be blocked in a send on it right now
+            scheduleLocked();
+        }
+
+        private void scheduleLocked() {
+            if (draining) {
+                return;
+            }
+            draining = true;
+            try {
+                writers.execute(this::drain);
+            }
+            catch (RejectedExecutionException ex) {
+                draining = false;
+                dropped = true;
+                queue.clear();
+                subscribers.remove(this);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Frame frame;
+                synchronized (this) {
+                    if (dropped) {
+                        draining = false;
+                        break;
+                    }
+                    frame = snapshot != null ? snapshot : queue.pollFirst();
+                    snapshot = null;
+                    if (frame == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                if (!write(frame)) {
+                    return;
+                }
+            }
+            try {
+                emitter.complete();
+            }
+            catch (IllegalStateException ex) {
+                log.debug("Request feed subscriber already closed: {}", ex.getMessage());
+            }
+        }
+
+        private boolean write(Frame frame) {
+            try {
+                emitter.send(SseEmitter.event().name(frame.name).data(frame.data));
+                return true;
+            }
+            catch (IOException | IllegalStateException ex) {
+                // the client went away, drop it instead of failing the writer
+                log.debug("Dropping request feed subscriber: {}", ex.getMessage());
+                synchronized (this) {
+                    dropped = true;
+                    draining = false;
+                    queue.clear();
+                }
+                subscribers.remove(this);
+                emitter.completeWithError(ex);
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.event.RequestEvent;
+import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.NearbyRequestDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+
+/**
+ * Request Geo Index
+ * In-memory spatial index of the WAITING requests that have coordinates.
+ * Loaded from the database at startup and afterwards kept in sync through
+ * the committed RequestEvents, the same ones that drive the request feed.
+ * A rebuild fills a new grid and swaps it in, so searches never see a half
+ * loaded index.
+ */
+@Component
+public class RequestGeoIndex {
+
+    public static final int MAX_NEARBY_RESULTS = 100;
+    public static final double MAX_RADIUS_METERS = 50_000;
+
+    // 0.1 degrees are about 11 km north-south
+    private static final double CELL_DEGREES = 0.1;
+
+    private final Logger log = LoggerFactory.getLogger(RequestGeoIndex.class);
+
+    private final RequestRepository requestRepository;
+    private volatile GeoGrid<RequestGetDTO> grid = new GeoGrid<>(CELL_DEGREES);
+    // writes to the grid and the versions
+    private final Object updateLock = new Object();
+    private final SnapshotVersions versions = new SnapshotVersions();
+
+    public RequestGeoIndex(RequestRepository requestRepository) {
+        this.requestRepository = requestRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        synchronized (updateLock) {
+            versions.startRebuild();
+        }
+        List<RequestGetDTO> waiting = new ArrayList<>();
+        requestRepository.findByStatus(RequestStatus.WAITING)
+                .forEach(request -> waiting.add(DTOMapper.INSTANCE.convertEntityToRequestGetDTO(request)));
+        GeoGrid<RequestGetDTO> loaded = new GeoGrid<>(CELL_DEGREES);
+        synchronized (updateLock) {
+            for (RequestGetDTO request : waiting) {
+                if (versions.advanceLoaded(request)) {
+                    update(loaded, request);
+                }
+            }
+            // events committed while the rows were read may be newer than them
+            for (RequestGetDTO request : versions.finishRebuild()) {
+                if (versions.advanceLoaded(request)) {
+                    update(loaded, request);
+                }
+            }
+            grid = loaded;
+        }
+        log.info("Request geo index loaded with {} requests", loaded.size());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onRequestEvent(RequestEvent event) {
+        synchronized (updateLock) {
+            if (versions.advance(event.getRequest())) {
+                update(grid, event.getRequest());
+            }
+        }
+    }
+
+    /**
+     * Waiting requests around a position, nearest first: all within
+     * {@code radiusMeters} when a radius is given (at most {@code k} of
+     * them), otherwise the {@code k} nearest.
+     */
+    public List<NearbyRequestDTO> findNearby(double latitude, double longitude, Double radiusMeters, int k) {
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid coordinates");
+        }
+        if (k < 1 || k > MAX_NEARBY_RESULTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "K must be between 1 and " + MAX_NEARBY_RESULTS);
+        }
+        if (radiusMeters == null) {
+            return nearest(latitude, longitude, k);
+        }
+        if (radiusMeters <= 0 || radiusMeters > MAX_RADIUS_METERS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Radius must be between 0 and " + (int) MAX_RADIUS_METERS + " meters");
+        }
+        List<NearbyRequestDTO> hits = withinRadius(latitude, longitude, radiusMeters);
+        return hits.size() > k ? hits.subList(0, k) : hits;
+    }
+
+    public List<NearbyRequestDTO> nearest(double latitude, double longitude, int k) {
+        return toDTOs(grid.nearest(latitude, longitude, k));
+    }
+
+    public List<NearbyRequestDTO> withinRadius(double latitude, double longitude, double radiusMeters) {
+        return toDTOs(grid.withinRadius(latitude, longitude, radiusMeters));
+    }
+
+    public int size() {
+        return grid.size();
+    }
+
+    // the snapshot tells whether the request (still) belongs in the index
+    private static void update(GeoGrid<RequestGetDTO> grid, RequestGetDTO request) {
+        if (request.getStatus() == RequestStatus.WAITING
+                && request.getLatitude() != null && request.getLongitude() != null) {
+            grid.put(request.getId(), request.getLatitude(), request.getLongitude(), request);
+        }
+        else {
+            grid.remove(request.getId());
+        }
+    }
+
+    private List<NearbyRequestDTO> toDTOs(List<GeoGrid.Hit<RequestGetDTO>> hits) {
+        return hits.stream()
+                .map(hit -> new NearbyRequestDTO(hit.getValue(), hit.getDistanceMeters()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,380 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestAction;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEventType;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestTransition;
+import ch.uzh.ifi.hase.soprafs24.entity.Request;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.event.RequestEvent;
+import ch.uzh.ifi.hase.soprafs24.event.RequestTransitionEvent;
+import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Request Lifecycle
+ * The state machine behind volunteering, accepting, completing, cancelling,
+ * marking as done, feedback and deleting. Every action is one row of a
+ * transition table: the statuses it may start from, the status it ends in,
+ * the guards checked in order (each with the error it raises), how the
+ * change is written and the hooks run afterwards (feed events,
+ * notifications and the volunteer's reputation counters). {@link #fire} loads the request once and applies its row
+ * in a single pass.
+ * Every call is recorded in the "request.transition" timer, tagged with the
+ * action, the status it started from and the outcome (applied, rolled_back,
+ * rejected, not_found, conflict or error), so counts and latency histograms
+ * are available per transition. A transition that went through is only
+ * recorded once its transaction finished, as applied if it committed.
+ * Runs in the caller's transaction; RequestService is the only caller.
+ */
+@Component
+public class RequestLifecycle {
+
+    static final String TIMER_NAME = "request.transition";
+
+    private final RequestRepository requestRepository;
+    private final UserService userService;
+    private final NotificationService notificationService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final DTOMapper dtoMapper;
+    private final Map<RequestAction, Rule> rules = new EnumMap<>(RequestAction.class);
+
+    public RequestLifecycle(RequestRepository requestRepository, UserService userService,
+                            NotificationService notificationService, ApplicationEventPublisher eventPublisher,
+                            MeterRegistry meterRegistry) {
+        this.requestRepository = requestRepository;
+        this.userService = userService;
+        this.notificationService = notificationService;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.dtoMapper = DTOMapper.INSTANCE;
+
+        rule(RequestAction.VOLUNTEER, RequestStatus.VOLUNTEERED, EnumSet.of(RequestStatus.WAITING))
+                .guard(transition -> !transition.byPoster(), HttpStatus.BAD_REQUEST,
+                        "You cannot volunteer for your own request.")
+                .guardFrom("You can only volunteer for requests that are still waiting.")
+                .writeWith(this::volunteerIfWaiting)
+                .then(transition -> publishEvent(RequestEventType.VOLUNTEERED, transition))
+                .then(transition -> publishTransition(RequestTransition.VOLUNTEERED, transition));
+
+        rule(RequestAction.ACCEPT, RequestStatus.ACCEPTING, EnumSet.of(RequestStatus.VOLUNTEERED))
+                .guardFrom("Only requests with status VOLUNTEERED can be accepted")
+                .guard(transition -> transition.volunteer != null
+                                && transition.volunteer.getId().equals(transition.volunteerId), HttpStatus.BAD_REQUEST,
+                        "You can only accept the volunteer who applied for this request")
+                .then(transition -> publishEvent(RequestEventType.STATUS_CHANGED, transition))
+                .then(transition -> publishTransition(RequestTransition.ACCEPTED, transition));
+
+        rule(RequestAction.COMPLETE, RequestStatus.COMPLETED, EnumSet.of(RequestStatus.ACCEPTING))
+                .guardFrom("Only requests with ACCEPTING status can be completed")
+                .guard(transition -> transition.volunteer != null, HttpStatus.BAD_REQUEST,
+                        "Only requests with ACCEPTING status can be completed")
+                .guard(Transition::byVolunteer, HttpStatus.UNAUTHORIZED, "Invalid token")
+                .then(transition -> publishEvent(RequestEventType.STATUS_CHANGED, transition))
+                .then(transition -> publishTransition(RequestTransition.COMPLETED, transition));
+
+        rule(RequestAction.CANCEL, RequestStatus.WAITING, EnumSet.of(RequestStatus.VOLUNTEERED, RequestStatus.ACCEPTING))
+                .guard(transition -> transition.volunteer != null, HttpStatus.BAD_REQUEST, "It's not volunteered")
+                .guard(transition -> transition.byPoster() || transition.byVolunteer(), HttpStatus.UNAUTHORIZED,
+                        "Invalid user")
+                .guardFrom("Only requests with status ACCEPTING or VOLUNTEERED can be canceled")
+                .change(transition -> transition.request.setVolunteer(null))
+                .then(transition -> publishTransition(transition.byPoster()
+                        ? RequestTransition.POSTER_CANCELLED
+                        : RequestTransition.VOLUNTEER_CANCELLED, transition))
+                .then(transition -> publishEvent(RequestEventType.CANCELLED, transition));
+
+        rule(RequestAction.MARK_DONE, RequestStatus.DONE, EnumSet.of(RequestStatus.COMPLETED))
+                .guard(Transition::byPoster, HttpStatus.UNAUTHORIZED, "Invalid token")
+                .guardFrom("Only completed requests can be mark as done")
+                .then(transition -> withVolunteer(transition, userService::recordCompletion))
+                .then(transition -> publishEvent(RequestEventType.STATUS_CHANGED, transition));
+
+        rule(RequestAction.FEEDBACK, RequestStatus.DONE, EnumSet.of(RequestStatus.DONE))
+                .guard(Transition::byPoster, HttpStatus.UNAUTHORIZED, "Invalid token")
+                .guardFrom("Only requests be marked as done can be feedback")
+                .then(transition -> withVolunteer(transition, volunteerId -> userService.recordRating(volunteerId,
+                        transition.previousRating, transition.request.getRating())))
+                .then(transition -> publishTransition(RequestTransition.FEEDBACK, transition));
+
+        rule(RequestAction.DELETE, RequestStatus.DELETED, EnumSet.complementOf(EnumSet.of(RequestStatus.DELETED)))
+                .guard(transition -> transition.byAdmin() || transition.byPoster(), HttpStatus.UNAUTHORIZED,
+                        "Invalid token")
+                .guardFrom("The request has been deleted")
+                .change(transition -> {
+                    transition.request.setDeletedAt(LocalDate.now());
+                    transition.request.setDeletedByUserId(transition.actor.getId());
+                })
+                .then(this::flush)
+                .then(transition -> withVolunteer(transition, volunteerId -> userService.removeReputation(volunteerId,
+                        transition.from == RequestStatus.DONE ? 1 : 0,
+                        transition.previousRating == null ? 0 : transition.previousRating,
+                        transition.previousRating == null ? 0 : 1)))
+                .then(transition -> notificationService.deleteNotificationsForRequest(transition.request))
+                .then(transition -> publishEvent(RequestEventType.DELETED, transition));
+    }
+
+    /**
+     * Applies {@code action} to the request as {@code actor}.
+     */
+    public Request fire(RequestAction action, Long requestId, UserPrincipal actor) {
+        return fire(action, requestId, actor, null, null);
+    }
+
+    /**
+     * Applies {@code action} to the request. {@code volunteerId} names the
+     * volunteer an ACCEPT is meant for, {@code changes} are extra field
+     * updates (feedback text, delete reason) written together with the
+     * status. Both may be null. Guard failures are thrown as
+     * ResponseStatusException, the request is left untouched.
+     */
+    public Request fire(RequestAction action, Long requestId, UserPrincipal actor, Long volunteerId,
+                        Consumer<Request> changes) {
+        Rule rule = rules.get(action);
+        long started = System.nanoTime();
+        RequestStatus from = null;
+        String outcome = "error";
+        boolean deferred = false;
+        try {
+            Request request = requestRepository.findById(requestId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                            "Request not found with id: " + requestId));
+            from = request.getStatus();
+            Transition transition = new Transition(request, actor, volunteerId);
+            rule.apply(transition, changes);
+            // the commit can still fail on the version check, so the time runs up to it
+            RequestStatus appliedFrom = from;
+            TransactionCallbacks.afterCompletion(committed ->
+                    record(action, appliedFrom, committed ? "applied" : "rolled_back", started));
+            deferred = true;
+            return request;
+        }
+        catch (ResponseStatusException ex) {
+            outcome = outcomeOf(ex.getStatus());
+            throw ex;
+        }
+        finally {
+            if (!deferred) {
+                record(action, from, outcome, started);
+            }
+        }
+    }
+
+    private void record(RequestAction action, RequestStatus from, String outcome, long started) {
+        Timer.builder(TIMER_NAME)
+                .tag("action", action.name().toLowerCase())
+                .tag("from", from == null ? "none" : from.name().toLowerCase())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The statuses {@code action} may start from.
+     */
+    public Set<RequestStatus> allowedFrom(RequestAction action) {
+        return Collections.unmodifiableSet(rules.get(action).from);
+    }
+
+    /**
+     * The status {@code action} ends in.
+     */
+    public RequestStatus target(RequestAction action) {
+        return rules.get(action).to;
+    }
+
+    private static String outcomeOf(HttpStatus status) {
+        switch (status) {
+            case NOT_FOUND:
+                return "not_found";
+            case CONFLICT:
+                return "conflict";
+            default:
+                return "rejected";
+        }
+    }
+
+    private Rule rule(RequestAction action, RequestStatus to, Set<RequestStatus> from) {
+        Rule rule = new Rule(to, from);
+        rules.put(action, rule);
+        return rule;
+    }
+
+    private void save(Transition transition) {
+        requestRepository.save(transition.request);
+    }
+
+    // writes the request row before the hooks touch the volunteer, a bulk delete
+    // locks the rows in the same order
+    private void flush(Transition transition) {
+        requestRepository.flush();
+    }
+
+    // the guards can race with another volunteer, the conditional update can't
+    private void volunteerIfWaiting(Transition transition) {
+        Request request = transition.request;
+        User volunteer = userService.getUserById(transition.actor.getId());
+        LocalDateTime now = LocalDateTime.now();
+        if (requestRepository.volunteerIfWaiting(request.getId(), volunteer, now) == 0) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Someone else volunteered for this request first.");
+        }
+        // the update cleared the persistence context, the loaded copy is detached
+        // now: bring it up to date instead of reading the row again
+        request.setStatus(RequestStatus.VOLUNTEERED);
+        request.setVolunteer(volunteer);
+        request.setUpdatedAt(now);
+        if (request.getVersion() != null) {
+            request.setVersion(request.getVersion() + 1);
+        }
+        transition.volunteer = volunteer;
+    }
+
+    private static void withVolunteer(Transition transition, Consumer<Long> action) {
+        if (transition.volunteer != null) {
+            action.accept(transition.volunteer.getId());
+        }
+    }
+
+    // listeners run after the commit, see RequestFeedBroadcaster; flushed first
+    // so the snapshot carries the version the commit writes
+    private void publishEvent(RequestEventType type, Transition transition) {
+        requestRepository.flush();
+        eventPublisher.publishEvent(new RequestEvent(type, dtoMapper.convertEntityToRequestGetDTO(transition.request)));
+    }
+
+    // notifications are written after the commit, see NotificationDispatcher
+    private void publishTransition(RequestTransition type, Transition transition) {
+        eventPublisher.publishEvent(RequestTransitionEvent.of(type, transition.request, transition.volunteer));
+    }
+
+    /**
+     * One request on its way through a rule. {@code from}, {@code previousRating}
+     * and {@code volunteer} are what the request had when it was loaded (the
+     * volunteer is the new one after a VOLUNTEER), hooks use them for the
+     * notifications and the reputation counters.
+     */
+    static final class Transition {
+        private final Request request;
+        private final UserPrincipal actor;
+        private final Long volunteerId;
+        private final RequestStatus from;
+        private final Integer previousRating;
+        private User volunteer;
+
+        private Transition(Request request, UserPrincipal actor, Long volunteerId) {
+            this.request = request;
+            this.actor = actor;
+            this.volunteerId = volunteerId;
+            this.from = request.getStatus();
+            this.previousRating = request.getRating();
+            this.volunteer = request.getVolunteer();
+        }
+
+        private boolean byPoster() {
+            return actor != null && actor.getId().equals(request.getPoster().getId());
+        }
+
+        private boolean byVolunteer() {
+            return actor != null && volunteer != null && actor.getId().equals(volunteer.getId());
+        }
+
+        private boolean byAdmin() {
+            return actor != null && actor.getUsername().equals("admin");
+        }
+    }
+
+    private static final class Guard {
+        private final Predicate<Transition> allows;
+        private final HttpStatus status;
+        private final String message;
+
+        private Guard(Predicate<Transition> allows, HttpStatus status, String message) {
+            this.allows = allows;
+            this.status = status;
+            this.message = message;
+        }
+    }
+
+    private final class Rule {
+        private final RequestStatus to;
+        private final Set<RequestStatus> from;
+        private final List<Guard> guards = new ArrayList<>();
+        private final List<Consumer<Transition>> changes = new ArrayList<>();
+        private final List<Consumer<Transition>> hooks = new ArrayList<>();
+        private Consumer<Transition> writer;
+
+        private Rule(RequestStatus to, Set<RequestStatus> from) {
+            this.to = to;
+            this.from = from;
+        }
+
+        private Rule guard(Predicate<Transition> allows, HttpStatus status, String message) {
+            guards.add(new Guard(allows, status, message));
+            return this;
+        }
+
+        // the start status check, placed where the old if-chains had it
+        private Rule guardFrom(String message) {
+            return guard(transition -> from.contains(transition.request.getStatus()), HttpStatus.BAD_REQUEST, message);
+        }
+
+        private Rule change(Consumer<Transition> change) {
+            changes.add(change);
+            return this;
+        }
+
+        // replaces the default "set status, apply changes, save"
+        private Rule writeWith(Consumer<Transition> writer) {
+            this.writer = writer;
+            return this;
+        }
+
+        private Rule then(Consumer<Transition> hook) {
+            hooks.add(hook);
+            return this;
+        }
+
+        private void apply(Transition transition, Consumer<Request> callerChanges) {
+            for (Guard guard : guards) {
+                if (!guard.allows.test(transition)) {
+                    throw new ResponseStatusException(guard.status, guard.message);
+                }
+            }
+            if (writer != null) {
+                writer.accept(transition);
+            }
+            else {
+                transition.request.setStatus(to);
+                changes.forEach(change -> change.accept(transition));
+                if (callerChanges != null) {
+                    callerChanges.accept(transition.request);
+                }
+                save(transition);
+            }
+            hooks.forEach(hook -> hook.accept(transition));
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.event.RequestEvent;
+import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestSearchHitDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+
+/**
+ * Request Search Index
+ * In-memory inverted index over the title and description of every request
+ * that is not deleted, ranked with BM25. Title terms are counted twice, so a
+ * match in the title outweighs the same match in the description. Status and
+ * emergency level filters are checked against the indexed snapshot while
+ * scoring, so filtered searches cost no more than unfiltered ones.
+ * Loaded at startup and kept in sync through the committed RequestEvents.
+ */
+@Component
+public class RequestSearchIndex {
+
+    public static final int MAX_SEARCH_RESULTS = 100;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TITLE_WEIGHT = 2;
+
+    private final Logger log = LoggerFactory.getLogger(RequestSearchIndex.class);
+
+    private final RequestRepository requestRepository;
+    // term -> request id -> term frequency
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    private final Map<Long, Document> documents = new HashMap<>();
+    private long totalLength;
+    private final SnapshotVersions versions = new SnapshotVersions();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public RequestSearchIndex(RequestRepository requestRepository) {
+        this.requestRepository = requestRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            versions.startRebuild();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        List<RequestGetDTO> requests = new ArrayList<>();
+        requestRepository.findByStatusNot(RequestStatus.DELETED)
+                .forEach(request -> requests.add(DTOMapper.INSTANCE.convertEntityToRequestGetDTO(request)));
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            totalLength = 0;
+            for (RequestGetDTO request : requests) {
+                if (versions.advanceLoaded(request)) {
+                    updateLocked(request);
+                }
+            }
+            // events committed while the rows were read may be newer than them
+            for (RequestGetDTO request : versions.finishRebuild()) {
+                if (versions.advanceLoaded(request)) {
+                    updateLocked(request);
+                }
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Request search index loaded with {} requests", requests.size());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onRequestEvent(RequestEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (versions.advance(event.getRequest())) {
+                updateLocked(event.getRequest());
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Best matching requests for {@code query}, highest score first. Empty
+     * status or emergency level collections don't filter.
+     */
+    public List<RequestSearchHitDTO> search(String query, Collection<RequestStatus> statuses,
+                                           Collection<RequestEmergencyLevel> emergencyLevels, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search query must not be empty");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_RESULTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Limit must be between 1 and " + MAX_SEARCH_RESULTS);
+        }
+        // a term repeated in the query counts once
+        Set<String> terms = new LinkedHashSet<>(SearchAnalyzer.analyze(query));
+
+        lock.readLock().lock();
+        try {
+            if (documents.isEmpty() || terms.isEmpty()) {
+                return new ArrayList<>();
+            }
+            int documentCount = documents.size();
+            double averageLength = (double) totalLength / documentCount;
+            Map<Long, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<Long, Integer> termPostings = postings.get(term);
+                if (termPostings == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (documentCount - termPostings.size() + 0.5) / (termPostings.size() + 0.5));
+                for (Map.Entry<Long, Integer> posting : termPostings.entrySet()) {
+                    Document document = documents.get(posting.getKey());
+                    if (!document.matches(statuses, emergencyLevels)) {
+                        continue;
+                    }
+                    double frequency = posting.getValue();
+                    double score = idf * frequency * (K1 + 1)
+                            / (frequency + K1 * (1 - B + B * document.length / averageLength));
+                    scores.merge(posting.getKey(), score, Double::sum);
+                }
+            }
+            return topHits(scores, limit);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<RequestSearchHitDTO> topHits(Map<Long, Double> scores, int limit) {
+        // ties go to the newer (higher id) request
+        Comparator<Map.Entry<Long, Double>> byScore = Map.Entry.<Long, Double>comparingByValue()
+                .thenComparing(Map.Entry.comparingByKey());
+        PriorityQueue<Map.Entry<Long, Double>> best = new PriorityQueue<>(limit + 1, byScore);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            best.add(entry);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<RequestSearchHitDTO> hits = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            Map.Entry<Long, Double> entry = best.poll();
+            hits.add(0, new RequestSearchHitDTO(documents.get(entry.getKey()).request, entry.getValue()));
+        }
+        return hits;
+    }
+
+    private void updateLocked(RequestGetDTO request) {
+        Document previous = documents.remove(request.getId());
+        if (previous != null) {
+            totalLength -= previous.length;
+            for (String term : previous.termFrequencies.keySet()) {
+                Map<Long, Integer> termPostings = postings.get(term);
+                termPostings.remove(request.getId());
+                if (termPostings.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        if (request.getStatus() == null || request.getStatus() == RequestStatus.DELETED) {
+            return;
+        }
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        for (String term : SearchAnalyzer.analyze(request.getTitle())) {
+            termFrequencies.merge(term, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String term : SearchAnalyzer.analyze(request.getDescription())) {
+            termFrequencies.merge(term, 1, Integer::sum);
+        }
+        Document document = new Document(request, termFrequencies);
+        documents.put(request.getId(), document);
+        totalLength += document.length;
+        termFrequencies.forEach((term, frequency) ->
+                postings.computeIfAbsent(term, key -> new HashMap<>()).put(request.getId(), frequency));
+    }
+
+    private static final class Document {
+        private final RequestGetDTO request;
+        private final Map<String, Integer> termFrequencies;
+        private final int length;
+
+        private Document(RequestGetDTO request, Map<String, Integer> termFrequencies) {
+            this.request = request;
+            this.termFrequencies = termFrequencies;
+            this.length = termFrequencies.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        private boolean matches(Collection<RequestStatus> statuses, Collection<RequestEmergencyLevel> emergencyLevels) {
+            return (statuses == null || statuses.isEmpty() || statuses.contains(request.getStatus()))
+                    && (emergencyLevels == null || emergencyLevels.isEmpty()
+                        || emergencyLevels.contains(request.getEmergencyLevel()));
+        }
+    }
+}
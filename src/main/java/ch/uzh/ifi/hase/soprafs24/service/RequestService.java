@@ -1,23 +1,39 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
+import ch.uzh.ifi.hase.soprafs24.constant.RequestAction;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEventType;
 import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.Request;
-import ch.uzh.ifi.hase.soprafs24.entity.User;
-import ch.uzh.ifi.hase.soprafs24.repository.NotificationRepository;
+import ch.uzh.ifi.hase.soprafs24.event.RequestEvent;
 import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.RequestSpecifications;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.FeedbackDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.PageDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,29 +42,73 @@ public class RequestService {
 
     private final Logger log = LoggerFactory.getLogger(RequestService.class);
 
+    public static final int MAX_BULK_DELETE_SIZE = 1000;
+    public static final int MAX_FEED_PAGE_SIZE = 100;
+
+    // the id makes the order total, so rows never move between pages
+    private static final Map<String, Sort> FEED_SORTS = Map.of(
+            "newest", Sort.by(Sort.Order.desc("publishedAt"), Sort.Order.desc("id")),
+            "emergency", Sort.by(Sort.Order.asc("emergencyLevel"), Sort.Order.desc("publishedAt"), Sort.Order.desc("id")));
+
     private final RequestRepository requestRepository;
     private final NotificationService notificationService;
     private final UserService userService;
-    private final NotificationRepository notificationRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RequestLifecycle requestLifecycle;
     private final DTOMapper dtoMapper;
 
     @Autowired
-    public RequestService(RequestRepository requestRepository, NotificationService notificationService, UserService userService, NotificationRepository notificationRepository) {
+    public RequestService(RequestRepository requestRepository, NotificationService notificationService, UserService userService,
+                          ApplicationEventPublisher eventPublisher, RequestLifecycle requestLifecycle) {
         this.requestRepository = requestRepository;
         this.notificationService = notificationService;
         this.userService = userService;
-        this.notificationRepository = notificationRepository;
+        this.eventPublisher = eventPublisher;
+        this.requestLifecycle = requestLifecycle;
         this.dtoMapper = DTOMapper.INSTANCE;
     }
 
-    public List<Request> getRequests(String token) {
-        User user = userService.getUserByToken(token);
+    // listeners run after the commit, see RequestFeedBroadcaster
+    // flushed first so the snapshot carries the version the commit writes,
+    // the in-memory indexes order snapshots by it
+    private void publishEvent(RequestEventType type, Request request) {
+        requestRepository.flush();
+        eventPublisher.publishEvent(new RequestEvent(type, dtoMapper.convertEntityToRequestGetDTO(request)));
+    }
+
+    public List<Request> getRequests(UserPrincipal user) {
         if (!user.getUsername().equals("admin")) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
         }
-        return requestRepository.findAll().stream()
-                .filter(request -> request.getStatus() != RequestStatus.DELETED)
+        return requestRepository.findByStatusNot(RequestStatus.DELETED);
+    }
+
+    /**
+     * One page of the admin listing, newest first. Without a status filter
+     * all requests except deleted ones are listed.
+     */
+    public PageDTO<RequestGetDTO> getAdminRequestPage(UserPrincipal user, List<RequestStatus> statuses,
+                                                      int page, int size) {
+        if (!user.getUsername().equals("admin")) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
+        }
+        if (page < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page must not be negative");
+        }
+        if (size < 1 || size > MAX_FEED_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Size must be between 1 and " + MAX_FEED_PAGE_SIZE);
+        }
+        Specification<Request> filter = statuses == null || statuses.isEmpty()
+                ? RequestSpecifications.isNotDeleted()
+                : RequestSpecifications.statusIn(statuses);
+        Page<Request> result = requestRepository.findAll(filter,
+                PageRequest.of(page, size, Sort.by(Sort.Order.desc("id"))));
+
+        List<RequestGetDTO> content = result.getContent().stream()
+                .map(dtoMapper::convertEntityToRequestGetDTO)
                 .collect(Collectors.toList());
+        return new PageDTO<>(content, page, size, result.getTotalElements(), result.getTotalPages());
     }
 
     public Request createRequest(Request newRequest, Long userId) {
@@ -69,6 +129,7 @@ public class RequestService {
 
         newRequest = requestRepository.save(newRequest);
         requestRepository.flush();
+        publishEvent(RequestEventType.CREATED, newRequest);
 
         log.debug("Created Information for Request: {}", newRequest);
         return newRequest;
@@ -83,12 +144,16 @@ public class RequestService {
         return request;
     }
 
-    public Request updateRequest(Long id, Request updatedRequest, String token) {
+    public Request updateRequest(Long id, Request updatedRequest, UserPrincipal user) {
         Request existingRequest = getRequestById(id);
-        User user = userService.getUserByToken(token);
-        if (!user.getUsername().equals("admin") && !existingRequest.getPoster().getToken().equals(token)) {
+        if (!user.getUsername().equals("admin") && !existingRequest.getPoster().getId().equals(user.getId())) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
         }
+        // status moves run through RequestLifecycle, their guards and hooks must not be skipped
+        if (updatedRequest.getStatus() != null && updatedRequest.getStatus() != existingRequest.getStatus()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "The status can only be changed with the request actions");
+        }
 
         if (updatedRequest.getTitle() != null) {
             existingRequest.setTitle(updatedRequest.getTitle());
@@ -105,9 +170,6 @@ public class RequestService {
         if (updatedRequest.getFeedback() != null) {
             existingRequest.setFeedback(updatedRequest.getFeedback());
         }
-        if (updatedRequest.getStatus() != null) {
-            existingRequest.setStatus(updatedRequest.getStatus());
-        }
         if (updatedRequest.getEmergencyLevel() != null) {
             existingRequest.setEmergencyLevel(updatedRequest.getEmergencyLevel());
         }
@@ -131,84 +193,89 @@ public class RequestService {
         }
 
         requestRepository.save(existingRequest);
+        publishEvent(RequestEventType.UPDATED, existingRequest);
         return existingRequest;
     }
 
-    public void deleteRequest(Long id, String token, String reason) {
-        User user = userService.getUserByToken(token);
-        Request existingRequest = getRequestById(id);
-        if (!user.getUsername().equals("admin") && !user.getId().equals(existingRequest.getPoster().getId())) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
-        }
-        if (existingRequest.getStatus().equals(RequestStatus.DELETED)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The request has been deleted");
-        }
-        existingRequest.setStatus(RequestStatus.DELETED);
-        existingRequest.setDeletedAt(LocalDate.now());
-        existingRequest.setDeletedByUserId(user.getId());
-        existingRequest.setDeleteReason(reason);
-
-        requestRepository.save(existingRequest);
-        notificationRepository.deleteByRequest(existingRequest);
+    public void deleteRequest(Long id, UserPrincipal user, String reason) {
+        requestLifecycle.fire(RequestAction.DELETE, id, user, null, request -> request.setDeleteReason(reason));
     }
 
-    public void acceptRequest(Long requestId, Long volunteerId) {
-        Request existingRequest = getRequestById(requestId);
-        if (existingRequest.getStatus() != RequestStatus.VOLUNTEERED) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only requests with status VOLUNTEERED can be accepted");
+    /**
+     * Moderation sweep: soft-deletes all given requests that are not deleted
+     * yet and removes their notifications, with one bulk statement each
+     * instead of one round trip per row. Returns how many requests were asked
+     * for, deleted and skipped (unknown or already deleted), and how many
+     * notifications were removed.
+     */
+    public Map<String, Integer> deleteRequests(List<Long> requestIds, UserPrincipal user, String reason) {
+        if (!user.getUsername().equals("admin")) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
         }
-        if (existingRequest.getVolunteer() == null || !existingRequest.getVolunteer().getId().equals(volunteerId)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "You can only accept the volunteer who applied for this request");
+        if (requestIds == null || requestIds.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No requests to delete");
+        }
+        Set<Long> ids = new LinkedHashSet<>(requestIds);
+        if (ids.size() > MAX_BULK_DELETE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_BULK_DELETE_SIZE + " requests can be deleted at once");
+        }
+
+        // snapshots for the feed are taken before the bulk update detaches the entities
+        List<RequestGetDTO> deletedRequests = new ArrayList<>();
+        List<Long> deletableIds = new ArrayList<>();
+        // volunteer id -> {done requests, rating sum, ratings} taken off their reputation
+        Map<Long, long[]> lostReputation = new LinkedHashMap<>();
+        for (Request request : requestRepository.findUndeletedByIdIn(ids)) {
+            RequestGetDTO snapshot = dtoMapper.convertEntityToRequestGetDTO(request);
+            snapshot.setStatus(RequestStatus.DELETED);
+            // the bulk update bumps the version
+            if (request.getVersion() != null) {
+                snapshot.setVersion(request.getVersion() + 1);
+            }
+            deletedRequests.add(snapshot);
+            deletableIds.add(request.getId());
+            if (request.getVolunteer() != null) {
+                long[] lost = lostReputation.computeIfAbsent(request.getVolunteer().getId(), id -> new long[3]);
+                lost[0] += request.getStatus() == RequestStatus.DONE ? 1 : 0;
+                lost[1] += request.getRating() == null ? 0 : request.getRating();
+                lost[2] += request.getRating() == null ? 0 : 1;
+            }
         }
 
-        User volunteer = userService.getUserById(volunteerId);
-        existingRequest.setStatus(RequestStatus.ACCEPTING);
-        requestRepository.save(existingRequest);
-
-        notificationService.acceptNotification(existingRequest, volunteer);
-    }
-
-    public void completeRequest(Long id, String token) {
-        Request existingRequest = getRequestById(id);
-        if (existingRequest.getStatus() != RequestStatus.ACCEPTING || existingRequest.getVolunteer() == null) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only requests with ACCEPTING status can be completed");
+        int deleted = 0;
+        int notificationsDeleted = 0;
+        if (!deletableIds.isEmpty()) {
+            deleted = requestRepository.softDeleteByIdIn(deletableIds, LocalDate.now(), user.getId(), reason,
+                    LocalDateTime.now());
+            notificationsDeleted = notificationService.deleteNotificationsForRequests(deletableIds);
+            lostReputation.forEach((volunteerId, lost) ->
+                    userService.removeReputation(volunteerId, (int) lost[0], lost[1], (int) lost[2]));
         }
-        if (!existingRequest.getVolunteer().getToken().equals(token)) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
+        for (RequestGetDTO snapshot : deletedRequests) {
+            eventPublisher.publishEvent(new RequestEvent(RequestEventType.DELETED, snapshot));
         }
+        log.info("Bulk delete by {}: {} of {} requests deleted, {} notifications removed",
+                user.getUsername(), deleted, ids.size(), notificationsDeleted);
 
-        existingRequest.setStatus(RequestStatus.COMPLETED);
-        requestRepository.save(existingRequest);
+        Map<String, Integer> result = new LinkedHashMap<>();
+        result.put("requested", ids.size());
+        result.put("deleted", deleted);
+        result.put("skipped", ids.size() - deleted);
+        result.put("notificationsDeleted", notificationsDeleted);
+        return result;
+    }
 
-        notificationService.completeNotification(existingRequest);
+    public void acceptRequest(Long requestId, Long volunteerId) {
+        requestLifecycle.fire(RequestAction.ACCEPT, requestId, null, volunteerId, null);
     }
 
-    public void cancelRequest(Long id, String token) {
-        Request existingRequest = getRequestById(id);
-        User poster = existingRequest.getPoster();
-        User volunteer = existingRequest.getVolunteer();
-        if (volunteer == null) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "It's not volunteered");
-        }
-        if (!existingRequest.getPoster().getToken().equals(token) && !existingRequest.getVolunteer().getToken().equals(token)) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid user");
-        }
-        if (poster.getToken().equals(token)) {
-            if (existingRequest.getStatus() != RequestStatus.ACCEPTING && existingRequest.getStatus() != RequestStatus.VOLUNTEERED) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only requests with status ACCEPTING or VOLUNTEERED can be canceled");
-            }
-            notificationService.posterCancelNotification(existingRequest);
-        }
-        else if (volunteer.getToken().equals(token)) {
-            if (existingRequest.getStatus() != RequestStatus.VOLUNTEERED && existingRequest.getStatus() != RequestStatus.ACCEPTING) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only requests with status ACCEPTING or VOLUNTEERED can be canceled");
-            }
-            notificationService.volunteerCancelNotification(existingRequest);
-        }
+    public void completeRequest(Long id, UserPrincipal user) {
+        requestLifecycle.fire(RequestAction.COMPLETE, id, user);
+    }
 
-        existingRequest.setStatus(RequestStatus.WAITING);
-        existingRequest.setVolunteer(null);
-        requestRepository.save(existingRequest);
+    public void cancelRequest(Long id, UserPrincipal user) {
+        requestLifecycle.fire(RequestAction.CANCEL, id, user);
     }
 
     public List<Request> getWaitingRequests() {
@@ -217,53 +284,59 @@ public class RequestService {
         return waitingRequests;
     }
 
-    public void volunteerRequest(Long requestId, String token) {
-        Request request = getRequestById(requestId);
-        User volunteer = userService.getUserByToken(token);
-        if (request.getPoster().getId().equals(volunteer.getId())) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "You cannot volunteer for your own request.");
-        }
-
-        if (!request.getStatus().equals(RequestStatus.WAITING)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "You can only volunteer for requests that are still waiting.");
-        }
-        request.setVolunteer(volunteer);
-        request.setStatus(RequestStatus.VOLUNTEERED);
-        requestRepository.save(request);
-
-        notificationService.volunteerNotification(request, volunteer);
+    /**
+     * One page of the active (WAITING) feed. All filters are optional, the
+     * date range is inclusive. Sort orders are "newest" (default) and
+     * "emergency" (HIGH first, newest first within a level).
+     */
+    public PageDTO<RequestGetDTO> getActiveRequestPage(List<RequestEmergencyLevel> emergencyLevels, String countryCode,
+                                                       LocalDate createdFrom, LocalDate createdUntil,
+                                                       String sort, int page, int size) {
+        if (page < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page must not be negative");
+        }
+        if (size < 1 || size > MAX_FEED_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Size must be between 1 and " + MAX_FEED_PAGE_SIZE);
+        }
+        if (createdFrom != null && createdUntil != null && createdFrom.isAfter(createdUntil)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Date range is empty");
+        }
+        Sort order = FEED_SORTS.get(sort);
+        if (order == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown sort order: " + sort);
+        }
+
+        Specification<Request> filter = Specification.where(RequestSpecifications.hasStatus(RequestStatus.WAITING))
+                .and(RequestSpecifications.emergencyLevelIn(emergencyLevels))
+                .and(RequestSpecifications.inCountry(countryCode))
+                .and(RequestSpecifications.createdFrom(createdFrom))
+                .and(RequestSpecifications.createdUntil(createdUntil));
+        Page<Request> result = requestRepository.findAll(filter, PageRequest.of(page, size, order));
+
+        List<RequestGetDTO> content = result.getContent().stream()
+                .map(dtoMapper::convertEntityToRequestGetDTO)
+                .collect(Collectors.toList());
+        return new PageDTO<>(content, page, size, result.getTotalElements(), result.getTotalPages());
     }
 
-    public void markRequestAsDone(Long requestId, String token) {
-        Request existingRequest = getRequestById(requestId);
-        if (!existingRequest.getPoster().getToken().equals(token)) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
-        }
-        if (existingRequest.getStatus() != RequestStatus.COMPLETED) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only completed requests can be mark as done");
-        }
-        existingRequest.setStatus(RequestStatus.DONE);
-        requestRepository.save(existingRequest);
+    public void volunteerRequest(Long requestId, UserPrincipal user) {
+        requestLifecycle.fire(RequestAction.VOLUNTEER, requestId, user);
     }
 
-    public void feedback(Long requestId, String token, String feedback, Integer rating) {
-        Request existingRequest = getRequestById(requestId);
-        if (!existingRequest.getPoster().getToken().equals(token)) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
-        }
-        if (existingRequest.getStatus() != RequestStatus.DONE) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only requests be marked as done can be feedback");
-        }
-        existingRequest.setFeedback(feedback);
-        existingRequest.setRating(rating);
-        requestRepository.save(existingRequest);
+    public void markRequestAsDone(Long requestId, UserPrincipal user) {
+        requestLifecycle.fire(RequestAction.MARK_DONE, requestId, user);
+    }
 
-        notificationService.feedbackNotification(existingRequest);
+    public void feedback(Long requestId, UserPrincipal user, String feedback, Integer rating) {
+        requestLifecycle.fire(RequestAction.FEEDBACK, requestId, user, null, request -> {
+            request.setFeedback(feedback);
+            request.setRating(rating);
+        });
     }
 
-    public List<Request> getRequestByPoster(String token) {
-        User user = userService.getUserByToken(token);
-        return requestRepository.findByPoster(user);
+    public List<Request> getRequestByPoster(UserPrincipal user) {
+        return requestRepository.findByPosterId(user.getId());
     }
 
     public List<FeedbackDTO> getFeedbackById(Long volunteerId) {
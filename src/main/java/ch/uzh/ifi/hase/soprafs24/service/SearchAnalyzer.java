@@ -0,0 +1,110 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Search Analyzer
+ * Turns request text into index terms: lower-cases, splits on everything
+ * that is not a letter or digit, folds German umlauts, drops English and
+ * German stop words and applies light suffix stemming for both languages.
+ * Requests are not tagged with a language, so every token goes through both
+ * stemmers; documents and queries are analyzed the same way, so "helping",
+ * "helped" and "helps" meet at "help" and "Einkäufe"/"Einkauf" at "einkauf".
+ */
+public final class SearchAnalyzer {
+
+    private static final int MIN_STEM_LENGTH = 3;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            // English
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "from", "has", "have", "i", "in",
+            "is", "it", "me", "my", "of", "on", "or", "our", "so", "that", "the", "this", "to", "was", "we",
+            "with", "you", "your",
+            // German, after umlaut folding
+            "am", "auf", "aus", "bei", "beim", "bin", "bitte", "das", "dass", "dem", "den", "der", "des", "die", "du",
+            "ein", "eine", "einem", "einen", "einer", "es", "fur", "ich", "ihr", "im", "ist", "mich", "mir",
+            "mit", "nach", "oder", "sie", "sind", "uber", "und", "uns", "von", "wir", "zu", "zum", "zur");
+
+    private SearchAnalyzer() {
+    }
+
+    public static List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            }
+            else if (!wordChar && start >= 0) {
+                String term = normalize(lower.substring(start, i));
+                if (term != null) {
+                    terms.add(term);
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private static String normalize(String token) {
+        String folded = foldUmlauts(token);
+        if (STOP_WORDS.contains(folded)) {
+            return null;
+        }
+        return germanStem(englishStem(folded));
+    }
+
+    private static String foldUmlauts(String token) {
+        StringBuilder folded = new StringBuilder(token.length());
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            switch (c) {
+                case 'ä': case 'à': case 'á': case 'â': folded.append('a'); break;
+                case 'ö': case 'ò': case 'ó': case 'ô': folded.append('o'); break;
+                case 'ü': case 'ù': case 'ú': case 'û': folded.append('u'); break;
+                case 'é': case 'è': case 'ê': case 'ë': folded.append('e'); break;
+                case 'ß': folded.append("ss"); break;
+                default: folded.append(c);
+            }
+        }
+        return folded.toString();
+    }
+
+    // plural and inflection endings: groceries -> grocery, helping -> help
+    static String englishStem(String word) {
+        if (word.endsWith("ies") && word.length() > 4) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.endsWith("sses")) {
+            return word.substring(0, word.length() - 2);
+        }
+        if (word.endsWith("ing") && word.length() - 3 >= MIN_STEM_LENGTH + 1) {
+            return word.substring(0, word.length() - 3);
+        }
+        if (word.endsWith("ed") && word.length() - 2 >= MIN_STEM_LENGTH + 1) {
+            return word.substring(0, word.length() - 2);
+        }
+        if (word.endsWith("s") && !word.endsWith("ss") && !word.endsWith("us") && word.length() > MIN_STEM_LENGTH) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+
+    // case and plural endings: einkaufen -> einkauf, kinder -> kind, hilfe -> hilf
+    static String germanStem(String word) {
+        for (String suffix : new String[]{"ern", "em", "en", "er", "es", "e"}) {
+            if (word.endsWith(suffix) && word.length() - suffix.length() >= MIN_STEM_LENGTH) {
+                return word.substring(0, word.length() - suffix.length());
+            }
+        }
+        return word;
+    }
+}
@@ -0,0 +1,64 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
+
+/**
+ * Snapshot Versions
+ * The last applied version of every request for one of the in-memory indexes.
+ * The RequestEvents of two commits on the same request can reach a listener
+ * in either order, the older snapshot is recognised by its version and
+ * dropped. Requests that left the index keep their version, so a late
+ * snapshot can't bring them back. While a rebuild loads the rows, the applied
+ * snapshots are also collected, the rebuild replays them onto what it loaded.
+ * Not thread-safe, the indexes call it under their own lock.
+ */
+final class SnapshotVersions {
+
+    private final Map<Long, Long> versions = new HashMap<>();
+    private List<RequestGetDTO> sinceRebuild;
+
+    /**
+     * Whether {@code request} is at least as new as the last applied snapshot
+     * of its request, and if so records its version. Snapshots without a
+     * version always apply.
+     */
+    boolean advance(RequestGetDTO request) {
+        if (sinceRebuild != null) {
+            sinceRebuild.add(request);
+        }
+        return advanceLoaded(request);
+    }
+
+    // rows loaded by a rebuild, not replayed again
+    boolean advanceLoaded(RequestGetDTO request) {
+        Long version = request.getVersion();
+        if (version == null) {
+            return true;
+        }
+        Long applied = versions.get(request.getId());
+        if (applied != null && applied > version) {
+            return false;
+        }
+        versions.put(request.getId(), version);
+        return true;
+    }
+
+    void startRebuild() {
+        sinceRebuild = new ArrayList<>();
+    }
+
+    /**
+     * The snapshots that arrived since {@link #startRebuild()}, oldest first.
+     * They may be newer than the loaded rows of their requests.
+     */
+    List<RequestGetDTO> finishRebuild() {
+        List<RequestGetDTO> replay = sinceRebuild == null ? new ArrayList<>() : sinceRebuild;
+        sinceRebuild = null;
+        return replay;
+    }
+}
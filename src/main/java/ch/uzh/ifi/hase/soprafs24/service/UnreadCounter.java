@@ -0,0 +1,149 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Unread Counter
+ * Number of unread items per user, kept in memory so the constantly polled
+ * unread endpoints do not hit the database. A user's counter is loaded from
+ * the database on first access (and again after a restart or invalidation),
+ * afterwards it is only moved by increment/decrement. Updates for users that
+ * are not loaded yet are dropped, the next load sees them anyway.
+ * Callers change counters with incrementAfterCommit/decrementAfterCommit
+ * inside the transaction that changes the rows. Between the commit and the
+ * callback a load already sees the new rows, so a loaded value is only kept
+ * when no change of that user was in flight while it was counted. The
+ * bookkeeping for that only exists while a user has loads or changes going.
+ */
+public class UnreadCounter {
+
+    private final ToLongFunction<Long> loader;
+    private final Map<Long, AtomicLong> counters = new ConcurrentHashMap<>();
+    // only changed in compute calls of the user's key
+    private final Map<Long, Flight> flights = new ConcurrentHashMap<>();
+
+    public UnreadCounter(ToLongFunction<Long> loader) {
+        this.loader = loader;
+    }
+
+    public long get(Long userId) {
+        AtomicLong counter = counters.get(userId);
+        if (counter != null) {
+            return counter.get();
+        }
+        long[] changesBefore = new long[1];
+        flights.compute(userId, (id, flight) -> {
+            Flight started = flight == null ? new Flight() : flight;
+            started.loads++;
+            // -1 never matches, a change in flight makes this load uncacheable
+            changesBefore[0] = started.inFlight > 0 ? -1 : started.changes;
+            return started;
+        });
+        long loaded;
+        try {
+            loaded = loader.applyAsLong(userId);
+        }
+        catch (RuntimeException e) {
+            flights.compute(userId, (id, flight) -> flight.finishLoad());
+            throw e;
+        }
+        long[] result = {loaded};
+        flights.compute(userId, (id, flight) -> {
+            if (flight.inFlight == 0 && flight.changes == changesBefore[0]) {
+                result[0] = counters.computeIfAbsent(userId, key -> new AtomicLong(loaded)).get();
+            }
+            return flight.finishLoad();
+        });
+        return result[0];
+    }
+
+    /**
+     * Adds one once the surrounding transaction committed.
+     */
+    public void incrementAfterCommit(Long userId) {
+        changeAfterCommit(userId, () -> apply(userId, 1));
+    }
+
+    /**
+     * Subtracts {@code delta} once the surrounding transaction committed.
+     */
+    public void decrementAfterCommit(Long userId, long delta) {
+        changeAfterCommit(userId, () -> apply(userId, -delta));
+    }
+
+    /**
+     * Drops the counter once the surrounding transaction committed, for row
+     * changes that can't be expressed as a delta. Like the other changes it
+     * keeps a load that counted the old rows from being cached.
+     */
+    public void invalidateAfterCommit(Long userId) {
+        changeAfterCommit(userId, () -> counters.remove(userId));
+    }
+
+    private void changeAfterCommit(Long userId, Runnable onCommit) {
+        flights.compute(userId, (id, flight) -> {
+            Flight started = flight == null ? new Flight() : flight;
+            started.inFlight++;
+            started.changes++;
+            return started;
+        });
+        TransactionCallbacks.afterCompletion(committed -> flights.compute(userId, (id, flight) -> {
+            if (committed) {
+                onCommit.run();
+            }
+            flight.inFlight--;
+            return flight.idle() ? null : flight;
+        }));
+    }
+
+    public void increment(Long userId) {
+        apply(userId, 1);
+    }
+
+    public void decrement(Long userId, long delta) {
+        apply(userId, -delta);
+    }
+
+    private void apply(Long userId, long delta) {
+        AtomicLong counter = counters.get(userId);
+        if (counter != null && counter.addAndGet(delta) < 0) {
+            // we missed an increment somewhere, let the next read recount
+            counters.remove(userId, counter);
+        }
+    }
+
+    public void invalidate(Long userId) {
+        // a load running right now may have counted the old rows
+        flights.computeIfPresent(userId, (id, flight) -> {
+            flight.changes++;
+            return flight;
+        });
+        counters.remove(userId);
+    }
+
+    // users with loads or changes going
+    int flightCount() {
+        return flights.size();
+    }
+
+    private static final class Flight {
+        // changes whose transaction has not finished yet
+        private int inFlight;
+        // every change started since the entry exists, a load counted while this moved is not kept
+        private long changes;
+        // loads between their before and after check
+        private int loads;
+
+        private Flight finishLoad() {
+            loads--;
+            return idle() ? null : this;
+        }
+
+        private boolean idle() {
+            return inFlight == 0 && loads == 0;
+        }
+    }
+}
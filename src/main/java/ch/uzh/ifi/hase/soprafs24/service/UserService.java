@@ -1,6 +1,7 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
@@ -9,6 +10,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -18,9 +20,13 @@ import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.Request;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.event.UserRegisteredEvent;
 import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.VolunteerStatsDTO;
+import ch.uzh.ifi.hase.soprafs24.security.TokenCache;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
 
 /**
  * User Service
@@ -37,12 +43,17 @@ public class UserService {
 
     private final UserRepository userRepository;
     private RequestRepository requestRepository;
+    private final TokenCache tokenCache;
+    private final ApplicationEventPublisher eventPublisher;
 
 
     @Autowired
-    public UserService(@Qualifier("userRepository") UserRepository userRepository, RequestRepository requestRepository) {
+    public UserService(@Qualifier("userRepository") UserRepository userRepository, RequestRepository requestRepository,
+                       TokenCache tokenCache, ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
         this.requestRepository = requestRepository;
+        this.tokenCache = tokenCache;
+        this.eventPublisher = eventPublisher;
     }
 
     public List<User> getUsers() {
@@ -78,6 +89,7 @@ public class UserService {
         // flush() is called
         newUser = userRepository.save(newUser);
         userRepository.flush();
+        eventPublisher.publishEvent(new UserRegisteredEvent(newUser.getId()));
 
         log.debug("Created Information for User: {}", newUser);
         return newUser;
@@ -109,9 +121,38 @@ public class UserService {
                         "The user with id: " + id + " was not found"));
     }
 
+    /**
+     * Completed count, ratings and last activity of a volunteer, read from
+     * the user row that the request transitions keep up to date.
+     */
+    public VolunteerStatsDTO getVolunteerStats(Long id) {
+        return this.userRepository.findVolunteerStats(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "The user with id: " + id + " was not found"));
+    }
+
+    // a request the volunteer helped with was marked as done
+    public void recordCompletion(Long volunteerId) {
+        userRepository.addReputation(volunteerId, 1, 0, 0, LocalDateTime.now());
+    }
+
+    // the poster rated a request, previousRating is the rating it replaces (null if there was none)
+    public void recordRating(Long volunteerId, Integer previousRating, Integer rating) {
+        long ratingSum = (rating == null ? 0 : rating) - (previousRating == null ? 0 : previousRating);
+        int ratingCount = (rating == null ? 0 : 1) - (previousRating == null ? 0 : 1);
+        userRepository.addReputation(volunteerId, 0, ratingSum, ratingCount, LocalDateTime.now());
+    }
+
+    // done or rated requests of the volunteer were deleted
+    public void removeReputation(Long volunteerId, int completed, long ratingSum, int ratingCount) {
+        if (completed == 0 && ratingCount == 0) {
+            return;
+        }
+        userRepository.removeReputation(volunteerId, completed, ratingSum, ratingCount);
+    }
+
     // update user
-    public void updateUser(Long userId, UserPutDTO userPutDTO, String token) {
-        User loginUser = getUserByToken(token);
+    public void updateUser(Long userId, UserPutDTO userPutDTO, UserPrincipal loginUser) {
         User user = getUserById(userId);
         if (loginUser == null || (!Objects.equals(loginUser.getId(), userId) && !loginUser.getUsername().equals("admin"))) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "unauthorized user");
@@ -169,6 +210,7 @@ public class UserService {
 
         userRepository.save(user);
         userRepository.flush();
+        invalidateCachedTokens(userId);
     }
 
     // login check
@@ -189,18 +231,20 @@ public class UserService {
 
         userRepository.save(user);
         userRepository.flush();
+        invalidateCachedTokens(user.getId());
 
         return user;
     }
 
-    public void logout(String token) {
-        // find the logout user by token
-        User user = getUserByToken(token);
+    public void logout(UserPrincipal currentUser) {
+        // find the logout user
+        User user = getUserById(currentUser.getId());
         // set status to offline
         user.setStatus(UserStatus.OFFLINE);
 
         userRepository.save(user);
         userRepository.flush();
+        invalidateCachedTokens(user.getId());
     }
 
     public User getUserByToken(String token) {
@@ -209,12 +253,31 @@ public class UserService {
         if (user == null) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Invalid token");
         }
+        tokenCache.put(token, UserPrincipal.of(user));
         return user;
     }
 
-    public void deleteUser(Long userId, String token) {
+    /**
+     * Resolves a token to its principal, hitting the database only if the token
+     * is not cached yet. Use this whenever the id/username/admin flag is all
+     * that is needed.
+     */
+    public UserPrincipal getPrincipalByToken(String token) {
+        UserPrincipal principal = tokenCache.get(token);
+        if (principal != null) {
+            return principal;
+        }
+        return UserPrincipal.of(getUserByToken(token));
+    }
+
+    // drop cached tokens now and again once the change is visible to other sessions
+    private void invalidateCachedTokens(Long userId) {
+        tokenCache.evictUser(userId);
+        TransactionCallbacks.afterCommit(() -> tokenCache.evictUser(userId));
+    }
+
+    public void deleteUser(Long userId, UserPrincipal currentUser) {
         User deleteUser = getUserById(userId);
-        User currentUser = getUserByToken(token);
         if (currentUser == null) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Invalid token");
         }
@@ -230,5 +293,6 @@ public class UserService {
         }
 
         userRepository.delete(deleteUser);
+        invalidateCachedTokens(userId);
     }
 }
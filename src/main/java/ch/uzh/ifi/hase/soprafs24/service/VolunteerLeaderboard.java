@@ -0,0 +1,261 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import ch.uzh.ifi.hase.soprafs24.constant.LeaderboardMetric;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestTransition;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.event.RequestEvent;
+import ch.uzh.ifi.hase.soprafs24.event.RequestTransitionEvent;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LeaderboardEntryDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
+
+/**
+ * Volunteer Leaderboard
+ * In-memory top volunteers, overall and per school (User.school, compared
+ * case-insensitively), for every LeaderboardMetric. Each board is a
+ * BoundedTopK over the reputation counters of the user row.
+ * When a request is marked as done, rated or deleted, the volunteer's row is
+ * read again after the commit and offered to their boards, so reads never
+ * touch the database and only look at the kept entries.
+ * A board keeps twice the entries it serves: scores only drop when a done
+ * request is deleted or re-rated lower, and the spare entries let somebody
+ * move up in that case. Whatever still drifts (school changes, deleted
+ * users) is fixed by the full recompute every {@code recompute-interval-millis}.
+ */
+@Component
+public class VolunteerLeaderboard {
+
+    private final Logger log = LoggerFactory.getLogger(VolunteerLeaderboard.class);
+
+    private final UserRepository userRepository;
+    private final int size;
+    private final int minRatings;
+
+    private Board overall;
+    private Map<String, Board> schools = new HashMap<>();
+    // user -> school key of the boards they were offered to, null for none
+    private Map<Long, String> schoolOf = new HashMap<>();
+
+    public VolunteerLeaderboard(UserRepository userRepository,
+                                @Value("${leaderboard.size:50}") int size,
+                                @Value("${leaderboard.min-ratings:3}") int minRatings) {
+        this.userRepository = userRepository;
+        this.size = size;
+        this.minRatings = minRatings;
+        this.overall = new Board();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${leaderboard.recompute-interval-millis:900000}",
+            fixedDelayString = "${leaderboard.recompute-interval-millis:900000}")
+    public void rebuild() {
+        List<User> volunteers = userRepository.findByCompletedCountGreaterThan(0);
+        synchronized (this) {
+            overall = new Board();
+            schools = new HashMap<>();
+            schoolOf = new HashMap<>();
+            volunteers.forEach(this::offerLocked);
+        }
+        log.info("Volunteer leaderboard loaded with {} volunteers", volunteers.size());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onRequestEvent(RequestEvent event) {
+        RequestGetDTO request = event.getRequest();
+        // done requests count for the volunteer, deleting one takes it back
+        if (request.getVolunteerId() != null
+                && (request.getStatus() == RequestStatus.DONE || request.getStatus() == RequestStatus.DELETED)) {
+            refresh(request.getVolunteerId());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onTransition(RequestTransitionEvent event) {
+        if (event.getTransition() == RequestTransition.FEEDBACK) {
+            refresh(event.getVolunteerId());
+        }
+    }
+
+    /**
+     * Reads the volunteer's counters again and moves them on the boards.
+     */
+    public void refresh(Long userId) {
+        User user = userRepository.findById(userId).orElse(null);
+        synchronized (this) {
+            if (user == null) {
+                removeLocked(userId);
+            }
+            else {
+                offerLocked(user);
+            }
+        }
+    }
+
+    /**
+     * The best {@code limit} volunteers by {@code metric}, of one school or
+     * overall when {@code school} is null or blank.
+     */
+    public List<LeaderboardEntryDTO> top(LeaderboardMetric metric, String school, int limit) {
+        if (limit < 1 || limit > size) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + size);
+        }
+        List<Standing> standings;
+        synchronized (this) {
+            String key = schoolKey(school);
+            Board board = key == null ? overall : schools.get(key);
+            standings = board == null ? List.of() : board.get(metric).best(limit);
+        }
+        List<LeaderboardEntryDTO> entries = new ArrayList<>(standings.size());
+        for (Standing standing : standings) {
+            entries.add(new LeaderboardEntryDTO(entries.size() + 1, standing.userId, standing.username,
+                    standing.school, standing.completedCount, standing.ratingCount, standing.averageRating()));
+        }
+        return entries;
+    }
+
+    private void offerLocked(User user) {
+        Standing standing = new Standing(user);
+        if (!eligible(LeaderboardMetric.ACTIVE, standing) && !eligible(LeaderboardMetric.RATED, standing)) {
+            removeLocked(user.getId());
+            return;
+        }
+        String key = schoolKey(user.getSchool());
+        if (schoolOf.containsKey(user.getId())) {
+            String previousKey = schoolOf.get(user.getId());
+            if (previousKey != null && !previousKey.equals(key)) {
+                removeFromSchool(previousKey, user.getId());
+            }
+        }
+        overall.offer(standing);
+        if (key != null) {
+            schools.computeIfAbsent(key, k -> new Board()).offer(standing);
+        }
+        schoolOf.put(user.getId(), key);
+    }
+
+    private void removeLocked(Long userId) {
+        overall.remove(userId);
+        String key = schoolOf.remove(userId);
+        if (key != null) {
+            removeFromSchool(key, userId);
+        }
+    }
+
+    private void removeFromSchool(String key, Long userId) {
+        Board board = schools.get(key);
+        if (board != null && board.remove(userId)) {
+            schools.remove(key);
+        }
+    }
+
+    private static String schoolKey(String school) {
+        return school == null || school.isBlank() ? null : school.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private boolean eligible(LeaderboardMetric metric, Standing standing) {
+        switch (metric) {
+            case ACTIVE:
+                return standing.completedCount > 0;
+            case RATED:
+                return standing.ratingCount >= minRatings;
+            default:
+                return false;
+        }
+    }
+
+    private static Comparator<Standing> order(LeaderboardMetric metric) {
+        Comparator<Standing> byAverage = Comparator.comparingDouble(Standing::average).reversed();
+        Comparator<Standing> byCompleted = Comparator.comparingInt((Standing standing) -> standing.completedCount)
+                .reversed();
+        Comparator<Standing> byRatings = Comparator.comparingInt((Standing standing) -> standing.ratingCount)
+                .reversed();
+        Comparator<Standing> first = metric == LeaderboardMetric.ACTIVE
+                ? byCompleted.thenComparing(byAverage)
+                : byAverage.thenComparing(byRatings);
+        // the id makes the order total, equal scores never swap places
+        return first.thenComparing(standing -> standing.userId);
+    }
+
+    // one BoundedTopK per metric for one school or overall
+    private final class Board {
+        private final Map<LeaderboardMetric, BoundedTopK<Standing>> boards = new EnumMap<>(LeaderboardMetric.class);
+
+        private Board() {
+            for (LeaderboardMetric metric : LeaderboardMetric.values()) {
+                boards.put(metric, new BoundedTopK<>(2 * size, order(metric)));
+            }
+        }
+
+        private BoundedTopK<Standing> get(LeaderboardMetric metric) {
+            return boards.get(metric);
+        }
+
+        private void offer(Standing standing) {
+            boards.forEach((metric, board) -> {
+                if (eligible(metric, standing)) {
+                    board.offer(standing.userId, standing);
+                }
+                else {
+                    board.remove(standing.userId);
+                }
+            });
+        }
+
+        // returns whether the board is empty afterwards
+        private boolean remove(Long userId) {
+            boolean empty = true;
+            for (BoundedTopK<Standing> board : boards.values()) {
+                board.remove(userId);
+                empty &= board.size() == 0;
+            }
+            return empty;
+        }
+    }
+
+    private static final class Standing {
+        private final Long userId;
+        private final String username;
+        private final String school;
+        private final int completedCount;
+        private final int ratingCount;
+        private final long ratingSum;
+
+        private Standing(User user) {
+            this.userId = user.getId();
+            this.username = user.getUsername();
+            this.school = user.getSchool();
+            this.completedCount = user.getCompletedCount();
+            this.ratingCount = user.getRatingCount();
+            this.ratingSum = user.getRatingSum();
+        }
+
+        private double average() {
+            return ratingCount == 0 ? 0 : (double) ratingSum / ratingCount;
+        }
+
+        private Double averageRating() {
+            return ratingCount == 0 ? null : average();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Type;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.MessageDTO;
+import ch.uzh.ifi.hase.soprafs24.service.MessageService;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class WebSocketIntegrationTest {
+
+    private static final int IDLE_CONNECTIONS = 200;
+    // the threads that carry the broker's work: inbound frames, outbound frames and heart-beats
+    private static final List<String> BROKER_THREAD_PREFIXES =
+            List.of("clientInboundChannel", "clientOutboundChannel", "brokerChannel", "ws-heartbeat-");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    @Qualifier("brokerChannel")
+    private AbstractSubscribableChannel brokerChannel;
+
+    private WebSocketStompClient stompClient;
+    private final List<StompSession> sessions = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        stompClient.setMessageConverter(converter);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sessions.stream().filter(StompSession::isConnected).forEach(StompSession::disconnect);
+        stompClient.stop();
+    }
+
+    private User createUser(String username, String token) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@edu.example.com");
+        user.setPassword("password");
+        user.setCreationDate(LocalDate.now());
+        user.setToken(token);
+        user.setStatus(UserStatus.ONLINE);
+        return userRepository.save(user);
+    }
+
+    private StompSession connect(String token) throws Exception {
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("token", token);
+        StompSession session = stompClient
+                .connect("ws://localhost:" + port + "/ws", new WebSocketHttpHeaders(), connectHeaders, new StompSessionHandlerAdapter() {
+                })
+                .get(5, TimeUnit.SECONDS);
+        sessions.add(session);
+        return session;
+    }
+
+    private <T> BlockingQueue<T> subscribe(StompSession session, String destination, Class<T> type) {
+        BlockingQueue<T> received = new LinkedBlockingQueue<>();
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return type;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((T) payload);
+            }
+        });
+        return received;
+    }
+
+    // the broker channel has no executor, the broker registered the subscription once the send completed
+    private CountDownLatch brokerSubscriptions(int count) {
+        CountDownLatch registered = new CountDownLatch(count);
+        brokerChannel.addInterceptor(new ChannelInterceptor() {
+            @Override
+            public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+                if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.SUBSCRIBE) {
+                    registered.countDown();
+                }
+            }
+        });
+        return registered;
+    }
+
+    private Map<Long, Long> brokerThreadCpuTimes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Map<Long, Long> cpuTimes = new HashMap<>();
+        for (ThreadInfo thread : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (thread != null && BROKER_THREAD_PREFIXES.stream().anyMatch(thread.getThreadName()::startsWith)) {
+                cpuTimes.put(thread.getThreadId(), threads.getThreadCpuTime(thread.getThreadId()));
+            }
+        }
+        return cpuTimes;
+    }
+
+    @Test
+    public void sendMessage_isPushedToRecipient() throws Exception {
+        User sender = createUser("wsSender", "wsSenderToken");
+        User recipient = createUser("wsRecipient", "wsRecipientToken");
+
+        CountDownLatch subscribed = brokerSubscriptions(1);
+        StompSession session = connect("wsRecipientToken");
+        BlockingQueue<MessageDTO> messages = subscribe(session, "/user/queue/messages", MessageDTO.class);
+        // the subscription is registered asynchronously
+        assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+
+        MessageDTO messageDTO = new MessageDTO();
+        messageDTO.setSenderId(sender.getId());
+        messageDTO.setRecipientId(recipient.getId());
+        messageDTO.setContent("pushed");
+        messageService.sendMessage(messageDTO);
+
+        MessageDTO pushed = messages.poll(5, TimeUnit.SECONDS);
+        assertNotNull(pushed);
+        assertEquals("pushed", pushed.getContent());
+        assertEquals(sender.getId(), pushed.getSenderId());
+    }
+
+    @Test
+    public void connect_invalidToken_isRejected() {
+        assertThrows(ExecutionException.class, () -> connect("unknownToken"));
+    }
+
+    // timing sensitive, runs with the load tests instead of the default test task
+    @Test
+    @Tag("load")
+    public void idleConnections_costAlmostNoCpu() throws Exception {
+        for (int i = 0; i < IDLE_CONNECTIONS; i++) {
+            createUser("idle" + i, "idleToken" + i);
+        }
+        for (int i = 0; i < IDLE_CONNECTIONS; i++) {
+            StompSession session = connect("idleToken" + i);
+            subscribe(session, "/user/queue/messages", MessageDTO.class);
+            subscribe(session, "/user/queue/unread", Object.class);
+        }
+        // let connection setup and JIT activity settle before measuring
+        Thread.sleep(2000);
+
+        Map<Long, Long> cpuBefore = brokerThreadCpuTimes();
+        assertFalse(cpuBefore.isEmpty(), "no broker threads found");
+        long wallBefore = System.nanoTime();
+        Thread.sleep(5000);
+        Map<Long, Long> cpuAfter = brokerThreadCpuTimes();
+        long wall = System.nanoTime() - wallBefore;
+        long cpu = 0;
+        for (Map.Entry<Long, Long> thread : cpuAfter.entrySet()) {
+            cpu += Math.max(0, thread.getValue() - cpuBefore.getOrDefault(thread.getKey(), 0L));
+        }
+        double cpuShare = (double) cpu / wall;
+
+        assertEquals(IDLE_CONNECTIONS, sessions.stream().filter(StompSession::isConnected).count());
+        // fraction of a single core used by the broker threads, the test clients and other JVM work don't count
+        assertTrue(cpuShare < 0.1, "idle connections used " + cpuShare + " of a core");
+    }
+
+    @Test
+    public void heartbeatScheduler_isTheContextManagedBean() {
+        // a bean is started and shut down by the context, a scheduler created inline would leak its thread
+        ThreadPoolTaskScheduler heartbeatScheduler =
+                context.getBean("webSocketHeartbeatScheduler", ThreadPoolTaskScheduler.class);
+        assertSame(heartbeatScheduler, context.getBean(SimpleBrokerMessageHandler.class).getTaskScheduler());
+        assertFalse(heartbeatScheduler.getScheduledExecutor().isShutdown());
+    }
+}
@@ -0,0 +1,92 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verifyNoInteractions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import org.springframework.web.server.ResponseStatusException;
+
+import ch.uzh.ifi.hase.soprafs24.constant.AnalyticsGranularity;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.AnalyticsBucketDTO;
+import ch.uzh.ifi.hase.soprafs24.security.AuthFilter;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
+import ch.uzh.ifi.hase.soprafs24.service.PlatformAnalytics;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+
+@WebMvcTest(AnalyticsController.class)
+@AutoConfigureMockMvc(addFilters = false)
+public class AnalyticsControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private PlatformAnalytics platformAnalytics;
+
+    @MockBean
+    private UserRepository userRepository;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private AuthFilter authFilter;
+
+    @BeforeEach
+    public void setup() {
+        given(userService.getPrincipalByToken(anyString())).willReturn(new UserPrincipal(1L, "admin", true));
+    }
+
+    @Test
+    public void getAnalytics_success() throws Exception {
+        AnalyticsBucketDTO bucket = new AnalyticsBucketDTO(LocalDateTime.of(2024, 5, 1, 12, 0),
+                Map.of(PlatformAnalytics.REQUESTS_CREATED, Map.of("CH/HIGH", 3L)));
+        given(platformAnalytics.report(any(UserPrincipal.class), eq(AnalyticsGranularity.DAY), eq(7)))
+                .willReturn(List.of(bucket));
+
+        mockMvc.perform(get("/analytics").param("granularity", "day").param("buckets", "7")
+                        .header("token", "valid-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].counters['requests.created']['CH/HIGH']", is(3)));
+    }
+
+    @Test
+    public void getAnalytics_notAdmin_unauthorized() throws Exception {
+        given(platformAnalytics.report(any(UserPrincipal.class), any(AnalyticsGranularity.class), anyInt()))
+                .willThrow(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token"));
+
+        mockMvc.perform(get("/analytics").header("token", "valid-token"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.message", is("Invalid token")));
+    }
+
+    @Test
+    public void getAnalytics_unknownGranularity_badRequest() throws Exception {
+        mockMvc.perform(get("/analytics").param("granularity", "week").header("token", "valid-token"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Unknown granularity: week")));
+
+        verifyNoInteractions(platformAnalytics);
+    }
+}
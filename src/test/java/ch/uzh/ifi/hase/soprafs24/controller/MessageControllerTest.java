@@ -3,11 +3,15 @@ package ch.uzh.ifi.hase.soprafs24.controller;
 import ch.uzh.ifi.hase.soprafs24.entity.Message;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.ContactDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.ConversationPageDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.MessageDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.PollBatchDTO;
 import ch.uzh.ifi.hase.soprafs24.security.AuthFilter;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
 import ch.uzh.ifi.hase.soprafs24.service.MessageService;
 import ch.uzh.ifi.hase.soprafs24.service.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -15,6 +19,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -25,9 +30,11 @@ import java.util.List;
 import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(MessageController.class)
@@ -48,6 +55,13 @@ public class MessageControllerTest {
     @MockBean
     private AuthFilter authFilter;
 
+    private final UserPrincipal principal = new UserPrincipal(1L, "testUser", false);
+
+    @BeforeEach
+    void setupPrincipal() {
+        when(userService.getPrincipalByToken(anyString())).thenReturn(principal);
+    }
+
     @Test
     void getConversationMessages_success() throws Exception {
         // Prepare message data
@@ -91,6 +105,54 @@ public class MessageControllerTest {
                 .andExpect(jsonPath("$[1].read").value(false));
     }
 
+    @Test
+    void getConversationPage_beforeCursor_success() throws Exception {
+        LocalDateTime cursor = LocalDateTime.of(2024, 5, 1, 12, 30);
+        MessageDTO older = new MessageDTO(3L, 2L, 1L, "Older", cursor.minusMinutes(1), true);
+        when(messageService.getConversationPage(1L, 2L, cursor, 4L, null, null, 20))
+                .thenReturn(new ConversationPageDTO(List.of(older), true));
+
+        mockMvc.perform(get("/messages/conversation/{senderId}/{recipientId}/page", 1L, 2L)
+                        .header(AUTH_HEADER, "valid-token")
+                        .param("before", "2024-05-01T12:30:00")
+                        .param("beforeId", "4")
+                        .param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hasMore").value(true))
+                .andExpect(jsonPath("$.messages[0].id").value(3))
+                .andExpect(jsonPath("$.messages[0].content").value("Older"));
+    }
+
+    @Test
+    void getConversationPage_invalidLimit_badRequest() throws Exception {
+        when(messageService.getConversationPage(1L, 2L, null, null, null, null, 500))
+                .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and 200"));
+
+        mockMvc.perform(get("/messages/conversation/{senderId}/{recipientId}/page", 1L, 2L)
+                        .header(AUTH_HEADER, "valid-token")
+                        .param("limit", "500"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Limit must be between 1 and 200"));
+    }
+
+    @Test
+    void getConversationPage_otherUsersConversation_forbidden() throws Exception {
+        mockMvc.perform(get("/messages/conversation/{senderId}/{recipientId}/page", 2L, 3L)
+                        .header(AUTH_HEADER, "valid-token"))
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("$.message").value("You can only read your own conversations"));
+
+        verify(messageService, never()).getConversationPage(any(), any(), any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getConversationPage_withoutToken_unauthorized() throws Exception {
+        mockMvc.perform(get("/messages/conversation/{senderId}/{recipientId}/page", 1L, 2L))
+                .andExpect(status().isUnauthorized());
+
+        verify(messageService, never()).getConversationPage(any(), any(), any(), any(), any(), any(), anyInt());
+    }
+
     @Test
     void getChatContacts_success() throws Exception {
         // Prepare the mock data
@@ -110,8 +172,7 @@ public class MessageControllerTest {
         ContactDTO contact2 = new ContactDTO(3L, "contact2", false);
 
         // Mock the service calls
-        when(userService.getUserByToken(token)).thenReturn(user);
-        when(messageService.getChatContacts(token)).thenReturn(Arrays.asList(contact1, contact2));
+        when(messageService.getChatContacts(principal)).thenReturn(Arrays.asList(contact1, contact2));
 
         mockMvc.perform(get("/messages/contacts")
                         .header("token", token))  // Simulate the Authorization header
@@ -125,13 +186,59 @@ public class MessageControllerTest {
     @Test
     void poll_returnsDeferredResult() throws Exception {
         Long userId = 1L;
-        DeferredResult<String> mockResult = new DeferredResult<>();
-        mockResult.setResult("someData");
+        MessageDTO message = new MessageDTO();
+        message.setId(9L);
+        message.setSenderId(2L);
+        message.setRecipientId(userId);
+        message.setContent("someData");
+        DeferredResult<PollBatchDTO<MessageDTO>> mockResult = new DeferredResult<>();
+        mockResult.setResult(new PollBatchDTO<>(4L, List.of(message), false));
+
+        when(messageService.poll(userId, 3L)).thenReturn(mockResult);
+
+        MvcResult pending = mockMvc.perform(get("/messages/poll/{userId}", userId).param("cursor", "3")
+                        .header(AUTH_HEADER, "valid-token"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cursor").value(4))
+                .andExpect(jsonPath("$.events[0].id").value(9))
+                .andExpect(jsonPath("$.events[0].content").value("someData"))
+                .andExpect(jsonPath("$.truncated").value(false));
+    }
+
+    @Test
+    void poll_ownMailboxWithoutUserId() throws Exception {
+        DeferredResult<PollBatchDTO<MessageDTO>> mockResult = new DeferredResult<>();
+        mockResult.setResult(new PollBatchDTO<>(0L, List.of(), false));
+        when(messageService.poll(1L, null)).thenReturn(mockResult);
 
-        when(messageService.poll(userId)).thenReturn(mockResult);
+        MvcResult pending = mockMvc.perform(get("/messages/poll").header(AUTH_HEADER, "valid-token"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
 
-        mockMvc.perform(get("/messages/poll/{userId}", userId))
-                .andExpect(status().isOk());
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cursor").value(0));
+    }
+
+    @Test
+    void poll_otherUsersMailbox_forbidden() throws Exception {
+        mockMvc.perform(get("/messages/poll/{userId}", 42L).param("cursor", "0")
+                        .header(AUTH_HEADER, "valid-token"))
+                .andExpect(status().isForbidden());
+
+        verify(messageService, never()).poll(any(), any());
+    }
+
+    @Test
+    void poll_withoutToken_unauthorized() throws Exception {
+        mockMvc.perform(get("/messages/poll/{userId}", 42L).param("cursor", "0"))
+                .andExpect(status().isUnauthorized());
+
+        verify(messageService, never()).poll(any(), any());
     }
 
     @Test
@@ -152,12 +259,41 @@ public class MessageControllerTest {
         Long senderId = 1L;
         Long recipientId = 2L;
 
-        doNothing().when(messageService).markMessageAsRead(senderId, recipientId);
+        when(messageService.markMessageAsRead(senderId, recipientId)).thenReturn(2);
 
         mockMvc.perform(put("/messages/mark-read/{senderId}/{recipientId}", senderId, recipientId))
                 .andExpect(status().isNoContent());
     }
 
+    @Test
+    public void testMarkMessagesAsReadUpTo_returnsUpdatedCount() throws Exception {
+        when(messageService.markMessagesAsReadUpTo(2L, 1L, 40L)).thenReturn(3);
+
+        mockMvc.perform(put("/messages/mark-read/{senderId}/{recipientId}/up-to/{messageId}", 2L, 1L, 40L)
+                        .header(AUTH_HEADER, "valid-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(3));
+    }
+
+    @Test
+    public void testMarkMessagesAsReadUpTo_otherRecipient_forbidden() throws Exception {
+        // the caller is user 1, the messages went to user 3
+        mockMvc.perform(put("/messages/mark-read/{senderId}/{recipientId}/up-to/{messageId}", 1L, 3L, 40L)
+                        .header(AUTH_HEADER, "valid-token"))
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("$.message").value("You can only mark your own messages as read"));
+
+        verify(messageService, never()).markMessagesAsReadUpTo(any(), any(), any());
+    }
+
+    @Test
+    public void testMarkMessagesAsReadUpTo_withoutToken_unauthorized() throws Exception {
+        mockMvc.perform(put("/messages/mark-read/{senderId}/{recipientId}/up-to/{messageId}", 2L, 1L, 40L))
+                .andExpect(status().isUnauthorized());
+
+        verify(messageService, never()).markMessagesAsReadUpTo(any(), any(), any());
+    }
+
     @Test
     public void testMarkMessageAsRead_serviceThrowsException() throws Exception {
         Long senderId = 1L;
@@ -177,15 +313,17 @@ public class MessageControllerTest {
     @Test
     public void testHasUnreadMessages_success() throws Exception {
         String token = "token";
-        Map<String, Boolean> responseMap = new HashMap<>();
+        Map<String, Object> responseMap = new HashMap<>();
         responseMap.put("hasUnread", true);
+        responseMap.put("count", 4L);
 
         // Mock service method to return the expected result
-        when(messageService.hasUnreadMessage(token)).thenReturn(responseMap);
+        when(messageService.hasUnreadMessage(principal)).thenReturn(responseMap);
 
         mockMvc.perform(get("/messages/unread").header(AUTH_HEADER, token))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.hasUnread").value(true));  // Expecting "hasUnread": true
+                .andExpect(jsonPath("$.hasUnread").value(true))  // Expecting "hasUnread": true
+                .andExpect(jsonPath("$.count").value(4));
     }
 
     @Test
@@ -194,7 +332,7 @@ public class MessageControllerTest {
         String errorMessage = "User not found";
 
         // Mock service method to throw a ResponseStatusException
-        when(messageService.hasUnreadMessage(token))
+        when(messageService.hasUnreadMessage(principal))
                 .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, errorMessage));
 
         mockMvc.perform(get("/messages/unread")
@@ -222,7 +360,7 @@ public class MessageControllerTest {
         String token = "valid-token";
         String errorMessage = "Invalid token";
 
-        when(messageService.getChatContacts(token))
+        when(messageService.getChatContacts(principal))
                 .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, errorMessage));
 
         mockMvc.perform(get("/messages/contacts")
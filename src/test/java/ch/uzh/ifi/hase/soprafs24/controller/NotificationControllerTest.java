@@ -1,6 +1,7 @@
 package ch.uzh.ifi.hase.soprafs24.controller;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -8,8 +9,12 @@ import java.util.Map;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
@@ -33,8 +38,11 @@ import ch.uzh.ifi.hase.soprafs24.constant.NotificationType;
 import ch.uzh.ifi.hase.soprafs24.repository.NotificationRepository;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.NotificationDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.NotificationPageDTO;
 import ch.uzh.ifi.hase.soprafs24.security.AuthFilter;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
 import ch.uzh.ifi.hase.soprafs24.service.NotificationService;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
 
 @WebMvcTest(NotificationController.class)
 @AutoConfigureMockMvc(addFilters = false)
@@ -52,9 +60,17 @@ public class NotificationControllerTest {
     @MockBean
     private UserRepository userRepository;
 
+    @MockBean
+    private UserService userService;
+
     @MockBean
     private AuthFilter authFilter;
 
+    @BeforeEach
+    public void setup() {
+        given(userService.getPrincipalByToken(anyString())).willReturn(new UserPrincipal(1L, "poster", false));
+    }
+
     @Test
     public void getUserNotifications_success() throws Exception {
         NotificationDTO notification1 = new NotificationDTO();
@@ -79,7 +95,9 @@ public class NotificationControllerTest {
 
         List<NotificationDTO> notifications = Arrays.asList(notification1, notification2);
 
-        given(notificationService.getNotificationDTOS(anyString())).willReturn(notifications);
+        given(notificationService.getNotificationPage(any(UserPrincipal.class), isNull(), isNull(),
+                eq(NotificationService.DEFAULT_NOTIFICATION_PAGE_SIZE)))
+                .willReturn(new NotificationPageDTO(notifications, false));
 
         MockHttpServletRequestBuilder getRequest = get("/notifications")
                 .header("token", "valid-token")
@@ -96,12 +114,43 @@ public class NotificationControllerTest {
                 .andExpect(jsonPath("$[0].type", is(notification1.getType().toString())))
                 .andExpect(jsonPath("$[0].isRead", is(notification1.getIsRead())))
                 .andExpect(jsonPath("$[1].recipientId", is(notification2.getRecipientId().intValue())))
-                .andExpect(jsonPath("$[1].type", is(notification2.getType().toString())));
+                .andExpect(jsonPath("$[1].type", is(notification2.getType().toString())))
+                .andExpect(MockMvcResultMatchers.header().string("X-Has-More", "false"))
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("Link"));
+    }
+
+    @Test
+    public void getUserNotifications_moreThanOnePage_signalsTheNextPage() throws Exception {
+        LocalDateTime newest = LocalDateTime.of(2025, 4, 1, 12, 0, 30);
+        List<NotificationDTO> notifications = new ArrayList<>();
+        for (int i = 0; i < NotificationService.DEFAULT_NOTIFICATION_PAGE_SIZE; i++) {
+            NotificationDTO notification = new NotificationDTO();
+            notification.setNotificationId(100L - i);
+            notification.setRecipientId(1L);
+            notification.setType(NotificationType.VOLUNTEERED);
+            notification.setTimestamp(newest.minusMinutes(i));
+            notifications.add(notification);
+        }
+        given(notificationService.getNotificationPage(any(UserPrincipal.class), isNull(), isNull(),
+                eq(NotificationService.DEFAULT_NOTIFICATION_PAGE_SIZE)))
+                .willReturn(new NotificationPageDTO(notifications, true));
+
+        MockHttpServletRequestBuilder getRequest = get("/notifications")
+                .header("token", "valid-token")
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mockMvc.perform(getRequest)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(NotificationService.DEFAULT_NOTIFICATION_PAGE_SIZE)))
+                .andExpect(MockMvcResultMatchers.header().string("X-Has-More", "true"))
+                .andExpect(MockMvcResultMatchers.header().string("Link",
+                        "<http://localhost/notifications/page?before=2025-04-01T11:11:30&beforeId=51>; rel=\"next\""));
     }
 
     @Test
     public void getUserNotifications_error() throws Exception {
-        given(notificationService.getNotificationDTOS(anyString()))
+        given(notificationService.getNotificationPage(any(UserPrincipal.class), isNull(), isNull(),
+                eq(NotificationService.DEFAULT_NOTIFICATION_PAGE_SIZE)))
                 .willThrow(new ResponseStatusException(org.springframework.http.HttpStatus.UNAUTHORIZED, "Invalid token"));
 
         MockHttpServletRequestBuilder getRequest = get("/notifications")
@@ -115,7 +164,7 @@ public class NotificationControllerTest {
 
     @Test
     public void markNotificationsAsRead_success() throws Exception {
-        doNothing().when(notificationService).markNotificationsAsRead(anyString());
+        given(notificationService.markNotificationsAsRead(any(UserPrincipal.class))).willReturn(1);
 
         MockHttpServletRequestBuilder putRequest = put("/notifications/mark-read")
                 .header("token", "valid-token")
@@ -128,7 +177,7 @@ public class NotificationControllerTest {
     @Test
     public void markNotificationsAsRead_error() throws Exception {
         doThrow(new ResponseStatusException(org.springframework.http.HttpStatus.UNAUTHORIZED, "Invalid token"))
-                .when(notificationService).markNotificationsAsRead(anyString());
+                .when(notificationService).markNotificationsAsRead(any(UserPrincipal.class));
 
         MockHttpServletRequestBuilder putRequest = put("/notifications/mark-read")
                 .header("token", "invalid-token")
@@ -141,10 +190,11 @@ public class NotificationControllerTest {
 
     @Test
     public void getUnreadNotifications_success() throws Exception {
-        Map<String, Boolean> response = new HashMap<>();
+        Map<String, Object> response = new HashMap<>();
         response.put("hasUnread", true);
+        response.put("count", 4L);
 
-        given(notificationService.getUnreadNotifications(anyString())).willReturn(response);
+        given(notificationService.getUnreadNotifications(any(UserPrincipal.class))).willReturn(response);
 
         MockHttpServletRequestBuilder getRequest = get("/notifications/unread")
                 .header("token", "valid-token")
@@ -152,12 +202,13 @@ public class NotificationControllerTest {
 
         mockMvc.perform(getRequest)
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.hasUnread", is(true)));
+                .andExpect(jsonPath("$.hasUnread", is(true)))
+                .andExpect(jsonPath("$.count", is(4)));
     }
 
     @Test
     public void getUnreadNotifications_error() throws Exception {
-        given(notificationService.getUnreadNotifications(anyString()))
+        given(notificationService.getUnreadNotifications(any(UserPrincipal.class)))
                 .willThrow(new ResponseStatusException(org.springframework.http.HttpStatus.UNAUTHORIZED, "Invalid token"));
 
         MockHttpServletRequestBuilder getRequest = get("/notifications/unread")
@@ -191,4 +242,49 @@ public class NotificationControllerTest {
                 .andExpect(MockMvcResultMatchers.status().isNotFound())
                 .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("Notification not found"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getNotificationPage_success() throws Exception {
+        NotificationDTO notification = new NotificationDTO();
+        notification.setNotificationId(7L);
+        notification.setRequestTitle("Help needed");
+        notification.setType(NotificationType.VOLUNTEERED);
+        LocalDateTime before = LocalDateTime.of(2024, 5, 1, 12, 0);
+        given(notificationService.getNotificationPage(any(UserPrincipal.class), eq(before), eq(8L), eq(20)))
+                .willReturn(new NotificationPageDTO(Arrays.asList(notification), true));
+
+        mockMvc.perform(get("/notifications/page")
+                        .header("token", "valid-token")
+                        .param("before", "2024-05-01T12:00:00")
+                        .param("beforeId", "8")
+                        .param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.notifications", hasSize(1)))
+                .andExpect(jsonPath("$.notifications[0].notificationId", is(7)))
+                .andExpect(jsonPath("$.notifications[0].requestTitle", is("Help needed")))
+                .andExpect(jsonPath("$.hasMore", is(true)));
+    }
+
+    @Test
+    public void getNotificationPage_invalidLimit_returnsBadRequest() throws Exception {
+        given(notificationService.getNotificationPage(any(UserPrincipal.class), isNull(), isNull(), eq(0)))
+                .willThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and 200"));
+
+        mockMvc.perform(get("/notifications/page").header("token", "valid-token").param("limit", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Limit must be between 1 and 200")));
+    }
+
+    @Test
+    public void getNotificationsSince_success() throws Exception {
+        NotificationDTO notification = new NotificationDTO();
+        notification.setNotificationId(12L);
+        given(notificationService.getNotificationsSince(any(UserPrincipal.class), eq(11L), eq(50)))
+                .willReturn(new NotificationPageDTO(Arrays.asList(notification), false));
+
+        mockMvc.perform(get("/notifications/since/11").header("token", "valid-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.notifications[0].notificationId", is(12)))
+                .andExpect(jsonPath("$.hasMore", is(false)));
+    }
+}
@@ -4,11 +4,16 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
@@ -18,12 +23,19 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -31,6 +43,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestExportFormat;
 import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.Request;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
@@ -38,9 +51,20 @@ import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.DeleteRequestDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.FeedbackDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.MapClusterDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.NearbyRequestDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.PageDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestPostDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestSearchHitDTO;
 import ch.uzh.ifi.hase.soprafs24.security.AuthFilter;
+import ch.uzh.ifi.hase.soprafs24.security.StreamTickets;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
+import ch.uzh.ifi.hase.soprafs24.service.RequestClusterIndex;
+import ch.uzh.ifi.hase.soprafs24.service.RequestExportService;
+import ch.uzh.ifi.hase.soprafs24.service.RequestFeedBroadcaster;
+import ch.uzh.ifi.hase.soprafs24.service.RequestGeoIndex;
+import ch.uzh.ifi.hase.soprafs24.service.RequestSearchIndex;
 import ch.uzh.ifi.hase.soprafs24.service.RequestService;
 import ch.uzh.ifi.hase.soprafs24.service.UserService;
 
@@ -56,12 +80,30 @@ public class RequestControllerTest {
     @MockBean
     private RequestService requestService;
 
+    @MockBean
+    private RequestFeedBroadcaster requestFeedBroadcaster;
+
+    @MockBean
+    private RequestGeoIndex requestGeoIndex;
+
+    @MockBean
+    private RequestClusterIndex requestClusterIndex;
+
+    @MockBean
+    private RequestSearchIndex requestSearchIndex;
+
+    @MockBean
+    private RequestExportService requestExportService;
+
     @MockBean
     private UserService userService;
 
     @MockBean
     private AuthFilter authFilter;
 
+    @MockBean
+    private StreamTickets streamTickets;
+
     @MockBean
     private UserRepository userRepository;
 
@@ -71,6 +113,22 @@ public class RequestControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    private final UserPrincipal principal = new UserPrincipal(1L, "poster", false);
+
+    @BeforeEach
+    public void setup() {
+        when(userService.getPrincipalByToken(anyString())).thenReturn(principal);
+    }
+
+    @Test
+    public void createStreamTicket_issuesTicketForCaller() throws Exception {
+        when(streamTickets.issue(principal)).thenReturn("ticket-1");
+
+        mockMvc.perform(post("/requests/active/stream/ticket").header("token", "valid-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ticket").value("ticket-1"));
+    }
+
     /**
      * to Json
      */
@@ -127,7 +185,7 @@ public class RequestControllerTest {
         String token = "valid-token";
         String errorMessage = "Invalid token";
 
-        when(requestService.getRequests(token))
+        when(requestService.getRequests(principal))
                 .thenThrow(new ResponseStatusException(HttpStatus.UNAUTHORIZED, errorMessage));
 
         mockMvc.perform(get("/requests")
@@ -177,7 +235,7 @@ public class RequestControllerTest {
         updated.setTitle("Updated Title");
         updated.setDescription("Updated Desc");
 
-        when(requestService.updateRequest(eq(1L), any(Request.class), eq("validToken"))).thenReturn(updated);
+        when(requestService.updateRequest(eq(1L), any(Request.class), eq(principal))).thenReturn(updated);
 
         mockMvc.perform(put("/requests/1")
                         .header(AUTH_HEADER, "validToken")
@@ -189,12 +247,28 @@ public class RequestControllerTest {
                 .andExpect(jsonPath("$.description").value("Updated Desc"));
     }
 
+    @Test
+    public void updateRequest_concurrentModification_returnsConflict() throws Exception {
+        when(requestService.updateRequest(eq(1L), any(Request.class), eq(principal)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Request.class, 1L));
+
+        RequestPostDTO requestPostDTO = new RequestPostDTO();
+        requestPostDTO.setTitle("Updated Title");
+
+        mockMvc.perform(put("/requests/{requestId}", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(requestPostDTO))
+                        .header(AUTH_HEADER, "validToken"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("The request was changed by someone else, please reload and try again"));
+    }
+
     @Test
     public void testUpdateRequest_Unauthorized() throws Exception {
         Long requestId = 1L;
         String token = "invalid-token";
 
-        when(requestService.updateRequest(eq(requestId), any(Request.class), eq(token)))
+        when(requestService.updateRequest(eq(requestId), any(Request.class), eq(principal)))
                 .thenThrow(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token"));
 
         RequestPostDTO requestPostDTO = new RequestPostDTO();
@@ -215,7 +289,7 @@ public class RequestControllerTest {
         DeleteRequestDTO deleteDTO = new DeleteRequestDTO();
         deleteDTO.setReason("Some valid reason");
 
-        doNothing().when(requestService).deleteRequest(eq(1L), eq("validToken"), eq("Some valid reason"));
+        doNothing().when(requestService).deleteRequest(eq(1L), eq(principal), eq("Some valid reason"));
 
         mockMvc.perform(put("/requests/1/delete")
                         .header(AUTH_HEADER, "validToken")
@@ -231,7 +305,7 @@ public class RequestControllerTest {
         Long requestId = 1L;
 
         doThrow(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token"))
-                .when(requestService).deleteRequest(eq(requestId), eq(token), eq(reason));
+                .when(requestService).deleteRequest(eq(requestId), eq(principal), eq(reason));
 
         // Act & Assert
         mockMvc.perform(put("/requests/{requestId}/delete", requestId)
@@ -242,11 +316,42 @@ public class RequestControllerTest {
                 .andExpect(jsonPath("$.message").value("Invalid token"));
     }
 
+    @Test
+    void deleteRequests_returnsCounts() throws Exception {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        result.put("requested", 2);
+        result.put("deleted", 2);
+        result.put("skipped", 0);
+        result.put("notificationsDeleted", 3);
+        when(requestService.deleteRequests(eq(Arrays.asList(1L, 2L)), eq(principal), eq("spam"))).thenReturn(result);
+
+        mockMvc.perform(put("/requests/bulk-delete")
+                        .header(AUTH_HEADER, "adminToken")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"requestIds\": [1, 2], \"reason\": \"spam\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(2))
+                .andExpect(jsonPath("$.notificationsDeleted").value(3));
+    }
+
+    @Test
+    void deleteRequests_notAdmin_returnsUnauthorized() throws Exception {
+        when(requestService.deleteRequests(any(), eq(principal), any()))
+                .thenThrow(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token"));
+
+        mockMvc.perform(put("/requests/bulk-delete")
+                        .header(AUTH_HEADER, "validToken")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"requestIds\": [1]}"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.message").value("Invalid token"));
+    }
+
     @Test
     void deleteRequest_withNullDeleteDTO() throws Exception {
         DeleteRequestDTO deleteDTO = null;
 
-        doNothing().when(requestService).deleteRequest(eq(1L), eq("validToken"), eq(null));
+        doNothing().when(requestService).deleteRequest(eq(1L), eq(principal), eq(null));
 
         mockMvc.perform(put("/requests/1/delete")
                         .header(AUTH_HEADER, "validToken")
@@ -260,7 +365,7 @@ public class RequestControllerTest {
         DeleteRequestDTO deleteDTO = new DeleteRequestDTO();
         deleteDTO.setReason(null);
 
-        doNothing().when(requestService).deleteRequest(eq(1L), eq("validToken"), eq(null));
+        doNothing().when(requestService).deleteRequest(eq(1L), eq(principal), eq(null));
 
         mockMvc.perform(put("/requests/1/delete")
                         .header(AUTH_HEADER, "validToken")
@@ -275,7 +380,7 @@ public class RequestControllerTest {
         String token = "validToken";
         
         // Mock service to accept null reason
-        doNothing().when(requestService).deleteRequest(eq(requestId), eq(token), eq(null));
+        doNothing().when(requestService).deleteRequest(eq(requestId), eq(principal), eq(null));
         
         // Send request without body
         mockMvc.perform(put("/requests/{requestId}/delete", requestId)
@@ -284,7 +389,7 @@ public class RequestControllerTest {
                 .andExpect(status().isOk());
                 
         // Verify service was called with null reason
-        verify(requestService).deleteRequest(eq(requestId), eq(token), eq(null));
+        verify(requestService).deleteRequest(eq(requestId), eq(principal), eq(null));
     }
 
 
@@ -317,7 +422,7 @@ public class RequestControllerTest {
 
     @Test
     void completeRequest_success() throws Exception {
-        doNothing().when(requestService).completeRequest(eq(1L), eq("validToken"));
+        doNothing().when(requestService).completeRequest(eq(1L), eq(principal));
 
         mockMvc.perform(put("/requests/1/complete")
                         .header(AUTH_HEADER, "validToken"))
@@ -334,7 +439,7 @@ public class RequestControllerTest {
         request.setVolunteer(null);
 
         doThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only accepted requests can be completed"))
-                .when(requestService).completeRequest(requestId, token);
+                .when(requestService).completeRequest(requestId, principal);
 
         mockMvc.perform(put("/requests/{requestId}/complete", requestId)
                         .header(AUTH_HEADER, token))
@@ -345,7 +450,7 @@ public class RequestControllerTest {
 
     @Test
     void cancelRequest_success() throws Exception {
-        doNothing().when(requestService).cancelRequest(eq(1L), eq("validToken"));
+        doNothing().when(requestService).cancelRequest(eq(1L), eq(principal));
 
         mockMvc.perform(put("/requests/1/cancel")
                         .header(AUTH_HEADER, "validToken"))
@@ -358,7 +463,7 @@ public class RequestControllerTest {
         String token = "validToken";
 
         doThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "It's not volunteered"))
-                .when(requestService).cancelRequest(requestId, token);
+                .when(requestService).cancelRequest(requestId, principal);
 
         mockMvc.perform(put("/requests/{requestId}/cancel", requestId)
                         .header(AUTH_HEADER, token))
@@ -374,7 +479,7 @@ public class RequestControllerTest {
         req.setTitle("AllRequests Title");
         req.setCreationDate(LocalDate.now());
 
-        when(requestService.getRequests(eq("validToken"))).thenReturn(Collections.singletonList(req));
+        when(requestService.getRequests(eq(principal))).thenReturn(Collections.singletonList(req));
 
         mockMvc.perform(get("/requests")
                         .header(AUTH_HEADER, "validToken"))
@@ -390,7 +495,7 @@ public class RequestControllerTest {
         req.setTitle("AllRequests Title");
         req.setCreationDate(LocalDate.now());
 
-        when(requestService.getRequestByPoster(eq("validToken"))).thenReturn(Collections.singletonList(req));
+        when(requestService.getRequestByPoster(eq(principal))).thenReturn(Collections.singletonList(req));
 
         mockMvc.perform(get("/requests/me")
                         .header(AUTH_HEADER, "validToken"))
@@ -402,7 +507,7 @@ public class RequestControllerTest {
 
     @Test
     public void testGetRequestByPosterId_Exception() throws Exception {
-        when(requestService.getRequestByPoster(eq("validToken"))).thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "No requests found"));
+        when(requestService.getRequestByPoster(eq(principal))).thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "No requests found"));
 
         mockMvc.perform(get("/requests/me")
                         .header(AUTH_HEADER, "validToken"))
@@ -426,7 +531,7 @@ public class RequestControllerTest {
         String token = "userToken";
 
         doThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "You cannot volunteer for your own request."))
-                .when(requestService).volunteerRequest(eq(requestId), eq(token));
+                .when(requestService).volunteerRequest(eq(requestId), eq(principal));
 
         mockMvc.perform(put("/requests/{requestId}/volunteer", requestId)
                         .header(AUTH_HEADER, token))
@@ -449,6 +554,182 @@ public class RequestControllerTest {
                 .andExpect(jsonPath("$[0].title").value("Active Request Title"));
     }
 
+    @Test
+    public void getActiveRequestPage_bindsFilters() throws Exception {
+        RequestGetDTO dto = new RequestGetDTO();
+        dto.setId(4L);
+        dto.setTitle("Urgent");
+        when(requestService.getActiveRequestPage(
+                eq(Arrays.asList(RequestEmergencyLevel.HIGH, RequestEmergencyLevel.MEDIUM)), eq("CH"),
+                eq(LocalDate.of(2025, 5, 1)), eq(null), eq("emergency"), eq(2), eq(10)))
+                .thenReturn(new PageDTO<>(List.of(dto), 2, 10, 21, 3));
+
+        mockMvc.perform(get("/requests/active/page")
+                        .header(AUTH_HEADER, "validToken")
+                        .param("emergencyLevel", "HIGH", "MEDIUM")
+                        .param("countryCode", "CH")
+                        .param("from", "2025-05-01")
+                        .param("sort", "emergency")
+                        .param("page", "2")
+                        .param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(4))
+                .andExpect(jsonPath("$.totalElements").value(21))
+                .andExpect(jsonPath("$.totalPages").value(3));
+    }
+
+    @Test
+    public void getActiveRequestPage_invalidSize_returnsBadRequest() throws Exception {
+        when(requestService.getActiveRequestPage(any(), any(), any(), any(), eq("newest"), eq(0), eq(500)))
+                .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Size must be between 1 and 100"));
+
+        mockMvc.perform(get("/requests/active/page").header(AUTH_HEADER, "validToken").param("size", "500"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Size must be between 1 and 100"));
+    }
+
+    @Test
+    public void getAdminRequestPage_returnsPage() throws Exception {
+        RequestGetDTO dto = new RequestGetDTO();
+        dto.setId(3L);
+        when(requestService.getAdminRequestPage(any(UserPrincipal.class), eq(List.of(RequestStatus.DONE)), eq(1), eq(50)))
+                .thenReturn(new PageDTO<>(List.of(dto), 1, 50, 51, 2));
+
+        mockMvc.perform(get("/requests/admin/page")
+                        .header(AUTH_HEADER, "validToken")
+                        .param("status", "DONE")
+                        .param("page", "1")
+                        .param("size", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(3))
+                .andExpect(jsonPath("$.totalElements").value(51));
+    }
+
+    @Test
+    public void exportRequests_streamsTheBody() throws Exception {
+        StreamingResponseBody body = out -> out.write("id,title\n1,Groceries\n".getBytes());
+        when(requestExportService.export(any(UserPrincipal.class), eq(RequestExportFormat.CSV), isNull()))
+                .thenReturn(body);
+
+        MvcResult result = mockMvc.perform(get("/requests/admin/export")
+                        .header(AUTH_HEADER, "validToken")
+                        .param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"requests.csv\""))
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(content().string("id,title\n1,Groceries\n"));
+    }
+
+    @Test
+    public void exportRequests_unknownFormat_returnsBadRequest() throws Exception {
+        mockMvc.perform(get("/requests/admin/export").header(AUTH_HEADER, "validToken").param("format", "xml"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Unknown export format: xml"));
+    }
+
+    @Test
+    public void exportRequests_notAdmin_returnsUnauthorized() throws Exception {
+        when(requestExportService.export(any(UserPrincipal.class), eq(RequestExportFormat.NDJSON), isNull()))
+                .thenThrow(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token"));
+
+        mockMvc.perform(get("/requests/admin/export").header(AUTH_HEADER, "validToken"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.message").value("Invalid token"));
+    }
+
+    @Test
+    public void searchRequests_passesFiltersAndReturnsRankedHits() throws Exception {
+        RequestGetDTO dto = new RequestGetDTO();
+        dto.setId(9L);
+        dto.setTitle("Groceries for grandma");
+        when(requestSearchIndex.search("grocery shopping", List.of(RequestStatus.WAITING),
+                List.of(RequestEmergencyLevel.HIGH), 5))
+                .thenReturn(List.of(new RequestSearchHitDTO(dto, 3.25)));
+
+        mockMvc.perform(get("/requests/search")
+                        .header(AUTH_HEADER, "validToken")
+                        .param("q", "grocery shopping")
+                        .param("status", "WAITING")
+                        .param("emergencyLevel", "HIGH")
+                        .param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].request.id").value(9))
+                .andExpect(jsonPath("$[0].score").value(3.25));
+    }
+
+    @Test
+    public void searchRequests_blankQuery_returnsBadRequest() throws Exception {
+        when(requestSearchIndex.search(eq(" "), isNull(), isNull(), eq(20)))
+                .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search query must not be empty"));
+
+        mockMvc.perform(get("/requests/search").header(AUTH_HEADER, "validToken").param("q", " "))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Search query must not be empty"));
+    }
+
+    @Test
+    public void getNearbyRequests_returnsHitsWithDistance() throws Exception {
+        RequestGetDTO dto = new RequestGetDTO();
+        dto.setId(7L);
+        dto.setTitle("Nearby");
+        when(requestGeoIndex.findNearby(47.37, 8.54, 2000.0, 5))
+                .thenReturn(List.of(new NearbyRequestDTO(dto, 812.5)));
+
+        mockMvc.perform(get("/requests/nearby")
+                        .header(AUTH_HEADER, "validToken")
+                        .param("lat", "47.37")
+                        .param("lng", "8.54")
+                        .param("radius", "2000")
+                        .param("k", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].request.id").value(7))
+                .andExpect(jsonPath("$[0].distanceMeters").value(812.5));
+    }
+
+    @Test
+    public void getNearbyRequests_invalidCoordinates_returnsBadRequest() throws Exception {
+        when(requestGeoIndex.findNearby(eq(95.0), eq(8.54), isNull(), eq(10)))
+                .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid coordinates"));
+
+        mockMvc.perform(get("/requests/nearby").header(AUTH_HEADER, "validToken")
+                        .param("lat", "95").param("lng", "8.54"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Invalid coordinates"));
+    }
+
+    @Test
+    public void getRequestClusters_returnsAggregates() throws Exception {
+        when(requestClusterIndex.getClusters(45.8, 5.9, 47.8, 10.5, 8))
+                .thenReturn(List.of(new MapClusterDTO(47.1, 8.2, 12, RequestEmergencyLevel.HIGH, null)));
+
+        mockMvc.perform(get("/requests/clusters")
+                        .header(AUTH_HEADER, "validToken")
+                        .param("minLat", "45.8").param("minLng", "5.9")
+                        .param("maxLat", "47.8").param("maxLng", "10.5")
+                        .param("zoom", "8"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].count").value(12))
+                .andExpect(jsonPath("$[0].maxEmergencyLevel").value("HIGH"));
+    }
+
+    @Test
+    public void getRequestClusters_invalidBox_returnsBadRequest() throws Exception {
+        when(requestClusterIndex.getClusters(50.0, 5.9, 40.0, 10.5, 8))
+                .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid bounding box"));
+
+        mockMvc.perform(get("/requests/clusters")
+                        .header(AUTH_HEADER, "validToken")
+                        .param("minLat", "50").param("minLng", "5.9")
+                        .param("maxLat", "40").param("maxLng", "10.5")
+                        .param("zoom", "8"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Invalid bounding box"));
+    }
+
     @Test
     public void testGetActiveRequests_InternalServerError() throws Exception {
         when(requestService.getWaitingRequests()).thenThrow(new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "An unexpected error occurred"));
@@ -489,7 +770,7 @@ public class RequestControllerTest {
 
         when(requestService.getRequestById(requestId)).thenReturn(req);
         doThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only completed requests can be mark as done"))
-                .when(requestService).markRequestAsDone(eq(requestId), eq(validToken));
+                .when(requestService).markRequestAsDone(eq(requestId), eq(principal));
 
         mockMvc.perform(put("/requests/{requestId}/done", requestId)
                         .header(AUTH_HEADER, validToken))
@@ -512,7 +793,7 @@ public class RequestControllerTest {
 
         when(requestService.getRequestById(requestId)).thenReturn(req);
 
-        doNothing().when(requestService).feedback(eq(requestId), eq(validToken), eq(feedbackMessage), eq(rating));
+        doNothing().when(requestService).feedback(eq(requestId), eq(principal), eq(feedbackMessage), eq(rating));
 
         mockMvc.perform(put("/requests/{requestId}/feedback", requestId)
                         .header(AUTH_HEADER, validToken)
@@ -536,7 +817,7 @@ public class RequestControllerTest {
 
         when(requestService.getRequestById(requestId)).thenReturn(req);
         doThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only requests be marked as done can be feedback"))
-                .when(requestService).feedback(eq(requestId), eq(validToken), eq(feedbackMessage), eq(rating));
+                .when(requestService).feedback(eq(requestId), eq(principal), eq(feedbackMessage), eq(rating));
 
 
         mockMvc.perform(put("/requests/{requestId}/feedback", requestId)
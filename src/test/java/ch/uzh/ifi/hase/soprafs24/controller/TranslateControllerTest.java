@@ -15,6 +15,7 @@ import org.springframework.web.server.ResponseStatusException;
 
 import ch.uzh.ifi.hase.soprafs24.security.AuthFilter;
 import ch.uzh.ifi.hase.soprafs24.service.TranslationService;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
 
 @WebMvcTest(TranslateController.class)
 @AutoConfigureMockMvc(addFilters = false)
@@ -26,6 +27,9 @@ public class TranslateControllerTest {
     @MockBean
     private TranslationService translationService;
 
+    @MockBean
+    private UserService userService;
+
     @MockBean
     private AuthFilter authFilter;
 
@@ -31,12 +31,18 @@ import org.springframework.web.server.ResponseStatusException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import ch.uzh.ifi.hase.soprafs24.constant.LeaderboardMetric;
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LeaderboardEntryDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPostDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.VolunteerStatsDTO;
+import ch.uzh.ifi.hase.soprafs24.security.StreamTickets;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
 import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import ch.uzh.ifi.hase.soprafs24.service.VolunteerLeaderboard;
 
 @WebMvcTest(UserController.class)
 @AutoConfigureMockMvc(addFilters = false)
@@ -51,6 +57,13 @@ public class UserControllerTest {
   @MockBean
   private UserRepository userRepository;
 
+  @MockBean
+  private VolunteerLeaderboard volunteerLeaderboard;
+
+  // the real AuthFilter is created here and needs it
+  @MockBean
+  private StreamTickets streamTickets;
+
   @Autowired
   private MockMvc mockMvc;
 
@@ -63,6 +76,12 @@ public class UserControllerTest {
     }
   }
 
+  private UserPrincipal principalFor(String token, Long id) {
+    UserPrincipal principal = new UserPrincipal(id, "user" + id, false);
+    when(userService.getPrincipalByToken(token)).thenReturn(principal);
+    return principal;
+  }
+
   private User createSampleUser(Long id, String username, String token) {
     User user = new User();
     user.setId(id);
@@ -122,6 +141,63 @@ public class UserControllerTest {
         .andExpect(jsonPath("$.message", is("User with id " + invalidId + " was not found")));
   }
 
+  @Test
+  public void getUserById_includesReputation() throws Exception {
+    User user = createSampleUser(3L, "user3", "token3");
+    user.setCompletedCount(4);
+    user.setRatingCount(2);
+    user.setRatingSum(9);
+    when(userService.getUserById(3L)).thenReturn(user);
+
+    mockMvc.perform(get("/users/3").contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.completedCount", is(4)))
+        .andExpect(jsonPath("$.ratingCount", is(2)))
+        .andExpect(jsonPath("$.averageRating", is(4.5)));
+  }
+
+  @Test
+  public void getLeaderboard_returnsRankedEntries() throws Exception {
+    when(volunteerLeaderboard.top(LeaderboardMetric.RATED, "UZH", 5)).thenReturn(List.of(
+        new LeaderboardEntryDTO(1, 7L, "user7", "UZH", 12, 4, 4.75)));
+
+    mockMvc.perform(get("/users/leaderboard").param("by", "rated").param("school", "UZH").param("limit", "5"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].rank", is(1)))
+        .andExpect(jsonPath("$[0].userId", is(7)))
+        .andExpect(jsonPath("$[0].averageRating", is(4.75)));
+  }
+
+  @Test
+  public void getLeaderboard_unknownMetric_returns400() throws Exception {
+    mockMvc.perform(get("/users/leaderboard").param("by", "loudest"))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.message", is("Unknown leaderboard: loudest")));
+  }
+
+  @Test
+  public void getVolunteerStats_returns200() throws Exception {
+    VolunteerStatsDTO stats = new VolunteerStatsDTO(2L, "user2", 3, 2, 7, null);
+    when(userService.getVolunteerStats(2L)).thenReturn(stats);
+
+    mockMvc.perform(get("/users/2/stats").contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.userId", is(2)))
+        .andExpect(jsonPath("$.completedCount", is(3)))
+        .andExpect(jsonPath("$.ratingCount", is(2)))
+        .andExpect(jsonPath("$.averageRating", is(3.5)));
+  }
+
+  @Test
+  public void getVolunteerStats_userNotFound_returns404() throws Exception {
+    when(userService.getVolunteerStats(999L))
+        .thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "The user with id: 999 was not found"));
+
+    mockMvc.perform(get("/users/999/stats").contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isNotFound())
+        .andExpect(jsonPath("$.message", is("The user with id: 999 was not found")));
+  }
+
   @Test
   public void createUser_validInput_userCreated() throws Exception {
     UserPostDTO userPostDTO = new UserPostDTO();
@@ -215,7 +291,8 @@ public class UserControllerTest {
 
   @Test
   public void logoutUser_validToken_returns204() throws Exception {
-    doNothing().when(userService).logout("validLogoutToken");
+    UserPrincipal principal = principalFor("validLogoutToken", 1L);
+    doNothing().when(userService).logout(principal);
 
     MockHttpServletRequestBuilder putRequest = put("/users/logout")
         .header(AUTH_HEADER, "validLogoutToken");
@@ -226,8 +303,9 @@ public class UserControllerTest {
 
   @Test
   public void logoutUser_invalidToken_returns404() throws Exception {
+    UserPrincipal principal = principalFor("invalidToken", 1L);
     doThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "Invalid token"))
-        .when(userService).logout("invalidToken");
+        .when(userService).logout(principal);
 
     MockHttpServletRequestBuilder putRequest = put("/users/logout")
         .header(AUTH_HEADER, "invalidToken");
@@ -240,7 +318,8 @@ public class UserControllerTest {
   @Test
   public void getUserMe_validToken_returns200() throws Exception {
     User currentUser = createSampleUser(5L, "currentUser", "tokenMe");
-    when(userService.getUserByToken("tokenMe")).thenReturn(currentUser);
+    principalFor("tokenMe", 5L);
+    when(userService.getUserById(5L)).thenReturn(currentUser);
 
     MockHttpServletRequestBuilder getRequest = get("/users/me")
         .header(AUTH_HEADER, "tokenMe");
@@ -253,7 +332,8 @@ public class UserControllerTest {
 
   @Test
   public void getUserMe_invalidToken_returns404() throws Exception {
-    when(userService.getUserByToken("badToken"))
+    principalFor("badToken", 6L);
+    when(userService.getUserById(6L))
         .thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "Invalid user"));
 
     MockHttpServletRequestBuilder getRequest = get("/users/me")
@@ -270,7 +350,8 @@ public class UserControllerTest {
     userPutDTO.setUsername("updatedUsername");
     String jsonInput = asJsonString(userPutDTO);
 
-    doNothing().when(userService).updateUser(eq(1L), any(UserPutDTO.class), eq("validToken"));
+    UserPrincipal principal = principalFor("validToken", 1L);
+    doNothing().when(userService).updateUser(eq(1L), any(UserPutDTO.class), eq(principal));
 
     MockHttpServletRequestBuilder putRequest = put("/users/1")
         .contentType(MediaType.APPLICATION_JSON)
@@ -287,8 +368,9 @@ public class UserControllerTest {
     userPutDTO.setUsername("updatedUsername");
     String jsonInput = asJsonString(userPutDTO);
 
+    UserPrincipal principal = principalFor("someToken", 1L);
     doThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "User with id 10 was not found"))
-        .when(userService).updateUser(eq(10L), any(UserPutDTO.class), eq("someToken"));
+        .when(userService).updateUser(eq(10L), any(UserPutDTO.class), eq(principal));
 
     MockHttpServletRequestBuilder putRequest = put("/users/10")
         .contentType(MediaType.APPLICATION_JSON)
@@ -306,8 +388,9 @@ public class UserControllerTest {
     userPutDTO.setUsername("updatedUsername");
     String jsonInput = asJsonString(userPutDTO);
 
+    UserPrincipal principal = principalFor("badToken", 1L);
     doThrow(new ResponseStatusException(HttpStatus.FORBIDDEN, "Cannot edit another user's profile"))
-        .when(userService).updateUser(eq(5L), any(UserPutDTO.class), eq("badToken"));
+        .when(userService).updateUser(eq(5L), any(UserPutDTO.class), eq(principal));
 
     MockHttpServletRequestBuilder putRequest = put("/users/5")
         .contentType(MediaType.APPLICATION_JSON)
@@ -321,7 +404,8 @@ public class UserControllerTest {
 
   @Test
   public void deleteUser_valid_returns200() throws Exception {
-    doNothing().when(userService).deleteUser(7L, "validToken");
+    UserPrincipal principal = principalFor("validToken", 7L);
+    doNothing().when(userService).deleteUser(7L, principal);
 
     MockHttpServletRequestBuilder deleteRequest = delete("/users/7")
         .header(AUTH_HEADER, "validToken");
@@ -332,8 +416,9 @@ public class UserControllerTest {
 
   @Test
   public void deleteUser_notAuthorized_returns403() throws Exception {
+    UserPrincipal principal = principalFor("badToken", 1L);
     doThrow(new ResponseStatusException(HttpStatus.FORBIDDEN, "Not authorized to delete"))
-        .when(userService).deleteUser(8L, "badToken");
+        .when(userService).deleteUser(8L, principal);
 
     MockHttpServletRequestBuilder deleteRequest = delete("/users/8")
         .header(AUTH_HEADER, "badToken");
@@ -345,8 +430,9 @@ public class UserControllerTest {
 
   @Test
   public void deleteUser_notFound_returns404() throws Exception {
+    UserPrincipal principal = principalFor("validToken", 1L);
     doThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "User with id 9 was not found"))
-        .when(userService).deleteUser(9L, "validToken");
+        .when(userService).deleteUser(9L, principal);
 
     MockHttpServletRequestBuilder deleteRequest = delete("/users/9")
         .header(AUTH_HEADER, "validToken");
@@ -1,12 +1,17 @@
 package ch.uzh.ifi.hase.soprafs24.repository;
 
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.Message;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.ContactDTO;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -114,4 +119,122 @@ public class MessageRepositoryIntegrationTest {
         hasUnread = messageRepository.existsUnreadByRecipientId(2L);
         assertFalse(hasUnread);
     }
+
+    @Test
+    public void findDirectedBeforeAndAfter_useTimestampAndIdAsKey() {
+        LocalDateTime sameTime = LocalDateTime.of(2024, 5, 1, 12, 0);
+        Message first = new Message();
+        first.setSenderId(1L);
+        first.setRecipientId(2L);
+        first.setContent("first");
+        first.setTimestamp(sameTime);
+        entityManager.persist(first);
+        Message second = new Message();
+        second.setSenderId(1L);
+        second.setRecipientId(2L);
+        second.setContent("second");
+        second.setTimestamp(sameTime);
+        entityManager.persist(second);
+        Message reply = new Message();
+        reply.setSenderId(2L);
+        reply.setRecipientId(1L);
+        reply.setContent("reply");
+        reply.setTimestamp(sameTime);
+        entityManager.persist(reply);
+        entityManager.flush();
+
+        List<Message> before = messageRepository.findDirectedBefore(1L, 2L, sameTime, second.getId(), PageRequest.of(0, 10));
+        List<Message> after = messageRepository.findDirectedAfter(1L, 2L, sameTime, first.getId(), PageRequest.of(0, 10));
+        List<Message> latest = messageRepository.findDirectedLatest(1L, 2L, PageRequest.of(0, 1));
+
+        assertEquals(1, before.size());
+        assertEquals("first", before.get(0).getContent());
+        // the message from setup() is newer and also after the cursor
+        assertEquals(2, after.size());
+        assertEquals("second", after.get(0).getContent());
+        assertEquals(1, latest.size());
+        assertEquals("Hello, World!", latest.get(0).getContent());
+    }
+
+    private User persistUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("password");
+        user.setCreationDate(LocalDate.now());
+        user.setToken(username + "Token");
+        user.setEmail(username + "@edu.example.com");
+        user.setStatus(UserStatus.OFFLINE);
+        return entityManager.persist(user);
+    }
+
+    private void persistMessage(Long senderId, Long recipientId, String content, LocalDateTime timestamp, boolean read) {
+        Message message = new Message();
+        message.setSenderId(senderId);
+        message.setRecipientId(recipientId);
+        message.setContent(content);
+        message.setTimestamp(timestamp);
+        message.setRead(read);
+        entityManager.persist(message);
+    }
+
+    @Test
+    public void findChatContacts_aggregatesPerPartner() {
+        User me = persistUser("me");
+        User alice = persistUser("alice");
+        User bob = persistUser("bob");
+        LocalDateTime base = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+        persistMessage(alice.getId(), me.getId(), "hi from alice", base, false);
+        persistMessage(alice.getId(), me.getId(), "still there?", base.plusMinutes(1), false);
+        persistMessage(me.getId(), bob.getId(), "hi bob", base.plusMinutes(2), false);
+        persistMessage(bob.getId(), me.getId(), "hey", base.plusMinutes(3), true);
+        persistMessage(me.getId(), bob.getId(), "latest", base.plusMinutes(4), false);
+        // partner without a user row (deleted account) is skipped
+        persistMessage(9999L, me.getId(), "ghost", base.plusMinutes(5), false);
+        entityManager.flush();
+
+        List<ContactDTO> contacts = messageRepository.findChatContacts(me.getId());
+
+        assertEquals(2, contacts.size());
+        assertEquals("bob", contacts.get(0).getUsername());
+        assertEquals("latest", contacts.get(0).getLastMessage());
+        assertEquals(base.plusMinutes(4), contacts.get(0).getLastMessageAt());
+        assertEquals(0, contacts.get(0).getUnreadCount());
+        assertFalse(contacts.get(0).isHasUnread());
+        assertEquals("alice", contacts.get(1).getUsername());
+        assertEquals("still there?", contacts.get(1).getLastMessage());
+        assertEquals(2, contacts.get(1).getUnreadCount());
+        assertTrue(contacts.get(1).isHasUnread());
+    }
+
+    @Test
+    public void markReadBySenderIdAndRecipientId_returnsCount() {
+        persistMessage(1L, 2L, "second", LocalDateTime.now(), false);
+        persistMessage(2L, 1L, "other direction", LocalDateTime.now(), false);
+        entityManager.flush();
+
+        int updated = messageRepository.markReadBySenderIdAndRecipientId(1L, 2L);
+
+        assertEquals(2, updated);
+        assertFalse(messageRepository.existsUnreadByRecipientId(2L));
+        assertTrue(messageRepository.existsUnreadByRecipientId(1L));
+    }
+
+    @Test
+    public void markReadBySenderIdAndRecipientIdUpTo_stopsAtMessageId() {
+        Message later = new Message();
+        later.setSenderId(1L);
+        later.setRecipientId(2L);
+        later.setContent("not displayed yet");
+        later.setTimestamp(LocalDateTime.now());
+        entityManager.persist(later);
+        entityManager.flush();
+
+        int updated = messageRepository.markReadBySenderIdAndRecipientIdUpTo(1L, 2L, message.getId());
+
+        assertEquals(1, updated);
+        List<Message> unread = messageRepository.findBySenderIdAndRecipientIdAndIsReadFalse(1L, 2L);
+        assertEquals(1, unread.size());
+        assertEquals(later.getId(), unread.get(0).getId());
+    }
 }
@@ -13,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 
 import ch.uzh.ifi.hase.soprafs24.constant.NotificationType;
 import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
@@ -21,6 +22,7 @@ import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.Notification;
 import ch.uzh.ifi.hase.soprafs24.entity.Request;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.NotificationDTO;
 
 @DataJpaTest
 public class NotificationRepositoryIntegrationTest {
@@ -139,4 +141,52 @@ public class NotificationRepositoryIntegrationTest {
         assertEquals(NotificationType.ACCEPTED, savedNotification.getType());
         assertEquals(relatedUser.getId(), savedNotification.getRecipientId());
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void markReadByRecipientId_updatesOnlyUnread() {
+        int updated = notificationRepository.markReadByRecipientId(recipient.getId());
+
+        assertEquals(1, updated);
+        assertFalse(notificationRepository.existsByRecipientIdAndIsReadFalse(recipient.getId()));
+        assertEquals(0, notificationRepository.markReadByRecipientId(recipient.getId()));
+    }
+
+    @Test
+    public void findInboxLatest_projectsDTOsNewestFirst() {
+        entityManager.clear();
+
+        List<NotificationDTO> inbox = notificationRepository.findInboxLatest(recipient.getId(), PageRequest.of(0, 1));
+
+        assertEquals(1, inbox.size());
+        NotificationDTO newest = inbox.get(0);
+        assertEquals(notification1.getId(), newest.getNotificationId());
+        assertEquals(request.getId(), newest.getRequestId());
+        assertEquals("Help needed", newest.getRequestTitle());
+        assertEquals("volunteerUser", newest.getRelatedUsername());
+        assertEquals(NotificationType.VOLUNTEERED, newest.getType());
+        assertFalse(newest.getIsRead());
+    }
+
+    @Test
+    public void findInboxBefore_continuesAfterCursor() {
+        // the cursor is what the client got from the previous page
+        NotificationDTO last = notificationRepository.findInboxLatest(recipient.getId(), PageRequest.of(0, 1)).get(0);
+
+        List<NotificationDTO> older = notificationRepository.findInboxBefore(recipient.getId(),
+                last.getTimestamp(), last.getNotificationId(), PageRequest.of(0, 10));
+
+        assertEquals(1, older.size());
+        assertEquals(notification2.getId(), older.get(0).getNotificationId());
+    }
+
+    @Test
+    public void findInboxSince_returnsOnlyNewerIds() {
+        List<NotificationDTO> delta = notificationRepository.findInboxSince(recipient.getId(),
+                notification1.getId(), PageRequest.of(0, 10));
+
+        assertEquals(1, delta.size());
+        assertEquals(notification2.getId(), delta.get(0).getNotificationId());
+        assertTrue(notificationRepository.findInboxSince(recipient.getId(),
+                notification2.getId(), PageRequest.of(0, 10)).isEmpty());
+    }
+}
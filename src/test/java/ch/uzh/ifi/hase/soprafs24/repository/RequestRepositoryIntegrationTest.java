@@ -1,19 +1,29 @@
 package ch.uzh.ifi.hase.soprafs24.repository;
 
 import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
 import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
 import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.Request;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestExportDTO;
 
 @DataJpaTest
 public class RequestRepositoryIntegrationTest {
@@ -68,4 +78,91 @@ public class RequestRepositoryIntegrationTest {
         assertNotNull(testRequest.getPoster());
         assertEquals("testUser", testRequest.getPoster().getUsername());
     }
-}
\ No newline at end of file
+
+    private Request persistRequest(User poster, String title, RequestStatus status, RequestEmergencyLevel level,
+                                   String countryCode, LocalDate creationDate) {
+        Request request = new Request();
+        request.setTitle(title);
+        request.setDescription("Feed test");
+        request.setStatus(status);
+        request.setEmergencyLevel(level);
+        request.setCountryCode(countryCode);
+        request.setCreationDate(creationDate);
+        request.setPoster(poster);
+        return entityManager.persist(request);
+    }
+
+    @Test
+    public void findAll_withFeedSpecification_filtersSortsAndPages() {
+        User poster = new User();
+        poster.setUsername("feedPoster");
+        poster.setPassword("password");
+        poster.setCreationDate(LocalDate.now());
+        poster.setToken("feedToken");
+        poster.setEmail("feed@edu.example.com");
+        poster.setStatus(UserStatus.OFFLINE);
+        entityManager.persist(poster);
+
+        LocalDate today = LocalDate.of(2025, 5, 10);
+        Request low = persistRequest(poster, "low", RequestStatus.WAITING, RequestEmergencyLevel.LOW, "CH", today);
+        Request high = persistRequest(poster, "high", RequestStatus.WAITING, RequestEmergencyLevel.HIGH, "CH", today);
+        Request medium = persistRequest(poster, "medium", RequestStatus.WAITING, RequestEmergencyLevel.MEDIUM, "CH", today.minusDays(3));
+        persistRequest(poster, "german", RequestStatus.WAITING, RequestEmergencyLevel.HIGH, "DE", today);
+        persistRequest(poster, "taken", RequestStatus.VOLUNTEERED, RequestEmergencyLevel.HIGH, "CH", today);
+        entityManager.flush();
+
+        Specification<Request> swissWaiting = Specification.where(RequestSpecifications.hasStatus(RequestStatus.WAITING))
+                .and(RequestSpecifications.inCountry("CH"))
+                .and(RequestSpecifications.emergencyLevelIn(null));
+        Page<Request> firstPage = requestRepository.findAll(swissWaiting,
+                PageRequest.of(0, 2, Sort.by(Sort.Order.asc("emergencyLevel"), Sort.Order.desc("id"))));
+
+        assertEquals(3, firstPage.getTotalElements());
+        assertEquals(2, firstPage.getTotalPages());
+        assertEquals(List.of(high.getId(), medium.getId()),
+                firstPage.getContent().stream().map(Request::getId).collect(Collectors.toList()));
+
+        Specification<Request> recentUrgent = swissWaiting
+                .and(RequestSpecifications.emergencyLevelIn(List.of(RequestEmergencyLevel.LOW, RequestEmergencyLevel.MEDIUM)))
+                .and(RequestSpecifications.createdFrom(today.minusDays(1)))
+                .and(RequestSpecifications.createdUntil(today));
+        List<Request> filtered = requestRepository.findAll(recentUrgent, PageRequest.of(0, 10)).getContent();
+
+        assertEquals(1, filtered.size());
+        assertEquals(low.getId(), filtered.get(0).getId());
+    }
+
+    @Test
+    public void streamForExport_projectsRowsInIdOrder() {
+        User poster = new User();
+        poster.setUsername("exportPoster");
+        poster.setPassword("password");
+        poster.setCreationDate(LocalDate.now());
+        poster.setToken("exportToken");
+        poster.setEmail("export@edu.example.com");
+        poster.setStatus(UserStatus.OFFLINE);
+        entityManager.persist(poster);
+
+        LocalDate today = LocalDate.of(2025, 5, 10);
+        Request waiting = persistRequest(poster, "waiting", RequestStatus.WAITING, RequestEmergencyLevel.LOW, "CH", today);
+        Request done = persistRequest(poster, "done", RequestStatus.DONE, RequestEmergencyLevel.HIGH, null, today);
+        persistRequest(poster, "deleted", RequestStatus.DELETED, RequestEmergencyLevel.HIGH, "CH", today);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<RequestExportDTO> rows;
+        try (Stream<RequestExportDTO> stream = requestRepository.streamForExport(
+                EnumSet.of(RequestStatus.WAITING, RequestStatus.DONE))) {
+            rows = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(List.of(waiting.getId(), done.getId()),
+                rows.stream().map(RequestExportDTO::getId).collect(Collectors.toList()));
+        assertEquals("exportPoster", rows.get(0).getPosterUsername());
+        assertEquals(RequestStatus.DONE, rows.get(1).getStatus());
+        assertNull(rows.get(1).getVolunteerId());
+
+        Page<Request> adminPage = requestRepository.findAll(RequestSpecifications.isNotDeleted(), PageRequest.of(0, 10));
+        assertEquals(2, adminPage.getTotalElements());
+    }
+}
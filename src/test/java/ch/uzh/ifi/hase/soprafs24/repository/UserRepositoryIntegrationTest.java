@@ -1,9 +1,11 @@
 package ch.uzh.ifi.hase.soprafs24.repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +14,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.VolunteerStatsDTO;
 
 @DataJpaTest
 public class UserRepositoryIntegrationTest {
@@ -80,4 +83,58 @@ public class UserRepositoryIntegrationTest {
         assertEquals(user.getEmail(), testUser.getEmail());
         assertEquals(user.getStatus(), testUser.getStatus());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void addAndRemoveReputation_updateTheStatsRow() {
+        LocalDateTime activity = LocalDateTime.of(2025, 3, 1, 10, 0);
+        userRepository.addReputation(user.getId(), 1, 0, 0, activity);
+        userRepository.addReputation(user.getId(), 1, 4, 1, activity);
+        userRepository.addReputation(user.getId(), 0, 5, 1, activity.plusDays(1));
+        userRepository.removeReputation(user.getId(), 1, 4, 1);
+
+        VolunteerStatsDTO stats = userRepository.findVolunteerStats(user.getId()).orElseThrow();
+
+        assertEquals("testUser", stats.getUsername());
+        assertEquals(1, stats.getCompletedCount());
+        assertEquals(1, stats.getRatingCount());
+        assertEquals(5.0, stats.getAverageRating());
+        assertEquals(activity.plusDays(1), stats.getLastActivityAt());
+    }
+
+    @Test
+    public void removeReputation_moreThanCounted_stopsAtZero() {
+        userRepository.addReputation(user.getId(), 1, 4, 1, LocalDateTime.now());
+        userRepository.removeReputation(user.getId(), 2, 9, 2);
+        entityManager.clear();
+
+        User reloaded = userRepository.findById(user.getId()).orElseThrow();
+        assertEquals(0, reloaded.getCompletedCount());
+        assertEquals(0L, reloaded.getRatingSum());
+        assertEquals(0, reloaded.getRatingCount());
+    }
+
+    @Test
+    public void saveStaleUser_keepsReputation() {
+        // a profile edit that loaded the user before a rating came in
+        entityManager.clear();
+        User stale = userRepository.findById(user.getId()).orElseThrow();
+        userRepository.addReputation(user.getId(), 1, 5, 1, LocalDateTime.now());
+        stale.setSchool("UZH");
+        userRepository.saveAndFlush(stale);
+        entityManager.clear();
+
+        User reloaded = userRepository.findById(user.getId()).orElseThrow();
+        assertEquals("UZH", reloaded.getSchool());
+        assertEquals(1, reloaded.getCompletedCount());
+        assertEquals(5.0, reloaded.getAverageRating());
+    }
+
+    @Test
+    public void findVolunteerStats_noRatings_hasNoAverage() {
+        VolunteerStatsDTO stats = userRepository.findVolunteerStats(user.getId()).orElseThrow();
+
+        assertEquals(0, stats.getCompletedCount());
+        assertNull(stats.getAverageRating());
+        assertNull(stats.getLastActivityAt());
+    }
+}
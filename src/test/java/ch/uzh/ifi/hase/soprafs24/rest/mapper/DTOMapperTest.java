@@ -87,6 +87,7 @@ public class DTOMapperTest {
     request.setEmergencyLevel(RequestEmergencyLevel.LOW);
     request.setLocation("Zurich");
     request.setCreationDate(java.time.LocalDate.now());
+    request.setVersion(3L);
     
     User poster = new User();
     poster.setId(100L);
@@ -107,6 +108,7 @@ public class DTOMapperTest {
     assertEquals(request.getLocation(), requestGetDTO.getLocation());
     assertEquals(request.getCreationDate(), requestGetDTO.getCreationDate());
     assertEquals(poster.getId(), requestGetDTO.getPosterId());
+    assertEquals(request.getVersion(), requestGetDTO.getVersion());
 
     assertEquals(null, requestGetDTO.getVolunteerId());
   }
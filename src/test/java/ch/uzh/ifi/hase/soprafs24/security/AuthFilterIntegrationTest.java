@@ -0,0 +1,97 @@
+package ch.uzh.ifi.hase.soprafs24.security;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class AuthFilterIntegrationTest {
+
+    private static final String TOKEN = "filterToken";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TokenCache tokenCache;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    // number of executed "user by token" queries since the last statistics reset
+    private long tokenLookups() {
+        return Arrays.stream(statistics.getQueries())
+                .filter(query -> query.contains(".token="))
+                .mapToLong(query -> statistics.getQueryStatistics(query).getExecutionCount())
+                .sum();
+    }
+
+    @BeforeEach
+    public void setup() {
+        User user = new User();
+        user.setUsername("filterUser");
+        user.setEmail("filter@edu.example.com");
+        user.setPassword("password");
+        user.setCreationDate(LocalDate.now());
+        user.setToken(TOKEN);
+        user.setStatus(UserStatus.ONLINE);
+        userRepository.save(user);
+
+        tokenCache.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void request_coldCache_resolvesTokenOnce() throws Exception {
+        mockMvc.perform(get("/requests/me").header("token", TOKEN))
+                .andExpect(status().isOk());
+
+        assertEquals(1, tokenLookups());
+    }
+
+    @Test
+    public void request_warmCache_doesNotResolveTokenAgain() throws Exception {
+        mockMvc.perform(put("/notifications/mark-read").header("token", TOKEN))
+                .andExpect(status().isNoContent());
+        statistics.clear();
+
+        mockMvc.perform(get("/notifications/unread").header("token", TOKEN))
+                .andExpect(status().isOk());
+
+        assertEquals(0, tokenLookups());
+    }
+
+    @Test
+    public void request_invalidToken_returnsUnauthorized() throws Exception {
+        mockMvc.perform(get("/requests/me").header("token", "unknownToken"))
+                .andExpect(status().isUnauthorized());
+
+        assertEquals(1, tokenLookups());
+    }
+}
@@ -0,0 +1,38 @@
+package ch.uzh.ifi.hase.soprafs24.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class StreamTicketsTest {
+
+    @Test
+    public void testRedeem_onlyOnce() {
+        StreamTickets streamTickets = new StreamTickets(60);
+        String ticket = streamTickets.issue(new UserPrincipal(1L, "user", false));
+
+        assertEquals(1L, streamTickets.redeem(ticket).getId());
+        assertNull(streamTickets.redeem(ticket));
+    }
+
+    @Test
+    public void testRedeem_expiredOrUnknown_returnsNull() {
+        StreamTickets streamTickets = new StreamTickets(0);
+        String ticket = streamTickets.issue(new UserPrincipal(1L, "user", false));
+
+        assertNull(streamTickets.redeem(ticket));
+        assertNull(streamTickets.redeem("unknown"));
+    }
+
+    @Test
+    public void testIssue_dropsExpiredTickets() {
+        StreamTickets streamTickets = new StreamTickets(0);
+        String first = streamTickets.issue(new UserPrincipal(1L, "user", false));
+        String second = streamTickets.issue(new UserPrincipal(1L, "user", false));
+
+        assertNotEquals(first, second);
+        assertEquals(1, streamTickets.size());
+    }
+}
@@ -0,0 +1,60 @@
+package ch.uzh.ifi.hase.soprafs24.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class TokenCacheTest {
+
+    @Test
+    public void testPutAndGet_success() {
+        TokenCache tokenCache = new TokenCache(10, 300);
+        tokenCache.put("token", new UserPrincipal(1L, "user", false));
+
+        UserPrincipal result = tokenCache.get("token");
+
+        assertNotNull(result);
+        assertEquals(1L, result.getId());
+        assertEquals("user", result.getUsername());
+    }
+
+    @Test
+    public void testGet_expiredEntry_returnsNull() {
+        TokenCache tokenCache = new TokenCache(10, 0);
+        tokenCache.put("token", new UserPrincipal(1L, "user", false));
+
+        assertNull(tokenCache.get("token"));
+        assertEquals(0, tokenCache.size());
+    }
+
+    @Test
+    public void testPut_overCapacity_evictsLeastRecentlyUsed() {
+        TokenCache tokenCache = new TokenCache(2, 300);
+        tokenCache.put("token1", new UserPrincipal(1L, "user1", false));
+        tokenCache.put("token2", new UserPrincipal(2L, "user2", false));
+        // touch token1 so token2 becomes the eldest entry
+        tokenCache.get("token1");
+        tokenCache.put("token3", new UserPrincipal(3L, "user3", false));
+
+        assertEquals(2, tokenCache.size());
+        assertNotNull(tokenCache.get("token1"));
+        assertNull(tokenCache.get("token2"));
+        assertNotNull(tokenCache.get("token3"));
+    }
+
+    @Test
+    public void testEvictUser_removesAllTokensOfUser() {
+        TokenCache tokenCache = new TokenCache(10, 300);
+        tokenCache.put("token1", new UserPrincipal(1L, "user1", false));
+        tokenCache.put("token2", new UserPrincipal(1L, "user1", false));
+        tokenCache.put("token3", new UserPrincipal(2L, "user2", false));
+
+        tokenCache.evictUser(1L);
+
+        assertNull(tokenCache.get("token1"));
+        assertNull(tokenCache.get("token2"));
+        assertNotNull(tokenCache.get("token3"));
+    }
+}
@@ -0,0 +1,61 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class BoundedTopKTest {
+
+    // best first: higher scores win
+    private final BoundedTopK<Integer> top = new BoundedTopK<>(3, Comparator.<Integer>reverseOrder());
+
+    @Test
+    public void offer_keepsOnlyTheBest() {
+        top.offer(1L, 10);
+        top.offer(2L, 50);
+        top.offer(3L, 30);
+        assertTrue(top.offer(4L, 40));
+        assertFalse(top.offer(5L, 5));
+
+        assertEquals(List.of(50, 40, 30), top.best(10));
+        assertFalse(top.contains(1L));
+        assertFalse(top.contains(5L));
+        assertEquals(3, top.size());
+    }
+
+    @Test
+    public void offer_sameId_replacesTheValue() {
+        top.offer(1L, 10);
+        top.offer(2L, 20);
+        top.offer(1L, 30);
+
+        assertEquals(List.of(30, 20), top.best(10));
+        assertEquals(2, top.size());
+    }
+
+    @Test
+    public void offer_memberDropsBelowTheRest_isEvictedByTheNextOffer() {
+        top.offer(1L, 10);
+        top.offer(2L, 20);
+        top.offer(3L, 30);
+        top.offer(3L, 1);
+        top.offer(4L, 15);
+
+        assertEquals(List.of(20, 15, 10), top.best(10));
+    }
+
+    @Test
+    public void remove_andBestWithLimit() {
+        top.offer(1L, 10);
+        top.offer(2L, 20);
+        top.offer(3L, 30);
+
+        assertTrue(top.remove(3L));
+        assertFalse(top.remove(3L));
+        assertEquals(List.of(20), top.best(1));
+    }
+}
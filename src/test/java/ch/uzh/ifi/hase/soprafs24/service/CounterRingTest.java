@@ -0,0 +1,86 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import ch.uzh.ifi.hase.soprafs24.constant.AnalyticsGranularity;
+
+public class CounterRingTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @Test
+    public void add_countsPerBucket() {
+        CounterRing ring = new CounterRing(AnalyticsGranularity.HOUR);
+
+        ring.add(NOON.plusMinutes(5), "messages.sent|", 1);
+        ring.add(NOON.plusMinutes(59), "messages.sent|", 1);
+        ring.add(NOON.plusHours(1), "messages.sent|", 1);
+
+        assertEquals(Map.of("messages.sent|", 2L), ring.get(NOON));
+        assertEquals(Map.of("messages.sent|", 1L), ring.get(NOON.plusHours(1)));
+        assertTrue(ring.get(NOON.minusHours(1)).isEmpty());
+    }
+
+    @Test
+    public void add_reusesTheSlotOfTheBucketOneRingOlder() {
+        CounterRing ring = new CounterRing(AnalyticsGranularity.MINUTE);
+        LocalDateTime later = NOON.plusMinutes(AnalyticsGranularity.MINUTE.getRingSize());
+
+        ring.add(NOON, "users.registered|", 3);
+        ring.add(later, "users.registered|", 1);
+
+        assertTrue(ring.get(NOON).isEmpty());
+        assertEquals(Map.of("users.registered|", 1L), ring.get(later));
+        // a late event for the overwritten bucket is dropped
+        assertFalse(ring.add(NOON, "users.registered|", 1));
+        assertEquals(Map.of("users.registered|", 1L), ring.get(later));
+    }
+
+    @Test
+    public void oldestStart_coversTheWholeRing() {
+        CounterRing ring = new CounterRing(AnalyticsGranularity.DAY);
+
+        LocalDateTime oldest = ring.oldestStart(NOON);
+
+        assertEquals(NOON.toLocalDate().atStartOfDay().minusDays(AnalyticsGranularity.DAY.getRingSize() - 1),
+                oldest);
+    }
+
+    @Test
+    public void drainDirty_returnsFullCountsOnce_evenForOverwrittenBuckets() {
+        CounterRing ring = new CounterRing(AnalyticsGranularity.MINUTE);
+        LocalDateTime later = NOON.plusMinutes(AnalyticsGranularity.MINUTE.getRingSize());
+        ring.restore(NOON.plusMinutes(1), "messages.sent|", 10);
+        ring.add(NOON, "messages.sent|", 1);
+        ring.add(later, "messages.sent|", 2);
+
+        Map<LocalDateTime, Map<String, Long>> dirty = ring.drainDirty();
+
+        assertEquals(2, dirty.size());
+        assertEquals(Map.of("messages.sent|", 1L), dirty.get(NOON));
+        assertEquals(Map.of("messages.sent|", 2L), dirty.get(later));
+        // restored counts are not dirty until they change
+        assertFalse(dirty.containsKey(NOON.plusMinutes(1)));
+        assertTrue(ring.drainDirty().isEmpty());
+
+        ring.add(NOON.plusMinutes(1), "messages.sent|", 1);
+        assertEquals(Map.of("messages.sent|", 11L), ring.drainDirty().get(NOON.plusMinutes(1)));
+    }
+
+    @Test
+    public void markDirty_returnsBucketsToTheNextDrain() {
+        CounterRing ring = new CounterRing(AnalyticsGranularity.HOUR);
+        ring.add(NOON, "messages.sent|", 1);
+        Map<LocalDateTime, Map<String, Long>> dirty = ring.drainDirty();
+
+        ring.markDirty(dirty);
+
+        assertEquals(dirty, ring.drainDirty());
+    }
+}
@@ -0,0 +1,123 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class GeoGridTest {
+
+    private final GeoGrid<String> grid = new GeoGrid<>(0.1);
+    private final List<double[]> points = new ArrayList<>();
+
+    private void add(long id, double latitude, double longitude) {
+        grid.put(id, latitude, longitude, "r" + id);
+        points.add(new double[]{id, latitude, longitude});
+    }
+
+    private void addRandom(Random random, int count, double latitude, double longitude, double spread) {
+        for (int i = 0; i < count; i++) {
+            double lat = Math.max(-90, Math.min(90, latitude + (random.nextDouble() - 0.5) * spread));
+            double lon = longitude + (random.nextDouble() - 0.5) * spread;
+            lon = ((lon + 540) % 360) - 180;
+            add(points.size() + 1L, lat, lon);
+        }
+    }
+
+    // brute force reference, nearest first
+    private List<Long> bruteForce(double latitude, double longitude) {
+        return points.stream()
+                .sorted(Comparator.comparingDouble((double[] p) -> GeoGrid.distanceMeters(latitude, longitude, p[1], p[2]))
+                        .thenComparingDouble(p -> p[0]))
+                .map(p -> (long) p[0])
+                .collect(Collectors.toList());
+    }
+
+    private List<Long> ids(List<GeoGrid.Hit<String>> hits) {
+        return hits.stream().map(GeoGrid.Hit::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void distanceMeters_zurichToBern() {
+        double distance = GeoGrid.distanceMeters(47.3769, 8.5417, 46.9480, 7.4474);
+        assertEquals(95_500, distance, 1_000);
+    }
+
+    @Test
+    public void nearest_matchesBruteForce() {
+        Random random = new Random(42);
+        addRandom(random, 5000, 47.0, 8.0, 4.0);
+        addRandom(random, 50, 0.0, 0.0, 100.0);
+
+        for (int i = 0; i < 50; i++) {
+            double lat = 45 + random.nextDouble() * 4;
+            double lon = 6 + random.nextDouble() * 4;
+            assertEquals(bruteForce(lat, lon).subList(0, 10), ids(grid.nearest(lat, lon, 10)));
+        }
+        // far away from everything, only the sparse points are candidates
+        assertEquals(bruteForce(-60, 120).subList(0, 3), ids(grid.nearest(-60, 120, 3)));
+    }
+
+    @Test
+    public void withinRadius_matchesBruteForce() {
+        Random random = new Random(7);
+        addRandom(random, 5000, 47.0, 8.0, 2.0);
+
+        for (int i = 0; i < 50; i++) {
+            double lat = 46 + random.nextDouble() * 2;
+            double lon = 7 + random.nextDouble() * 2;
+            double radius = 500 + random.nextDouble() * 20_000;
+            List<Long> expected = bruteForce(lat, lon).stream()
+                    .filter(id -> {
+                        double[] p = points.get((int) (id - 1));
+                        return GeoGrid.distanceMeters(lat, lon, p[1], p[2]) <= radius;
+                    })
+                    .collect(Collectors.toList());
+            assertEquals(expected, ids(grid.withinRadius(lat, lon, radius)));
+        }
+    }
+
+    @Test
+    public void queries_wrapAroundTheAntimeridian() {
+        add(1L, 0.0, 179.95);
+        add(2L, 0.0, -179.95);
+        add(3L, 0.0, 178.0);
+
+        assertEquals(List.of(2L, 1L), ids(grid.withinRadius(0.0, -179.99, 20_000)));
+        assertEquals(List.of(1L, 2L, 3L), ids(grid.nearest(0.0, 179.99, 3)));
+    }
+
+    @Test
+    public void queries_nearThePole() {
+        add(1L, 89.95, 0.0);
+        add(2L, 89.95, 180.0);
+
+        assertEquals(List.of(1L, 2L), ids(grid.withinRadius(89.99, 10.0, 20_000)));
+    }
+
+    @Test
+    public void put_existingId_movesThePoint() {
+        add(1L, 47.0, 8.0);
+        grid.put(1L, 10.0, 10.0, "moved");
+
+        assertTrue(grid.withinRadius(47.0, 8.0, 1_000).isEmpty());
+        assertEquals("moved", grid.nearest(10.0, 10.0, 1).get(0).getValue());
+        assertEquals(1, grid.size());
+    }
+
+    @Test
+    public void remove_dropsThePoint() {
+        add(1L, 47.0, 8.0);
+        add(2L, 47.001, 8.0);
+        grid.remove(1L);
+        grid.remove(99L);
+
+        assertEquals(List.of(2L), ids(grid.nearest(47.0, 8.0, 5)));
+        assertEquals(1, grid.size());
+    }
+}
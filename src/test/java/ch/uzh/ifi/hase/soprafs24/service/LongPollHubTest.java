@@ -0,0 +1,134 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import ch.uzh.ifi.hase.soprafs24.rest.dto.PollBatchDTO;
+
+public class LongPollHubTest {
+
+    private final LongPollHub<String> hub = new LongPollHub<>(4, 30000L);
+
+    @SuppressWarnings("unchecked")
+    private PollBatchDTO<String> batchOf(DeferredResult<PollBatchDTO<String>> result) {
+        return (PollBatchDTO<String>) result.getResult();
+    }
+
+    @Test
+    public void subscribe_withoutEvents_waits() {
+        DeferredResult<PollBatchDTO<String>> result = hub.subscribe(1L, null);
+
+        assertFalse(result.hasResult());
+        assertEquals(1, hub.waiting(1L));
+    }
+
+    @Test
+    public void publish_completesEverySubscriberOfTheUser() {
+        DeferredResult<PollBatchDTO<String>> firstTab = hub.subscribe(1L, null);
+        DeferredResult<PollBatchDTO<String>> secondTab = hub.subscribe(1L, null);
+        DeferredResult<PollBatchDTO<String>> otherUser = hub.subscribe(2L, null);
+
+        hub.publish(1L, "hello");
+
+        assertEquals(List.of("hello"), batchOf(firstTab).getEvents());
+        assertEquals(List.of("hello"), batchOf(secondTab).getEvents());
+        assertFalse(otherUser.hasResult());
+        assertEquals(0, hub.waiting(1L));
+    }
+
+    @Test
+    public void subscribe_withCursor_returnsEventsPublishedInBetween() {
+        DeferredResult<PollBatchDTO<String>> first = hub.subscribe(1L, null);
+        hub.publish(1L, "a");
+        long cursor = batchOf(first).getCursor();
+
+        // published while the client was not polling
+        hub.publish(1L, "b");
+        hub.publish(1L, "c");
+
+        DeferredResult<PollBatchDTO<String>> second = hub.subscribe(1L, cursor);
+
+        assertTrue(second.hasResult());
+        assertEquals(List.of("b", "c"), batchOf(second).getEvents());
+        assertEquals(3L, batchOf(second).getCursor());
+        assertFalse(batchOf(second).isTruncated());
+    }
+
+    @Test
+    public void subscribe_cursorBehindBuffer_isTruncated() {
+        for (int i = 1; i <= 6; i++) {
+            hub.publish(1L, "m" + i);
+        }
+
+        PollBatchDTO<String> batch = batchOf(hub.subscribe(1L, 0L));
+
+        assertTrue(batch.isTruncated());
+        assertEquals(List.of("m3", "m4", "m5", "m6"), batch.getEvents());
+        assertEquals(6L, batch.getCursor());
+    }
+
+    @Test
+    public void subscribe_cursorFromBeforeRestart_isTruncated() {
+        hub.publish(1L, "a");
+
+        PollBatchDTO<String> batch = batchOf(hub.subscribe(1L, 42L));
+
+        assertTrue(batch.isTruncated());
+        assertEquals(List.of("a"), batch.getEvents());
+        assertEquals(1L, batch.getCursor());
+    }
+
+    @Test
+    public void evictIdle_dropsIdleMailboxesWithoutWaiters() {
+        AtomicLong now = new AtomicLong(0);
+        LongPollHub<String> idleHub = new LongPollHub<>(4, 30000L, 60000L, now::get);
+        idleHub.publish(1L, "never polled");
+        DeferredResult<PollBatchDTO<String>> waiting = idleHub.subscribe(2L, null);
+
+        now.set(60000L);
+
+        assertEquals(1, idleHub.evictIdle());
+        assertEquals(1, idleHub.mailboxCount());
+        assertEquals(1, idleHub.waiting(2L));
+        idleHub.publish(2L, "still delivered");
+        assertEquals(List.of("still delivered"), batchOf(waiting).getEvents());
+    }
+
+    @Test
+    public void subscribe_afterEviction_isTruncated() {
+        AtomicLong now = new AtomicLong(0);
+        LongPollHub<String> idleHub = new LongPollHub<>(4, 30000L, 60000L, now::get);
+        idleHub.publish(1L, "a");
+        long cursor = batchOf(idleHub.subscribe(1L, 0L)).getCursor();
+
+        // the next poll sweeps the idle mailbox first
+        now.set(120000L);
+        PollBatchDTO<String> batch = batchOf(idleHub.subscribe(1L, cursor));
+
+        assertTrue(batch.isTruncated());
+        assertEquals(List.of(), batch.getEvents());
+        assertEquals(1, idleHub.mailboxCount());
+    }
+
+    @Test
+    public void pollsOfManyUsers_doNotGrowTheHubForever() {
+        AtomicLong now = new AtomicLong(0);
+        LongPollHub<String> idleHub = new LongPollHub<>(4, 30000L, 60000L, now::get);
+        for (long userId = 1; userId <= 100; userId++) {
+            idleHub.subscribe(userId, null);
+            // answers the poll, the client went away afterwards
+            idleHub.publish(userId, "hi");
+        }
+
+        now.set(60000L);
+        idleHub.subscribe(1000L, null);
+
+        assertEquals(1, idleHub.mailboxCount());
+    }
+}
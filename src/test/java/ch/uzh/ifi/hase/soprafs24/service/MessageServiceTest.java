@@ -5,7 +5,7 @@ import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.function.LongSupplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -16,21 +16,29 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.server.ResponseStatusException;
 
 import ch.uzh.ifi.hase.soprafs24.entity.Message;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.repository.MessageRepository;
-import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.ContactDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.ConversationPageDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.MessageDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.PollBatchDTO;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
 
 @ExtendWith(MockitoExtension.class)
 public class MessageServiceTest {
@@ -39,10 +47,10 @@ public class MessageServiceTest {
     private MessageRepository messageRepository;
 
     @Mock
-    private UserRepository userRepository;
+    private PushService pushService;
 
     @Mock
-    private UserService userService;
+    private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private MessageService messageService;
@@ -50,21 +58,21 @@ public class MessageServiceTest {
     private User testUser;
     private User otherUser;
     private Message testMessage;
-    private String validToken;
+    private UserPrincipal principal;
 
     @BeforeEach
     public void setup() {
-        validToken = "validToken";
-        
         testUser = new User();
         testUser.setId(1L);
         testUser.setUsername("testUser");
         testUser.setEmail("test@edu.example.com");
         testUser.setPassword("password");
-        testUser.setToken(validToken);
+        testUser.setToken("validToken");
         testUser.setCreationDate(LocalDate.now());
         testUser.setIsAdmin(false);
 
+        principal = UserPrincipal.of(testUser);
+
         otherUser = new User();
         otherUser.setId(2L);
         otherUser.setUsername("otherUser");
@@ -118,41 +126,130 @@ public class MessageServiceTest {
         assertTrue(exception.getMessage().contains("Cannot get conversation with self"));
     }
 
+    private Message message(Long id, Long senderId, Long recipientId, LocalDateTime timestamp) {
+        Message message = new Message();
+        message.setId(id);
+        message.setSenderId(senderId);
+        message.setRecipientId(recipientId);
+        message.setContent("message " + id);
+        message.setTimestamp(timestamp);
+        return message;
+    }
+
+    @Test
+    public void testGetConversationPage_latest_mergesBothDirections() {
+        LocalDateTime base = LocalDateTime.of(2024, 5, 1, 12, 0);
+        // repository returns each direction newest first
+        when(messageRepository.findDirectedLatest(eq(1L), eq(2L), any()))
+                .thenReturn(Arrays.asList(message(5L, 1L, 2L, base.plusMinutes(5)), message(2L, 1L, 2L, base.plusMinutes(2))));
+        when(messageRepository.findDirectedLatest(eq(2L), eq(1L), any()))
+                .thenReturn(Arrays.asList(message(4L, 2L, 1L, base.plusMinutes(4)), message(3L, 2L, 1L, base.plusMinutes(3))));
+
+        ConversationPageDTO page = messageService.getConversationPage(1L, 2L, null, null, null, null, 3);
+
+        assertTrue(page.isHasMore());
+        assertEquals(3, page.getMessages().size());
+        assertEquals(3L, page.getMessages().get(0).getId());
+        assertEquals(4L, page.getMessages().get(1).getId());
+        assertEquals(5L, page.getMessages().get(2).getId());
+    }
+
+    @Test
+    public void testGetConversationPage_after_keepsOldestAfterCursor() {
+        LocalDateTime cursor = LocalDateTime.of(2024, 5, 1, 12, 0);
+        when(messageRepository.findDirectedAfter(eq(1L), eq(2L), eq(cursor), eq(7L), any()))
+                .thenReturn(Arrays.asList(message(9L, 1L, 2L, cursor.plusMinutes(1))));
+        when(messageRepository.findDirectedAfter(eq(2L), eq(1L), eq(cursor), eq(7L), any()))
+                .thenReturn(Arrays.asList(message(8L, 2L, 1L, cursor)));
+
+        ConversationPageDTO page = messageService.getConversationPage(1L, 2L, null, null, cursor, 7L, 5);
+
+        assertFalse(page.isHasMore());
+        assertEquals(2, page.getMessages().size());
+        assertEquals(8L, page.getMessages().get(0).getId());
+        assertEquals(9L, page.getMessages().get(1).getId());
+    }
+
+    @Test
+    public void testGetConversationPage_invalidArguments_throwBadRequest() {
+        LocalDateTime now = LocalDateTime.now();
+
+        assertThrows(ResponseStatusException.class,
+                () -> messageService.getConversationPage(1L, 1L, null, null, null, null, 10));
+        assertThrows(ResponseStatusException.class,
+                () -> messageService.getConversationPage(1L, 2L, null, null, null, null, 0));
+        assertThrows(ResponseStatusException.class,
+                () -> messageService.getConversationPage(1L, 2L, now, null, null, null, 10));
+        assertThrows(ResponseStatusException.class,
+                () -> messageService.getConversationPage(1L, 2L, now, 1L, now, 1L, 10));
+        verify(messageRepository, never()).findDirectedBefore(any(), any(), any(), any(), any());
+    }
+
+    // DeferredResult.getResult() is untyped, the only cast lives here
+    @SuppressWarnings("unchecked")
+    private static <T> T resultOf(DeferredResult<T> result) {
+        return (T) result.getResult();
+    }
+
+    private long pushedUnreadCount(Long userId) {
+        ArgumentCaptor<LongSupplier> count = ArgumentCaptor.forClass(LongSupplier.class);
+        verify(pushService).pushUnread(eq(userId), eq("messages"), count.capture());
+        return count.getValue().getAsLong();
+    }
+
     @Test
     public void testHasUnreadMessage_hasUnread() {
-        when(userService.getUserByToken(validToken)).thenReturn(testUser);
-        when(messageRepository.existsUnreadByRecipientId(testUser.getId())).thenReturn(true);
+        when(messageRepository.countByRecipientIdAndIsReadFalse(testUser.getId())).thenReturn(2L);
 
-        Map<String, Boolean> result = messageService.hasUnreadMessage(validToken);
+        Map<String, Object> result = messageService.hasUnreadMessage(principal);
 
-        assertTrue(result.get("hasUnread"));
-        verify(userService).getUserByToken(validToken);
-        verify(messageRepository).existsUnreadByRecipientId(testUser.getId());
+        assertEquals(true, result.get("hasUnread"));
+        assertEquals(2L, result.get("count"));
+        verify(messageRepository).countByRecipientIdAndIsReadFalse(testUser.getId());
     }
 
     @Test
     public void testHasUnreadMessage_noUnread() {
-        when(userService.getUserByToken(validToken)).thenReturn(testUser);
-        when(messageRepository.existsUnreadByRecipientId(testUser.getId())).thenReturn(false);
+        when(messageRepository.countByRecipientIdAndIsReadFalse(testUser.getId())).thenReturn(0L);
 
-        Map<String, Boolean> result = messageService.hasUnreadMessage(validToken);
+        Map<String, Object> result = messageService.hasUnreadMessage(principal);
 
-        assertFalse(result.get("hasUnread"));
+        assertEquals(false, result.get("hasUnread"));
+        assertEquals(0L, result.get("count"));
+    }
+
+    @Test
+    public void testHasUnreadMessage_countsInMemoryAfterFirstLoad() {
+        when(messageRepository.countByRecipientIdAndIsReadFalse(2L)).thenReturn(1L);
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(messageRepository.markReadBySenderIdAndRecipientId(1L, 2L)).thenReturn(2);
+        UserPrincipal recipient = new UserPrincipal(2L, "otherUser", false);
+
+        assertEquals(1L, messageService.hasUnreadMessage(recipient).get("count"));
+        MessageDTO messageDTO = new MessageDTO();
+        messageDTO.setSenderId(1L);
+        messageDTO.setRecipientId(2L);
+        messageDTO.setContent("Test message");
+        messageService.sendMessage(messageDTO);
+        assertEquals(2L, messageService.hasUnreadMessage(recipient).get("count"));
+        messageService.markMessageAsRead(1L, 2L);
+        assertEquals(0L, messageService.hasUnreadMessage(recipient).get("count"));
+
+        verify(messageRepository, times(1)).countByRecipientIdAndIsReadFalse(2L);
     }
 
     @Test
     public void testMarkMessageAsRead_success() {
         Long senderId = 1L;
         Long recipientId = 2L;
-        List<Message> unreadMessages = Arrays.asList(testMessage);
 
-        when(messageRepository.findBySenderIdAndRecipientIdAndIsReadFalse(senderId, recipientId))
-                .thenReturn(unreadMessages);
+        when(messageRepository.markReadBySenderIdAndRecipientId(senderId, recipientId)).thenReturn(3);
+        when(messageRepository.countByRecipientIdAndIsReadFalse(recipientId)).thenReturn(0L);
 
-        messageService.markMessageAsRead(senderId, recipientId);
+        int updated = messageService.markMessageAsRead(senderId, recipientId);
 
-        assertTrue(testMessage.isRead());
-        verify(messageRepository).saveAll(unreadMessages);
+        assertEquals(3, updated);
+        assertEquals(0L, pushedUnreadCount(recipientId));
     }
 
     @Test
@@ -160,38 +257,38 @@ public class MessageServiceTest {
         Long senderId = 1L;
         Long recipientId = 2L;
 
-        when(messageRepository.findBySenderIdAndRecipientIdAndIsReadFalse(senderId, recipientId))
-                .thenReturn(Arrays.asList());
+        when(messageRepository.markReadBySenderIdAndRecipientId(senderId, recipientId)).thenReturn(0);
 
-        messageService.markMessageAsRead(senderId, recipientId);
+        int updated = messageService.markMessageAsRead(senderId, recipientId);
 
-        verify(messageRepository, never()).saveAll(any());
+        assertEquals(0, updated);
+        verify(pushService, never()).pushUnread(any(), any(), any());
     }
 
     @Test
-    public void testGetChatContacts_success() {
-        when(userService.getUserByToken(validToken)).thenReturn(testUser);
-        when(messageRepository.findDistinctChatPartnerIds(testUser.getId())).thenReturn(Arrays.asList(2L));
-        when(userRepository.findById(2L)).thenReturn(Optional.of(otherUser));
-        when(messageRepository.hasUnreadMessages(2L, testUser.getId())).thenReturn(true);
+    public void testMarkMessagesAsReadUpTo_success() {
+        when(messageRepository.markReadBySenderIdAndRecipientIdUpTo(1L, 2L, 10L)).thenReturn(2);
+        when(messageRepository.countByRecipientIdAndIsReadFalse(2L)).thenReturn(1L);
 
-        List<ContactDTO> result = messageService.getChatContacts(validToken);
+        int updated = messageService.markMessagesAsReadUpTo(1L, 2L, 10L);
 
-        assertEquals(1, result.size());
-        assertEquals(2L, result.get(0).getId());
-        assertEquals("otherUser", result.get(0).getUsername());
-        assertTrue(result.get(0).isHasUnread());
+        assertEquals(2, updated);
+        assertEquals(1L, pushedUnreadCount(2L));
     }
 
     @Test
-    public void testGetChatContacts_userNotFound() {
-        when(userService.getUserByToken(validToken)).thenReturn(testUser);
-        when(messageRepository.findDistinctChatPartnerIds(testUser.getId())).thenReturn(Arrays.asList(2L));
-        when(userRepository.findById(2L)).thenReturn(Optional.empty());
+    public void testGetChatContacts_success() {
+        ContactDTO contact = new ContactDTO(2L, "otherUser", 3L, "See you", LocalDateTime.now());
+        when(messageRepository.findChatContacts(testUser.getId())).thenReturn(Arrays.asList(contact));
 
-        List<ContactDTO> result = messageService.getChatContacts(validToken);
+        List<ContactDTO> result = messageService.getChatContacts(principal);
 
-        assertEquals(0, result.size());
+        assertEquals(1, result.size());
+        assertEquals(2L, result.get(0).getId());
+        assertEquals("otherUser", result.get(0).getUsername());
+        assertEquals(3L, result.get(0).getUnreadCount());
+        assertEquals("See you", result.get(0).getLastMessage());
+        assertTrue(result.get(0).isHasUnread());
     }
 
     @Test
@@ -231,9 +328,26 @@ public class MessageServiceTest {
     public void testPoll_success() {
         Long userId = 1L;
 
-        DeferredResult<String> result = messageService.poll(userId);
+        DeferredResult<PollBatchDTO<MessageDTO>> result = messageService.poll(userId, null);
 
         assertNotNull(result);
+        assertFalse(result.hasResult());
+    }
+
+    @Test
+    public void testChat_completesWaitingPoll() {
+        MessageDTO messageDTO = new MessageDTO();
+        messageDTO.setSenderId(1L);
+        messageDTO.setRecipientId(2L);
+        messageDTO.setContent("Hello world");
+
+        DeferredResult<PollBatchDTO<MessageDTO>> result = messageService.poll(2L, null);
+        messageService.chat(messageDTO);
+
+        PollBatchDTO<MessageDTO> batch = resultOf(result);
+        assertEquals(1, batch.getEvents().size());
+        assertEquals("Hello world", batch.getEvents().get(0).getContent());
+        assertEquals(1L, batch.getCursor());
     }
 
     @Test
@@ -272,5 +386,40 @@ public class MessageServiceTest {
         assertEquals("Test message", result.getContent());
         assertFalse(result.isRead());
         assertNotNull(result.getTimestamp());
+        verify(pushService).pushMessage(2L, result);
+        when(messageRepository.countByRecipientIdAndIsReadFalse(2L)).thenReturn(1L);
+        assertEquals(1L, pushedUnreadCount(2L));
+    }
+
+    @Test
+    public void testSendMessage_wakesPollerAfterCommit() {
+        MessageDTO messageDTO = new MessageDTO();
+        messageDTO.setSenderId(1L);
+        messageDTO.setRecipientId(2L);
+        messageDTO.setContent("Test message");
+
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> {
+            Message saved = invocation.getArgument(0);
+            saved.setId(5L);
+            return saved;
+        });
+
+        DeferredResult<PollBatchDTO<MessageDTO>> result = messageService.poll(2L, null);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            messageService.sendMessage(messageDTO);
+            // still inside the transaction, nothing may be delivered yet
+            assertFalse(result.hasResult());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        }
+        finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        PollBatchDTO<MessageDTO> batch = resultOf(result);
+        assertEquals(1, batch.getEvents().size());
+        assertEquals(5L, batch.getEvents().get(0).getId());
     }
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestTransition;
+import ch.uzh.ifi.hase.soprafs24.event.RequestTransitionEvent;
+
+public class NotificationDispatcherTest {
+
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private NotificationDispatcher dispatcher;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+    }
+
+    private RequestTransitionEvent event(long requestId) {
+        return new RequestTransitionEvent(RequestTransition.VOLUNTEERED, requestId, 1L, "poster", 2L, "volunteer");
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (dispatcher.backlog() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, dispatcher.backlog());
+    }
+
+    @Test
+    public void queuedEvents_areWrittenInBatches() throws Exception {
+        CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        when(notificationService.createNotifications(anyList())).thenAnswer(invocation -> {
+            List<?> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            firstWriteStarted.countDown();
+            releaseFirstWrite.await(5, TimeUnit.SECONDS);
+            return batch.size();
+        });
+        dispatcher = new NotificationDispatcher(notificationService, 100, 10, 1L);
+
+        dispatcher.onTransition(event(1L));
+        assertTrue(firstWriteStarted.await(5, TimeUnit.SECONDS));
+        for (long id = 2; id <= 13; id++) {
+            dispatcher.onTransition(event(id));
+        }
+        releaseFirstWrite.countDown();
+        awaitIdle();
+
+        assertEquals(List.of(1, 10, 2), batchSizes);
+    }
+
+    @Test
+    public void failedBatch_isRetried() throws Exception {
+        when(notificationService.createNotifications(anyList()))
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenReturn(2);
+        dispatcher = new NotificationDispatcher(notificationService, 100, 10, 1L);
+
+        dispatcher.onTransition(event(1L));
+        awaitIdle();
+
+        verify(notificationService, times(2)).createNotifications(anyList());
+    }
+
+    @Test
+    public void batchThatKeepsFailing_isSplitSoOtherEventsSurvive() throws Exception {
+        CountDownLatch releaseWorker = new CountDownLatch(1);
+        List<Long> written = new CopyOnWriteArrayList<>();
+        when(notificationService.createNotifications(anyList())).thenAnswer(invocation -> {
+            List<RequestTransitionEvent> batch = invocation.getArgument(0);
+            releaseWorker.await(5, TimeUnit.SECONDS);
+            if (batch.stream().anyMatch(e -> e.getRequestId() == 2L)) {
+                throw new IllegalStateException("request 2 is broken");
+            }
+            batch.forEach(e -> written.add(e.getRequestId()));
+            return batch.size();
+        });
+        dispatcher = new NotificationDispatcher(notificationService, 100, 10, 1L);
+
+        dispatcher.onTransition(event(1L));
+        dispatcher.onTransition(event(2L));
+        dispatcher.onTransition(event(3L));
+        releaseWorker.countDown();
+        awaitIdle();
+
+        assertTrue(written.contains(1L));
+        assertTrue(written.contains(3L));
+        assertEquals(2, written.size());
+    }
+
+    @Test
+    public void fullQueue_writesInTheCallerThread() throws Exception {
+        CountDownLatch workerBusy = new CountDownLatch(1);
+        CountDownLatch releaseWorker = new CountDownLatch(1);
+        List<String> writerThreads = new CopyOnWriteArrayList<>();
+        when(notificationService.createNotifications(anyList())).thenAnswer(invocation -> {
+            writerThreads.add(Thread.currentThread().getName());
+            if (Thread.currentThread().getName().equals("notification-dispatcher")) {
+                workerBusy.countDown();
+                releaseWorker.await(5, TimeUnit.SECONDS);
+            }
+            return 1;
+        });
+        dispatcher = new NotificationDispatcher(notificationService, 1, 10, 1L);
+
+        dispatcher.onTransition(event(1L));
+        assertTrue(workerBusy.await(5, TimeUnit.SECONDS));
+        dispatcher.onTransition(event(2L)); // fills the queue
+        dispatcher.onTransition(event(3L)); // no room left
+
+        assertTrue(writerThreads.contains(Thread.currentThread().getName()));
+        releaseWorker.countDown();
+        awaitIdle();
+        assertEquals(3, writerThreads.size());
+    }
+}
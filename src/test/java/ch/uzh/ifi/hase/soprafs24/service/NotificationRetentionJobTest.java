@@ -0,0 +1,190 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.NotificationType;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.Notification;
+import ch.uzh.ifi.hase.soprafs24.entity.Request;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.NotificationRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class NotificationRetentionJobTest {
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RequestRepository requestRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path archiveDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LocalDateTime now = LocalDateTime.of(2024, 6, 1, 12, 0);
+
+    private User recipient;
+    private Request request;
+    private Request otherRequest;
+
+    private NotificationRetentionJob job(String archive) {
+        return new NotificationRetentionJob(notificationRepository, notificationService, objectMapper,
+                transactionManager, meterRegistry, true, 30, 90, 2, archive);
+    }
+
+    private Request createRequest(String title) {
+        Request request = new Request();
+        request.setTitle(title);
+        request.setDescription("Retention test description");
+        request.setEmergencyLevel(RequestEmergencyLevel.LOW);
+        request.setStatus(RequestStatus.WAITING);
+        request.setCreationDate(LocalDate.now());
+        request.setPoster(recipient);
+        return requestRepository.save(request);
+    }
+
+    private Notification createNotification(Request request, boolean isRead, int daysOld) {
+        Notification notification = new Notification();
+        notification.setRecipientId(recipient.getId());
+        notification.setRequest(request);
+        notification.setType(NotificationType.VOLUNTEERED);
+        notification.setIsRead(isRead);
+        notification.setTimestamp(now.minusDays(daysOld));
+        return notificationRepository.save(notification);
+    }
+
+    @BeforeEach
+    public void setup() {
+        recipient = new User();
+        recipient.setUsername("recipient");
+        recipient.setEmail("recipient@test.com");
+        recipient.setPassword("password");
+        recipient.setCreationDate(LocalDate.now());
+        recipient.setToken("token");
+        recipient.setStatus(UserStatus.ONLINE);
+        recipient = userRepository.save(recipient);
+        request = createRequest("Old request");
+        otherRequest = createRequest("Other request");
+    }
+
+    @Test
+    public void run_purgesOldReadNotificationsInBatches() {
+        for (int i = 0; i < 5; i++) {
+            createNotification(request, true, 40);
+        }
+        Notification recentRead = createNotification(request, true, 5);
+        Notification oldUnread = createNotification(request, false, 40);
+
+        NotificationRetentionJob.Result result = job("").run(now);
+
+        assertEquals(5, result.getPurged());
+        assertEquals(0, result.getCollapsed());
+        List<Long> remaining = notificationRepository.findAll().stream()
+                .map(Notification::getId).collect(Collectors.toList());
+        assertEquals(List.of(recentRead.getId(), oldUnread.getId()), remaining);
+        assertEquals(5.0, meterRegistry.counter("notification.retention.purged").count());
+        assertEquals(1, meterRegistry.timer("notification.retention.duration").count());
+    }
+
+    @Test
+    public void run_collapsesOldUnreadPerRequest() {
+        createNotification(request, false, 120);
+        createNotification(request, false, 110);
+        Notification newestOld = createNotification(request, false, 100);
+        Notification recentUnread = createNotification(request, false, 10);
+        Notification single = createNotification(otherRequest, false, 100);
+        assertEquals(5L, notificationService.getUnreadNotifications(UserPrincipal.of(recipient)).get("count"));
+
+        NotificationRetentionJob.Result result = job("").run(now);
+
+        assertEquals(2, result.getCollapsed());
+        List<Notification> remaining = notificationRepository.findAll();
+        assertEquals(3, remaining.size());
+        Notification summary = notificationRepository.findById(newestOld.getId()).orElseThrow();
+        assertEquals(3, summary.getOccurrences());
+        assertEquals(1, notificationRepository.findById(recentUnread.getId()).orElseThrow().getOccurrences());
+        assertEquals(1, notificationRepository.findById(single.getId()).orElseThrow().getOccurrences());
+        assertEquals(3L, notificationService.getUnreadNotifications(UserPrincipal.of(recipient)).get("count"));
+    }
+
+    @Test
+    public void run_withArchiveDir_writesPurgedRowsAsGzipNdjson() throws IOException {
+        Notification first = createNotification(request, true, 40);
+        Notification second = createNotification(otherRequest, true, 50);
+        Notification third = createNotification(request, true, 60);
+
+        job(archiveDir.toString()).run(now);
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(archiveDir)) {
+            files = listing.collect(Collectors.toList());
+        }
+        assertEquals(1, files.size());
+        assertTrue(files.get(0).getFileName().toString().endsWith(".ndjson.gz"));
+        List<String> lines;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(files.get(0))), StandardCharsets.UTF_8))) {
+            lines = reader.lines().collect(Collectors.toList());
+        }
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).contains("\"notificationId\":" + first.getId()));
+        assertTrue(lines.get(1).contains("\"notificationId\":" + second.getId()));
+        assertTrue(lines.get(1).contains("\"requestTitle\":\"Other request\""));
+        assertTrue(lines.get(2).contains("\"notificationId\":" + third.getId()));
+        assertEquals(0, notificationRepository.count());
+        assertEquals(3.0, meterRegistry.counter("notification.retention.archived").count());
+    }
+
+    @Test
+    public void run_nothingToDo_writesNoArchive() throws IOException {
+        createNotification(request, true, 1);
+
+        NotificationRetentionJob.Result result = job(archiveDir.toString()).run(now);
+
+        assertEquals(0, result.getPurged());
+        try (Stream<Path> listing = Files.list(archiveDir)) {
+            assertEquals(0, listing.count());
+        }
+    }
+}
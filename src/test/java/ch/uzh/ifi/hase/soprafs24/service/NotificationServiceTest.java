@@ -4,6 +4,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.LongSupplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -12,14 +13,20 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.web.server.ResponseStatusException;
 import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
@@ -27,12 +34,17 @@ import org.mockito.quality.Strictness;
 
 import ch.uzh.ifi.hase.soprafs24.constant.NotificationType;
 import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestTransition;
 import ch.uzh.ifi.hase.soprafs24.entity.Notification;
 import ch.uzh.ifi.hase.soprafs24.entity.Request;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.event.RequestTransitionEvent;
 import ch.uzh.ifi.hase.soprafs24.repository.NotificationRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.NotificationDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.NotificationPageDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
 
 @ExtendWith(MockitoExtension.class)
 @MockitoSettings(strictness = Strictness.LENIENT)
@@ -42,7 +54,10 @@ public class NotificationServiceTest {
     private NotificationRepository notificationRepository;
 
     @Mock
-    private UserService userService;
+    private RequestRepository requestRepository;
+
+    @Mock
+    private PushService pushService;
 
     @Mock
     private DTOMapper dtoMapper;
@@ -51,22 +66,22 @@ public class NotificationServiceTest {
     private NotificationService notificationService;
 
     @Captor
-    private ArgumentCaptor<Notification> notificationCaptor;
+    private ArgumentCaptor<List<Notification>> notificationsCaptor;
 
     private User poster;
     private User volunteer;
     private Request request;
     private Notification notification;
-    private String token;
+    private UserPrincipal principal;
 
     @BeforeEach
     public void setup() {
-        token = "validToken";
-
         poster = new User();
         poster.setId(1L);
         poster.setUsername("poster");
 
+        principal = UserPrincipal.of(poster);
+
         volunteer = new User();
         volunteer.setId(2L);
         volunteer.setUsername("volunteer");
@@ -87,17 +102,22 @@ public class NotificationServiceTest {
         notification.setType(NotificationType.VOLUNTEERED);
         notification.setTimestamp(LocalDateTime.now());
         notification.setIsRead(false);
-    }
 
-    @Test
-    public void volunteerNotification_createsCorrectNotifications() {
-        when(notificationRepository.save(any(Notification.class))).thenAnswer(i -> i.getArguments()[0]);
+        when(requestRepository.getOne(request.getId())).thenReturn(request);
+        when(requestRepository.findUndeletedByIdIn(any())).thenReturn(List.of(request));
+    }
 
-        notificationService.volunteerNotification(request, volunteer);
+    private List<Notification> created(RequestTransition transition) {
+        request.setVolunteer(volunteer);
+        notificationService.createNotifications(List.of(RequestTransitionEvent.of(transition, request, volunteer)));
+        verify(notificationRepository).saveAll(notificationsCaptor.capture());
+        return notificationsCaptor.getValue();
+    }
 
-        verify(notificationRepository, times(2)).save(notificationCaptor.capture());
+    @Test
+    public void volunteered_createsNotificationsForBothUsers() {
+        List<Notification> capturedNotifications = created(RequestTransition.VOLUNTEERED);
 
-        List<Notification> capturedNotifications = notificationCaptor.getAllValues();
         assertEquals(2, capturedNotifications.size());
 
         assertEquals(poster.getId(), capturedNotifications.get(0).getRecipientId());
@@ -107,33 +127,94 @@ public class NotificationServiceTest {
         assertEquals(volunteer.getId(), capturedNotifications.get(1).getRecipientId());
         assertEquals(poster.getId(), capturedNotifications.get(1).getRelatedUserId());
         assertEquals(NotificationType.VOLUNTEERING, capturedNotifications.get(1).getType());
+        assertEquals(request, capturedNotifications.get(1).getRequest());
     }
 
     @Test
-    public void acceptNotification_createsCorrectNotifications() {
-        when(notificationRepository.save(any(Notification.class))).thenAnswer(i -> i.getArguments()[0]);
+    public void volunteered_pushesToBothUsers() {
+        created(RequestTransition.VOLUNTEERED);
 
-        notificationService.acceptNotification(request, volunteer);
+        verify(pushService).pushNotification(eq(poster.getId()), any(NotificationDTO.class));
+        verify(pushService).pushNotification(eq(volunteer.getId()), any(NotificationDTO.class));
+        verify(pushService).pushUnread(eq(poster.getId()), eq("notifications"), any(LongSupplier.class));
+        verify(pushService).pushUnread(eq(volunteer.getId()), eq("notifications"), any(LongSupplier.class));
+    }
 
-        verify(notificationRepository, times(2)).save(notificationCaptor.capture());
+    @Test
+    public void createNotifications_writesWholeBatchWithOneSaveAll() {
+        int written = notificationService.createNotifications(List.of(
+                RequestTransitionEvent.of(RequestTransition.VOLUNTEERED, request, volunteer),
+                RequestTransitionEvent.of(RequestTransition.COMPLETED, request, volunteer)));
+
+        assertEquals(3, written);
+        verify(notificationRepository, times(1)).saveAll(anyList());
+        verify(notificationRepository, never()).save(any(Notification.class));
+    }
 
-        List<Notification> capturedNotifications = notificationCaptor.getAllValues();
-        assertEquals(2, capturedNotifications.size());
+    @Test
+    public void createNotifications_requestDeletedMeanwhile_writesNothing() {
+        when(requestRepository.findUndeletedByIdIn(any())).thenReturn(List.of());
 
-        assertEquals(NotificationType.ACCEPTING, capturedNotifications.get(0).getType());
-        assertEquals(NotificationType.ACCEPTED, capturedNotifications.get(1).getType());
+        int written = notificationService.createNotifications(List.of(
+                RequestTransitionEvent.of(RequestTransition.VOLUNTEERED, request, volunteer)));
+
+        assertEquals(0, written);
+        verify(notificationRepository, never()).saveAll(anyList());
+        verifyNoInteractions(pushService);
     }
 
     @Test
-    public void completeNotification_createsCorrectNotification() {
+    public void createNotifications_foldsIntoOpenUnreadNotificationOfSameFamily() {
+        notification.setTimestamp(LocalDateTime.now().minusHours(1));
+        when(notificationRepository.findUnreadForCoalescing(any(), any(), any())).thenReturn(List.of(notification));
         request.setVolunteer(volunteer);
-        when(notificationRepository.save(any(Notification.class))).thenAnswer(i -> i.getArguments()[0]);
 
-        notificationService.completeNotification(request);
+        int written = notificationService.createNotifications(List.of(
+                RequestTransitionEvent.of(RequestTransition.VOLUNTEER_CANCELLED, request, volunteer)));
 
-        verify(notificationRepository, times(1)).save(notificationCaptor.capture());
+        assertEquals(0, written);
+        assertEquals(NotificationType.VOLUNTEERCANCEL, notification.getType());
+        assertEquals(2, notification.getOccurrences());
+        assertTrue(notification.getTimestamp().isAfter(LocalDateTime.now().minusMinutes(1)));
+        verify(notificationRepository).saveAll(notificationsCaptor.capture());
+        assertTrue(notificationsCaptor.getValue().isEmpty());
+        verify(pushService).pushNotification(eq(poster.getId()), any(NotificationDTO.class));
+    }
 
-        Notification capturedNotification = notificationCaptor.getValue();
+    @Test
+    public void createNotifications_coalescesWithinBatchButKeepsFamiliesApart() {
+        request.setVolunteer(volunteer);
+
+        int written = notificationService.createNotifications(List.of(
+                RequestTransitionEvent.of(RequestTransition.VOLUNTEERED, request, volunteer),
+                RequestTransitionEvent.of(RequestTransition.VOLUNTEER_CANCELLED, request, volunteer),
+                RequestTransitionEvent.of(RequestTransition.COMPLETED, request, volunteer)));
+
+        assertEquals(3, written);
+        verify(notificationRepository).saveAll(notificationsCaptor.capture());
+        List<Notification> saved = notificationsCaptor.getValue();
+        assertEquals(NotificationType.VOLUNTEERCANCEL, saved.get(0).getType());
+        assertEquals(2, saved.get(0).getOccurrences());
+        assertEquals(NotificationType.VOLUNTEERING, saved.get(1).getType());
+        assertEquals(NotificationType.COMPLETED, saved.get(2).getType());
+    }
+
+    @Test
+    public void accepted_createsNotificationsForBothUsers() {
+        List<Notification> capturedNotifications = created(RequestTransition.ACCEPTED);
+
+        assertEquals(2, capturedNotifications.size());
+
+        assertEquals(NotificationType.ACCEPTING, capturedNotifications.get(0).getType());
+        assertEquals(NotificationType.ACCEPTED, capturedNotifications.get(1).getType());
+    }
+
+    @Test
+    public void completed_notifiesPoster() {
+        List<Notification> capturedNotifications = created(RequestTransition.COMPLETED);
+
+        assertEquals(1, capturedNotifications.size());
+        Notification capturedNotification = capturedNotifications.get(0);
         assertEquals(poster.getId(), capturedNotification.getRecipientId());
         assertEquals(volunteer.getId(), capturedNotification.getRelatedUserId());
         assertEquals(NotificationType.COMPLETED, capturedNotification.getType());
@@ -141,17 +222,16 @@ public class NotificationServiceTest {
 
     @Test
     public void markNotificationsAsRead_marksAllUnreadNotifications() {
-        List<Notification> unreadNotifications = new ArrayList<>();
-        unreadNotifications.add(notification);
+        when(notificationRepository.markReadByRecipientId(poster.getId())).thenReturn(4);
 
-        when(userService.getUserByToken(token)).thenReturn(poster);
-        when(notificationRepository.findByRecipientIdAndIsReadFalse(poster.getId())).thenReturn(unreadNotifications);
+        when(notificationRepository.countByRecipientIdAndIsReadFalse(poster.getId())).thenReturn(0L);
 
-        notificationService.markNotificationsAsRead(token);
+        int updated = notificationService.markNotificationsAsRead(principal);
 
-        verify(notificationRepository).saveAll(ArgumentMatchers.argThat(list ->
-                ((List<Notification>) list).stream().allMatch(Notification::getIsRead)
-        ));
+        assertEquals(4, updated);
+        ArgumentCaptor<LongSupplier> count = ArgumentCaptor.forClass(LongSupplier.class);
+        verify(pushService).pushUnread(eq(poster.getId()), eq("notifications"), count.capture());
+        assertEquals(0L, count.getValue().getAsLong());
     }
 
     @Test
@@ -164,10 +244,9 @@ public class NotificationServiceTest {
         notificationDTO.setType(notification.getType());
         notificationDTO.setRequestId(request.getId());
 
-        NotificationService testService = new NotificationService(notificationRepository, userService) {
+        NotificationService testService = new NotificationService(notificationRepository, requestRepository, pushService) {
             @Override
-            public List<NotificationDTO> getNotificationDTOS(String token) {
-                User user = userService.getUserByToken(token);
+            public List<NotificationDTO> getNotificationDTOS(UserPrincipal user) {
                 List<Notification> notifs = notificationRepository.findByRecipientIdOrderByTimestampDesc(user.getId());
 
                 List<NotificationDTO> dtos = new ArrayList<>();
@@ -182,10 +261,9 @@ public class NotificationServiceTest {
             }
         };
 
-        when(userService.getUserByToken(token)).thenReturn(poster);
         when(notificationRepository.findByRecipientIdOrderByTimestampDesc(poster.getId())).thenReturn(notifications);
 
-        List<NotificationDTO> result = testService.getNotificationDTOS(token);
+        List<NotificationDTO> result = testService.getNotificationDTOS(principal);
 
         assertEquals(1, result.size());
         assertEquals(notification.getRecipientId(), result.get(0).getRecipientId());
@@ -194,23 +272,58 @@ public class NotificationServiceTest {
 
     @Test
     public void getResponse_returnsCorrectHasUnreadStatus() {
-        when(userService.getUserByToken(token)).thenReturn(poster);
-        when(notificationRepository.existsByRecipientIdAndIsReadFalse(poster.getId())).thenReturn(true);
+        when(notificationRepository.countByRecipientIdAndIsReadFalse(poster.getId())).thenReturn(3L);
 
-        Map<String, Boolean> result = notificationService.getUnreadNotifications(token);
+        Map<String, Object> result = notificationService.getUnreadNotifications(principal);
 
-        assertTrue(result.get("hasUnread"));
-        verify(notificationRepository).existsByRecipientIdAndIsReadFalse(poster.getId());
+        assertEquals(true, result.get("hasUnread"));
+        assertEquals(3L, result.get("count"));
+        verify(notificationRepository).countByRecipientIdAndIsReadFalse(poster.getId());
     }
 
     @Test
     public void getUnreadNotifications_noUnread_returnsFalse() {
-        when(userService.getUserByToken(token)).thenReturn(poster);
-        when(notificationRepository.existsByRecipientIdAndIsReadFalse(poster.getId())).thenReturn(false);
+        when(notificationRepository.countByRecipientIdAndIsReadFalse(poster.getId())).thenReturn(0L);
+
+        Map<String, Object> result = notificationService.getUnreadNotifications(principal);
+
+        assertEquals(false, result.get("hasUnread"));
+        assertEquals(0L, result.get("count"));
+    }
 
-        Map<String, Boolean> result = notificationService.getUnreadNotifications(token);
+    @Test
+    public void getUnreadNotifications_followsCreateAndMarkReadWithoutRecount() {
+        when(notificationRepository.countByRecipientIdAndIsReadFalse(poster.getId())).thenReturn(0L);
+        when(notificationRepository.markReadByRecipientId(poster.getId())).thenReturn(1);
+        request.setVolunteer(volunteer);
 
-        assertFalse(result.get("hasUnread"));
+        notificationService.getUnreadNotifications(principal);
+        created(RequestTransition.COMPLETED);
+        assertEquals(1L, notificationService.getUnreadNotifications(principal).get("count"));
+        notificationService.markNotificationsAsRead(principal);
+        assertEquals(0L, notificationService.getUnreadNotifications(principal).get("count"));
+
+        verify(notificationRepository, times(1)).countByRecipientIdAndIsReadFalse(poster.getId());
+    }
+
+    @Test
+    public void deleteNotificationsForRequest_recountsAffectedRecipients() {
+        when(notificationRepository.countByRecipientIdAndIsReadFalse(poster.getId())).thenReturn(1L, 0L);
+        when(notificationRepository.findUnreadRecipientIdsByRequestIdIn(List.of(request.getId())))
+                .thenReturn(List.of(poster.getId()));
+        when(notificationRepository.deleteByRequestIdIn(List.of(request.getId()))).thenReturn(2);
+
+        assertEquals(1L, notificationService.getUnreadNotifications(principal).get("count"));
+        assertEquals(2, notificationService.deleteNotificationsForRequest(request));
+
+        assertEquals(0L, notificationService.getUnreadNotifications(principal).get("count"));
+    }
+
+    @Test
+    public void deleteNotificationsForRequests_noRequests_skipsDatabase() {
+        assertEquals(0, notificationService.deleteNotificationsForRequests(List.of()));
+
+        verify(notificationRepository, never()).deleteByRequestIdIn(anyList());
     }
 
     @Test
@@ -238,56 +351,114 @@ public class NotificationServiceTest {
 
     @Test
     public void markNotificationsAsRead_emptyList() {
-        when(userService.getUserByToken(token)).thenReturn(poster);
-        when(notificationRepository.findByRecipientIdAndIsReadFalse(poster.getId())).thenReturn(new ArrayList<>());
+        when(notificationRepository.markReadByRecipientId(poster.getId())).thenReturn(0);
 
-        notificationService.markNotificationsAsRead(token);
+        int updated = notificationService.markNotificationsAsRead(principal);
 
-        verify(notificationRepository).saveAll(new ArrayList<>());
+        assertEquals(0, updated);
+        verify(pushService, never()).pushUnread(any(), any(), any());
     }
 
     @Test
-    public void feedbackNotification_createsCorrectNotification() {
-        request.setVolunteer(volunteer);
-        when(notificationRepository.save(any(Notification.class))).thenAnswer(i -> i.getArguments()[0]);
-
-        notificationService.feedbackNotification(request);
+    public void feedback_notifiesVolunteer() {
+        List<Notification> capturedNotifications = created(RequestTransition.FEEDBACK);
 
-        verify(notificationRepository, times(1)).save(notificationCaptor.capture());
-
-        Notification capturedNotification = notificationCaptor.getValue();
+        assertEquals(1, capturedNotifications.size());
+        Notification capturedNotification = capturedNotifications.get(0);
         assertEquals(volunteer.getId(), capturedNotification.getRecipientId());
         assertEquals(poster.getId(), capturedNotification.getRelatedUserId());
         assertEquals(NotificationType.FEEDBACK, capturedNotification.getType());
     }
 
     @Test
-    public void posterCancelNotification_createsCorrectNotification() {
-        request.setVolunteer(volunteer);
-        when(notificationRepository.save(any(Notification.class))).thenAnswer(i -> i.getArguments()[0]);
-
-        notificationService.posterCancelNotification(request);
+    public void posterCancelled_notifiesVolunteer() {
+        List<Notification> capturedNotifications = created(RequestTransition.POSTER_CANCELLED);
 
-        verify(notificationRepository, times(1)).save(notificationCaptor.capture());
-
-        Notification capturedNotification = notificationCaptor.getValue();
+        assertEquals(1, capturedNotifications.size());
+        Notification capturedNotification = capturedNotifications.get(0);
         assertEquals(volunteer.getId(), capturedNotification.getRecipientId());
         assertEquals(poster.getId(), capturedNotification.getRelatedUserId());
         assertEquals(NotificationType.POSTERCANCEL, capturedNotification.getType());
     }
 
     @Test
-    public void volunteerCancelNotification_createsCorrectNotification() {
-        request.setVolunteer(volunteer);
-        when(notificationRepository.save(any(Notification.class))).thenAnswer(i -> i.getArguments()[0]);
+    public void volunteerCancelled_notifiesPoster() {
+        List<Notification> capturedNotifications = created(RequestTransition.VOLUNTEER_CANCELLED);
 
-        notificationService.volunteerCancelNotification(request);
-
-        verify(notificationRepository, times(1)).save(notificationCaptor.capture());
-
-        Notification capturedNotification = notificationCaptor.getValue();
+        assertEquals(1, capturedNotifications.size());
+        Notification capturedNotification = capturedNotifications.get(0);
         assertEquals(poster.getId(), capturedNotification.getRecipientId());
         assertEquals(volunteer.getId(), capturedNotification.getRelatedUserId());
         assertEquals(NotificationType.VOLUNTEERCANCEL, capturedNotification.getType());
     }
-} 
\ No newline at end of file
+
+    private List<NotificationDTO> inbox(long... ids) {
+        List<NotificationDTO> notifications = new ArrayList<>();
+        for (long id : ids) {
+            NotificationDTO dto = new NotificationDTO();
+            dto.setNotificationId(id);
+            notifications.add(dto);
+        }
+        return notifications;
+    }
+
+    @Test
+    public void getNotificationDTOS_returnsOnlyTheFirstPage() {
+        long[] ids = new long[NotificationService.DEFAULT_NOTIFICATION_PAGE_SIZE + 1];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = 100L - i;
+        }
+        when(notificationRepository.findInboxLatest(poster.getId(),
+                PageRequest.of(0, NotificationService.DEFAULT_NOTIFICATION_PAGE_SIZE + 1))).thenReturn(inbox(ids));
+
+        List<NotificationDTO> result = notificationService.getNotificationDTOS(principal);
+
+        assertEquals(NotificationService.DEFAULT_NOTIFICATION_PAGE_SIZE, result.size());
+        assertEquals(100L, result.get(0).getNotificationId());
+    }
+
+    @Test
+    public void getNotificationPage_fetchesOneExtraRowForHasMore() {
+        when(notificationRepository.findInboxLatest(poster.getId(), PageRequest.of(0, 3))).thenReturn(inbox(9L, 8L, 7L));
+
+        NotificationPageDTO page = notificationService.getNotificationPage(principal, null, null, 2);
+
+        assertEquals(2, page.getNotifications().size());
+        assertEquals(9L, page.getNotifications().get(0).getNotificationId());
+        assertTrue(page.isHasMore());
+    }
+
+    @Test
+    public void getNotificationPage_withCursor_readsOlderNotifications() {
+        LocalDateTime cursor = LocalDateTime.now();
+        when(notificationRepository.findInboxBefore(poster.getId(), cursor, 7L, PageRequest.of(0, 11)))
+                .thenReturn(inbox(6L));
+
+        NotificationPageDTO page = notificationService.getNotificationPage(principal, cursor, 7L, 10);
+
+        assertEquals(1, page.getNotifications().size());
+        assertFalse(page.isHasMore());
+    }
+
+    @Test
+    public void getNotificationPage_invalidArguments_throwBadRequest() {
+        assertThrows(ResponseStatusException.class,
+                () -> notificationService.getNotificationPage(principal, null, null, 0));
+        assertThrows(ResponseStatusException.class,
+                () -> notificationService.getNotificationPage(principal, null, null,
+                        NotificationService.MAX_NOTIFICATION_PAGE_SIZE + 1));
+        assertThrows(ResponseStatusException.class,
+                () -> notificationService.getNotificationPage(principal, LocalDateTime.now(), null, 10));
+    }
+
+    @Test
+    public void getNotificationsSince_returnsDeltaAfterId() {
+        when(notificationRepository.findInboxSince(poster.getId(), 5L, PageRequest.of(0, 51))).thenReturn(inbox(6L, 7L));
+
+        NotificationPageDTO page = notificationService.getNotificationsSince(principal, 5L, 50);
+
+        assertEquals(2, page.getNotifications().size());
+        assertEquals(6L, page.getNotifications().get(0).getNotificationId());
+        assertFalse(page.isHasMore());
+    }
+}
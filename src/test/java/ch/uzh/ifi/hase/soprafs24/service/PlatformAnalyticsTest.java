@@ -0,0 +1,167 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import ch.uzh.ifi.hase.soprafs24.constant.AnalyticsGranularity;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEventType;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.AnalyticsRollup;
+import ch.uzh.ifi.hase.soprafs24.event.MessageSentEvent;
+import ch.uzh.ifi.hase.soprafs24.event.RequestEvent;
+import ch.uzh.ifi.hase.soprafs24.repository.AnalyticsRollupRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.AnalyticsBucketDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
+
+public class PlatformAnalyticsTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 1, 12, 30);
+
+    private final AnalyticsRollupRepository rollupRepository = mock(AnalyticsRollupRepository.class);
+
+    private PlatformAnalytics analytics;
+
+    @BeforeEach
+    public void setup() {
+        analytics = new PlatformAnalytics(rollupRepository, mock(PlatformTransactionManager.class));
+    }
+
+    private RequestEvent requestEvent(RequestEventType type, RequestStatus status, String countryCode) {
+        RequestGetDTO request = new RequestGetDTO();
+        request.setId(10L);
+        request.setStatus(status);
+        request.setEmergencyLevel(RequestEmergencyLevel.HIGH);
+        request.setCountryCode(countryCode);
+        return new RequestEvent(type, request);
+    }
+
+    private AnalyticsRollup row(AnalyticsGranularity granularity, LocalDateTime start, String metric,
+                                String dimension, long count) {
+        AnalyticsRollup row = new AnalyticsRollup(granularity, start, metric, dimension);
+        row.setCount(count);
+        return row;
+    }
+
+    @Test
+    public void events_areCountedByMetricAndDimension() {
+        analytics.onRequestEvent(requestEvent(RequestEventType.CREATED, RequestStatus.WAITING, "CH"));
+        analytics.onRequestEvent(requestEvent(RequestEventType.CREATED, RequestStatus.WAITING, null));
+        analytics.onRequestEvent(requestEvent(RequestEventType.VOLUNTEERED, RequestStatus.VOLUNTEERED, "CH"));
+        analytics.onRequestEvent(requestEvent(RequestEventType.UPDATED, RequestStatus.WAITING, "CH"));
+        analytics.onMessageSent(new MessageSentEvent(1L, 1L, 2L, null));
+
+        // the events may have crossed into the next minute
+        Map<String, Map<String, Long>> counters = new HashMap<>();
+        for (AnalyticsBucketDTO bucket : analytics.report(AnalyticsGranularity.MINUTE, 2, LocalDateTime.now())) {
+            bucket.getCounters().forEach((metric, counts) -> counts.forEach((dimension, count) ->
+                    counters.computeIfAbsent(metric, m -> new HashMap<>()).merge(dimension, count, Long::sum)));
+        }
+        assertEquals(Map.of("CH/HIGH", 1L, "unknown/HIGH", 1L), counters.get(PlatformAnalytics.REQUESTS_CREATED));
+        assertEquals(Map.of("VOLUNTEERED", 1L), counters.get(PlatformAnalytics.REQUEST_TRANSITIONS));
+        assertEquals(Map.of("", 1L), counters.get(PlatformAnalytics.MESSAGES_SENT));
+        verifyNoInteractions(rollupRepository);
+    }
+
+    @Test
+    public void report_oldestFirst_withEmptyBuckets() {
+        analytics.record(PlatformAnalytics.USERS_REGISTERED, "", NOW.minusHours(2));
+
+        List<AnalyticsBucketDTO> report = analytics.report(AnalyticsGranularity.HOUR, 3, NOW);
+
+        assertEquals(3, report.size());
+        assertEquals(LocalDateTime.of(2024, 5, 1, 10, 0), report.get(0).getStart());
+        assertEquals(Map.of("", 1L), report.get(0).getCounters().get(PlatformAnalytics.USERS_REGISTERED));
+        assertTrue(report.get(2).getCounters().isEmpty());
+    }
+
+    @Test
+    public void report_olderThanTheRing_readsRollupRows() {
+        LocalDateTime oldestInMemory = NOW.toLocalDate().atStartOfDay()
+                .minusDays(AnalyticsGranularity.DAY.getRingSize() - 1);
+        LocalDateTime first = oldestInMemory.minusDays(2);
+        when(rollupRepository.findRange(AnalyticsGranularity.DAY, first, oldestInMemory))
+                .thenReturn(List.of(row(AnalyticsGranularity.DAY, first, PlatformAnalytics.MESSAGES_SENT, "", 7)));
+
+        List<AnalyticsBucketDTO> report = analytics.report(AnalyticsGranularity.DAY,
+                AnalyticsGranularity.DAY.getRingSize() + 2, NOW);
+
+        assertEquals(first, report.get(0).getStart());
+        assertEquals(Map.of("", 7L), report.get(0).getCounters().get(PlatformAnalytics.MESSAGES_SENT));
+        assertTrue(report.get(1).getCounters().isEmpty());
+    }
+
+    @Test
+    public void report_minutesBeyondTheRing_badRequest() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> analytics.report(AnalyticsGranularity.MINUTE, AnalyticsGranularity.MINUTE.getRingSize() + 1,
+                        NOW));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+    }
+
+    @Test
+    public void report_notAdmin_unauthorized() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> analytics.report(new UserPrincipal(1L, "poster", false), AnalyticsGranularity.HOUR, 24));
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
+    }
+
+    @Test
+    public void flush_beforeRestore_writesNothing() {
+        analytics.record(PlatformAnalytics.MESSAGES_SENT, "", NOW);
+
+        assertEquals(0, analytics.flush());
+        verify(rollupRepository, never()).saveAll(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void flush_afterRestore_writesFullCountsOfChangedHoursAndDays() {
+        LocalDateTime hour = LocalDateTime.of(2024, 5, 1, 12, 0);
+        AnalyticsRollup persisted = row(AnalyticsGranularity.HOUR, hour, PlatformAnalytics.MESSAGES_SENT, "", 5);
+        when(rollupRepository.findRange(eq(AnalyticsGranularity.HOUR), any(), any())).thenReturn(List.of(persisted));
+        when(rollupRepository.findByGranularityAndBucketStartIn(eq(AnalyticsGranularity.HOUR), anyCollection()))
+                .thenReturn(List.of(persisted));
+        analytics.restore(NOW);
+        analytics.record(PlatformAnalytics.MESSAGES_SENT, "", NOW);
+
+        // one hour row, one day row, the minute stays in memory
+        assertEquals(2, analytics.flush());
+
+        ArgumentCaptor<List<AnalyticsRollup>> saved = ArgumentCaptor.forClass(List.class);
+        verify(rollupRepository, times(2)).saveAll(saved.capture());
+        AnalyticsRollup hourRow = saved.getAllValues().get(0).get(0);
+        assertEquals(persisted, hourRow);
+        assertEquals(6, hourRow.getCount());
+        AnalyticsRollup dayRow = saved.getAllValues().get(1).get(0);
+        assertEquals(AnalyticsGranularity.DAY, dayRow.getGranularity());
+        assertEquals(1, dayRow.getCount());
+
+        // nothing changed since
+        assertEquals(0, analytics.flush());
+    }
+}
@@ -0,0 +1,186 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.web.server.ResponseStatusException;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEventType;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.Request;
+import ch.uzh.ifi.hase.soprafs24.event.RequestEvent;
+import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.MapClusterDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
+
+public class RequestClusterIndexTest {
+
+    private final RequestRepository requestRepository = mock(RequestRepository.class);
+    private RequestClusterIndex index;
+
+    private void publish(RequestEventType type, long id, RequestStatus status, Double latitude, Double longitude,
+                         RequestEmergencyLevel level) {
+        index.onRequestEvent(new RequestEvent(type, snapshot(id, status, latitude, longitude, level, null)));
+    }
+
+    private RequestGetDTO snapshot(long id, RequestStatus status, Double latitude, Double longitude,
+                                   RequestEmergencyLevel level, Long version) {
+        RequestGetDTO dto = new RequestGetDTO();
+        dto.setVersion(version);
+        dto.setId(id);
+        dto.setStatus(status);
+        dto.setLatitude(latitude);
+        dto.setLongitude(longitude);
+        dto.setEmergencyLevel(level);
+        return dto;
+    }
+
+    private void create(long id, double latitude, double longitude, RequestEmergencyLevel level) {
+        publish(RequestEventType.CREATED, id, RequestStatus.WAITING, latitude, longitude, level);
+    }
+
+    private int total(List<MapClusterDTO> clusters) {
+        return clusters.stream().mapToInt(MapClusterDTO::getCount).sum();
+    }
+
+    @BeforeEach
+    public void setup() {
+        when(requestRepository.findByStatus(RequestStatus.WAITING)).thenReturn(List.of());
+        index = new RequestClusterIndex(requestRepository);
+        index.rebuild();
+    }
+
+    @Test
+    public void rebuild_loadsWaitingRequests() {
+        Request request = new Request();
+        request.setId(1L);
+        request.setStatus(RequestStatus.WAITING);
+        request.setLatitude(47.37);
+        request.setLongitude(8.54);
+        request.setEmergencyLevel(RequestEmergencyLevel.MEDIUM);
+        when(requestRepository.findByStatus(RequestStatus.WAITING)).thenReturn(List.of(request));
+
+        index.rebuild();
+
+        List<MapClusterDTO> clusters = index.getClusters(-90, -180, 90, 180, 0);
+        assertEquals(1, clusters.size());
+        assertEquals(1L, clusters.get(0).getRequestId());
+        assertEquals(RequestEmergencyLevel.MEDIUM, clusters.get(0).getMaxEmergencyLevel());
+    }
+
+    @Test
+    public void clusters_aggregateCountCentroidAndMaxLevel() {
+        create(1L, 47.36, 8.52, RequestEmergencyLevel.LOW);
+        create(2L, 47.38, 8.56, RequestEmergencyLevel.HIGH);
+        create(3L, 46.95, 7.45, RequestEmergencyLevel.MEDIUM);
+
+        List<MapClusterDTO> zoomedOut = index.getClusters(45, 5, 48, 11, 4);
+        assertEquals(1, zoomedOut.size());
+        assertEquals(3, zoomedOut.get(0).getCount());
+        assertEquals((47.36 + 47.38 + 46.95) / 3, zoomedOut.get(0).getLatitude(), 1e-9);
+        assertEquals(RequestEmergencyLevel.HIGH, zoomedOut.get(0).getMaxEmergencyLevel());
+        assertNull(zoomedOut.get(0).getRequestId());
+
+        List<MapClusterDTO> zoomedIn = index.getClusters(45, 5, 48, 11, 8);
+        zoomedIn.sort(Comparator.comparingInt(MapClusterDTO::getCount));
+        assertEquals(2, zoomedIn.size());
+        assertEquals(3L, zoomedIn.get(0).getRequestId());
+        assertEquals(2, zoomedIn.get(1).getCount());
+    }
+
+    @Test
+    public void requestEvents_updateTheAggregates() {
+        create(1L, 47.36, 8.52, RequestEmergencyLevel.LOW);
+        create(2L, 47.38, 8.56, RequestEmergencyLevel.HIGH);
+
+        publish(RequestEventType.VOLUNTEERED, 2L, RequestStatus.VOLUNTEERED, 47.38, 8.56, RequestEmergencyLevel.HIGH);
+        List<MapClusterDTO> clusters = index.getClusters(45, 5, 48, 11, 4);
+        assertEquals(1, clusters.get(0).getCount());
+        assertEquals(RequestEmergencyLevel.LOW, clusters.get(0).getMaxEmergencyLevel());
+        assertEquals(47.36, clusters.get(0).getLatitude(), 1e-9);
+
+        publish(RequestEventType.UPDATED, 1L, RequestStatus.WAITING, 40.0, -3.7, RequestEmergencyLevel.LOW);
+        assertTrue(index.getClusters(45, 5, 48, 11, 4).isEmpty());
+        assertEquals(1, total(index.getClusters(39, -5, 41, -2, 4)));
+
+        publish(RequestEventType.DELETED, 1L, RequestStatus.DELETED, 40.0, -3.7, RequestEmergencyLevel.LOW);
+        assertTrue(index.getClusters(-90, -180, 90, 180, 0).isEmpty());
+    }
+
+    @Test
+    public void requestEvents_olderSnapshotAfterNewerOne_isIgnored() {
+        index.onRequestEvent(new RequestEvent(RequestEventType.CREATED,
+                snapshot(1L, RequestStatus.WAITING, 47.36, 8.52, RequestEmergencyLevel.LOW, 0L)));
+        index.onRequestEvent(new RequestEvent(RequestEventType.VOLUNTEERED,
+                snapshot(1L, RequestStatus.VOLUNTEERED, 47.36, 8.52, RequestEmergencyLevel.LOW, 2L)));
+        index.onRequestEvent(new RequestEvent(RequestEventType.UPDATED,
+                snapshot(1L, RequestStatus.WAITING, 40.0, -3.7, RequestEmergencyLevel.HIGH, 1L)));
+
+        assertTrue(index.getClusters(-90, -180, 90, 180, 0).isEmpty());
+    }
+
+    @Test
+    public void rebuild_eventCommittedWhileLoading_isKept() {
+        Request stale = new Request();
+        stale.setId(1L);
+        stale.setStatus(RequestStatus.WAITING);
+        stale.setLatitude(47.37);
+        stale.setLongitude(8.54);
+        stale.setEmergencyLevel(RequestEmergencyLevel.MEDIUM);
+        stale.setVersion(1L);
+        when(requestRepository.findByStatus(RequestStatus.WAITING)).thenAnswer(invocation -> {
+            index.onRequestEvent(new RequestEvent(RequestEventType.VOLUNTEERED,
+                    snapshot(1L, RequestStatus.VOLUNTEERED, 47.37, 8.54, RequestEmergencyLevel.MEDIUM, 2L)));
+            create(2L, 40.0, -3.7, RequestEmergencyLevel.HIGH);
+            return List.of(stale);
+        });
+
+        index.rebuild();
+
+        List<MapClusterDTO> clusters = index.getClusters(-90, -180, 90, 180, 0);
+        assertEquals(1, clusters.size());
+        assertEquals(2L, clusters.get(0).getRequestId());
+    }
+
+    @Test
+    public void boxAcrossTheAntimeridian_includesBothSides() {
+        create(1L, 0.0, 179.9, RequestEmergencyLevel.LOW);
+        create(2L, 0.0, -179.9, RequestEmergencyLevel.LOW);
+        create(3L, 0.0, 0.0, RequestEmergencyLevel.LOW);
+
+        assertEquals(2, total(index.getClusters(-1, 179, 1, -179, 12)));
+        assertEquals(2, total(index.getClusters(-1, 179, 1, -179, 2)));
+    }
+
+    @Test
+    public void everyZoomLevel_countsEachRequestOnce() {
+        Random random = new Random(3);
+        for (long id = 1; id <= 500; id++) {
+            create(id, -60 + random.nextDouble() * 120, -180 + random.nextDouble() * 360,
+                    RequestEmergencyLevel.values()[random.nextInt(3)]);
+        }
+        for (int zoom = 0; zoom <= RequestClusterIndex.MAX_ZOOM + 2; zoom++) {
+            assertEquals(500, total(index.getClusters(-90, -180, 90, 180, zoom)), "zoom " + zoom);
+        }
+        List<MapClusterDTO> europe = index.getClusters(35, -10, 60, 30, 6);
+        assertTrue(europe.stream().allMatch(cluster -> cluster.getLatitude() >= 35 && cluster.getLatitude() <= 60
+                && cluster.getLongitude() >= -10 && cluster.getLongitude() <= 30));
+    }
+
+    @Test
+    public void invalidArguments_throwBadRequest() {
+        assertThrows(ResponseStatusException.class, () -> index.getClusters(50, 5, 40, 10, 5));
+        assertThrows(ResponseStatusException.class, () -> index.getClusters(40, 5, 50, 190, 5));
+        assertThrows(ResponseStatusException.class, () -> index.getClusters(40, 5, 50, 10, -1));
+    }
+}
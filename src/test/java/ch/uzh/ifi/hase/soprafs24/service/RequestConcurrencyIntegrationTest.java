@@ -0,0 +1,236 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.server.ResponseStatusException;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.Request;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
+
+/**
+ * Many threads hitting the same request at once. Each test releases all
+ * threads together and then checks that the outcome is the same as some
+ * serial order of the calls.
+ */
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class RequestConcurrencyIntegrationTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private RequestService requestService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RequestRepository requestRepository;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private User createUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@test.com");
+        user.setPassword("password");
+        user.setCreationDate(LocalDate.now());
+        user.setToken(username + "Token");
+        user.setStatus(UserStatus.ONLINE);
+        return userRepository.save(user);
+    }
+
+    private Request createRequest(String title, User poster) {
+        Request request = new Request();
+        request.setTitle(title);
+        request.setDescription("Concurrency test");
+        request.setEmergencyLevel(RequestEmergencyLevel.HIGH);
+        request.setStatus(RequestStatus.WAITING);
+        request.setCreationDate(LocalDate.now());
+        request.setPoster(poster);
+        return requestRepository.save(request);
+    }
+
+    // runs all tasks at the same moment, returns null for a success or the exception thrown
+    private List<Exception> race(List<Callable<Void>> tasks) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Exception>> futures = new ArrayList<>();
+        for (Callable<Void> task : tasks) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    task.call();
+                    return null;
+                }
+                catch (Exception ex) {
+                    return ex;
+                }
+            }));
+        }
+        start.countDown();
+        List<Exception> outcomes = new ArrayList<>();
+        for (Future<Exception> future : futures) {
+            outcomes.add(future.get(30, TimeUnit.SECONDS));
+        }
+        return outcomes;
+    }
+
+    @Test
+    public void concurrentVolunteers_exactlyOneWins() throws Exception {
+        User poster = createUser("poster");
+        List<User> volunteers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            volunteers.add(createUser("volunteer" + i));
+        }
+
+        for (int round = 0; round < 10; round++) {
+            Request request = createRequest("Round " + round, poster);
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (User volunteer : volunteers) {
+                tasks.add(() -> {
+                    requestService.volunteerRequest(request.getId(), UserPrincipal.of(volunteer));
+                    return null;
+                });
+            }
+
+            List<Exception> outcomes = race(tasks);
+
+            int winner = -1;
+            for (int i = 0; i < outcomes.size(); i++) {
+                Exception outcome = outcomes.get(i);
+                if (outcome == null) {
+                    assertEquals(-1, winner, "two volunteers won round " + round);
+                    winner = i;
+                }
+                else if (!(outcome instanceof ResponseStatusException)) {
+                    fail("unexpected failure in round " + round, outcome);
+                }
+                else {
+                    // losers either lost the update (409) or only read after the winner committed (400)
+                    HttpStatus status = ((ResponseStatusException) outcome).getStatus();
+                    assertTrue(status == HttpStatus.CONFLICT || status == HttpStatus.BAD_REQUEST, status.toString());
+                }
+            }
+            assertTrue(winner >= 0, "nobody won round " + round);
+            Request stored = requestRepository.findById(request.getId()).orElseThrow();
+            assertEquals(RequestStatus.VOLUNTEERED, stored.getStatus());
+            assertEquals(volunteers.get(winner).getId(), stored.getVolunteer().getId());
+            assertEquals(1L, stored.getVersion());
+        }
+    }
+
+    @Test
+    public void concurrentEdits_neverLoseAnUpdateSilently() throws Exception {
+        User poster = createUser("poster");
+        Request request = createRequest("Original", poster);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            String title = "Edit " + i;
+            tasks.add(() -> {
+                Request edit = new Request();
+                edit.setTitle(title);
+                requestService.updateRequest(request.getId(), edit, UserPrincipal.of(poster));
+                return null;
+            });
+        }
+
+        List<Exception> outcomes = race(tasks);
+
+        long successes = outcomes.stream().filter(outcome -> outcome == null).count();
+        for (Exception outcome : outcomes) {
+            if (outcome != null && !(outcome instanceof OptimisticLockingFailureException)) {
+                fail("unexpected failure", outcome);
+            }
+        }
+        assertTrue(successes >= 1);
+        // every committed edit bumped the version once, a lost update would leave it behind
+        Request stored = requestRepository.findById(request.getId()).orElseThrow();
+        assertEquals(successes, stored.getVersion().longValue());
+        assertTrue(stored.getTitle().startsWith("Edit "));
+    }
+
+    @Test
+    public void bulkDeleteRacingSingleDeletes_takesReputationOffOnce() throws Exception {
+        User admin = userRepository.findByUsername("admin");
+        User poster = createUser("poster");
+        User volunteer = createUser("volunteer");
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Request request = createRequest("Done " + i, poster);
+            request.setStatus(RequestStatus.DONE);
+            request.setVolunteer(volunteer);
+            request.setRating(4);
+            ids.add(requestRepository.save(request).getId());
+            userService.recordCompletion(volunteer.getId());
+            userService.recordRating(volunteer.getId(), null, 4);
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            requestService.deleteRequests(ids, UserPrincipal.of(admin), "spam");
+            return null;
+        });
+        for (int i = 0; i < THREADS - 1; i++) {
+            Long id = ids.get(i);
+            tasks.add(() -> {
+                requestService.deleteRequest(id, UserPrincipal.of(poster), "");
+                return null;
+            });
+        }
+
+        List<Exception> outcomes = race(tasks);
+
+        for (Exception outcome : outcomes) {
+            // losers were rolled back, whatever made them lose
+            if (outcome != null && !(outcome instanceof ResponseStatusException)
+                    && !(outcome instanceof ConcurrencyFailureException)) {
+                fail("unexpected failure", outcome);
+            }
+        }
+        assertTrue(outcomes.get(0) == null, "the bulk delete failed");
+        int deleted = 0;
+        for (Long id : ids) {
+            deleted += requestRepository.findById(id).orElseThrow().getStatus() == RequestStatus.DELETED ? 1 : 0;
+        }
+        assertEquals(THREADS, deleted);
+        // every request took its reputation off once, whoever deleted it
+        User stored = userRepository.findById(volunteer.getId()).orElseThrow();
+        assertEquals(THREADS - deleted, stored.getCompletedCount());
+        assertEquals(4L * (THREADS - deleted), stored.getRatingSum());
+        assertEquals(THREADS - deleted, stored.getRatingCount());
+    }
+}
@@ -0,0 +1,121 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestExportFormat;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.Request;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
+
+// own database: a cached context of another class may point at a testdb whose tables were already dropped
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:export;DB_CLOSE_DELAY=-1")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class RequestExportServiceTest {
+
+    @Autowired
+    private RequestExportService requestExportService;
+
+    @Autowired
+    private RequestRepository requestRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private UserPrincipal admin;
+    private User poster;
+
+    private Request createRequest(String title, RequestStatus status) {
+        Request request = new Request();
+        request.setTitle(title);
+        request.setDescription("Export test");
+        request.setStatus(status);
+        request.setEmergencyLevel(RequestEmergencyLevel.MEDIUM);
+        request.setCreationDate(LocalDate.of(2025, 5, 10));
+        request.setPoster(poster);
+        return requestRepository.save(request);
+    }
+
+    private List<String> export(RequestExportFormat format, List<RequestStatus> statuses) throws IOException {
+        StreamingResponseBody body = requestExportService.export(admin, format, statuses);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return List.of(out.toString(StandardCharsets.UTF_8).split("\n"));
+    }
+
+    @BeforeEach
+    public void setup() {
+        admin = UserPrincipal.of(userRepository.findByUsername("admin"));
+        poster = new User();
+        poster.setUsername("poster");
+        poster.setEmail("poster@test.com");
+        poster.setPassword("password");
+        poster.setCreationDate(LocalDate.now());
+        poster.setToken("posterToken");
+        poster.setStatus(UserStatus.ONLINE);
+        poster = userRepository.save(poster);
+    }
+
+    @Test
+    public void export_ndjson_writesOneObjectPerLine() throws IOException {
+        Request first = createRequest("Groceries", RequestStatus.WAITING);
+        Request second = createRequest("Garden", RequestStatus.DONE);
+        createRequest("Spam", RequestStatus.DELETED);
+
+        List<String> lines = export(RequestExportFormat.NDJSON, List.of(RequestStatus.WAITING, RequestStatus.DONE));
+
+        assertEquals(2, lines.size());
+        JsonNode row = objectMapper.readTree(lines.get(0));
+        assertEquals(first.getId().longValue(), row.get("id").asLong());
+        assertEquals("poster", row.get("posterUsername").asText());
+        assertEquals("2025-05-10", row.get("creationDate").asText());
+        assertEquals(second.getId().longValue(), objectMapper.readTree(lines.get(1)).get("id").asLong());
+    }
+
+    @Test
+    public void export_csv_quotesFieldsAndIncludesAllStatusesByDefault() throws IOException {
+        Request quoted = createRequest("Boxes, \"heavy\" ones", RequestStatus.WAITING);
+        createRequest("Spam", RequestStatus.DELETED);
+
+        List<String> lines = export(RequestExportFormat.CSV, null);
+
+        assertEquals(3, lines.size());
+        assertEquals(RequestExportService.CSV_HEADER, lines.get(0));
+        assertTrue(lines.get(1).startsWith(quoted.getId() + ",\"Boxes, \"\"heavy\"\" ones\",WAITING,MEDIUM,,2025-05-10,"));
+        assertTrue(lines.get(2).contains(",DELETED,"));
+    }
+
+    @Test
+    public void export_notAdmin_throwsUnauthorized() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> requestExportService.export(UserPrincipal.of(poster), RequestExportFormat.CSV, null));
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
+    }
+}
@@ -0,0 +1,154 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.Request;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class RequestFeedBroadcasterIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private RequestService requestService;
+
+    @Autowired
+    private RequestFeedBroadcaster requestFeedBroadcaster;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RequestRepository requestRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User poster;
+    private User volunteer;
+
+    private User createUser(String username, String token) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@test.com");
+        user.setPassword("password");
+        user.setCreationDate(LocalDate.now());
+        user.setToken(token);
+        user.setStatus(UserStatus.ONLINE);
+        return userRepository.save(user);
+    }
+
+    private Request newRequest(String title) {
+        Request request = new Request();
+        request.setTitle(title);
+        request.setDescription("Stream test description");
+        request.setEmergencyLevel(RequestEmergencyLevel.LOW);
+        return request;
+    }
+
+    private String ticket(String token) throws Exception {
+        String body = mockMvc.perform(post("/requests/active/stream/ticket").header("token", token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("ticket").asText();
+    }
+
+    // the writer pool sends asynchronously, wait until the stream contains the text
+    private String awaitContent(MvcResult stream, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = stream.getResponse().getContentAsString();
+        while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            content = stream.getResponse().getContentAsString();
+        }
+        return content;
+    }
+
+    @BeforeEach
+    public void setup() {
+        poster = createUser("streamPoster", "posterToken");
+        volunteer = createUser("streamVolunteer", "volunteerToken");
+
+        Request existing = newRequest("Existing request");
+        existing.setStatus(RequestStatus.WAITING);
+        existing.setCreationDate(LocalDate.now());
+        existing.setPoster(poster);
+        requestRepository.save(existing);
+    }
+
+    @Test
+    public void stream_sendsSnapshotThenTransitions() throws Exception {
+        MvcResult stream = mockMvc.perform(get("/requests/active/stream").param("ticket", ticket("volunteerToken")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String snapshot = awaitContent(stream, "Existing request");
+        assertTrue(snapshot.startsWith("event:snapshot"));
+        assertTrue(snapshot.contains("Existing request"));
+        assertEquals(1, requestFeedBroadcaster.subscriberCount());
+
+        Request created = requestService.createRequest(newRequest("Fresh request"), poster.getId());
+        requestService.volunteerRequest(created.getId(), UserPrincipal.of(volunteer));
+
+        String events = awaitContent(stream, "event:volunteered").substring(snapshot.length());
+        int createdAt = events.indexOf("event:created");
+        int volunteeredAt = events.indexOf("event:volunteered");
+        assertTrue(createdAt >= 0);
+        assertTrue(volunteeredAt > createdAt);
+        assertTrue(events.contains("Fresh request"));
+    }
+
+    @Test
+    public void stream_withoutToken_isRejected() throws Exception {
+        mockMvc.perform(get("/requests/active/stream"))
+                .andExpect(status().isUnauthorized());
+
+        assertEquals(0, requestFeedBroadcaster.subscriberCount());
+    }
+
+    @Test
+    public void stream_sessionTokenInQuery_isRejected() throws Exception {
+        mockMvc.perform(get("/requests/active/stream").param("token", "volunteerToken"))
+                .andExpect(status().isUnauthorized());
+
+        assertEquals(0, requestFeedBroadcaster.subscriberCount());
+    }
+
+    @Test
+    public void stream_ticketIsOnlyValidOnce() throws Exception {
+        String ticket = ticket("volunteerToken");
+        mockMvc.perform(get("/requests/active/stream").param("ticket", ticket))
+                .andExpect(request().asyncStarted());
+
+        mockMvc.perform(get("/requests/active/stream").param("ticket", ticket))
+                .andExpect(status().isUnauthorized());
+
+        assertEquals(1, requestFeedBroadcaster.subscriberCount());
+    }
+}
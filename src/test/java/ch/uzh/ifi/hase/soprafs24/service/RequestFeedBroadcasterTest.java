@@ -0,0 +1,78 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEventType;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.event.RequestEvent;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
+
+public class RequestFeedBroadcasterTest {
+
+    private final RequestService requestService = mock(RequestService.class);
+    // writes only happen when the test runs them
+    private final List<Runnable> writes = new ArrayList<>();
+
+    private RequestFeedBroadcaster broadcaster;
+
+    @BeforeEach
+    public void setup() {
+        when(requestService.getWaitingRequests()).thenReturn(List.of());
+        broadcaster = new RequestFeedBroadcaster(requestService, writes::add, 3);
+    }
+
+    private RequestEvent event(RequestEventType type) {
+        RequestGetDTO request = new RequestGetDTO();
+        request.setId(10L);
+        request.setStatus(RequestStatus.WAITING);
+        return new RequestEvent(type, request);
+    }
+
+    @Test
+    public void onRequestEvent_onlyQueues_oneWriterTaskPerSubscriber() {
+        broadcaster.subscribe();
+
+        broadcaster.onRequestEvent(event(RequestEventType.CREATED));
+        broadcaster.onRequestEvent(event(RequestEventType.UPDATED));
+
+        // the snapshot scheduled the drain, the events join it
+        assertEquals(1, writes.size());
+        assertEquals(1, broadcaster.subscriberCount());
+    }
+
+    @Test
+    public void onRequestEvent_subscriberFallsBehind_isDropped() {
+        broadcaster.subscribe();
+        broadcaster.subscribe();
+        for (int i = 0; i < 3; i++) {
+            broadcaster.onRequestEvent(event(RequestEventType.CREATED));
+        }
+        assertEquals(2, broadcaster.subscriberCount());
+
+        // snapshot plus three events are waiting, the fourth is one too many
+        broadcaster.onRequestEvent(event(RequestEventType.CREATED));
+
+        assertEquals(0, broadcaster.subscriberCount());
+    }
+
+    @Test
+    public void drain_sendsEverythingQueued_thenAcceptsMore() {
+        broadcaster.subscribe();
+        for (int i = 0; i < 3; i++) {
+            broadcaster.onRequestEvent(event(RequestEventType.CREATED));
+        }
+
+        writes.remove(0).run();
+        broadcaster.onRequestEvent(event(RequestEventType.DELETED));
+
+        assertEquals(1, broadcaster.subscriberCount());
+        assertEquals(1, writes.size());
+    }
+}
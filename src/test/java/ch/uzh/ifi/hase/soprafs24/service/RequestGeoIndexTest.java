@@ -0,0 +1,135 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEventType;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.Request;
+import ch.uzh.ifi.hase.soprafs24.event.RequestEvent;
+import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.NearbyRequestDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
+
+public class RequestGeoIndexTest {
+
+    private final RequestRepository requestRepository = mock(RequestRepository.class);
+    private RequestGeoIndex index;
+
+    private Request request(long id, Double latitude, Double longitude) {
+        Request request = new Request();
+        request.setId(id);
+        request.setStatus(RequestStatus.WAITING);
+        request.setLatitude(latitude);
+        request.setLongitude(longitude);
+        return request;
+    }
+
+    private RequestEvent event(RequestEventType type, long id, RequestStatus status, Double latitude, Double longitude) {
+        return event(type, id, status, latitude, longitude, null);
+    }
+
+    private RequestEvent event(RequestEventType type, long id, RequestStatus status, Double latitude, Double longitude,
+                               Long version) {
+        RequestGetDTO dto = new RequestGetDTO();
+        dto.setVersion(version);
+        dto.setId(id);
+        dto.setStatus(status);
+        dto.setLatitude(latitude);
+        dto.setLongitude(longitude);
+        return new RequestEvent(type, dto);
+    }
+
+    private List<Long> nearbyIds(double latitude, double longitude) {
+        return index.findNearby(latitude, longitude, null, 10).stream()
+                .map(hit -> hit.getRequest().getId())
+                .collect(Collectors.toList());
+    }
+
+    @BeforeEach
+    public void setup() {
+        when(requestRepository.findByStatus(RequestStatus.WAITING)).thenReturn(List.of(
+                request(1L, 47.3769, 8.5417),
+                request(2L, 47.3780, 8.5400),
+                request(3L, null, null)));
+        index = new RequestGeoIndex(requestRepository);
+        index.rebuild();
+    }
+
+    @Test
+    public void rebuild_loadsWaitingRequestsWithCoordinates() {
+        assertEquals(2, index.size());
+        assertEquals(List.of(1L, 2L), nearbyIds(47.3769, 8.5417));
+    }
+
+    @Test
+    public void requestEvents_keepTheIndexInSync() {
+        index.onRequestEvent(event(RequestEventType.CREATED, 4L, RequestStatus.WAITING, 47.3770, 8.5417));
+        index.onRequestEvent(event(RequestEventType.VOLUNTEERED, 1L, RequestStatus.VOLUNTEERED, 47.3769, 8.5417));
+        index.onRequestEvent(event(RequestEventType.UPDATED, 2L, RequestStatus.WAITING, 46.9480, 7.4474));
+        assertEquals(List.of(4L, 2L), nearbyIds(47.3769, 8.5417));
+
+        index.onRequestEvent(event(RequestEventType.CANCELLED, 1L, RequestStatus.WAITING, 47.3769, 8.5417));
+        index.onRequestEvent(event(RequestEventType.DELETED, 4L, RequestStatus.DELETED, 47.3770, 8.5417));
+        index.onRequestEvent(event(RequestEventType.UPDATED, 2L, RequestStatus.WAITING, null, null));
+        assertEquals(List.of(1L), nearbyIds(47.3769, 8.5417));
+    }
+
+    @Test
+    public void requestEvents_olderSnapshotAfterNewerOne_isIgnored() {
+        index.onRequestEvent(event(RequestEventType.VOLUNTEERED, 1L, RequestStatus.VOLUNTEERED, 47.3769, 8.5417, 3L));
+        index.onRequestEvent(event(RequestEventType.UPDATED, 1L, RequestStatus.WAITING, 47.3769, 8.5417, 2L));
+        assertEquals(List.of(2L), nearbyIds(47.3769, 8.5417));
+
+        index.onRequestEvent(event(RequestEventType.CANCELLED, 1L, RequestStatus.WAITING, 47.3769, 8.5417, 4L));
+        assertEquals(List.of(1L, 2L), nearbyIds(47.3769, 8.5417));
+    }
+
+    @Test
+    public void rebuild_eventCommittedWhileLoading_isKept() {
+        Request stale = request(1L, 47.3769, 8.5417);
+        stale.setVersion(1L);
+        when(requestRepository.findByStatus(RequestStatus.WAITING)).thenAnswer(invocation -> {
+            index.onRequestEvent(event(RequestEventType.VOLUNTEERED, 1L, RequestStatus.VOLUNTEERED, 47.3769, 8.5417, 2L));
+            index.onRequestEvent(event(RequestEventType.CREATED, 4L, RequestStatus.WAITING, 47.3770, 8.5417, 0L));
+            return List.of(stale, request(2L, 47.3780, 8.5400));
+        });
+
+        index.rebuild();
+
+        assertEquals(List.of(4L, 2L), nearbyIds(47.3769, 8.5417));
+    }
+
+    @Test
+    public void findNearby_withRadius_returnsOnlyRequestsInside() {
+        List<NearbyRequestDTO> hits = index.findNearby(47.3769, 8.5417, 50.0, 10);
+
+        assertEquals(1, hits.size());
+        assertEquals(1L, hits.get(0).getRequest().getId());
+        assertTrue(hits.get(0).getDistanceMeters() < 1.0);
+    }
+
+    @Test
+    public void findNearby_invalidArguments_throwsBadRequest() {
+        ResponseStatusException coordinates = assertThrows(ResponseStatusException.class,
+                () -> index.findNearby(91, 8.5, null, 10));
+        ResponseStatusException k = assertThrows(ResponseStatusException.class,
+                () -> index.findNearby(47, 8.5, null, 101));
+        ResponseStatusException radius = assertThrows(ResponseStatusException.class,
+                () -> index.findNearby(47, 8.5, 100_000.0, 10));
+
+        assertEquals(HttpStatus.BAD_REQUEST, coordinates.getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, k.getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, radius.getStatus());
+    }
+}
@@ -0,0 +1,269 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestAction;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.Request;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.event.RequestTransitionEvent;
+import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RequestLifecycleTest {
+
+    private final RequestRepository requestRepository = mock(RequestRepository.class);
+    private final UserService userService = mock(UserService.class);
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private RequestLifecycle lifecycle;
+    private User poster;
+    private User volunteer;
+
+    @BeforeEach
+    public void setup() {
+        lifecycle = new RequestLifecycle(requestRepository, userService, notificationService, eventPublisher,
+                meterRegistry);
+        poster = user(1L, "poster");
+        volunteer = user(2L, "volunteer");
+    }
+
+    @AfterEach
+    public void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private void completeTransaction(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(status);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private User user(Long id, String username) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        return user;
+    }
+
+    private Request request(RequestStatus status, User volunteer) {
+        Request request = new Request();
+        request.setId(10L);
+        request.setTitle("Groceries");
+        request.setEmergencyLevel(RequestEmergencyLevel.LOW);
+        request.setCreationDate(LocalDate.now());
+        request.setStatus(status);
+        request.setPoster(poster);
+        request.setVolunteer(volunteer);
+        request.setVersion(3L);
+        when(requestRepository.findById(10L)).thenReturn(Optional.of(request));
+        return request;
+    }
+
+    private Timer timer(String action, String from, String outcome) {
+        return meterRegistry.find("request.transition")
+                .tags("action", action, "from", from, "outcome", outcome)
+                .timer();
+    }
+
+    @Test
+    public void table_coversTheWholeLifecycle() {
+        assertEquals(EnumSet.of(RequestStatus.WAITING), lifecycle.allowedFrom(RequestAction.VOLUNTEER));
+        assertEquals(RequestStatus.VOLUNTEERED, lifecycle.target(RequestAction.VOLUNTEER));
+        assertEquals(RequestStatus.ACCEPTING, lifecycle.target(RequestAction.ACCEPT));
+        assertEquals(RequestStatus.COMPLETED, lifecycle.target(RequestAction.COMPLETE));
+        assertEquals(RequestStatus.DONE, lifecycle.target(RequestAction.MARK_DONE));
+        assertEquals(EnumSet.of(RequestStatus.VOLUNTEERED, RequestStatus.ACCEPTING),
+                lifecycle.allowedFrom(RequestAction.CANCEL));
+        assertEquals(RequestStatus.WAITING, lifecycle.target(RequestAction.CANCEL));
+        assertEquals(EnumSet.complementOf(EnumSet.of(RequestStatus.DELETED)),
+                lifecycle.allowedFrom(RequestAction.DELETE));
+        for (RequestAction action : RequestAction.values()) {
+            // every action has a row
+            assertNotNull(lifecycle.target(action));
+        }
+    }
+
+    @Test
+    public void fire_applied_savesPublishesAndRecordsTimer() {
+        Request request = request(RequestStatus.VOLUNTEERED, volunteer);
+
+        lifecycle.fire(RequestAction.ACCEPT, 10L, null, 2L, null);
+
+        assertEquals(RequestStatus.ACCEPTING, request.getStatus());
+        verify(requestRepository).save(request);
+        verify(eventPublisher, times(2)).publishEvent(any(Object.class));
+        assertEquals(1, timer("accept", "volunteered", "applied").count());
+    }
+
+    @Test
+    public void fire_guardsRunInTableOrder_firstFailureWins() {
+        // the poster's own request is not waiting either, the poster check comes first
+        Request request = request(RequestStatus.DONE, null);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> lifecycle.fire(RequestAction.VOLUNTEER, 10L, UserPrincipal.of(poster)));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+        assertEquals("You cannot volunteer for your own request.", exception.getReason());
+        assertEquals(RequestStatus.DONE, request.getStatus());
+        verify(requestRepository, never()).save(any());
+        verifyNoInteractions(eventPublisher, userService);
+        assertEquals(1, timer("volunteer", "done", "rejected").count());
+    }
+
+    @Test
+    public void fire_unknownRequest_isRecordedAsNotFound() {
+        when(requestRepository.findById(10L)).thenReturn(Optional.empty());
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> lifecycle.fire(RequestAction.COMPLETE, 10L, UserPrincipal.of(volunteer)));
+
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+        assertEquals(1, timer("complete", "none", "not_found").count());
+    }
+
+    @Test
+    public void fire_volunteer_updatesLoadedCopyWithoutReadingAgain() {
+        Request request = request(RequestStatus.WAITING, null);
+        when(userService.getUserById(2L)).thenReturn(volunteer);
+        when(requestRepository.volunteerIfWaiting(eq(10L), eq(volunteer), any(LocalDateTime.class))).thenReturn(1);
+
+        lifecycle.fire(RequestAction.VOLUNTEER, 10L, UserPrincipal.of(volunteer));
+
+        assertEquals(RequestStatus.VOLUNTEERED, request.getStatus());
+        assertEquals(volunteer, request.getVolunteer());
+        assertEquals(4L, request.getVersion());
+        verify(requestRepository, times(1)).findById(10L);
+        verify(requestRepository, never()).save(any());
+        assertEquals(1, timer("volunteer", "waiting", "applied").count());
+    }
+
+    @Test
+    public void fire_volunteer_lostRace_isRecordedAsConflict() {
+        request(RequestStatus.WAITING, null);
+        when(userService.getUserById(2L)).thenReturn(volunteer);
+        when(requestRepository.volunteerIfWaiting(eq(10L), eq(volunteer), any(LocalDateTime.class))).thenReturn(0);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> lifecycle.fire(RequestAction.VOLUNTEER, 10L, UserPrincipal.of(volunteer)));
+
+        assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+        verifyNoInteractions(eventPublisher);
+        assertEquals(1, timer("volunteer", "waiting", "conflict").count());
+    }
+
+    @Test
+    public void fire_cancel_clearsVolunteerButNotifiesThem() {
+        Request request = request(RequestStatus.ACCEPTING, volunteer);
+
+        lifecycle.fire(RequestAction.CANCEL, 10L, UserPrincipal.of(poster));
+
+        assertEquals(RequestStatus.WAITING, request.getStatus());
+        assertNull(request.getVolunteer());
+        verify(eventPublisher).publishEvent(argThat((Object event) ->
+                event instanceof RequestTransitionEvent
+                        && ((RequestTransitionEvent) event).getVolunteerId().equals(2L)));
+    }
+
+    @Test
+    public void fire_deleteByAdmin_appliesCallerChangesAndDropsNotifications() {
+        Request request = request(RequestStatus.WAITING, null);
+        UserPrincipal admin = new UserPrincipal(99L, "admin", true);
+
+        lifecycle.fire(RequestAction.DELETE, 10L, admin, null, changed -> changed.setDeleteReason("spam"));
+
+        assertEquals(RequestStatus.DELETED, request.getStatus());
+        assertEquals("spam", request.getDeleteReason());
+        assertEquals(99L, request.getDeletedByUserId());
+        assertEquals(LocalDate.now(), request.getDeletedAt());
+        verify(notificationService).deleteNotificationsForRequest(request);
+        assertEquals(1, timer("delete", "waiting", "applied").count());
+    }
+
+    @Test
+    public void fire_markDone_countsTheVolunteersCompletion() {
+        request(RequestStatus.COMPLETED, volunteer);
+
+        lifecycle.fire(RequestAction.MARK_DONE, 10L, UserPrincipal.of(poster));
+
+        verify(userService).recordCompletion(2L);
+    }
+
+    @Test
+    public void fire_feedbackAgain_replacesThePreviousRating() {
+        Request request = request(RequestStatus.DONE, volunteer);
+        request.setRating(2);
+
+        lifecycle.fire(RequestAction.FEEDBACK, 10L, UserPrincipal.of(poster), null, changed -> changed.setRating(5));
+
+        verify(userService).recordRating(2L, 2, 5);
+    }
+
+    @Test
+    public void fire_deleteRatedRequest_takesItOffTheReputation() {
+        Request request = request(RequestStatus.DONE, volunteer);
+        request.setRating(4);
+
+        lifecycle.fire(RequestAction.DELETE, 10L, UserPrincipal.of(poster), null, null);
+
+        verify(userService).removeReputation(2L, 1, 4, 1);
+    }
+
+    @Test
+    public void fire_inTransaction_recordsAppliedOnlyAfterCommit() {
+        request(RequestStatus.VOLUNTEERED, volunteer);
+        TransactionSynchronizationManager.initSynchronization();
+
+        lifecycle.fire(RequestAction.ACCEPT, 10L, null, 2L, null);
+
+        assertNull(timer("accept", "volunteered", "applied"));
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(1, timer("accept", "volunteered", "applied").count());
+    }
+
+    @Test
+    public void fire_inTransactionRolledBack_isNotRecordedAsApplied() {
+        request(RequestStatus.VOLUNTEERED, volunteer);
+        TransactionSynchronizationManager.initSynchronization();
+
+        lifecycle.fire(RequestAction.ACCEPT, 10L, null, 2L, null);
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertNull(timer("accept", "volunteered", "applied"));
+        assertEquals(1, timer("accept", "volunteered", "rolled_back").count());
+    }
+}
@@ -0,0 +1,169 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEventType;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.Request;
+import ch.uzh.ifi.hase.soprafs24.event.RequestEvent;
+import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestSearchHitDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
+
+public class RequestSearchIndexTest {
+
+    private final RequestRepository requestRepository = mock(RequestRepository.class);
+    private RequestSearchIndex index;
+
+    private Request request(long id, String title, String description, RequestStatus status,
+                            RequestEmergencyLevel level) {
+        Request request = new Request();
+        request.setId(id);
+        request.setTitle(title);
+        request.setDescription(description);
+        request.setStatus(status);
+        request.setEmergencyLevel(level);
+        return request;
+    }
+
+    private void publish(RequestEventType type, long id, String title, String description, RequestStatus status) {
+        publish(type, id, title, description, status, null);
+    }
+
+    private void publish(RequestEventType type, long id, String title, String description, RequestStatus status,
+                         Long version) {
+        RequestGetDTO dto = new RequestGetDTO();
+        dto.setVersion(version);
+        dto.setId(id);
+        dto.setTitle(title);
+        dto.setDescription(description);
+        dto.setStatus(status);
+        dto.setEmergencyLevel(RequestEmergencyLevel.LOW);
+        index.onRequestEvent(new RequestEvent(type, dto));
+    }
+
+    private List<Long> ids(List<RequestSearchHitDTO> hits) {
+        return hits.stream().map(hit -> hit.getRequest().getId()).collect(Collectors.toList());
+    }
+
+    private List<Long> search(String query) {
+        return ids(index.search(query, null, null, 10));
+    }
+
+    @BeforeEach
+    public void setup() {
+        when(requestRepository.findByStatusNot(RequestStatus.DELETED)).thenReturn(List.of(
+                request(1L, "Groceries for my grandmother", "She needs milk, bread and vegetables every week.",
+                        RequestStatus.WAITING, RequestEmergencyLevel.LOW),
+                request(2L, "Moving boxes", "Need help carrying boxes, afterwards we could buy groceries together.",
+                        RequestStatus.WAITING, RequestEmergencyLevel.HIGH),
+                request(3L, "Hilfe beim Einkaufen", "Ich brauche jemanden für die Einkäufe am Samstag.",
+                        RequestStatus.VOLUNTEERED, RequestEmergencyLevel.MEDIUM),
+                request(4L, "Walk the dog", "Our dog needs a walk in the evening.",
+                        RequestStatus.DONE, RequestEmergencyLevel.LOW)));
+        index = new RequestSearchIndex(requestRepository);
+        index.rebuild();
+    }
+
+    @Test
+    public void search_ranksTitleMatchesFirst() {
+        assertEquals(List.of(1L, 2L), search("grocery"));
+        assertEquals(List.of(2L), search("box"));
+    }
+
+    @Test
+    public void search_matchesGermanInflections() {
+        assertEquals(List.of(3L), search("einkauf"));
+        assertEquals(List.of(3L), search("Einkäufe"));
+    }
+
+    @Test
+    public void search_combinesTermsAndRanksDocumentsMatchingMoreOfThem() {
+        List<RequestSearchHitDTO> hits = index.search("milk groceries", null, null, 10);
+
+        assertEquals(List.of(1L, 2L), ids(hits));
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+    }
+
+    @Test
+    public void search_appliesStatusAndEmergencyFilters() {
+        assertEquals(List.of(2L), ids(index.search("groceries", null, List.of(RequestEmergencyLevel.HIGH), 10)));
+        assertEquals(List.of(4L), ids(index.search("dog", List.of(RequestStatus.DONE), null, 10)));
+        assertTrue(index.search("dog", List.of(RequestStatus.WAITING), null, 10).isEmpty());
+    }
+
+    @Test
+    public void search_limitKeepsTheBestHits() {
+        assertEquals(List.of(1L), ids(index.search("groceries", null, null, 1)));
+    }
+
+    @Test
+    public void requestEvents_keepTheIndexInSync() {
+        publish(RequestEventType.CREATED, 5L, "Garden work", "Cutting the hedge", RequestStatus.WAITING);
+        publish(RequestEventType.UPDATED, 1L, "Pharmacy run", "Pick up medicine", RequestStatus.WAITING);
+        publish(RequestEventType.DELETED, 2L, "Moving boxes", "", RequestStatus.DELETED);
+
+        assertEquals(List.of(5L), search("hedge"));
+        assertEquals(List.of(1L), search("medicine"));
+        assertTrue(search("groceries").isEmpty());
+        assertEquals(4, index.size());
+
+        publish(RequestEventType.STATUS_CHANGED, 5L, "Garden work", "Cutting the hedge", RequestStatus.ACCEPTING);
+        assertEquals(List.of(5L), ids(index.search("hedge", List.of(RequestStatus.ACCEPTING), null, 10)));
+    }
+
+    @Test
+    public void requestEvents_olderSnapshotAfterNewerOne_isIgnored() {
+        publish(RequestEventType.DELETED, 1L, "Groceries for my grandmother", "", RequestStatus.DELETED, 3L);
+        publish(RequestEventType.UPDATED, 1L, "Groceries for my grandmother", "Milk", RequestStatus.WAITING, 2L);
+        publish(RequestEventType.UPDATED, 5L, "Pharmacy run", "Pick up medicine", RequestStatus.WAITING, 4L);
+        publish(RequestEventType.CREATED, 5L, "Garden work", "Cutting the hedge", RequestStatus.WAITING, 0L);
+
+        assertEquals(List.of(2L), search("groceries"));
+        assertEquals(List.of(5L), search("medicine"));
+        assertTrue(search("hedge").isEmpty());
+    }
+
+    @Test
+    public void rebuild_eventCommittedWhileLoading_isKept() {
+        Request stale = request(1L, "Groceries for my grandmother", "Milk", RequestStatus.WAITING,
+                RequestEmergencyLevel.LOW);
+        stale.setVersion(1L);
+        when(requestRepository.findByStatusNot(RequestStatus.DELETED)).thenAnswer(invocation -> {
+            publish(RequestEventType.UPDATED, 1L, "Pharmacy run", "Pick up medicine", RequestStatus.WAITING, 2L);
+            publish(RequestEventType.CREATED, 5L, "Garden work", "Cutting the hedge", RequestStatus.WAITING, 0L);
+            return List.of(stale);
+        });
+
+        index.rebuild();
+
+        assertEquals(List.of(1L), search("medicine"));
+        assertEquals(List.of(5L), search("hedge"));
+        assertTrue(search("groceries").isEmpty());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void search_invalidArguments_throwBadRequest() {
+        ResponseStatusException blank = assertThrows(ResponseStatusException.class,
+                () -> index.search("  ", null, null, 10));
+        ResponseStatusException limit = assertThrows(ResponseStatusException.class,
+                () -> index.search("dog", null, null, 0));
+
+        assertEquals(HttpStatus.BAD_REQUEST, blank.getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, limit.getStatus());
+        assertTrue(index.search("the and", null, null, 10).isEmpty());
+    }
+}
@@ -2,18 +2,29 @@ package ch.uzh.ifi.hase.soprafs24.service;
 
 import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
 import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestTransition;
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.constant.NotificationType;
+import ch.uzh.ifi.hase.soprafs24.entity.Notification;
 import ch.uzh.ifi.hase.soprafs24.entity.Request;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.event.RequestTransitionEvent;
+import ch.uzh.ifi.hase.soprafs24.repository.NotificationRepository;
 import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -30,6 +41,11 @@ public class RequestServiceIntegrationTest {
     @Autowired
     private RequestRepository requestRepository;
 
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private NotificationDispatcher notificationDispatcher;
 
     private User createUser(String username, String token) {
         User user = new User();
@@ -106,10 +122,44 @@ public class RequestServiceIntegrationTest {
         Request update = new Request();
         update.setTitle("Updated Title");
 
-        Request updatedRequest = requestService.updateRequest(request.getId(), update, "token");
+        Request updatedRequest = requestService.updateRequest(request.getId(), update, UserPrincipal.of(poster));
         assertEquals("Updated Title", updatedRequest.getTitle());
     }
 
+    @Test
+    public void updateRequest_statusChangeThenDelete_leavesReputationAlone() {
+        User poster = createUser("poster", "token");
+        User volunteer = createUser("volunteer", "volunteerToken");
+        Request request = createRequest("Completed", RequestStatus.COMPLETED, poster, volunteer);
+
+        Request update = new Request();
+        update.setStatus(RequestStatus.DONE);
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> requestService.updateRequest(request.getId(), update, UserPrincipal.of(poster)));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+        assertEquals(RequestStatus.COMPLETED, requestRepository.findById(request.getId()).get().getStatus());
+
+        // the completion was never counted, so the delete has nothing to take off
+        requestService.deleteRequest(request.getId(), UserPrincipal.of(poster), "");
+
+        User stored = userRepository.findById(volunteer.getId()).get();
+        assertEquals(0, stored.getCompletedCount());
+        assertEquals(0, stored.getRatingCount());
+    }
+
+    @Test
+    public void updateRequest_sameStatus_isAccepted() {
+        User poster = createUser("poster", "token");
+        Request request = createRequest("Initial Title", RequestStatus.WAITING, poster);
+
+        Request update = new Request();
+        update.setTitle("Updated Title");
+        update.setStatus(RequestStatus.WAITING);
+
+        assertEquals("Updated Title",
+                requestService.updateRequest(request.getId(), update, UserPrincipal.of(poster)).getTitle());
+    }
+
     @Test
     public void updateRequest_invalidToken_throwsException() {
         User poster = createUser("poster", "token");
@@ -123,7 +173,7 @@ public class RequestServiceIntegrationTest {
         update.setTitle("Updated Title");
 
         assertThrows(ResponseStatusException.class, () -> {
-            requestService.updateRequest(request.getId(), update, "wrongToken");
+            requestService.updateRequest(request.getId(), update, UserPrincipal.of(poster2));
         });
     }
 
@@ -146,7 +196,7 @@ public class RequestServiceIntegrationTest {
         User volunteer = createUser("volunteer", "volunteerToken");
         Request request = createRequest("Complete me", RequestStatus.ACCEPTING, poster, volunteer);
 
-        requestService.completeRequest(request.getId(), "volunteerToken");
+        requestService.completeRequest(request.getId(), UserPrincipal.of(volunteer));
 
         Request completedRequest = requestService.getRequestById(request.getId());
         assertEquals(RequestStatus.COMPLETED, completedRequest.getStatus());
@@ -158,7 +208,7 @@ public class RequestServiceIntegrationTest {
         Request request = createRequest("Cancel me", RequestStatus.WAITING, poster);
 
         assertThrows(ResponseStatusException.class, () -> {
-            requestService.cancelRequest(request.getId(), "token");
+            requestService.cancelRequest(request.getId(), UserPrincipal.of(poster));
         });
     }
 
@@ -172,7 +222,7 @@ public class RequestServiceIntegrationTest {
     @Test
     public void deleteRequest_notFound_throwsException() {
         assertThrows(ResponseStatusException.class, () -> {
-            requestService.deleteRequest(999L, "token", "");
+            requestService.deleteRequest(999L, new UserPrincipal(1L, "poster", false), "");
         });
     }
 
@@ -191,7 +241,104 @@ public class RequestServiceIntegrationTest {
         Request request = createRequest("Complete me", RequestStatus.ACCEPTING, poster, volunteer);
 
         assertThrows(ResponseStatusException.class, () -> {
-            requestService.completeRequest(request.getId(), "wrongToken");
+            requestService.completeRequest(request.getId(), UserPrincipal.of(poster));
         });
     }
-}
\ No newline at end of file
+
+    private void awaitNotifications() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (notificationDispatcher.backlog() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void volunteerRequest_writesNotificationsAfterCommit() throws InterruptedException {
+        User poster = createUser("poster", "token");
+        User volunteer = createUser("volunteer", "volunteerToken");
+        Request request = createRequest("Needs notifications", RequestStatus.WAITING, poster);
+
+        requestService.volunteerRequest(request.getId(), UserPrincipal.of(volunteer));
+
+        awaitNotifications();
+        List<Notification> posterInbox = notificationRepository.findByRecipientIdOrderByTimestampDesc(poster.getId());
+        List<Notification> volunteerInbox = notificationRepository.findByRecipientIdOrderByTimestampDesc(volunteer.getId());
+        assertEquals(1, posterInbox.size());
+        assertEquals(NotificationType.VOLUNTEERED, posterInbox.get(0).getType());
+        assertEquals("volunteer", posterInbox.get(0).getRelatedUsername());
+        assertEquals(1, volunteerInbox.size());
+        assertEquals(NotificationType.VOLUNTEERING, volunteerInbox.get(0).getType());
+    }
+
+    @Test
+    public void deleteWhileTransitionQueued_leavesNoNotifications() throws InterruptedException {
+        User poster = createUser("poster", "token");
+        User volunteer = createUser("volunteer", "volunteerToken");
+        Request request = createRequest("Deleted meanwhile", RequestStatus.VOLUNTEERED, poster, volunteer);
+        // the volunteer's transition committed but the dispatcher has not written it yet
+        RequestTransitionEvent queued = RequestTransitionEvent.of(RequestTransition.VOLUNTEERED, request, volunteer);
+
+        requestService.deleteRequest(request.getId(), UserPrincipal.of(poster), "");
+        notificationDispatcher.onTransition(queued);
+
+        awaitNotifications();
+        assertEquals(0, notificationDispatcher.backlog());
+        assertTrue(notificationRepository.findByRecipientIdOrderByTimestampDesc(poster.getId()).isEmpty());
+        assertTrue(notificationRepository.findByRecipientIdOrderByTimestampDesc(volunteer.getId()).isEmpty());
+    }
+
+    @Test
+    public void volunteerAndCancelRepeatedly_coalescesIntoOneNotificationPerUser() throws InterruptedException {
+        User poster = createUser("poster", "token");
+        User volunteer = createUser("volunteer", "volunteerToken");
+        Request request = createRequest("Bouncing request", RequestStatus.WAITING, poster);
+
+        for (int round = 0; round < 3; round++) {
+            requestService.volunteerRequest(request.getId(), UserPrincipal.of(volunteer));
+            awaitNotifications();
+            requestService.cancelRequest(request.getId(), UserPrincipal.of(volunteer));
+            awaitNotifications();
+        }
+
+        List<Notification> posterInbox = notificationRepository.findByRecipientIdOrderByTimestampDesc(poster.getId());
+        List<Notification> volunteerInbox = notificationRepository.findByRecipientIdOrderByTimestampDesc(volunteer.getId());
+        assertEquals(1, posterInbox.size());
+        assertEquals(NotificationType.VOLUNTEERCANCEL, posterInbox.get(0).getType());
+        assertEquals(6, posterInbox.get(0).getOccurrences());
+        assertEquals(1, volunteerInbox.size());
+        assertEquals(3, volunteerInbox.get(0).getOccurrences());
+    }
+
+    @Test
+    public void deleteRequests_removesRequestsAndNotificationsInBulk() {
+        User admin = userRepository.findByUsername("admin");
+        User poster = createUser("poster", "token");
+        List<Long> requestIds = new ArrayList<>();
+        List<Notification> notifications = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Request request = createRequest("Sweep " + i, RequestStatus.WAITING, poster);
+            requestIds.add(request.getId());
+            Notification notification = new Notification();
+            notification.setRecipientId(poster.getId());
+            notification.setRequest(request);
+            notification.setType(NotificationType.VOLUNTEERED);
+            notification.setTimestamp(LocalDateTime.now());
+            notifications.add(notification);
+        }
+        notificationRepository.saveAll(notifications);
+        Request kept = createRequest("Kept", RequestStatus.WAITING, poster);
+
+        Map<String, Integer> result = requestService.deleteRequests(requestIds, UserPrincipal.of(admin), "spam");
+
+        assertEquals(300, result.get("deleted"));
+        assertEquals(300, result.get("notificationsDeleted"));
+        assertEquals(0, notificationRepository.count());
+        assertEquals(RequestStatus.DELETED, requestRepository.findById(requestIds.get(0)).get().getStatus());
+        assertEquals("spam", requestRepository.findById(requestIds.get(299)).get().getDeleteReason());
+        assertEquals(RequestStatus.WAITING, requestRepository.findById(kept.getId()).get().getStatus());
+
+        Map<String, Integer> again = requestService.deleteRequests(requestIds, UserPrincipal.of(admin), "spam");
+        assertEquals(0, again.get("deleted"));
+        assertEquals(300, again.get("skipped"));
+    }
+}
@@ -1,29 +1,49 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
 import ch.uzh.ifi.hase.soprafs24.constant.RequestEmergencyLevel;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEventType;
 import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestTransition;
 import ch.uzh.ifi.hase.soprafs24.entity.Request;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
-import ch.uzh.ifi.hase.soprafs24.repository.NotificationRepository;
+import ch.uzh.ifi.hase.soprafs24.event.RequestEvent;
+import ch.uzh.ifi.hase.soprafs24.event.RequestTransitionEvent;
 import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.FeedbackDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.PageDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatcher;
+import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -42,11 +62,27 @@ public class RequestServiceTest {
     private NotificationService notificationService;
 
     @Mock
-    private NotificationRepository notificationRepository;
+    private ApplicationEventPublisher eventPublisher;
 
     @Mock
     private DTOMapper dtoMapper;
 
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    public void setup() {
+        // the transitions run through the real state machine on top of the mocks
+        ReflectionTestUtils.setField(requestService, "requestLifecycle",
+                new RequestLifecycle(requestRepository, userService, notificationService, eventPublisher, meterRegistry));
+    }
+
+    private ArgumentMatcher<Object> transition(RequestTransition type, Long posterId, Long volunteerId) {
+        return event -> event instanceof RequestTransitionEvent
+                && ((RequestTransitionEvent) event).getTransition() == type
+                && ((RequestTransitionEvent) event).getPosterId().equals(posterId)
+                && ((RequestTransitionEvent) event).getVolunteerId().equals(volunteerId);
+    }
+
     private User createSampleUser(Long id, String username, String token) {
         User user = new User();
         user.setId(id);
@@ -112,6 +148,7 @@ public class RequestServiceTest {
         assertNotNull(createdRequest.getId());
         assertEquals(RequestStatus.WAITING, createdRequest.getStatus());
         assertNotNull(createdRequest.getCreationDate());
+        verify(eventPublisher).publishEvent(argThat((RequestEvent event) -> event.getType() == RequestEventType.CREATED));
 
         assertNotNull(createdRequest.getPoster());
         assertEquals("posterUser", createdRequest.getPoster().getUsername());
@@ -145,7 +182,6 @@ public class RequestServiceTest {
         User poster = createSampleUser(100L, "posterUser", "token");
         Request existingRequest = createSampleRequest(1L, "Old Title", RequestStatus.WAITING, poster);
         when(requestRepository.findById(1L)).thenReturn(Optional.of(existingRequest));
-        when(userService.getUserByToken("token")).thenReturn(poster);
         when(requestRepository.save(any(Request.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
 
@@ -154,7 +190,7 @@ public class RequestServiceTest {
         update.setDescription("New Description");
 
 
-        Request updatedRequest = requestService.updateRequest(1L, update, "token");
+        Request updatedRequest = requestService.updateRequest(1L, update, UserPrincipal.of(poster));
         assertEquals("New Title", updatedRequest.getTitle());
         assertEquals("New Description", updatedRequest.getDescription());
     }
@@ -167,14 +203,13 @@ public class RequestServiceTest {
         when(requestRepository.findById(1L)).thenReturn(Optional.of(existingRequest));
 
         User fakeUser = createSampleUser(200L, "notAdmin", "wrongToken");
-        when(userService.getUserByToken("wrongToken")).thenReturn(fakeUser);
 
         Request update = new Request();
         update.setTitle("New Title");
 
 
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.updateRequest(1L, update, "wrongToken");
+            requestService.updateRequest(1L, update, UserPrincipal.of(fakeUser));
         });
         assertTrue(exception.getMessage().contains("Invalid token"));
     }
@@ -185,14 +220,14 @@ public class RequestServiceTest {
         Request existingRequest = createSampleRequest(1L, "Title", RequestStatus.WAITING, poster);
 
         when(requestRepository.findById(1L)).thenReturn(Optional.of(existingRequest));
-        when(userService.getUserByToken("token")).thenReturn(poster);
 
-        assertDoesNotThrow(() -> requestService.deleteRequest(1L, "token", "Some reason"));
+        assertDoesNotThrow(() -> requestService.deleteRequest(1L, UserPrincipal.of(poster), "Some reason"));
 
         verify(requestRepository, times(1)).save(existingRequest);
-        verify(notificationRepository, times(1)).deleteByRequest(existingRequest);
+        verify(notificationService, times(1)).deleteNotificationsForRequest(existingRequest);
         assertEquals(RequestStatus.DELETED, existingRequest.getStatus());
         assertEquals("Some reason", existingRequest.getDeleteReason());
+        verify(eventPublisher).publishEvent(argThat((RequestEvent event) -> event.getType() == RequestEventType.DELETED));
     }
 
     @Test
@@ -201,9 +236,8 @@ public class RequestServiceTest {
         Request existingRequest = createSampleRequest(1L, "Title", RequestStatus.WAITING, poster);
 
         when(requestRepository.findById(1L)).thenReturn(Optional.of(existingRequest));
-        when(userService.getUserByToken("token")).thenReturn(poster);
 
-        assertDoesNotThrow(() -> requestService.deleteRequest(1L, "token", null));
+        assertDoesNotThrow(() -> requestService.deleteRequest(1L, UserPrincipal.of(poster), null));
 
         verify(requestRepository, times(1)).save(existingRequest);
         assertEquals(RequestStatus.DELETED, existingRequest.getStatus());
@@ -215,7 +249,7 @@ public class RequestServiceTest {
         when(requestRepository.findById(1L)).thenReturn(Optional.empty());
 
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.deleteRequest(1L, "token", "reason");
+            requestService.deleteRequest(1L, new UserPrincipal(999L, "otherUser", false), "reason");
         });
 
         assertTrue(exception.getMessage().contains("Request not found with id: 1"));
@@ -229,7 +263,7 @@ public class RequestServiceTest {
         update.setTitle("New Title");
 
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.updateRequest(1L, update, "token");
+            requestService.updateRequest(1L, update, new UserPrincipal(999L, "otherUser", false));
         });
 
         assertTrue(exception.getMessage().contains("Request not found with id: 1"));
@@ -242,11 +276,14 @@ public class RequestServiceTest {
         when(requestRepository.findById(1L)).thenReturn(Optional.of(request));
         when(requestRepository.save(any(Request.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        when(userService.getUserById(200L)).thenReturn(volunteer);
-
         requestService.acceptRequest(1L, 200L);
         assertEquals(RequestStatus.ACCEPTING, request.getStatus());
         assertEquals(volunteer, request.getVolunteer());
+        verify(eventPublisher).publishEvent(argThat(transition(RequestTransition.ACCEPTED, 100L, 200L)));
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof RequestEvent
+                && ((RequestEvent) event).getType() == RequestEventType.STATUS_CHANGED
+                && ((RequestEvent) event).getRequest().getStatus() == RequestStatus.ACCEPTING));
+        verifyNoInteractions(notificationService);
     }
 
     @Test
@@ -271,7 +308,7 @@ public class RequestServiceTest {
         when(requestRepository.findById(1L)).thenReturn(Optional.of(request));
         when(requestRepository.save(any(Request.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        requestService.completeRequest(1L, "volunteerToken");
+        requestService.completeRequest(1L, UserPrincipal.of(volunteer));
         assertEquals(RequestStatus.COMPLETED, request.getStatus());
     }
 
@@ -283,7 +320,7 @@ public class RequestServiceTest {
         when(requestRepository.findById(1L)).thenReturn(Optional.of(request));
 
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.completeRequest(1L, "volunteerToken");
+            requestService.completeRequest(1L, UserPrincipal.of(volunteer));
         });
         assertTrue(exception.getMessage().contains("Only requests with ACCEPTING status can be completed"));
     }
@@ -293,7 +330,7 @@ public class RequestServiceTest {
         when(requestRepository.findById(1L)).thenReturn(Optional.empty());
 
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.completeRequest(1L, "token");
+            requestService.completeRequest(1L, new UserPrincipal(999L, "otherUser", false));
         });
 
         assertTrue(exception.getMessage().contains("Request not found with id: 1"));
@@ -308,7 +345,7 @@ public class RequestServiceTest {
         when(requestRepository.findById(1L)).thenReturn(Optional.of(request));
 
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.completeRequest(1L, "volunteerToken");
+            requestService.completeRequest(1L, UserPrincipal.of(volunteer));
         });
 
         assertTrue(exception.getMessage().contains("Only requests with ACCEPTING status can be completed"));
@@ -322,7 +359,7 @@ public class RequestServiceTest {
         when(requestRepository.findById(1L)).thenReturn(Optional.of(request));
         when(requestRepository.save(any(Request.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        requestService.cancelRequest(1L, "token");
+        requestService.cancelRequest(1L, UserPrincipal.of(poster));
         assertEquals(RequestStatus.WAITING, request.getStatus());
     }
 
@@ -334,7 +371,7 @@ public class RequestServiceTest {
         when(requestRepository.findById(1L)).thenReturn(Optional.of(request));
 
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.cancelRequest(1L, "token");
+            requestService.cancelRequest(1L, UserPrincipal.of(poster));
         });
         assertTrue(exception.getMessage().contains("Only requests with status ACCEPTING or VOLUNTEERED can be canceled"));
     }
@@ -344,7 +381,7 @@ public class RequestServiceTest {
         when(requestRepository.findById(1L)).thenReturn(Optional.empty());
 
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.cancelRequest(1L, "token");
+            requestService.cancelRequest(1L, new UserPrincipal(999L, "otherUser", false));
         });
 
         assertTrue(exception.getMessage().contains("Request not found with id: 1"));
@@ -357,13 +394,12 @@ public class RequestServiceTest {
         Request request3 = createSampleRequest(3L, "Request 3", RequestStatus.WAITING, createSampleUser(100L, "posterUser", "token"));
 
         User admin = createSampleUser(200L, "admin", "adminToken");
-        when(userService.getUserByToken("adminToken")).thenReturn(admin);
 
-        when(requestRepository.findAll()).thenReturn(List.of(request1, request2, request3));
+        when(requestRepository.findByStatusNot(RequestStatus.DELETED)).thenReturn(List.of(request1, request2, request3));
         when(requestRepository.findByStatus(RequestStatus.WAITING)).thenReturn(List.of(request1, request3));
 
 
-        List<Request> allRequests = requestService.getRequests("adminToken");
+        List<Request> allRequests = requestService.getRequests(UserPrincipal.of(admin));
         assertEquals(3, allRequests.size());
 
         List<Request> waitingRequests = requestService.getWaitingRequests();
@@ -382,16 +418,39 @@ public class RequestServiceTest {
 
         // Set up mock behavior
         when(requestRepository.findById(1L)).thenReturn(Optional.of(request));
-        when(userService.getUserByToken("volunteerToken")).thenReturn(volunteer);
-        when(requestRepository.save(any(Request.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userService.getUserById(200L)).thenReturn(volunteer);
+        when(requestRepository.volunteerIfWaiting(eq(1L), eq(volunteer), any(LocalDateTime.class))).thenReturn(1);
 
         // Execute the test
-        requestService.volunteerRequest(1L, "volunteerToken");
+        requestService.volunteerRequest(1L, UserPrincipal.of(volunteer));
 
-        // Verify results
-        assertEquals(RequestStatus.VOLUNTEERED, request.getStatus());
+        // Verify results, the request is not read again after the conditional update
+        verify(requestRepository).volunteerIfWaiting(eq(1L), eq(volunteer), any(LocalDateTime.class));
+        verify(requestRepository, times(1)).findById(1L);
+        verify(requestRepository, never()).save(any(Request.class));
         assertEquals(volunteer, request.getVolunteer());
-        verify(notificationService).volunteerNotification(request, volunteer);
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof RequestEvent
+                && ((RequestEvent) event).getType() == RequestEventType.VOLUNTEERED
+                && ((RequestEvent) event).getRequest().getStatus() == RequestStatus.VOLUNTEERED));
+        verify(eventPublisher).publishEvent(argThat(transition(RequestTransition.VOLUNTEERED, 100L, 200L)));
+    }
+
+    @Test
+    public void testVolunteerRequest_lostRace_throwsConflict() {
+        User poster = createSampleUser(100L, "posterUser", "posterToken");
+        User volunteer = createSampleUser(200L, "volunteerUser", "volunteerToken");
+        Request request = createSampleRequest(1L, "Help needed", RequestStatus.WAITING, poster);
+
+        when(requestRepository.findById(1L)).thenReturn(Optional.of(request));
+        when(userService.getUserById(200L)).thenReturn(volunteer);
+        // another volunteer's update committed between our read and our write
+        when(requestRepository.volunteerIfWaiting(eq(1L), eq(volunteer), any(LocalDateTime.class))).thenReturn(0);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> requestService.volunteerRequest(1L, UserPrincipal.of(volunteer)));
+
+        assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -402,11 +461,10 @@ public class RequestServiceTest {
 
         // Set up mock behavior
         when(requestRepository.findById(1L)).thenReturn(Optional.of(request));
-        when(userService.getUserByToken("posterToken")).thenReturn(poster);
 
         // Execute test and verify exception
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.volunteerRequest(1L, "posterToken");
+            requestService.volunteerRequest(1L, UserPrincipal.of(poster));
         });
         assertTrue(exception.getMessage().contains("You cannot volunteer for your own request"));
     }
@@ -421,11 +479,10 @@ public class RequestServiceTest {
 
         // Set up mock behavior
         when(requestRepository.findById(1L)).thenReturn(Optional.of(request));
-        when(userService.getUserByToken("volunteer2Token")).thenReturn(volunteer2);
 
         // Execute test and verify exception
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.volunteerRequest(1L, "volunteer2Token");
+            requestService.volunteerRequest(1L, UserPrincipal.of(volunteer2));
         });
         assertTrue(exception.getMessage().contains("You can only volunteer for requests that are still waiting"));
     }
@@ -442,7 +499,7 @@ public class RequestServiceTest {
         when(requestRepository.save(any(Request.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Execute the test
-        requestService.markRequestAsDone(1L, "posterToken");
+        requestService.markRequestAsDone(1L, UserPrincipal.of(poster));
 
         // Verify results
         assertEquals(RequestStatus.DONE, request.getStatus());
@@ -460,7 +517,7 @@ public class RequestServiceTest {
 
         // Execute test and verify exception
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.markRequestAsDone(1L, "wrongToken");
+            requestService.markRequestAsDone(1L, new UserPrincipal(999L, "otherUser", false));
         });
         assertTrue(exception.getMessage().contains("Invalid token"));
     }
@@ -477,7 +534,7 @@ public class RequestServiceTest {
 
         // Execute test and verify exception
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.markRequestAsDone(1L, "posterToken");
+            requestService.markRequestAsDone(1L, UserPrincipal.of(poster));
         });
         assertTrue(exception.getMessage().contains("Only completed requests can be mark as done"));
     }
@@ -494,12 +551,12 @@ public class RequestServiceTest {
         when(requestRepository.save(any(Request.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Execute the test
-        requestService.feedback(1L, "posterToken", "Great help!", 5);
+        requestService.feedback(1L, UserPrincipal.of(poster), "Great help!", 5);
 
         // Verify results
         assertEquals("Great help!", request.getFeedback());
         assertEquals(5, request.getRating());
-        verify(notificationService).feedbackNotification(request);
+        verify(eventPublisher).publishEvent(argThat(transition(RequestTransition.FEEDBACK, 100L, 200L)));
     }
 
     @Test
@@ -514,7 +571,7 @@ public class RequestServiceTest {
 
         // Execute test and verify exception
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.feedback(1L, "wrongToken", "Great help!", 5);
+            requestService.feedback(1L, new UserPrincipal(999L, "otherUser", false), "Great help!", 5);
         });
         assertTrue(exception.getMessage().contains("Invalid token"));
     }
@@ -531,7 +588,7 @@ public class RequestServiceTest {
 
         // Execute test and verify exception
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.feedback(1L, "posterToken", "Great help!", 5);
+            requestService.feedback(1L, UserPrincipal.of(poster), "Great help!", 5);
         });
         assertTrue(exception.getMessage().contains("Only requests be marked as done can be feedback"));
     }
@@ -545,11 +602,10 @@ public class RequestServiceTest {
         List<Request> posterRequests = Arrays.asList(request1, request2);
 
         // Set up mock behavior
-        when(userService.getUserByToken("posterToken")).thenReturn(poster);
-        when(requestRepository.findByPoster(poster)).thenReturn(posterRequests);
+        when(requestRepository.findByPosterId(100L)).thenReturn(posterRequests);
 
         // Execute the test
-        List<Request> result = requestService.getRequestByPoster("posterToken");
+        List<Request> result = requestService.getRequestByPoster(UserPrincipal.of(poster));
 
         // Verify results
         assertEquals(2, result.size());
@@ -702,11 +758,10 @@ public class RequestServiceTest {
     public void testGetRequests_notAdmin_throwsUnauthorized() {
         // Set up a non-admin user
         User user = createSampleUser(100L, "regularUser", "userToken");
-        when(userService.getUserByToken("userToken")).thenReturn(user);
 
         // Execute test and verify exception
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.getRequests("userToken");
+            requestService.getRequests(UserPrincipal.of(user));
         });
         assertTrue(exception.getMessage().contains("Invalid token"));
     }
@@ -723,7 +778,7 @@ public class RequestServiceTest {
 
         // Execute test and verify exception - using poster's token instead of volunteer's
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.completeRequest(1L, "posterToken");
+            requestService.completeRequest(1L, UserPrincipal.of(poster));
         });
         assertTrue(exception.getMessage().contains("Invalid token"));
     }
@@ -740,12 +795,15 @@ public class RequestServiceTest {
         when(requestRepository.save(any(Request.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Execute test - volunteer cancels
-        requestService.cancelRequest(1L, "volunteerToken");
+        requestService.cancelRequest(1L, UserPrincipal.of(volunteer));
 
         // Verify results
         assertEquals(RequestStatus.WAITING, request.getStatus());
         assertNull(request.getVolunteer());
-        verify(notificationService).volunteerCancelNotification(request);
+        verify(eventPublisher).publishEvent(argThat(transition(RequestTransition.VOLUNTEER_CANCELLED, 100L, 200L)));
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof RequestEvent
+                && ((RequestEvent) event).getType() == RequestEventType.CANCELLED
+                && ((RequestEvent) event).getRequest().getStatus() == RequestStatus.WAITING));
     }
 
     @Test
@@ -761,7 +819,7 @@ public class RequestServiceTest {
 
         // Execute test and verify exception - using another user's token
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.cancelRequest(1L, "otherToken");
+            requestService.cancelRequest(1L, UserPrincipal.of(otherUser));
         });
         assertTrue(exception.getMessage().contains("Invalid user"));
     }
@@ -769,10 +827,9 @@ public class RequestServiceTest {
     @Test
     public void testGetRequests_invalidToken_throwsUnauthorized() {
         User nonAdmin = createSampleUser(100L, "user", "userToken");
-        when(userService.getUserByToken("userToken")).thenReturn(nonAdmin);
 
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.getRequests("userToken");
+            requestService.getRequests(UserPrincipal.of(nonAdmin));
         });
 
         assertTrue(exception.getMessage().contains("Invalid token"));
@@ -783,7 +840,7 @@ public class RequestServiceTest {
         when(requestRepository.findById(1L)).thenReturn(Optional.empty());
 
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.volunteerRequest(1L, "token");
+            requestService.volunteerRequest(1L, new UserPrincipal(999L, "otherUser", false));
         });
 
         assertTrue(exception.getMessage().contains("Request not found with id: 1"));
@@ -798,10 +855,9 @@ public class RequestServiceTest {
         Request request = createSampleRequest(1L, "Title", RequestStatus.VOLUNTEERED, poster, existingVolunteer);
 
         when(requestRepository.findById(1L)).thenReturn(Optional.of(request));
-        when(userService.getUserByToken("newToken")).thenReturn(newVolunteer);
 
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.volunteerRequest(1L, "newToken");
+            requestService.volunteerRequest(1L, UserPrincipal.of(newVolunteer));
         });
 
         assertTrue(exception.getMessage().contains("You can only volunteer for requests that are still waiting"));
@@ -812,7 +868,7 @@ public class RequestServiceTest {
         when(requestRepository.findById(1L)).thenReturn(Optional.empty());
 
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.markRequestAsDone(1L, "token");
+            requestService.markRequestAsDone(1L, new UserPrincipal(999L, "otherUser", false));
         });
 
         assertTrue(exception.getMessage().contains("Request not found with id: 1"));
@@ -823,21 +879,19 @@ public class RequestServiceTest {
         when(requestRepository.findById(1L)).thenReturn(Optional.empty());
 
         Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.feedback(1L, "token", "Great work!", 5);
+            requestService.feedback(1L, new UserPrincipal(999L, "otherUser", false), "Great work!", 5);
         });
 
         assertTrue(exception.getMessage().contains("Request not found with id: 1"));
     }
 
     @Test
-    public void testGetRequestByPoster_userNotFound() {
-        when(userService.getUserByToken("invalidToken")).thenThrow(new ResponseStatusException(org.springframework.http.HttpStatus.NOT_FOUND, "Invalid token"));
+    public void testGetRequestByPoster_noRequests() {
+        when(requestRepository.findByPosterId(999L)).thenReturn(Arrays.asList());
 
-        Exception exception = assertThrows(ResponseStatusException.class, () -> {
-            requestService.getRequestByPoster("invalidToken");
-        });
+        List<Request> result = requestService.getRequestByPoster(new UserPrincipal(999L, "otherUser", false));
 
-        assertTrue(exception.getMessage().contains("Invalid token"));
+        assertEquals(0, result.size());
     }
 
     @Test
@@ -864,4 +918,112 @@ public class RequestServiceTest {
 
         assertTrue(exception.getMessage().contains("User not found"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void deleteRequests_admin_softDeletesInBulk() {
+        User poster = createSampleUser(100L, "posterUser", "token");
+        Request first = createSampleRequest(1L, "First", RequestStatus.WAITING, poster);
+        Request second = createSampleRequest(2L, "Second", RequestStatus.VOLUNTEERED, poster);
+        UserPrincipal admin = new UserPrincipal(1L, "admin", true);
+        when(requestRepository.findUndeletedByIdIn(any())).thenReturn(List.of(first, second));
+        when(requestRepository.softDeleteByIdIn(eq(List.of(1L, 2L)), any(), eq(1L), eq("spam"), any())).thenReturn(2);
+        when(notificationService.deleteNotificationsForRequests(List.of(1L, 2L))).thenReturn(5);
+
+        Map<String, Integer> result = requestService.deleteRequests(Arrays.asList(1L, 2L, 2L, 3L), admin, "spam");
+
+        assertEquals(3, result.get("requested"));
+        assertEquals(2, result.get("deleted"));
+        assertEquals(1, result.get("skipped"));
+        assertEquals(5, result.get("notificationsDeleted"));
+        verify(requestRepository, never()).save(any());
+        verify(eventPublisher, times(2)).publishEvent(argThat((Object event) -> event instanceof RequestEvent
+                && ((RequestEvent) event).getType() == RequestEventType.DELETED
+                && ((RequestEvent) event).getRequest().getStatus() == RequestStatus.DELETED));
+    }
+
+    @Test
+    public void deleteRequests_nothingDeletable_skipsBulkStatements() {
+        when(requestRepository.findUndeletedByIdIn(any())).thenReturn(List.of());
+
+        Map<String, Integer> result = requestService.deleteRequests(List.of(7L), new UserPrincipal(1L, "admin", true), null);
+
+        assertEquals(0, result.get("deleted"));
+        assertEquals(1, result.get("skipped"));
+        verify(requestRepository, never()).softDeleteByIdIn(any(), any(), any(), any(), any());
+        verifyNoInteractions(notificationService, eventPublisher);
+    }
+
+    @Test
+    public void deleteRequests_notAdmin_throwsUnauthorized() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> requestService.deleteRequests(List.of(1L), new UserPrincipal(5L, "posterUser", false), null));
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
+        verifyNoInteractions(requestRepository);
+    }
+
+    @Test
+    public void deleteRequests_invalidIds_throwBadRequest() {
+        UserPrincipal admin = new UserPrincipal(1L, "admin", true);
+        List<Long> tooMany = new ArrayList<>();
+        for (long id = 1; id <= RequestService.MAX_BULK_DELETE_SIZE + 1; id++) {
+            tooMany.add(id);
+        }
+
+        assertThrows(ResponseStatusException.class, () -> requestService.deleteRequests(List.of(), admin, null));
+        assertThrows(ResponseStatusException.class, () -> requestService.deleteRequests(tooMany, admin, null));
+        verifyNoInteractions(requestRepository);
+    }
+
+    @Test
+    public void getActiveRequestPage_mapsPageOfWaitingRequests() {
+        User poster = createSampleUser(100L, "posterUser", "token");
+        Request waiting = createSampleRequest(1L, "Waiting", RequestStatus.WAITING, poster);
+        when(requestRepository.findAll(ArgumentMatchers.<Specification<Request>>any(), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(waiting), PageRequest.of(1, 1), 3));
+
+        PageDTO<RequestGetDTO> page = requestService.getActiveRequestPage(
+                List.of(RequestEmergencyLevel.LOW), "CH", null, null, "emergency", 1, 1);
+
+        assertEquals(1, page.getContent().size());
+        assertEquals("Waiting", page.getContent().get(0).getTitle());
+        assertEquals(3, page.getTotalElements());
+        assertEquals(3, page.getTotalPages());
+        verify(requestRepository).findAll(ArgumentMatchers.<Specification<Request>>any(),
+                argThat((Pageable pageable) -> pageable.getPageNumber() == 1
+                        && pageable.getSort().getOrderFor("emergencyLevel").isAscending()));
+    }
+
+    @Test
+    public void getActiveRequestPage_invalidArguments_throwBadRequest() {
+        LocalDate today = LocalDate.now();
+
+        assertThrows(ResponseStatusException.class,
+                () -> requestService.getActiveRequestPage(null, null, null, null, "newest", -1, 20));
+        assertThrows(ResponseStatusException.class,
+                () -> requestService.getActiveRequestPage(null, null, null, null, "newest", 0,
+                        RequestService.MAX_FEED_PAGE_SIZE + 1));
+        assertThrows(ResponseStatusException.class,
+                () -> requestService.getActiveRequestPage(null, null, today, today.minusDays(1), "newest", 0, 20));
+        assertThrows(ResponseStatusException.class,
+                () -> requestService.getActiveRequestPage(null, null, null, null, "title", 0, 20));
+        verifyNoInteractions(requestRepository);
+    }
+
+    @Test
+    public void getAdminRequestPage_adminOnly_newestFirst() {
+        User admin = createSampleUser(1L, "admin", "adminToken");
+        Request done = createSampleRequest(5L, "Done", RequestStatus.DONE, createSampleUser(100L, "posterUser", "token"));
+        when(requestRepository.findAll(ArgumentMatchers.<Specification<Request>>any(), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(done), PageRequest.of(0, 20), 1));
+
+        PageDTO<RequestGetDTO> page = requestService.getAdminRequestPage(UserPrincipal.of(admin),
+                List.of(RequestStatus.DONE), 0, 20);
+
+        assertEquals(5L, page.getContent().get(0).getId());
+        verify(requestRepository).findAll(ArgumentMatchers.<Specification<Request>>any(),
+                argThat((Pageable pageable) -> pageable.getSort().getOrderFor("id").isDescending()));
+        assertThrows(ResponseStatusException.class, () -> requestService.getAdminRequestPage(
+                new UserPrincipal(100L, "posterUser", false), null, 0, 20));
+    }
+}
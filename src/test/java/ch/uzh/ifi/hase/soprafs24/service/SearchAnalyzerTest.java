@@ -0,0 +1,42 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class SearchAnalyzerTest {
+
+    @Test
+    public void analyze_splitsLowerCasesAndDropsStopWords() {
+        // both stemmers run on every word, "garden" loses its German looking ending
+        assertEquals(List.of("need", "help", "gard"), SearchAnalyzer.analyze("I need HELP with the garden!"));
+        assertEquals(SearchAnalyzer.analyze("garden"), SearchAnalyzer.analyze("gardens"));
+        assertTrue(SearchAnalyzer.analyze("the and of").isEmpty());
+        assertTrue(SearchAnalyzer.analyze(null).isEmpty());
+    }
+
+    @Test
+    public void analyze_englishInflections_shareAStem() {
+        assertEquals(SearchAnalyzer.analyze("help"), SearchAnalyzer.analyze("helping"));
+        assertEquals(SearchAnalyzer.analyze("help"), SearchAnalyzer.analyze("helped"));
+        assertEquals(SearchAnalyzer.analyze("help"), SearchAnalyzer.analyze("helps"));
+        assertEquals(SearchAnalyzer.analyze("grocery"), SearchAnalyzer.analyze("groceries"));
+    }
+
+    @Test
+    public void analyze_germanInflectionsAndUmlauts_shareAStem() {
+        assertEquals(SearchAnalyzer.analyze("Einkauf"), SearchAnalyzer.analyze("Einkäufe"));
+        assertEquals(SearchAnalyzer.analyze("Kind"), SearchAnalyzer.analyze("Kinder"));
+        assertEquals(SearchAnalyzer.analyze("Strasse"), SearchAnalyzer.analyze("Straße"));
+        assertEquals(List.of("hilf", "einkauf"), SearchAnalyzer.analyze("Hilfe beim Einkaufen für mich"));
+    }
+
+    @Test
+    public void analyze_shortWords_areNotStemmedAway() {
+        assertEquals(List.of("bus"), SearchAnalyzer.analyze("bus"));
+        assertEquals(List.of("dog"), SearchAnalyzer.analyze("dogs"));
+        assertEquals(List.of("10kg"), SearchAnalyzer.analyze("10kg"));
+    }
+}
@@ -0,0 +1,189 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class UnreadCounterTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final UnreadCounter counter = new UnreadCounter(userId -> {
+        loads.incrementAndGet();
+        return 5L;
+    });
+
+    @Test
+    public void get_loadsOnceThenCountsInMemory() {
+        assertEquals(5L, counter.get(1L));
+        counter.increment(1L);
+        counter.decrement(1L, 2);
+
+        assertEquals(4L, counter.get(1L));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void updatesForUnloadedUsers_areDropped() {
+        counter.increment(1L);
+        counter.decrement(1L, 3);
+
+        assertEquals(5L, counter.get(1L));
+    }
+
+    @Test
+    public void decrementBelowZero_forcesReload() {
+        counter.get(1L);
+        counter.decrement(1L, 6);
+
+        assertEquals(5L, counter.get(1L));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void invalidate_forcesReload() {
+        counter.get(1L);
+        counter.invalidate(1L);
+        counter.get(1L);
+
+        assertEquals(2, loads.get());
+    }
+
+    // rows the database would count right now, for the interleaving tests
+    private final AtomicLong rows = new AtomicLong(5);
+    private final AtomicInteger rowLoads = new AtomicInteger();
+    private final UnreadCounter liveCounter = new UnreadCounter(userId -> {
+        rowLoads.incrementAndGet();
+        return rows.get();
+    });
+
+    @AfterEach
+    public void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private void complete(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(status);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    public void loadBetweenCommitAndCallback_isNotCountedTwice() {
+        TransactionSynchronizationManager.initSynchronization();
+        liveCounter.incrementAfterCommit(1L);
+        // committed, the callback has not run yet
+        rows.set(6);
+
+        assertEquals(6L, liveCounter.get(1L));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals(6L, liveCounter.get(1L));
+        assertEquals(6L, liveCounter.get(1L));
+        assertEquals(2, rowLoads.get());
+    }
+
+    @Test
+    public void changeCompletingDuringLoad_loadIsNotKept() {
+        AtomicReference<UnreadCounter> racing = new AtomicReference<>();
+        racing.set(new UnreadCounter(userId -> {
+            if (rowLoads.incrementAndGet() == 1) {
+                // another request commits and runs its callback while we count
+                rows.set(6);
+                racing.get().incrementAfterCommit(userId);
+            }
+            return rows.get();
+        }));
+
+        assertEquals(6L, racing.get().get(1L));
+
+        // the first load was not kept, the second one is
+        assertEquals(6L, racing.get().get(1L));
+        assertEquals(6L, racing.get().get(1L));
+        assertEquals(2, rowLoads.get());
+    }
+
+    @Test
+    public void rolledBackChange_isNotApplied() {
+        assertEquals(5L, liveCounter.get(1L));
+        TransactionSynchronizationManager.initSynchronization();
+        liveCounter.decrementAfterCommit(1L, 2);
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals(5L, liveCounter.get(1L));
+        assertEquals(1, rowLoads.get());
+    }
+
+    @Test
+    public void invalidateCommittingDuringLoad_loadIsNotKept() {
+        AtomicReference<UnreadCounter> racing = new AtomicReference<>();
+        racing.set(new UnreadCounter(userId -> {
+            long counted = rows.get();
+            if (rowLoads.incrementAndGet() == 1) {
+                // the notifications are deleted and the callback runs after we counted
+                rows.set(2);
+                racing.get().invalidateAfterCommit(userId);
+            }
+            return counted;
+        }));
+
+        assertEquals(5L, racing.get().get(1L));
+
+        assertEquals(2L, racing.get().get(1L));
+        assertEquals(2L, racing.get().get(1L));
+        assertEquals(2, rowLoads.get());
+    }
+
+    @Test
+    public void invalidateDuringLoad_loadIsNotKept() {
+        AtomicReference<UnreadCounter> racing = new AtomicReference<>();
+        racing.set(new UnreadCounter(userId -> {
+            long counted = rows.get();
+            if (rowLoads.incrementAndGet() == 1) {
+                rows.set(2);
+                racing.get().invalidate(userId);
+            }
+            return counted;
+        }));
+
+        racing.get().get(1L);
+
+        assertEquals(2L, racing.get().get(1L));
+        assertEquals(2, rowLoads.get());
+    }
+
+    @Test
+    public void invalidateAfterCommit_rolledBack_keepsTheCounter() {
+        assertEquals(5L, liveCounter.get(1L));
+        TransactionSynchronizationManager.initSynchronization();
+        liveCounter.invalidateAfterCommit(1L);
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals(5L, liveCounter.get(1L));
+        assertEquals(1, rowLoads.get());
+    }
+
+    @Test
+    public void finishedLoadsAndChanges_leaveNoBookkeeping() {
+        liveCounter.get(1L);
+        TransactionSynchronizationManager.initSynchronization();
+        liveCounter.incrementAfterCommit(1L);
+        liveCounter.invalidateAfterCommit(2L);
+        assertEquals(2, liveCounter.flightCount());
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        liveCounter.get(2L);
+
+        assertEquals(0, liveCounter.flightCount());
+    }
+}
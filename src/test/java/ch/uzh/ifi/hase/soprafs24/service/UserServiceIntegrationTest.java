@@ -142,7 +142,7 @@ public class UserServiceIntegrationTest {
         ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO putDTO = new ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO();
         putDTO.setUsername("changedName");
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
-            userService.updateUser(9999L, putDTO, createdUser.getToken());
+            userService.updateUser(9999L, putDTO, userService.getPrincipalByToken(createdUser.getToken()));
         });
         assertTrue(ex.getMessage().contains("was not found"));
     }
@@ -164,7 +164,7 @@ public class UserServiceIntegrationTest {
         ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO putDTO = new ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO();
         putDTO.setUsername("userA_conflict");
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
-            userService.updateUser(createdB.getId(), putDTO, createdB.getToken());
+            userService.updateUser(createdB.getId(), putDTO, userService.getPrincipalByToken(createdB.getToken()));
         });
         assertTrue(ex.getMessage().contains("already exists"));
     }
@@ -186,7 +186,7 @@ public class UserServiceIntegrationTest {
         ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO putDTO = new ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO();
         putDTO.setEmail("userA_conflictEmail@edu.example.com");
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
-            userService.updateUser(createdB.getId(), putDTO, createdB.getToken());
+            userService.updateUser(createdB.getId(), putDTO, userService.getPrincipalByToken(createdB.getToken()));
         });
         assertTrue(ex.getMessage().contains("already exists"));
     }
@@ -202,7 +202,7 @@ public class UserServiceIntegrationTest {
         String oldToken = createdUser.getToken();
 
 
-        userService.logout(createdUser.getToken());
+        userService.logout(userService.getPrincipalByToken(createdUser.getToken()));
 
 
         User loginInput = new User();
@@ -250,7 +250,7 @@ public class UserServiceIntegrationTest {
     @Test
     public void testLogout_invalidToken() {
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
-            userService.logout("nonExistingToken");
+            userService.logout(userService.getPrincipalByToken("nonExistingToken"));
         });
         assertTrue(ex.getMessage().contains("Invalid token"));
     }
@@ -274,7 +274,7 @@ public class UserServiceIntegrationTest {
         User createdUser = userService.createUser(newUser);
 
 
-        userService.deleteUser(createdUser.getId(), createdUser.getToken());
+        userService.deleteUser(createdUser.getId(), userService.getPrincipalByToken(createdUser.getToken()));
 
 
         assertThrows(ResponseStatusException.class, () -> {
@@ -297,7 +297,7 @@ public class UserServiceIntegrationTest {
         userPutDTO.setEmail("updateduser@edu.example.com");
 
 
-        userService.updateUser(createdUser.getId(), userPutDTO, createdUser.getToken());
+        userService.updateUser(createdUser.getId(), userPutDTO, userService.getPrincipalByToken(createdUser.getToken()));
 
         User updatedUser = userService.getUserById(createdUser.getId());
         assertEquals("updatedUser", updatedUser.getUsername());
@@ -319,7 +319,7 @@ public class UserServiceIntegrationTest {
         User createdB = userService.createUser(userB);
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
-            userService.deleteUser(createdA.getId(), createdB.getToken());
+            userService.deleteUser(createdA.getId(), userService.getPrincipalByToken(createdB.getToken()));
         });
         assertTrue(ex.getMessage().contains("unauthorized"));
     }
@@ -333,7 +333,7 @@ public class UserServiceIntegrationTest {
         User createdUser = userService.createUser(newUser);
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
-            userService.deleteUser(9999L, createdUser.getToken());
+            userService.deleteUser(9999L, userService.getPrincipalByToken(createdUser.getToken()));
         });
         assertTrue(ex.getMessage().contains("was not found"));
     }
@@ -355,7 +355,7 @@ public class UserServiceIntegrationTest {
         ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO putDTO = new ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO();
         putDTO.setUsername("newUsername");
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
-            userService.updateUser(createdA.getId(), putDTO, createdB.getToken());
+            userService.updateUser(createdA.getId(), putDTO, userService.getPrincipalByToken(createdB.getToken()));
         });
         assertTrue(ex.getMessage().contains("unauthorized"));
     }
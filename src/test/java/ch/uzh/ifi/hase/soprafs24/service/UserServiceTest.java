@@ -1,6 +1,7 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Optional;
 
@@ -14,13 +15,18 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.web.server.ResponseStatusException;
 
 import ch.uzh.ifi.hase.soprafs24.constant.UserGender;
@@ -29,6 +35,8 @@ import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.repository.RequestRepository;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO;
+import ch.uzh.ifi.hase.soprafs24.security.TokenCache;
+import ch.uzh.ifi.hase.soprafs24.security.UserPrincipal;
 
 @ExtendWith(MockitoExtension.class)
 public class UserServiceTest {
@@ -42,6 +50,12 @@ public class UserServiceTest {
     @Mock
     private RequestRepository requestRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private TokenCache tokenCache = new TokenCache(100, 300);
+
 
     @Test
     public void testGetUsers_success() {
@@ -209,23 +223,23 @@ public class UserServiceTest {
         user.setId(1L);
         user.setToken("validToken");
         user.setStatus(UserStatus.ONLINE);
-        when(userRepository.findByToken("validToken")).thenReturn(user);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
         when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        userService.logout("validToken");
+        userService.logout(UserPrincipal.of(user));
 
         assertEquals(UserStatus.OFFLINE, user.getStatus());
         verify(userRepository, times(1)).flush();
     }
 
     @Test
-    public void testLogout_invalidToken() {
-        when(userRepository.findByToken("invalidToken")).thenReturn(null);
+    public void testLogout_userNotFound() {
+        when(userRepository.findById(1L)).thenReturn(Optional.empty());
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
-            userService.logout("invalidToken");
+            userService.logout(new UserPrincipal(1L, "deletedUser", false));
         });
-        assertTrue(exception.getMessage().contains("Invalid token"));
+        assertTrue(exception.getMessage().contains("was not found"));
     }
 
     @Test
@@ -249,6 +263,74 @@ public class UserServiceTest {
         assertTrue(exception.getMessage().contains("Invalid token"));
     }
 
+    @Test
+    public void testGetPrincipalByToken_cachedAfterFirstLookup() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("testUsername");
+        user.setToken("token123");
+        when(userRepository.findByToken("token123")).thenReturn(user);
+
+        UserPrincipal first = userService.getPrincipalByToken("token123");
+        UserPrincipal second = userService.getPrincipalByToken("token123");
+
+        assertEquals(1L, first.getId());
+        assertEquals("testUsername", second.getUsername());
+        verify(userRepository, times(1)).findByToken("token123");
+    }
+
+    @Test
+    public void testGetPrincipalByToken_invalidToken() {
+        when(userRepository.findByToken("notFoundToken")).thenReturn(null);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
+            userService.getPrincipalByToken("notFoundToken");
+        });
+        assertTrue(exception.getMessage().contains("Invalid token"));
+        assertNull(tokenCache.get("notFoundToken"));
+    }
+
+    @Test
+    public void testLogin_evictsCachedToken() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("testUsername");
+        user.setPassword("password");
+        user.setToken("oldToken");
+        tokenCache.put("oldToken", UserPrincipal.of(user));
+
+        when(userRepository.findByUsername("testUsername")).thenReturn(user);
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        userService.login(user);
+
+        assertNull(tokenCache.get("oldToken"));
+        verify(tokenCache, times(2)).evictUser(1L);
+    }
+
+    @Test
+    public void testLogout_evictsCachedToken() {
+        User user = new User();
+        user.setId(1L);
+        user.setToken("validToken");
+        user.setStatus(UserStatus.ONLINE);
+        tokenCache.put("validToken", UserPrincipal.of(user));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        userService.logout(UserPrincipal.of(user));
+
+        assertNull(tokenCache.get("validToken"));
+    }
+
+    @Test
+    public void testLogout_userNotFound_keepsCache() {
+        when(userRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertThrows(ResponseStatusException.class, () -> userService.logout(new UserPrincipal(1L, "deletedUser", false)));
+        verify(tokenCache, never()).evictUser(any());
+    }
+
     @Test
     public void testDeleteUser_success() {
         // given
@@ -257,9 +339,8 @@ public class UserServiceTest {
         user.setUsername("testUsername");
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
 
-        when(userRepository.findByToken("validToken")).thenReturn(user);
 
-        userService.deleteUser(1L, "validToken");
+        userService.deleteUser(1L, UserPrincipal.of(user));
 
         verify(userRepository, times(1)).delete(user);
     }
@@ -275,10 +356,9 @@ public class UserServiceTest {
         User currentUser = new User();
         currentUser.setId(2L);
         currentUser.setUsername("currentUser");
-        when(userRepository.findByToken("token")).thenReturn(currentUser);
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
-            userService.deleteUser(1L, "token");
+            userService.deleteUser(1L, UserPrincipal.of(currentUser));
         });
         assertTrue(exception.getMessage().contains("unauthorized user"));
     }
@@ -287,7 +367,7 @@ public class UserServiceTest {
     public void testDeleteUser_userNotFound() {
         when(userRepository.findById(1L)).thenReturn(Optional.empty());
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
-            userService.deleteUser(1L, "token");
+            userService.deleteUser(1L, new UserPrincipal(2L, "currentUser", false));
         });
         assertTrue(exception.getMessage().contains("was not found"));
     }
@@ -402,18 +482,20 @@ public class UserServiceTest {
         userPutDTO.setEmail("new@edu.example.com");
         userPutDTO.setAge(25);
 
-        when(userRepository.findByToken("validToken")).thenReturn(loginUser);
         when(userRepository.findById(1L)).thenReturn(Optional.of(existingUser));
         when(userRepository.findByUsername("newUsername")).thenReturn(null);
         when(userRepository.findByEmail("new@edu.example.com")).thenReturn(null);
+        tokenCache.put("validToken", UserPrincipal.of(loginUser));
 
-        userService.updateUser(1L, userPutDTO, "validToken");
+        userService.updateUser(1L, userPutDTO, UserPrincipal.of(loginUser));
 
         assertEquals("newUsername", existingUser.getUsername());
         assertEquals("new@edu.example.com", existingUser.getEmail());
         assertEquals(25, existingUser.getAge());
         verify(userRepository).save(existingUser);
         verify(userRepository).flush();
+        // the cached principal still carries the old username
+        assertNull(tokenCache.get("validToken"));
     }
 
     @Test
@@ -431,11 +513,10 @@ public class UserServiceTest {
         UserPutDTO userPutDTO = new UserPutDTO();
         userPutDTO.setUsername("updatedUsername");
 
-        when(userRepository.findByToken("adminToken")).thenReturn(adminUser);
         when(userRepository.findById(1L)).thenReturn(Optional.of(targetUser));
         when(userRepository.findByUsername("updatedUsername")).thenReturn(null);
 
-        userService.updateUser(1L, userPutDTO, "adminToken");
+        userService.updateUser(1L, userPutDTO, UserPrincipal.of(adminUser));
 
         assertEquals("updatedUsername", targetUser.getUsername());
         verify(userRepository).save(targetUser);
@@ -455,11 +536,10 @@ public class UserServiceTest {
         UserPutDTO userPutDTO = new UserPutDTO();
         userPutDTO.setUsername("newUsername");
 
-        when(userRepository.findByToken("validToken")).thenReturn(loginUser);
         when(userRepository.findById(1L)).thenReturn(Optional.of(targetUser));
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
-            userService.updateUser(1L, userPutDTO, "validToken");
+            userService.updateUser(1L, userPutDTO, UserPrincipal.of(loginUser));
         });
         assertTrue(exception.getMessage().contains("unauthorized user"));
     }
@@ -482,12 +562,11 @@ public class UserServiceTest {
         UserPutDTO userPutDTO = new UserPutDTO();
         userPutDTO.setUsername("conflictUsername");
 
-        when(userRepository.findByToken("validToken")).thenReturn(loginUser);
         when(userRepository.findById(1L)).thenReturn(Optional.of(existingUser));
         when(userRepository.findByUsername("conflictUsername")).thenReturn(conflictUser);
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
-            userService.updateUser(1L, userPutDTO, "validToken");
+            userService.updateUser(1L, userPutDTO, UserPrincipal.of(loginUser));
         });
         assertTrue(exception.getMessage().contains("already exists"));
     }
@@ -510,12 +589,11 @@ public class UserServiceTest {
         UserPutDTO userPutDTO = new UserPutDTO();
         userPutDTO.setEmail("conflict@edu.example.com");
 
-        when(userRepository.findByToken("validToken")).thenReturn(loginUser);
         when(userRepository.findById(1L)).thenReturn(Optional.of(existingUser));
         when(userRepository.findByEmail("conflict@edu.example.com")).thenReturn(conflictUser);
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
-            userService.updateUser(1L, userPutDTO, "validToken");
+            userService.updateUser(1L, userPutDTO, UserPrincipal.of(loginUser));
         });
         assertTrue(exception.getMessage().contains("already exists"));
     }
@@ -538,10 +616,9 @@ public class UserServiceTest {
         UserPutDTO userPutDTO = new UserPutDTO();
         // All fields null
 
-        when(userRepository.findByToken("validToken")).thenReturn(loginUser);
         when(userRepository.findById(1L)).thenReturn(Optional.of(existingUser));
 
-        userService.updateUser(1L, userPutDTO, "validToken");
+        userService.updateUser(1L, userPutDTO, UserPrincipal.of(loginUser));
 
         assertNull(existingUser.getAge());
         assertNull(existingUser.getBirthday());
@@ -564,10 +641,9 @@ public class UserServiceTest {
         UserPutDTO userPutDTO = new UserPutDTO();
         userPutDTO.setUsername("testUser"); // Same username
 
-        when(userRepository.findByToken("validToken")).thenReturn(loginUser);
         when(userRepository.findById(1L)).thenReturn(Optional.of(existingUser));
 
-        userService.updateUser(1L, userPutDTO, "validToken");
+        userService.updateUser(1L, userPutDTO, UserPrincipal.of(loginUser));
 
         assertEquals("testUser", existingUser.getUsername());
         verify(userRepository).save(existingUser);
@@ -588,10 +664,9 @@ public class UserServiceTest {
         UserPutDTO userPutDTO = new UserPutDTO();
         userPutDTO.setEmail("test@edu.example.com"); // Same email
 
-        when(userRepository.findByToken("validToken")).thenReturn(loginUser);
         when(userRepository.findById(1L)).thenReturn(Optional.of(existingUser));
 
-        userService.updateUser(1L, userPutDTO, "validToken");
+        userService.updateUser(1L, userPutDTO, UserPrincipal.of(loginUser));
 
         assertEquals("test@edu.example.com", existingUser.getEmail());
         verify(userRepository).save(existingUser);
@@ -610,10 +685,9 @@ public class UserServiceTest {
         targetUser.setUsername("targetUser");
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(targetUser));
-        when(userRepository.findByToken("adminToken")).thenReturn(adminUser);
         when(requestRepository.findByVolunteer(targetUser)).thenReturn(Arrays.asList());
 
-        userService.deleteUser(1L, "adminToken");
+        userService.deleteUser(1L, UserPrincipal.of(adminUser));
 
         verify(userRepository).delete(targetUser);
     }
@@ -636,10 +710,9 @@ public class UserServiceTest {
         request2.setStatus(ch.uzh.ifi.hase.soprafs24.constant.RequestStatus.ACCEPTING);
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(userRepository.findByToken("validToken")).thenReturn(user);
         when(requestRepository.findByVolunteer(user)).thenReturn(Arrays.asList(request1, request2));
 
-        userService.deleteUser(1L, "validToken");
+        userService.deleteUser(1L, UserPrincipal.of(user));
 
         // Verify requests are updated
         assertNull(request1.getVolunteer());
@@ -650,4 +723,25 @@ public class UserServiceTest {
         verify(requestRepository, times(2)).save(any(ch.uzh.ifi.hase.soprafs24.entity.Request.class));
         verify(userRepository).delete(user);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void recordRating_firstRating_addsIt() {
+        userService.recordRating(1L, null, 4);
+
+        verify(userRepository).addReputation(eq(1L), eq(0), eq(4L), eq(1), any(LocalDateTime.class));
+    }
+
+    @Test
+    public void recordRating_changedRating_onlyMovesTheSum() {
+        userService.recordRating(1L, 4, 2);
+
+        verify(userRepository).addReputation(eq(1L), eq(0), eq(-2L), eq(0), any(LocalDateTime.class));
+    }
+
+    @Test
+    public void removeReputation_nothingToRemove_skipsTheUpdate() {
+        userService.removeReputation(1L, 0, 0, 0);
+
+        verify(userRepository, never()).removeReputation(any(), anyInt(), anyLong(), anyInt());
+    }
+}
@@ -0,0 +1,152 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.web.server.ResponseStatusException;
+
+import ch.uzh.ifi.hase.soprafs24.constant.LeaderboardMetric;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestEventType;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestStatus;
+import ch.uzh.ifi.hase.soprafs24.constant.RequestTransition;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.event.RequestEvent;
+import ch.uzh.ifi.hase.soprafs24.event.RequestTransitionEvent;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LeaderboardEntryDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RequestGetDTO;
+
+public class VolunteerLeaderboardTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    // serves 2, keeps 4 per board, rated needs 2 ratings
+    private final VolunteerLeaderboard leaderboard = new VolunteerLeaderboard(userRepository, 2, 2);
+
+    private User volunteer(Long id, String school, int completed, int ratings, long ratingSum) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("volunteer" + id);
+        user.setSchool(school);
+        user.setCompletedCount(completed);
+        user.setRatingCount(ratings);
+        user.setRatingSum(ratingSum);
+        when(userRepository.findById(id)).thenReturn(Optional.of(user));
+        return user;
+    }
+
+    private List<Long> ids(LeaderboardMetric metric, String school) {
+        return leaderboard.top(metric, school, 2).stream()
+                .map(LeaderboardEntryDTO::getUserId)
+                .collect(Collectors.toList());
+    }
+
+    private RequestEvent requestEvent(RequestStatus status, Long volunteerId) {
+        RequestGetDTO request = new RequestGetDTO();
+        request.setId(99L);
+        request.setStatus(status);
+        request.setVolunteerId(volunteerId);
+        return new RequestEvent(RequestEventType.STATUS_CHANGED, request);
+    }
+
+    @Test
+    public void rebuild_ranksOverallAndPerSchool() {
+        List<User> volunteers = List.of(
+                volunteer(1L, "UZH", 5, 2, 6),
+                volunteer(2L, "ETH", 9, 1, 5),
+                volunteer(3L, " uzh ", 7, 3, 15),
+                volunteer(4L, null, 1, 0, 0));
+        when(userRepository.findByCompletedCountGreaterThan(0)).thenReturn(volunteers);
+
+        leaderboard.rebuild();
+
+        assertEquals(List.of(2L, 3L), ids(LeaderboardMetric.ACTIVE, null));
+        assertEquals(List.of(3L, 1L), ids(LeaderboardMetric.ACTIVE, "Uzh"));
+        assertEquals(List.of(2L), ids(LeaderboardMetric.ACTIVE, "ETH"));
+        // 2 has one rating only
+        assertEquals(List.of(3L, 1L), ids(LeaderboardMetric.RATED, null));
+        assertTrue(leaderboard.top(LeaderboardMetric.ACTIVE, "MIT", 2).isEmpty());
+
+        LeaderboardEntryDTO first = leaderboard.top(LeaderboardMetric.RATED, null, 1).get(0);
+        assertEquals(1, first.getRank());
+        assertEquals(5.0, first.getAverageRating());
+    }
+
+    @Test
+    public void doneRequest_movesTheVolunteerUp() {
+        List<User> volunteers = List.of(volunteer(1L, "UZH", 3, 0, 0), volunteer(2L, "UZH", 2, 0, 0));
+        when(userRepository.findByCompletedCountGreaterThan(0)).thenReturn(volunteers);
+        leaderboard.rebuild();
+
+        volunteer(2L, "UZH", 4, 0, 0);
+        leaderboard.onRequestEvent(requestEvent(RequestStatus.DONE, 2L));
+
+        assertEquals(List.of(2L, 1L), ids(LeaderboardMetric.ACTIVE, null));
+        assertEquals(List.of(2L, 1L), ids(LeaderboardMetric.ACTIVE, "UZH"));
+    }
+
+    @Test
+    public void feedback_canQualifyForTheRatedBoard() {
+        volunteer(1L, "UZH", 2, 2, 9);
+
+        leaderboard.onTransition(new RequestTransitionEvent(RequestTransition.FEEDBACK, 99L, 5L, "poster", 1L,
+                "volunteer1"));
+
+        assertEquals(List.of(1L), ids(LeaderboardMetric.RATED, "UZH"));
+        assertEquals(4.5, leaderboard.top(LeaderboardMetric.RATED, null, 1).get(0).getAverageRating());
+    }
+
+    @Test
+    public void otherEvents_areIgnored() {
+        volunteer(1L, "UZH", 2, 0, 0);
+
+        leaderboard.onRequestEvent(requestEvent(RequestStatus.ACCEPTING, 1L));
+        leaderboard.onTransition(new RequestTransitionEvent(RequestTransition.ACCEPTED, 99L, 5L, "poster", 1L,
+                "volunteer1"));
+
+        assertTrue(leaderboard.top(LeaderboardMetric.ACTIVE, null, 2).isEmpty());
+    }
+
+    @Test
+    public void refresh_schoolChange_movesTheVolunteer() {
+        volunteer(1L, "UZH", 2, 0, 0);
+        leaderboard.refresh(1L);
+
+        volunteer(1L, "ETH", 2, 0, 0);
+        leaderboard.refresh(1L);
+
+        assertTrue(leaderboard.top(LeaderboardMetric.ACTIVE, "UZH", 2).isEmpty());
+        assertEquals(List.of(1L), ids(LeaderboardMetric.ACTIVE, "ETH"));
+    }
+
+    @Test
+    public void refresh_lostEverything_orDeleted_removesTheVolunteer() {
+        volunteer(1L, "UZH", 1, 0, 0);
+        volunteer(2L, "UZH", 1, 0, 0);
+        leaderboard.refresh(1L);
+        leaderboard.refresh(2L);
+
+        // the only done request was deleted
+        volunteer(1L, "UZH", 0, 0, 0);
+        leaderboard.onRequestEvent(requestEvent(RequestStatus.DELETED, 1L));
+        when(userRepository.findById(2L)).thenReturn(Optional.empty());
+        leaderboard.refresh(2L);
+
+        assertTrue(leaderboard.top(LeaderboardMetric.ACTIVE, null, 2).isEmpty());
+        assertTrue(leaderboard.top(LeaderboardMetric.ACTIVE, "UZH", 2).isEmpty());
+    }
+
+    @Test
+    public void top_limitOutOfRange_throwsBadRequest() {
+        assertThrows(ResponseStatusException.class, () -> leaderboard.top(LeaderboardMetric.ACTIVE, null, 0));
+        assertThrows(ResponseStatusException.class, () -> leaderboard.top(LeaderboardMetric.ACTIVE, null, 3));
+        assertThrows(ResponseStatusException.class, () -> LeaderboardMetric.fromParameter("loudest"));
+        assertTrue(leaderboard.top(LeaderboardMetric.RATED, null, 1).isEmpty());
+    }
+}